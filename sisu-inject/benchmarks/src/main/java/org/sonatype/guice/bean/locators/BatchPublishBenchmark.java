@@ -0,0 +1,169 @@
+/*******************************************************************************
+ * Copyright (c) 2010-2011 Sonatype, Inc.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * and Apache License v2.0 which accompanies this distribution.
+ * The Eclipse Public License is available at
+ *   http://www.eclipse.org/legal/epl-v10.html
+ * The Apache License v2.0 is available at
+ *   http://www.apache.org/licenses/LICENSE-2.0.html
+ * You may elect to redistribute this code under either of these licenses.
+ *******************************************************************************/
+package org.sonatype.guice.bean.locators;
+
+import java.lang.annotation.Annotation;
+import java.lang.reflect.Type;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.sonatype.guice.bean.locators.BenchmarkBeans.Bean;
+import org.sonatype.guice.bean.locators.spi.BindingPublisher;
+import org.sonatype.inject.BeanEntry;
+import org.sonatype.inject.Mediator;
+
+import com.google.inject.Key;
+import com.google.inject.name.Named;
+import com.google.inject.util.Types;
+
+/**
+ * Measures adding and then removing many injectors, either one at a time or as a single batch.
+ * <p>
+ * The locator already has many cached types and a few watchers. This resembles Plexus discovering plugin realms.
+ */
+@State( Scope.Benchmark )
+@BenchmarkMode( Mode.AverageTime )
+@OutputTimeUnit( TimeUnit.MILLISECONDS )
+@Warmup( iterations = 5, time = 1 )
+@Measurement( iterations = 5, time = 1 )
+@Fork( 1 )
+@SuppressWarnings( { "rawtypes", "unchecked" } )
+public class BatchPublishBenchmark
+{
+    // ----------------------------------------------------------------------
+    // Parameters
+    // ----------------------------------------------------------------------
+
+    @Param( { "500" } )
+    public int injectors;
+
+    @Param( { "256" } )
+    public int cachedTypes;
+
+    @Param( { "false", "true" } )
+    public boolean batch;
+
+    // ----------------------------------------------------------------------
+    // Implementation fields
+    // ----------------------------------------------------------------------
+
+    private DefaultBeanLocator locator;
+
+    private Map<BindingPublisher, Integer> rankedPublishers;
+
+    private Object[] lookups;
+
+    // ----------------------------------------------------------------------
+    // Setup
+    // ----------------------------------------------------------------------
+
+    @Setup( Level.Trial )
+    public void setUp()
+    {
+        locator = BenchmarkBeans.newLocator( 1, 10 );
+
+        rankedPublishers = new LinkedHashMap<BindingPublisher, Integer>();
+        for ( int i = 0; i < injectors; i++ )
+        {
+            final int rank = 1 + i % 16;
+            final BindingPublisher publisher =
+                BenchmarkBeans.newPublisher( BenchmarkBeans.newInjector( i, 2, false, false ), rank );
+            rankedPublishers.put( publisher, Integer.valueOf( rank ) );
+        }
+
+        // keep the lookups reachable so their types stay cached
+        lookups = new Object[cachedTypes];
+        lookups[0] = locator.locate( Key.get( Bean.class, Named.class ) );
+        for ( int i = 1; i < cachedTypes; i++ )
+        {
+            lookups[i] = locator.locate( Key.get( nestedType( i ) ) );
+        }
+
+        for ( int i = 0; i < 4; i++ )
+        {
+            locator.watch( Key.get( Bean.class, Named.class ), new NullMediator(), new Object() );
+        }
+    }
+
+    // ----------------------------------------------------------------------
+    // Benchmarks
+    // ----------------------------------------------------------------------
+
+    @Benchmark
+    public void addThenRemove()
+    {
+        if ( batch )
+        {
+            locator.addAll( rankedPublishers );
+            locator.removeAll( rankedPublishers.keySet() );
+        }
+        else
+        {
+            for ( final Map.Entry<BindingPublisher, Integer> e : rankedPublishers.entrySet() )
+            {
+                locator.add( e.getKey(), e.getValue().intValue() );
+            }
+            for ( final BindingPublisher p : rankedPublishers.keySet() )
+            {
+                locator.remove( p );
+            }
+        }
+    }
+
+    // ----------------------------------------------------------------------
+    // Implementation methods
+    // ----------------------------------------------------------------------
+
+    /**
+     * @return Distinct nested collection type, spelling out the bits of the given index
+     */
+    private static Type nestedType( final int i )
+    {
+        Type type = Bean.class;
+        for ( int n = i; n > 0; n >>>= 1 )
+        {
+            type = ( n & 1 ) != 0 ? Types.listOf( type ) : Types.setOf( type );
+        }
+        return type;
+    }
+
+    // ----------------------------------------------------------------------
+    // Implementation types
+    // ----------------------------------------------------------------------
+
+    static final class NullMediator
+        implements Mediator<Annotation, Object, Object>
+    {
+        public void add( final BeanEntry<Annotation, Object> bean, final Object watcher )
+        {
+            // nothing to do
+        }
+
+        public void remove( final BeanEntry<Annotation, Object> bean, final Object watcher )
+        {
+            // nothing to do
+        }
+    }
+}
@@ -0,0 +1,144 @@
+/*******************************************************************************
+ * Copyright (c) 2010-2011 Sonatype, Inc.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * and Apache License v2.0 which accompanies this distribution.
+ * The Eclipse Public License is available at
+ *   http://www.eclipse.org/legal/epl-v10.html
+ * The Apache License v2.0 is available at
+ *   http://www.apache.org/licenses/LICENSE-2.0.html
+ * You may elect to redistribute this code under either of these licenses.
+ *******************************************************************************/
+package org.sonatype.guice.bean.locators;
+
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+
+import javax.inject.Qualifier;
+
+import com.google.inject.AbstractModule;
+import com.google.inject.Guice;
+import com.google.inject.Injector;
+import com.google.inject.Scopes;
+import com.google.inject.binder.ScopedBindingBuilder;
+import com.google.inject.name.Names;
+
+/**
+ * Shared fixture that populates a {@link DefaultBeanLocator} with a configurable number of injectors and bindings.
+ */
+final class BenchmarkBeans
+{
+    // ----------------------------------------------------------------------
+    // Constants
+    // ----------------------------------------------------------------------
+
+    static final String EXACT_NAME = "x";
+
+    // ----------------------------------------------------------------------
+    // Constructors
+    // ----------------------------------------------------------------------
+
+    private BenchmarkBeans()
+    {
+        // static utility class, not allowed to create instances
+    }
+
+    // ----------------------------------------------------------------------
+    // Utility methods
+    // ----------------------------------------------------------------------
+
+    /**
+     * Creates a locator with the given number of injectors, each contributing the same number of {@link Bean}s.
+     * <p>
+     * The binding named {@value #EXACT_NAME} is always the last binding of the lowest ranked injector.
+     *
+     * @param injectors The number of injectors
+     * @param bindingsPerType The number of bindings per injector
+     * @return Populated bean locator
+     */
+    static DefaultBeanLocator newLocator( final int injectors, final int bindingsPerType )
+    {
+        return newLocator( injectors, bindingsPerType, false );
+    }
+
+    /**
+     * Creates a locator with the given number of injectors, each contributing the same number of {@link Bean}s.
+     *
+     * @param injectors The number of injectors
+     * @param bindingsPerType The number of bindings per injector
+     * @param singletons Whether the bindings should be singletons
+     * @return Populated bean locator
+     */
+    static DefaultBeanLocator newLocator( final int injectors, final int bindingsPerType, final boolean singletons )
+    {
+        final DefaultBeanLocator locator = new DefaultBeanLocator();
+        for ( int i = 0; i < injectors; i++ )
+        {
+            final int rank = injectors - i;
+            final Injector injector = newInjector( i, bindingsPerType, i == injectors - 1, singletons );
+            locator.add( newPublisher( injector, rank ), rank );
+        }
+        return locator;
+    }
+
+    /**
+     * Creates an injector containing the given number of named {@link Bean} bindings; even bindings are marked.
+     *
+     * @param id The injector id
+     * @param bindingsPerType The number of bindings
+     * @param hasExactName Whether the last binding should be named {@value #EXACT_NAME}
+     * @param singletons Whether the bindings should be singletons
+     * @return New injector
+     */
+    static Injector newInjector( final int id, final int bindingsPerType, final boolean hasExactName,
+                                 final boolean singletons )
+    {
+        return Guice.createInjector( new AbstractModule()
+        {
+            @Override
+            protected void configure()
+            {
+                for ( int j = 0; j < bindingsPerType; j++ )
+                {
+                    final String name = hasExactName && j == bindingsPerType - 1 ? EXACT_NAME : id + "." + j;
+                    final Class<? extends Bean> impl = j % 2 == 0 ? MarkedBeanImpl.class : BeanImpl.class;
+                    final ScopedBindingBuilder builder = bind( Bean.class ).annotatedWith( Names.named( name ) ).to( impl );
+                    if ( singletons )
+                    {
+                        builder.in( Scopes.SINGLETON );
+                    }
+                }
+            }
+        } );
+    }
+
+    static InjectorPublisher newPublisher( final Injector injector, final int rank )
+    {
+        return new InjectorPublisher( injector, new DefaultRankingFunction( rank ) );
+    }
+
+    // ----------------------------------------------------------------------
+    // Implementation types
+    // ----------------------------------------------------------------------
+
+    @Qualifier
+    @Retention( RetentionPolicy.RUNTIME )
+    public @interface Marked
+    {
+    }
+
+    public interface Bean
+    {
+    }
+
+    public static class BeanImpl
+        implements Bean
+    {
+    }
+
+    @Marked
+    public static class MarkedBeanImpl
+        implements Bean
+    {
+    }
+}
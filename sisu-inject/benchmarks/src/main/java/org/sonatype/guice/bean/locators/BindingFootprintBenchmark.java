@@ -0,0 +1,125 @@
+/*******************************************************************************
+ * Copyright (c) 2010-2011 Sonatype, Inc.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * and Apache License v2.0 which accompanies this distribution.
+ * The Eclipse Public License is available at
+ *   http://www.eclipse.org/legal/epl-v10.html
+ * The Apache License v2.0 is available at
+ *   http://www.apache.org/licenses/LICENSE-2.0.html
+ * You may elect to redistribute this code under either of these licenses.
+ *******************************************************************************/
+package org.sonatype.guice.bean.locators;
+
+import java.util.concurrent.TimeUnit;
+
+import javax.inject.Named;
+
+import org.openjdk.jmh.annotations.AuxCounters;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.sonatype.guice.bean.locators.BenchmarkBeans.Bean;
+import org.sonatype.inject.BeanEntry;
+
+import com.google.inject.Key;
+
+/**
+ * Measures the bytes retained by the locator per binding once every binding has been enumerated through both an
+ * unqualified and a named lookup, without creating any bean instances.
+ * <p>
+ * The interesting figure is the {@code bytesPerBinding} counter; the score is just the time taken to enumerate.
+ */
+@State( Scope.Benchmark )
+@BenchmarkMode( Mode.SingleShotTime )
+@OutputTimeUnit( TimeUnit.MILLISECONDS )
+@Warmup( iterations = 1 )
+@Measurement( iterations = 1 )
+@Fork( value = 1, jvmArgsAppend = "-Xmx2g" )
+public class BindingFootprintBenchmark
+{
+    // ----------------------------------------------------------------------
+    // Parameters
+    // ----------------------------------------------------------------------
+
+    @Param( { "10" } )
+    public int injectors;
+
+    @Param( { "5000" } )
+    public int bindingsPerType;
+
+    @Param( { "false", "true" } )
+    public boolean singletons;
+
+    // ----------------------------------------------------------------------
+    // Implementation fields
+    // ----------------------------------------------------------------------
+
+    private MutableBeanLocator locator;
+
+    private long baseline;
+
+    // ----------------------------------------------------------------------
+    // Setup
+    // ----------------------------------------------------------------------
+
+    @Setup( Level.Iteration )
+    public void setUp()
+    {
+        locator = BenchmarkBeans.newLocator( injectors, bindingsPerType, singletons );
+        baseline = Footprint.totalSize( locator );
+    }
+
+    // ----------------------------------------------------------------------
+    // Benchmarks
+    // ----------------------------------------------------------------------
+
+    @Benchmark
+    public void enumerate( final Counters counters )
+    {
+        final Iterable<? extends BeanEntry<?, Bean>> all = locator.locate( Key.get( Bean.class ) );
+        final Iterable<? extends BeanEntry<?, Bean>> named = locator.locate( Key.get( Bean.class, Named.class ) );
+
+        int count = 0;
+        for ( final BeanEntry<?, Bean> bean : all )
+        {
+            count += null != bean.getKey() ? 1 : 0;
+        }
+        for ( final BeanEntry<?, Bean> bean : named )
+        {
+            count += null != bean.getKey() ? 1 : 0;
+        }
+
+        counters.bindings = count / 2;
+        counters.bytesPerBinding = ( Footprint.totalSize( locator, all, named ) - baseline ) / counters.bindings;
+    }
+
+    // ----------------------------------------------------------------------
+    // Implementation types
+    // ----------------------------------------------------------------------
+
+    @State( Scope.Thread )
+    @AuxCounters( AuxCounters.Type.EVENTS )
+    public static class Counters
+    {
+        public long bindings;
+
+        public long bytesPerBinding;
+
+        @Setup( Level.Iteration )
+        public void reset()
+        {
+            bindings = 0;
+            bytesPerBinding = 0;
+        }
+    }
+}
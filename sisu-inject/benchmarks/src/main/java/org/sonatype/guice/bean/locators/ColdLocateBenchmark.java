@@ -0,0 +1,169 @@
+/*******************************************************************************
+ * Copyright (c) 2010-2011 Sonatype, Inc.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * and Apache License v2.0 which accompanies this distribution.
+ * The Eclipse Public License is available at
+ *   http://www.eclipse.org/legal/epl-v10.html
+ * The Apache License v2.0 is available at
+ *   http://www.apache.org/licenses/LICENSE-2.0.html
+ * You may elect to redistribute this code under either of these licenses.
+ *******************************************************************************/
+package org.sonatype.guice.bean.locators;
+
+import java.lang.reflect.Type;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+import org.sonatype.guice.bean.locators.BenchmarkBeans.Bean;
+import org.sonatype.guice.bean.locators.spi.BindingPublisher;
+
+import com.google.inject.Key;
+import com.google.inject.util.Types;
+
+/**
+ * Measures first-time lookups of previously unseen types while another thread keeps adding and removing publishers.
+ * <p>
+ * Each measurement starts from a fresh locator, so every {@link DefaultBeanLocator#locate(Key)} is a cache miss.
+ */
+@State( Scope.Benchmark )
+@BenchmarkMode( Mode.SingleShotTime )
+@OutputTimeUnit( TimeUnit.MILLISECONDS )
+@Warmup( iterations = 10 )
+@Measurement( iterations = 20 )
+@Threads( 8 )
+@Fork( 1 )
+@SuppressWarnings( { "rawtypes", "unchecked" } )
+public class ColdLocateBenchmark
+{
+    // ----------------------------------------------------------------------
+    // Constants
+    // ----------------------------------------------------------------------
+
+    static final int TYPES_PER_THREAD = 256;
+
+    static final int MAX_THREADS = 16;
+
+    // ----------------------------------------------------------------------
+    // Parameters
+    // ----------------------------------------------------------------------
+
+    @Param( { "false", "true" } )
+    public boolean churn;
+
+    // ----------------------------------------------------------------------
+    // Implementation fields
+    // ----------------------------------------------------------------------
+
+    final Key[] keys = new Key[MAX_THREADS * TYPES_PER_THREAD];
+
+    final AtomicInteger slices = new AtomicInteger();
+
+    volatile DefaultBeanLocator locator;
+
+    private BindingPublisher churnPublisher;
+
+    private volatile boolean active;
+
+    private Thread churnThread;
+
+    // ----------------------------------------------------------------------
+    // Setup
+    // ----------------------------------------------------------------------
+
+    @Setup( Level.Trial )
+    public void setUp()
+    {
+        // pair up nested list types to get plenty of distinct, cheaply hashed types
+        final Type[] base = new Type[64];
+        base[0] = Bean.class;
+        for ( int i = 1; i < base.length; i++ )
+        {
+            base[i] = Types.listOf( base[i - 1] );
+        }
+        for ( int i = 0; i < keys.length; i++ )
+        {
+            keys[i] = Key.get( Types.mapOf( base[i / base.length], base[i % base.length] ) );
+        }
+        churnPublisher = BenchmarkBeans.newPublisher( BenchmarkBeans.newInjector( -1, 10, false, false ), 0 );
+    }
+
+    @Setup( Level.Iteration )
+    public void startIteration()
+    {
+        locator = BenchmarkBeans.newLocator( 10, 10 );
+        slices.set( 0 );
+        if ( churn )
+        {
+            active = true;
+            churnThread = new Thread()
+            {
+                @Override
+                public void run()
+                {
+                    while ( active )
+                    {
+                        locator.add( churnPublisher, 0 );
+                        locator.remove( churnPublisher );
+                    }
+                }
+            };
+            churnThread.start();
+        }
+    }
+
+    @TearDown( Level.Iteration )
+    public void stopIteration()
+        throws InterruptedException
+    {
+        if ( churn )
+        {
+            active = false;
+            churnThread.join();
+        }
+    }
+
+    @State( Scope.Thread )
+    public static class Slice
+    {
+        int offset;
+
+        @Setup( Level.Iteration )
+        public void claim( final ColdLocateBenchmark benchmark )
+        {
+            offset = ( benchmark.slices.getAndIncrement() % MAX_THREADS ) * TYPES_PER_THREAD;
+        }
+    }
+
+    // ----------------------------------------------------------------------
+    // Benchmarks
+    // ----------------------------------------------------------------------
+
+    @Benchmark
+    public int coldLocate( final Slice slice )
+    {
+        int found = 0;
+        for ( int i = slice.offset, end = i + TYPES_PER_THREAD; i < end; i++ )
+        {
+            if ( locator.locate( keys[i] ).iterator().hasNext() )
+            {
+                found++;
+            }
+        }
+        return found;
+    }
+}
@@ -0,0 +1,250 @@
+/*******************************************************************************
+ * Copyright (c) 2010-2011 Sonatype, Inc.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * and Apache License v2.0 which accompanies this distribution.
+ * The Eclipse Public License is available at
+ *   http://www.eclipse.org/legal/epl-v10.html
+ * The Apache License v2.0 is available at
+ *   http://www.apache.org/licenses/LICENSE-2.0.html
+ * You may elect to redistribute this code under either of these licenses.
+ *******************************************************************************/
+package org.sonatype.guice.bean.locators;
+
+import java.lang.reflect.Array;
+import java.lang.reflect.Field;
+import java.lang.reflect.Method;
+import java.lang.reflect.Modifier;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Measures the total size of object graphs, in the spirit of JOL's {@code GraphLayout.totalSize()}.
+ * <p>
+ * Shallow sizes are derived from the field offsets reported by {@code sun.misc.Unsafe}, which is looked up reflectively
+ * so the benchmarks still build against the Java 5 API. Classes, class loaders and threads are treated as shared.
+ */
+final class Footprint
+{
+    // ----------------------------------------------------------------------
+    // Constants
+    // ----------------------------------------------------------------------
+
+    private static final int ALIGNMENT = 8;
+
+    private static final int HEADER_SIZE;
+
+    private static final int REFERENCE_SIZE;
+
+    private static final Object UNSAFE;
+
+    private static final Method OBJECT_FIELD_OFFSET;
+
+    private static final Method ARRAY_BASE_OFFSET;
+
+    static
+    {
+        try
+        {
+            final Class<?> unsafeClazz = Class.forName( "sun.misc.Unsafe" );
+            final Field theUnsafe = unsafeClazz.getDeclaredField( "theUnsafe" );
+            theUnsafe.setAccessible( true );
+            UNSAFE = theUnsafe.get( null );
+            OBJECT_FIELD_OFFSET = unsafeClazz.getMethod( "objectFieldOffset", Field.class );
+            ARRAY_BASE_OFFSET = unsafeClazz.getMethod( "arrayBaseOffset", Class.class );
+            final Method arrayIndexScale = unsafeClazz.getMethod( "arrayIndexScale", Class.class );
+            REFERENCE_SIZE = ( (Integer) arrayIndexScale.invoke( UNSAFE, Object[].class ) ).intValue();
+            HEADER_SIZE = ( (Integer) ARRAY_BASE_OFFSET.invoke( UNSAFE, Object[].class ) ).intValue() - 4;
+        }
+        catch ( final Exception e )
+        {
+            throw new ExceptionInInitializerError( e );
+        }
+    }
+
+    // ----------------------------------------------------------------------
+    // Implementation fields
+    // ----------------------------------------------------------------------
+
+    private final Map<Class<?>, Layout> layouts = new HashMap<Class<?>, Layout>();
+
+    // ----------------------------------------------------------------------
+    // Constructors
+    // ----------------------------------------------------------------------
+
+    private Footprint()
+    {
+        // use totalSize
+    }
+
+    // ----------------------------------------------------------------------
+    // Utility methods
+    // ----------------------------------------------------------------------
+
+    /**
+     * @param roots The graph roots
+     * @return Total size in bytes of all objects reachable from the given roots
+     */
+    static long totalSize( final Object... roots )
+    {
+        return new Footprint().walk( roots );
+    }
+
+    // ----------------------------------------------------------------------
+    // Implementation methods
+    // ----------------------------------------------------------------------
+
+    private long walk( final Object[] roots )
+    {
+        final Map<Object, Object> seen = new IdentityHashMap<Object, Object>();
+        final List<Object> stack = new ArrayList<Object>();
+        for ( final Object root : roots )
+        {
+            stack.add( root );
+        }
+
+        long total = 0;
+        while ( !stack.isEmpty() )
+        {
+            final Object o = stack.remove( stack.size() - 1 );
+            if ( null == o || isShared( o ) || null != seen.put( o, o ) )
+            {
+                continue;
+            }
+            final Class<?> clazz = o.getClass();
+            if ( clazz.isArray() )
+            {
+                total += arraySize( o, clazz );
+                if ( !clazz.getComponentType().isPrimitive() )
+                {
+                    for ( final Object e : (Object[]) o )
+                    {
+                        if ( null != e )
+                        {
+                            stack.add( e );
+                        }
+                    }
+                }
+            }
+            else
+            {
+                final Layout layout = layout( clazz );
+                total += layout.size;
+                for ( final Field f : layout.references )
+                {
+                    stack.add( get( f, o ) );
+                }
+            }
+        }
+        return total;
+    }
+
+    private static boolean isShared( final Object o )
+    {
+        return o instanceof Class<?> || o instanceof ClassLoader || o instanceof Thread;
+    }
+
+    private static long arraySize( final Object array, final Class<?> clazz )
+    {
+        final int length = Array.getLength( array );
+        final Class<?> component = clazz.getComponentType();
+        final int scale = component.isPrimitive() ? primitiveSize( component ) : REFERENCE_SIZE;
+        return align( ( (Integer) invoke( ARRAY_BASE_OFFSET, clazz ) ).intValue() + (long) length * scale );
+    }
+
+    private Layout layout( final Class<?> clazz )
+    {
+        Layout layout = layouts.get( clazz );
+        if ( null == layout )
+        {
+            long size = HEADER_SIZE;
+            final List<Field> references = new ArrayList<Field>();
+            for ( Class<?> c = clazz; null != c; c = c.getSuperclass() )
+            {
+                for ( final Field f : c.getDeclaredFields() )
+                {
+                    if ( !Modifier.isStatic( f.getModifiers() ) )
+                    {
+                        final Class<?> type = f.getType();
+                        final long offset = ( (Long) invoke( OBJECT_FIELD_OFFSET, f ) ).longValue();
+                        final int fieldSize = type.isPrimitive() ? primitiveSize( type ) : REFERENCE_SIZE;
+                        size = Math.max( size, offset + fieldSize );
+                        if ( !type.isPrimitive() )
+                        {
+                            f.setAccessible( true );
+                            references.add( f );
+                        }
+                    }
+                }
+            }
+            layouts.put( clazz, layout = new Layout( align( size ), references ) );
+        }
+        return layout;
+    }
+
+    private static int primitiveSize( final Class<?> type )
+    {
+        if ( long.class == type || double.class == type )
+        {
+            return 8;
+        }
+        if ( int.class == type || float.class == type )
+        {
+            return 4;
+        }
+        if ( short.class == type || char.class == type )
+        {
+            return 2;
+        }
+        return 1;
+    }
+
+    private static long align( final long size )
+    {
+        return ( size + ALIGNMENT - 1 ) / ALIGNMENT * ALIGNMENT;
+    }
+
+    private static Object get( final Field field, final Object o )
+    {
+        try
+        {
+            return field.get( o );
+        }
+        catch ( final IllegalAccessException e )
+        {
+            throw new IllegalStateException( e.toString() );
+        }
+    }
+
+    private static Object invoke( final Method method, final Object arg )
+    {
+        try
+        {
+            return method.invoke( UNSAFE, arg );
+        }
+        catch ( final Exception e )
+        {
+            throw new IllegalStateException( e.toString() );
+        }
+    }
+
+    // ----------------------------------------------------------------------
+    // Implementation types
+    // ----------------------------------------------------------------------
+
+    private static final class Layout
+    {
+        final long size;
+
+        final List<Field> references;
+
+        Layout( final long size, final List<Field> references )
+        {
+            this.size = size;
+            this.references = references;
+        }
+    }
+}
@@ -0,0 +1,129 @@
+/*******************************************************************************
+ * Copyright (c) 2010-2011 Sonatype, Inc.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * and Apache License v2.0 which accompanies this distribution.
+ * The Eclipse Public License is available at
+ *   http://www.eclipse.org/legal/epl-v10.html
+ * The Apache License v2.0 is available at
+ *   http://www.apache.org/licenses/LICENSE-2.0.html
+ * You may elect to redistribute this code under either of these licenses.
+ *******************************************************************************/
+package org.sonatype.guice.bean.locators;
+
+import java.util.Iterator;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+import org.sonatype.guice.bean.locators.BenchmarkBeans.Bean;
+import org.sonatype.inject.BeanEntry;
+
+import com.google.inject.Key;
+
+/**
+ * Measures {@link DefaultBeanLocator#locate(Key)} followed by first-element and full iteration of the results.
+ */
+@State( Scope.Benchmark )
+@BenchmarkMode( Mode.AverageTime )
+@OutputTimeUnit( TimeUnit.NANOSECONDS )
+@Warmup( iterations = 5, time = 1 )
+@Measurement( iterations = 5, time = 1 )
+@Fork( 1 )
+@SuppressWarnings( { "rawtypes", "unchecked" } )
+public class LocateBenchmark
+{
+    // ----------------------------------------------------------------------
+    // Parameters
+    // ----------------------------------------------------------------------
+
+    @Param( { "1", "10", "50" } )
+    public int injectors;
+
+    @Param( { "1", "10", "100" } )
+    public int bindingsPerType;
+
+    @Param( { "UNQUALIFIED", "NAMED", "NAMED_X", "MARKED" } )
+    public LookupQualifier qualifier;
+
+    // ----------------------------------------------------------------------
+    // Implementation fields
+    // ----------------------------------------------------------------------
+
+    private DefaultBeanLocator locator;
+
+    private Key<Bean> key;
+
+    private Iterable<BeanEntry> beans;
+
+    // ----------------------------------------------------------------------
+    // Setup
+    // ----------------------------------------------------------------------
+
+    @Setup( Level.Trial )
+    public void setUp()
+    {
+        locator = BenchmarkBeans.newLocator( injectors, bindingsPerType );
+        key = qualifier.key();
+
+        // warm up the caches so iteration benchmarks measure the steady state
+        beans = (Iterable) locator.locate( key );
+        for ( final BeanEntry entry : beans )
+        {
+            entry.getKey();
+        }
+    }
+
+    // ----------------------------------------------------------------------
+    // Benchmarks
+    // ----------------------------------------------------------------------
+
+    @Benchmark
+    public Object locate()
+    {
+        return locator.locate( key );
+    }
+
+    @Benchmark
+    public Object locateFirst()
+    {
+        final Iterator<BeanEntry> itr = ( (Iterable) locator.locate( key ) ).iterator();
+        return itr.hasNext() ? itr.next() : null;
+    }
+
+    @Benchmark
+    public void locateAll( final Blackhole blackhole )
+    {
+        for ( final Object entry : locator.locate( key ) )
+        {
+            blackhole.consume( entry );
+        }
+    }
+
+    @Benchmark
+    public Object iterateFirst()
+    {
+        final Iterator<BeanEntry> itr = beans.iterator();
+        return itr.hasNext() ? itr.next() : null;
+    }
+
+    @Benchmark
+    public void iterateAll( final Blackhole blackhole )
+    {
+        for ( final BeanEntry entry : beans )
+        {
+            blackhole.consume( entry );
+        }
+    }
+}
@@ -0,0 +1,68 @@
+/*******************************************************************************
+ * Copyright (c) 2010-2011 Sonatype, Inc.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * and Apache License v2.0 which accompanies this distribution.
+ * The Eclipse Public License is available at
+ *   http://www.eclipse.org/legal/epl-v10.html
+ * The Apache License v2.0 is available at
+ *   http://www.apache.org/licenses/LICENSE-2.0.html
+ * You may elect to redistribute this code under either of these licenses.
+ *******************************************************************************/
+package org.sonatype.guice.bean.locators;
+
+import org.sonatype.guice.bean.locators.BenchmarkBeans.Bean;
+import org.sonatype.guice.bean.locators.BenchmarkBeans.Marked;
+
+import com.google.inject.Key;
+import com.google.inject.name.Named;
+import com.google.inject.name.Names;
+
+/**
+ * Qualifier strategies exercised by the benchmarks; each one maps to a different lookup {@link Key}.
+ */
+public enum LookupQualifier
+{
+    // ----------------------------------------------------------------------
+    // Enumerated values
+    // ----------------------------------------------------------------------
+
+    UNQUALIFIED
+    {
+        @Override
+        Key<Bean> key()
+        {
+            return Key.get( Bean.class );
+        }
+    },
+    NAMED
+    {
+        @Override
+        Key<Bean> key()
+        {
+            return Key.get( Bean.class, Named.class );
+        }
+    },
+    NAMED_X
+    {
+        @Override
+        Key<Bean> key()
+        {
+            return Key.get( Bean.class, Names.named( BenchmarkBeans.EXACT_NAME ) );
+        }
+    },
+    MARKED
+    {
+        @Override
+        Key<Bean> key()
+        {
+            return Key.get( Bean.class, Marked.class );
+        }
+    };
+
+    // ----------------------------------------------------------------------
+    // Local methods
+    // ----------------------------------------------------------------------
+
+    abstract Key<Bean> key();
+}
@@ -0,0 +1,99 @@
+/*******************************************************************************
+ * Copyright (c) 2010-2011 Sonatype, Inc.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * and Apache License v2.0 which accompanies this distribution.
+ * The Eclipse Public License is available at
+ *   http://www.eclipse.org/legal/epl-v10.html
+ * The Apache License v2.0 is available at
+ *   http://www.apache.org/licenses/LICENSE-2.0.html
+ * You may elect to redistribute this code under either of these licenses.
+ *******************************************************************************/
+package org.sonatype.guice.bean.locators;
+
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+import javax.inject.Named;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.sonatype.guice.bean.locators.BenchmarkBeans.Bean;
+
+import com.google.inject.Key;
+
+/**
+ * Measures key lookups on a named bean map, as injected into components that select beans by hint.
+ */
+@State( Scope.Benchmark )
+@BenchmarkMode( Mode.AverageTime )
+@OutputTimeUnit( TimeUnit.NANOSECONDS )
+@Warmup( iterations = 5, time = 1 )
+@Measurement( iterations = 5, time = 1 )
+@Fork( 1 )
+@SuppressWarnings( { "rawtypes", "unchecked" } )
+public class NamedMapBenchmark
+{
+    // ----------------------------------------------------------------------
+    // Parameters
+    // ----------------------------------------------------------------------
+
+    @Param( { "5" } )
+    public int injectors;
+
+    @Param( { "20" } )
+    public int bindingsPerType;
+
+    // ----------------------------------------------------------------------
+    // Implementation fields
+    // ----------------------------------------------------------------------
+
+    private Map<String, Bean> beans;
+
+    private String lastHint;
+
+    // ----------------------------------------------------------------------
+    // Setup
+    // ----------------------------------------------------------------------
+
+    @Setup( Level.Trial )
+    public void setUp()
+    {
+        final DefaultBeanLocator locator = BenchmarkBeans.newLocator( injectors, bindingsPerType );
+        final Iterable named = locator.locate( Key.get( Bean.class, Named.class ) );
+        beans = new EntryMapAdapter<String, Bean>( new NamedIterableAdapter<Bean>( named ) );
+        lastHint = BenchmarkBeans.EXACT_NAME; // last binding of the lowest ranked injector
+    }
+
+    // ----------------------------------------------------------------------
+    // Benchmarks
+    // ----------------------------------------------------------------------
+
+    @Benchmark
+    public Object getLast()
+    {
+        return beans.get( lastHint );
+    }
+
+    @Benchmark
+    public boolean containsMissing()
+    {
+        return beans.containsKey( "missing" );
+    }
+
+    @Benchmark
+    public int size()
+    {
+        return beans.size();
+    }
+}
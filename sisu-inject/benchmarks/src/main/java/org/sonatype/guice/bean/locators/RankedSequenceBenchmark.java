@@ -0,0 +1,121 @@
+/*******************************************************************************
+ * Copyright (c) 2010-2011 Sonatype, Inc.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * and Apache License v2.0 which accompanies this distribution.
+ * The Eclipse Public License is available at
+ *   http://www.eclipse.org/legal/epl-v10.html
+ * The Apache License v2.0 is available at
+ *   http://www.apache.org/licenses/LICENSE-2.0.html
+ * You may elect to redistribute this code under either of these licenses.
+ *******************************************************************************/
+package org.sonatype.guice.bean.locators;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+/**
+ * Measures building up and tearing down a large {@link RankedSequence} one element at a time.
+ */
+@State( Scope.Benchmark )
+@BenchmarkMode( Mode.AverageTime )
+@OutputTimeUnit( TimeUnit.MILLISECONDS )
+@Warmup( iterations = 5, time = 1 )
+@Measurement( iterations = 5, time = 1 )
+@Fork( 1 )
+public class RankedSequenceBenchmark
+{
+    // ----------------------------------------------------------------------
+    // Parameters
+    // ----------------------------------------------------------------------
+
+    @Param( { "10000" } )
+    public int size;
+
+    // ----------------------------------------------------------------------
+    // Implementation fields
+    // ----------------------------------------------------------------------
+
+    private Object[] elements;
+
+    private int[] ranks;
+
+    private int[] removalOrder;
+
+    private RankedSequence<Object> filled;
+
+    // ----------------------------------------------------------------------
+    // Setup
+    // ----------------------------------------------------------------------
+
+    @Setup( Level.Trial )
+    public void setUp()
+    {
+        final Random random = new Random( 42 );
+
+        elements = new Object[size];
+        ranks = new int[size];
+        removalOrder = new int[size];
+        for ( int i = 0; i < size; i++ )
+        {
+            elements[i] = new Object();
+            ranks[i] = random.nextInt( 64 );
+            removalOrder[i] = i;
+        }
+        for ( int i = size - 1; i > 0; i-- )
+        {
+            final int j = random.nextInt( i + 1 );
+            final int tmp = removalOrder[i];
+            removalOrder[i] = removalOrder[j];
+            removalOrder[j] = tmp;
+        }
+
+        filled = new RankedSequence<Object>();
+        for ( int i = 0; i < size; i++ )
+        {
+            filled.insert( elements[i], ranks[i] );
+        }
+    }
+
+    // ----------------------------------------------------------------------
+    // Benchmarks
+    // ----------------------------------------------------------------------
+
+    @Benchmark
+    public boolean insertThenRemove()
+    {
+        final RankedSequence<Object> sequence = new RankedSequence<Object>();
+        for ( int i = 0; i < size; i++ )
+        {
+            sequence.insert( elements[i], ranks[i] );
+        }
+        for ( int i = 0; i < size; i++ )
+        {
+            sequence.removeThis( elements[removalOrder[i]] );
+        }
+        return sequence.isEmpty();
+    }
+
+    @Benchmark
+    public void iterate( final Blackhole blackhole )
+    {
+        for ( final Object element : filled )
+        {
+            blackhole.consume( element );
+        }
+    }
+}
@@ -0,0 +1,105 @@
+/*******************************************************************************
+ * Copyright (c) 2010-2011 Sonatype, Inc.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * and Apache License v2.0 which accompanies this distribution.
+ * The Eclipse Public License is available at
+ *   http://www.eclipse.org/legal/epl-v10.html
+ * The Apache License v2.0 is available at
+ *   http://www.apache.org/licenses/LICENSE-2.0.html
+ * You may elect to redistribute this code under either of these licenses.
+ *******************************************************************************/
+package org.sonatype.guice.bean.locators;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.sonatype.guice.bean.locators.BatchPublishBenchmark.NullMediator;
+import org.sonatype.guice.bean.locators.BenchmarkBeans.Bean;
+import org.sonatype.guice.bean.locators.spi.BindingPublisher;
+import org.sonatype.inject.BeanEntry;
+
+import com.google.inject.Key;
+import com.google.inject.name.Named;
+
+/**
+ * Measures a long-running container that keeps loading and disposing a small plugin realm.
+ * <p>
+ * The container already holds many bindings, all of which have been looked up and are being watched.
+ */
+@State( Scope.Benchmark )
+@BenchmarkMode( Mode.AverageTime )
+@OutputTimeUnit( TimeUnit.MICROSECONDS )
+@Warmup( iterations = 5, time = 1 )
+@Measurement( iterations = 5, time = 1 )
+@Fork( 1 )
+@SuppressWarnings( { "rawtypes", "unchecked" } )
+public class RealmCycleBenchmark
+{
+    // ----------------------------------------------------------------------
+    // Parameters
+    // ----------------------------------------------------------------------
+
+    @Param( { "20", "200" } )
+    public int injectors;
+
+    @Param( { "50" } )
+    public int bindingsPerType;
+
+    // ----------------------------------------------------------------------
+    // Implementation fields
+    // ----------------------------------------------------------------------
+
+    private DefaultBeanLocator locator;
+
+    private BindingPublisher plugin;
+
+    private Iterable<BeanEntry> beans;
+
+    // ----------------------------------------------------------------------
+    // Setup
+    // ----------------------------------------------------------------------
+
+    @Setup( Level.Trial )
+    public void setUp()
+    {
+        locator = BenchmarkBeans.newLocator( injectors, bindingsPerType );
+        for ( int i = 0; i < 4; i++ )
+        {
+            locator.watch( Key.get( Bean.class, Named.class ), new NullMediator(), new Object() );
+        }
+
+        // make sure every container realm has been subscribed
+        beans = (Iterable) locator.locate( Key.get( Bean.class, Named.class ) );
+        for ( final Object bean : beans )
+        {
+            bean.hashCode();
+        }
+
+        plugin = BenchmarkBeans.newPublisher( BenchmarkBeans.newInjector( -1, 10, false, false ), injectors + 1 );
+    }
+
+    // ----------------------------------------------------------------------
+    // Benchmarks
+    // ----------------------------------------------------------------------
+
+    @Benchmark
+    public Object cycleRealm()
+    {
+        locator.add( plugin, injectors + 1 );
+        final Object first = beans.iterator().next();
+        locator.remove( plugin );
+        return first;
+    }
+}
@@ -0,0 +1,143 @@
+/*******************************************************************************
+ * Copyright (c) 2010-2011 Sonatype, Inc.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * and Apache License v2.0 which accompanies this distribution.
+ * The Eclipse Public License is available at
+ *   http://www.eclipse.org/legal/epl-v10.html
+ * The Apache License v2.0 is available at
+ *   http://www.apache.org/licenses/LICENSE-2.0.html
+ * You may elect to redistribute this code under either of these licenses.
+ *******************************************************************************/
+package org.sonatype.guice.bean.locators;
+
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+import javax.inject.Named;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+import org.sonatype.guice.bean.locators.BenchmarkBeans.Bean;
+import org.sonatype.inject.BeanEntry;
+import org.sonatype.inject.Mediator;
+
+import com.google.inject.Injector;
+import com.google.inject.Key;
+
+/**
+ * Measures how long publishing and then removing an injector holds the locator when a watcher's mediator is slow.
+ */
+@State( Scope.Benchmark )
+@BenchmarkMode( Mode.AverageTime )
+@OutputTimeUnit( TimeUnit.MICROSECONDS )
+@Warmup( iterations = 5, time = 1 )
+@Measurement( iterations = 5, time = 1 )
+@Fork( 1 )
+public class SlowMediatorBenchmark
+{
+    // ----------------------------------------------------------------------
+    // Parameters
+    // ----------------------------------------------------------------------
+
+    @Param( { "false", "true" } )
+    public boolean async;
+
+    @Param( { "10000" } )
+    public int mediatorTokens;
+
+    // ----------------------------------------------------------------------
+    // Implementation fields
+    // ----------------------------------------------------------------------
+
+    private DefaultBeanLocator locator;
+
+    private Injector injector;
+
+    private ExecutorService executor;
+
+    private Object watcher;
+
+    // ----------------------------------------------------------------------
+    // Setup
+    // ----------------------------------------------------------------------
+
+    @Setup( Level.Trial )
+    public void setUp()
+    {
+        locator = new DefaultBeanLocator();
+        injector = BenchmarkBeans.newInjector( 0, 10, false, false );
+        if ( async )
+        {
+            executor = Executors.newSingleThreadExecutor();
+            locator.setNotificationExecutor( executor );
+        }
+        watcher = new Object();
+        locator.watch( Key.get( Bean.class, Named.class ), new SlowMediator( mediatorTokens ), watcher );
+    }
+
+    @TearDown( Level.Iteration )
+    public void quiesce()
+        throws InterruptedException
+    {
+        locator.quiesce();
+    }
+
+    @TearDown( Level.Trial )
+    public void tearDown()
+    {
+        if ( null != executor )
+        {
+            executor.shutdown();
+        }
+    }
+
+    // ----------------------------------------------------------------------
+    // Benchmarks
+    // ----------------------------------------------------------------------
+
+    @Benchmark
+    public void publishCycle()
+    {
+        locator.add( injector, 0 );
+        locator.remove( injector );
+    }
+
+    // ----------------------------------------------------------------------
+    // Implementation types
+    // ----------------------------------------------------------------------
+
+    static final class SlowMediator
+        implements Mediator<Named, Bean, Object>
+    {
+        private final int tokens;
+
+        SlowMediator( final int tokens )
+        {
+            this.tokens = tokens;
+        }
+
+        public void add( final BeanEntry<Named, Bean> entry, final Object watcher )
+        {
+            Blackhole.consumeCPU( tokens );
+        }
+
+        public void remove( final BeanEntry<Named, Bean> entry, final Object watcher )
+        {
+            Blackhole.consumeCPU( tokens );
+        }
+    }
+}
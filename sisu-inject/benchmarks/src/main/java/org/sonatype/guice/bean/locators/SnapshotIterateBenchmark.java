@@ -0,0 +1,108 @@
+/*******************************************************************************
+ * Copyright (c) 2010-2011 Sonatype, Inc.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * and Apache License v2.0 which accompanies this distribution.
+ * The Eclipse Public License is available at
+ *   http://www.eclipse.org/legal/epl-v10.html
+ * The Apache License v2.0 is available at
+ *   http://www.apache.org/licenses/LICENSE-2.0.html
+ * You may elect to redistribute this code under either of these licenses.
+ *******************************************************************************/
+package org.sonatype.guice.bean.locators;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+import org.sonatype.guice.bean.locators.BenchmarkBeans.Bean;
+import org.sonatype.inject.BeanEntry;
+
+import com.google.inject.Key;
+
+/**
+ * Compares repeated full passes over a live {@link DefaultBeanLocator#locate(Key)} sequence with passes over a
+ * {@link BeanSnapshot} that is checked for staleness before each pass.
+ */
+@State( Scope.Benchmark )
+@BenchmarkMode( Mode.AverageTime )
+@OutputTimeUnit( TimeUnit.NANOSECONDS )
+@Warmup( iterations = 5, time = 1 )
+@Measurement( iterations = 5, time = 1 )
+@Fork( 1 )
+@SuppressWarnings( { "rawtypes", "unchecked" } )
+public class SnapshotIterateBenchmark
+{
+    // ----------------------------------------------------------------------
+    // Parameters
+    // ----------------------------------------------------------------------
+
+    @Param( { "10" } )
+    public int injectors;
+
+    @Param( { "10" } )
+    public int bindingsPerType;
+
+    @Param( { "UNQUALIFIED", "NAMED" } )
+    public LookupQualifier qualifier;
+
+    // ----------------------------------------------------------------------
+    // Implementation fields
+    // ----------------------------------------------------------------------
+
+    private Iterable<BeanEntry> beans;
+
+    private BeanSnapshot snapshot;
+
+    // ----------------------------------------------------------------------
+    // Setup
+    // ----------------------------------------------------------------------
+
+    @Setup( Level.Trial )
+    public void setUp()
+    {
+        final DefaultBeanLocator locator = BenchmarkBeans.newLocator( injectors, bindingsPerType );
+        final Key<Bean> key = qualifier.key();
+
+        beans = (Iterable) locator.locate( key );
+        for ( final BeanEntry entry : beans )
+        {
+            entry.getKey();
+        }
+        snapshot = locator.snapshot( key );
+    }
+
+    // ----------------------------------------------------------------------
+    // Benchmarks
+    // ----------------------------------------------------------------------
+
+    @Benchmark
+    public void iterateLive( final Blackhole blackhole )
+    {
+        for ( final BeanEntry entry : beans )
+        {
+            blackhole.consume( entry );
+        }
+    }
+
+    @Benchmark
+    public void iterateSnapshot( final Blackhole blackhole )
+    {
+        final BeanSnapshot current = snapshot = snapshot.refresh();
+        for ( int i = 0, size = current.size(); i < size; i++ )
+        {
+            blackhole.consume( current.get( i ) );
+        }
+    }
+}
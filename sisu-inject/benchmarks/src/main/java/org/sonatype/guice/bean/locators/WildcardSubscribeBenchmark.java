@@ -0,0 +1,111 @@
+/*******************************************************************************
+ * Copyright (c) 2010-2011 Sonatype, Inc.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * and Apache License v2.0 which accompanies this distribution.
+ * The Eclipse Public License is available at
+ *   http://www.eclipse.org/legal/epl-v10.html
+ * The Apache License v2.0 is available at
+ *   http://www.apache.org/licenses/LICENSE-2.0.html
+ * You may elect to redistribute this code under either of these licenses.
+ *******************************************************************************/
+package org.sonatype.guice.bean.locators;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.sonatype.guice.bean.locators.BenchmarkBeans.Bean;
+import org.sonatype.guice.bean.locators.BenchmarkBeans.BeanImpl;
+
+import com.google.inject.AbstractModule;
+import com.google.inject.Guice;
+import com.google.inject.TypeLiteral;
+import com.google.inject.name.Names;
+
+/**
+ * Measures subscribing to a large injector whose beans are mostly bound under wildcard (i.e. {@link Object}) keys.
+ * <p>
+ * This is the work behind the first lookup of each type; only one in ten of the wildcard beans is a {@link Bean}.
+ */
+@State( Scope.Benchmark )
+@BenchmarkMode( Mode.AverageTime )
+@OutputTimeUnit( TimeUnit.MICROSECONDS )
+@Warmup( iterations = 5, time = 1 )
+@Measurement( iterations = 5, time = 1 )
+@Fork( 1 )
+public class WildcardSubscribeBenchmark
+{
+    // ----------------------------------------------------------------------
+    // Parameters
+    // ----------------------------------------------------------------------
+
+    @Param( { "2000" } )
+    public int wildcards;
+
+    // ----------------------------------------------------------------------
+    // Implementation fields
+    // ----------------------------------------------------------------------
+
+    private InjectorPublisher publisher;
+
+    // ----------------------------------------------------------------------
+    // Setup
+    // ----------------------------------------------------------------------
+
+    @Setup( Level.Trial )
+    public void setUp()
+    {
+        publisher = BenchmarkBeans.newPublisher( Guice.createInjector( new AbstractModule()
+        {
+            @Override
+            protected void configure()
+            {
+                for ( int i = 0; i < wildcards; i++ )
+                {
+                    final Class<?> impl = i % 10 == 0 ? BeanImpl.class : OtherImpl.class;
+                    bind( Object.class ).annotatedWith( Names.named( "W" + i ) ).to( impl );
+                }
+            }
+        } ), 0 );
+    }
+
+    // ----------------------------------------------------------------------
+    // Benchmarks
+    // ----------------------------------------------------------------------
+
+    @Benchmark
+    public Object subscribeMatching()
+    {
+        final RankedBindings<Bean> bindings = new RankedBindings<Bean>( TypeLiteral.get( Bean.class ), null );
+        publisher.subscribe( bindings );
+        return bindings;
+    }
+
+    @Benchmark
+    public Object subscribeUnrelated()
+    {
+        final RankedBindings<Runnable> bindings =
+            new RankedBindings<Runnable>( TypeLiteral.get( Runnable.class ), null );
+        publisher.subscribe( bindings );
+        return bindings;
+    }
+
+    // ----------------------------------------------------------------------
+    // Implementation types
+    // ----------------------------------------------------------------------
+
+    public static class OtherImpl
+    {
+    }
+}
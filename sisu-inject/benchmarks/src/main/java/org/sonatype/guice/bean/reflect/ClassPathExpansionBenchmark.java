@@ -0,0 +1,108 @@
+/*******************************************************************************
+ * Copyright (c) 2010-2011 Sonatype, Inc.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * and Apache License v2.0 which accompanies this distribution.
+ * The Eclipse Public License is available at
+ *   http://www.eclipse.org/legal/epl-v10.html
+ * The Apache License v2.0 is available at
+ *   http://www.apache.org/licenses/LICENSE-2.0.html
+ * You may elect to redistribute this code under either of these licenses.
+ *******************************************************************************/
+package org.sonatype.guice.bean.reflect;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.net.URL;
+import java.net.URLClassLoader;
+import java.util.concurrent.TimeUnit;
+import java.util.jar.Attributes;
+import java.util.jar.JarOutputStream;
+import java.util.jar.Manifest;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Measures creating a {@link URLClassSpace} for a new loader over a class path of jars whose manifests each list the
+ * next jar, as happens for every realm that shares those jars.
+ */
+@State( Scope.Benchmark )
+@BenchmarkMode( Mode.AverageTime )
+@OutputTimeUnit( TimeUnit.MICROSECONDS )
+@Warmup( iterations = 5, time = 1 )
+@Measurement( iterations = 5, time = 1 )
+@Fork( 1 )
+public class ClassPathExpansionBenchmark
+{
+    // ----------------------------------------------------------------------
+    // Parameters
+    // ----------------------------------------------------------------------
+
+    @Param( { "40" } )
+    public int jars;
+
+    // ----------------------------------------------------------------------
+    // Implementation fields
+    // ----------------------------------------------------------------------
+
+    private File dir;
+
+    private URL[] classPath;
+
+    // ----------------------------------------------------------------------
+    // Setup
+    // ----------------------------------------------------------------------
+
+    @Setup( Level.Trial )
+    public void setUp()
+        throws IOException
+    {
+        dir = File.createTempFile( "classpath", "" );
+        dir.delete();
+        dir.mkdirs();
+
+        classPath = new URL[jars];
+        for ( int i = 0; i < jars; i++ )
+        {
+            final Manifest manifest = new Manifest();
+            manifest.getMainAttributes().put( Attributes.Name.MANIFEST_VERSION, "1.0" );
+            manifest.getMainAttributes().put( Attributes.Name.CLASS_PATH, "lib-" + ( i + 1 ) % jars + ".jar" );
+            final File jar = new File( dir, "lib-" + i + ".jar" );
+            new JarOutputStream( new FileOutputStream( jar ), manifest ).close();
+            classPath[i] = jar.toURI().toURL();
+        }
+    }
+
+    @TearDown( Level.Trial )
+    public void tearDown()
+    {
+        for ( final File f : dir.listFiles() )
+        {
+            f.delete();
+        }
+        dir.delete();
+    }
+
+    // ----------------------------------------------------------------------
+    // Benchmarks
+    // ----------------------------------------------------------------------
+
+    @Benchmark
+    public int newRealm()
+    {
+        return new URLClassSpace( new URLClassLoader( classPath, null ) ).getURLs().length;
+    }
+}
@@ -0,0 +1,131 @@
+/*******************************************************************************
+ * Copyright (c) 2010-2011 Sonatype, Inc.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * and Apache License v2.0 which accompanies this distribution.
+ * The Eclipse Public License is available at
+ *   http://www.eclipse.org/legal/epl-v10.html
+ * The Apache License v2.0 is available at
+ *   http://www.apache.org/licenses/LICENSE-2.0.html
+ * You may elect to redistribute this code under either of these licenses.
+ *******************************************************************************/
+package org.sonatype.guice.bean.reflect;
+
+import java.io.File;
+import java.io.IOException;
+import java.net.URL;
+import java.util.Iterator;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Compares {@link FileEntryIterator} with the original URI-normalizing iterator over an exploded class folder.
+ */
+@State( Scope.Benchmark )
+@BenchmarkMode( Mode.AverageTime )
+@OutputTimeUnit( TimeUnit.MILLISECONDS )
+@Warmup( iterations = 5, time = 1 )
+@Measurement( iterations = 5, time = 1 )
+@Fork( 1 )
+public class FileEntryIteratorBenchmark
+{
+    // ----------------------------------------------------------------------
+    // Parameters
+    // ----------------------------------------------------------------------
+
+    @Param( { "legacy", "current" } )
+    public String impl;
+
+    @Param( { "20" } )
+    public int packages;
+
+    @Param( { "100" } )
+    public int classesPerPackage;
+
+    // ----------------------------------------------------------------------
+    // Implementation fields
+    // ----------------------------------------------------------------------
+
+    private File root;
+
+    private URL url;
+
+    // ----------------------------------------------------------------------
+    // Setup
+    // ----------------------------------------------------------------------
+
+    @Setup( Level.Trial )
+    public void setUp()
+        throws IOException
+    {
+        root = File.createTempFile( "classes", "" );
+        root.delete();
+        for ( int p = 0; p < packages; p++ )
+        {
+            for ( int q = 0; q < packages / 2; q++ )
+            {
+                final File dir = new File( root, "org/example/module" + p + "/internal" + q );
+                dir.mkdirs();
+                for ( int c = 0; c < classesPerPackage; c++ )
+                {
+                    new File( dir, "Type" + c + ".class" ).createNewFile();
+                }
+            }
+        }
+        url = root.toURI().toURL();
+    }
+
+    @TearDown( Level.Trial )
+    public void tearDown()
+    {
+        delete( root );
+    }
+
+    // ----------------------------------------------------------------------
+    // Benchmarks
+    // ----------------------------------------------------------------------
+
+    @Benchmark
+    public int iterate()
+    {
+        final Iterator<String> itr =
+            "legacy".equals( impl ) ? new LegacyFileEntryIterator( url, "", true ) : new FileEntryIterator( url, "",
+                                                                                                            true );
+        int hash = 0;
+        while ( itr.hasNext() )
+        {
+            hash += itr.next().length();
+        }
+        return hash;
+    }
+
+    // ----------------------------------------------------------------------
+    // Implementation methods
+    // ----------------------------------------------------------------------
+
+    private static void delete( final File file )
+    {
+        final File[] files = file.listFiles();
+        if ( null != files )
+        {
+            for ( final File f : files )
+            {
+                delete( f );
+            }
+        }
+        file.delete();
+    }
+}
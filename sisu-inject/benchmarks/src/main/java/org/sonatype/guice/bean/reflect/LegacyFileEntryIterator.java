@@ -0,0 +1,109 @@
+/*******************************************************************************
+ * Copyright (c) 2009-2011 Sonatype, Inc.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * and Apache License v2.0 which accompanies this distribution.
+ * The Eclipse Public License is available at
+ *   http://www.eclipse.org/legal/epl-v10.html
+ * The Apache License v2.0 is available at
+ *   http://www.apache.org/licenses/LICENSE-2.0.html
+ * You may elect to redistribute this code under either of these licenses.
+ *******************************************************************************/
+package org.sonatype.guice.bean.reflect;
+
+import java.io.File;
+import java.net.URL;
+import java.util.Iterator;
+import java.util.LinkedList;
+
+/**
+ * Copy of the original {@link FileEntryIterator}, which normalized every entry through {@link File#toURI()}; kept
+ * for comparison in {@link FileEntryIteratorBenchmark}.
+ */
+final class LegacyFileEntryIterator
+    implements Iterator<String>
+{
+    // ----------------------------------------------------------------------
+    // Implementation fields
+    // ----------------------------------------------------------------------
+
+    private final String rootPath;
+
+    private final LinkedList<String> entryNames = new LinkedList<String>();
+
+    private final boolean recurse;
+
+    // ----------------------------------------------------------------------
+    // Constructors
+    // ----------------------------------------------------------------------
+
+    /**
+     * Creates an iterator that iterates over entries beneath the given file URL and sub-path.
+     * 
+     * @param url The root file URL
+     * @param subPath The path below the root URL
+     * @param recurse When {@code true} include sub-directories; otherwise don't
+     */
+    LegacyFileEntryIterator( final URL url, final String subPath, final boolean recurse )
+    {
+        rootPath = normalizePath( FileEntryIterator.toFile( url ).getAbsoluteFile() );
+        this.recurse = recurse;
+        appendEntries( subPath );
+    }
+
+    // ----------------------------------------------------------------------
+    // Public methods
+    // ----------------------------------------------------------------------
+
+    public boolean hasNext()
+    {
+        return entryNames.size() > 0;
+    }
+
+    public String next()
+    {
+        final String name = entryNames.removeFirst();
+        if ( recurse && name.endsWith( "/" ) )
+        {
+            appendEntries( name );
+        }
+        return name;
+    }
+
+    public void remove()
+    {
+        throw new UnsupportedOperationException();
+    }
+
+    // ----------------------------------------------------------------------
+    // Implementation methods
+    // ----------------------------------------------------------------------
+
+    /**
+     * Appends entries from the given sub-path to the cached list of named entries.
+     * 
+     * @param subPath The sub path
+     */
+    private void appendEntries( final String subPath )
+    {
+        final File[] listing = new File( rootPath + subPath ).listFiles();
+        if ( null != listing )
+        {
+            for ( final File f : listing )
+            {
+                entryNames.add( normalizePath( f ).substring( rootPath.length() ) );
+            }
+        }
+    }
+
+    /**
+     * Returns the normalized URI path of the given file.
+     * 
+     * @param file The file to normalize
+     * @return Normalized URI path
+     */
+    private static String normalizePath( final File file )
+    {
+        return file.toURI().getPath();
+    }
+}
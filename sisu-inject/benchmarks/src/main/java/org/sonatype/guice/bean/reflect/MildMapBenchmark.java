@@ -0,0 +1,166 @@
+/*******************************************************************************
+ * Copyright (c) 2010-2011 Sonatype, Inc.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * and Apache License v2.0 which accompanies this distribution.
+ * The Eclipse Public License is available at
+ *   http://www.eclipse.org/legal/epl-v10.html
+ * The Apache License v2.0 is available at
+ *   http://www.apache.org/licenses/LICENSE-2.0.html
+ * You may elect to redistribute this code under either of these licenses.
+ *******************************************************************************/
+package org.sonatype.guice.bean.reflect;
+
+import java.lang.ref.Reference;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Compares the copying {@link MildValues}/{@link MildKeys} wrappers around {@link ConcurrentHashMap} with the
+ * segmented {@link MildConcurrentMap}, using the same shapes as the locator and realm caches.
+ */
+@State( Scope.Benchmark )
+@BenchmarkMode( Mode.AverageTime )
+@OutputTimeUnit( TimeUnit.NANOSECONDS )
+@Warmup( iterations = 5, time = 1 )
+@Measurement( iterations = 5, time = 1 )
+@Fork( 1 )
+public class MildMapBenchmark
+{
+    // ----------------------------------------------------------------------
+    // Parameters
+    // ----------------------------------------------------------------------
+
+    @Param( { "legacy", "segmented" } )
+    public String impl;
+
+    @Param( { "256" } )
+    public int size;
+
+    // ----------------------------------------------------------------------
+    // Implementation fields
+    // ----------------------------------------------------------------------
+
+    private Map<String, Object> softValues;
+
+    private Map<Object, String> weakKeys;
+
+    private String[] names;
+
+    private Object[] keys;
+
+    private Object[] values;
+
+    private int cursor;
+
+    // ----------------------------------------------------------------------
+    // Setup
+    // ----------------------------------------------------------------------
+
+    @Setup( Level.Trial )
+    public void setUp()
+    {
+        if ( "legacy".equals( impl ) )
+        {
+            softValues =
+                new MildValues<String, Object>( new ConcurrentHashMap<String, Reference<Object>>( 256, 0.75f, 8 ),
+                                                true );
+            weakKeys =
+                new MildKeys<Object, String>( new ConcurrentHashMap<Reference<Object>, String>( 16, 0.75f, 4 ),
+                                              false );
+        }
+        else
+        {
+            softValues = new MildConcurrentMap<String, Object>( 256, 8, false, true );
+            weakKeys = new MildConcurrentMap<Object, String>( 16, 4, true, false );
+        }
+
+        names = new String[size];
+        keys = new Object[size];
+        values = new Object[size];
+        for ( int i = 0; i < size; i++ )
+        {
+            names[i] = "Type" + i;
+            keys[i] = new Object();
+            values[i] = new Object();
+            softValues.put( names[i], values[i] );
+            weakKeys.put( keys[i], names[i] );
+        }
+    }
+
+    // ----------------------------------------------------------------------
+    // Benchmarks
+    // ----------------------------------------------------------------------
+
+    @Benchmark
+    public Object getValue()
+    {
+        return softValues.get( names[next()] );
+    }
+
+    @Benchmark
+    public Object putValue()
+    {
+        final int i = next();
+        return softValues.put( names[i], values[i] );
+    }
+
+    @Benchmark
+    public int iterateValues()
+    {
+        int hash = 0;
+        for ( final Object value : softValues.values() )
+        {
+            hash += value.hashCode();
+        }
+        return hash;
+    }
+
+    @Benchmark
+    public int sizeValues()
+    {
+        return softValues.size();
+    }
+
+    @Benchmark
+    public String getKey()
+    {
+        return weakKeys.get( keys[next()] );
+    }
+
+    @Benchmark
+    public int iterateKeys()
+    {
+        int hash = 0;
+        for ( final Object key : weakKeys.keySet() )
+        {
+            hash += key.hashCode();
+        }
+        return hash;
+    }
+
+    // ----------------------------------------------------------------------
+    // Implementation methods
+    // ----------------------------------------------------------------------
+
+    private int next()
+    {
+        final int i = cursor;
+        cursor = i + 1 < size ? i + 1 : 0;
+        return i;
+    }
+}
@@ -0,0 +1,118 @@
+/*******************************************************************************
+ * Copyright (c) 2010-2011 Sonatype, Inc.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * and Apache License v2.0 which accompanies this distribution.
+ * The Eclipse Public License is available at
+ *   http://www.eclipse.org/legal/epl-v10.html
+ * The Apache License v2.0 is available at
+ *   http://www.apache.org/licenses/LICENSE-2.0.html
+ * You may elect to redistribute this code under either of these licenses.
+ *******************************************************************************/
+package org.sonatype.guice.bean.scanners;
+
+import java.io.File;
+import java.io.IOException;
+import java.lang.annotation.Annotation;
+import java.net.URL;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.sonatype.guice.bean.reflect.ClassSpace;
+import org.sonatype.guice.bean.reflect.URLClassSpace;
+
+/**
+ * Measures a {@link QualifiedTypeVisitor} scan of the benchmark jar, parsing every class versus replaying a warm
+ * {@link ScanCache}.
+ */
+@State( Scope.Benchmark )
+@BenchmarkMode( Mode.AverageTime )
+@OutputTimeUnit( TimeUnit.MILLISECONDS )
+@Warmup( iterations = 5, time = 1 )
+@Measurement( iterations = 5, time = 1 )
+@Fork( 1 )
+public class ScanCacheBenchmark
+{
+    // ----------------------------------------------------------------------
+    // Parameters
+    // ----------------------------------------------------------------------
+
+    @Param( { "false", "true" } )
+    public boolean cached;
+
+    // ----------------------------------------------------------------------
+    // Implementation fields
+    // ----------------------------------------------------------------------
+
+    private ClassSpace space;
+
+    private File cacheDir;
+
+    private ScanCache cache;
+
+    // ----------------------------------------------------------------------
+    // Setup
+    // ----------------------------------------------------------------------
+
+    @Setup( Level.Trial )
+    public void setUp()
+        throws IOException
+    {
+        final URL jar = getClass().getProtectionDomain().getCodeSource().getLocation();
+        space = new URLClassSpace( getClass().getClassLoader(), new URL[] { jar } );
+
+        cacheDir = File.createTempFile( "scans", "" );
+        cacheDir.delete();
+        cache = new ScanCache( cacheDir );
+        count( new ClassSpaceScanner( space, cache ) ); // warm the cache
+    }
+
+    @TearDown( Level.Trial )
+    public void tearDown()
+    {
+        for ( final File f : cacheDir.listFiles() )
+        {
+            f.delete();
+        }
+        cacheDir.delete();
+    }
+
+    // ----------------------------------------------------------------------
+    // Benchmarks
+    // ----------------------------------------------------------------------
+
+    @Benchmark
+    public int scan()
+    {
+        return count( cached ? new ClassSpaceScanner( space, cache ) : new ClassSpaceScanner( space ) );
+    }
+
+    // ----------------------------------------------------------------------
+    // Implementation methods
+    // ----------------------------------------------------------------------
+
+    private static int count( final ClassSpaceScanner scanner )
+    {
+        final int[] count = new int[1];
+        scanner.accept( new QualifiedTypeVisitor( new QualifiedTypeListener()
+        {
+            public void hear( final Annotation qualifier, final Class<?> clazz, final Object source )
+            {
+                count[0]++;
+            }
+        } ) );
+        return count[0];
+    }
+}
@@ -0,0 +1,160 @@
+/*******************************************************************************
+ * Copyright (c) 2010-2011 Sonatype, Inc.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * and Apache License v2.0 which accompanies this distribution.
+ * The Eclipse Public License is available at
+ *   http://www.eclipse.org/legal/epl-v10.html
+ * The Apache License v2.0 is available at
+ *   http://www.apache.org/licenses/LICENSE-2.0.html
+ * You may elect to redistribute this code under either of these licenses.
+ *******************************************************************************/
+package org.sonatype.guice.plexus.locators;
+
+import java.util.concurrent.TimeUnit;
+
+import org.codehaus.plexus.classworlds.ClassWorld;
+import org.codehaus.plexus.classworlds.realm.ClassRealm;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.sonatype.guice.bean.locators.DefaultBeanLocator;
+import org.sonatype.guice.plexus.config.PlexusBean;
+
+import com.google.inject.AbstractModule;
+import com.google.inject.Guice;
+import com.google.inject.Injector;
+import com.google.inject.TypeLiteral;
+import com.google.inject.name.Names;
+
+/**
+ * Measures realm-visibility filtering of Plexus lookups in a container with many plugin realms, where each realm
+ * contributes one component and the context realm can only see a couple of them.
+ */
+@State( Scope.Benchmark )
+@BenchmarkMode( Mode.AverageTime )
+@OutputTimeUnit( TimeUnit.MICROSECONDS )
+@Warmup( iterations = 5, time = 1 )
+@Measurement( iterations = 5, time = 1 )
+@Fork( 1 )
+public class RealmFilterBenchmark
+{
+    // ----------------------------------------------------------------------
+    // Parameters
+    // ----------------------------------------------------------------------
+
+    @Param( { "200" } )
+    public int realms;
+
+    // ----------------------------------------------------------------------
+    // Implementation fields
+    // ----------------------------------------------------------------------
+
+    private Iterable<PlexusBean<Bean>> beans;
+
+    private Iterable<PlexusBean<Bean>> globalBeans;
+
+    private ClassRealm contextRealm;
+
+    // ----------------------------------------------------------------------
+    // Setup
+    // ----------------------------------------------------------------------
+
+    @Setup( Level.Trial )
+    public void setUp()
+        throws Exception
+    {
+        final ClassWorld world = new ClassWorld();
+        final ClassRealm coreRealm = world.newRealm( "core" );
+
+        final DefaultBeanLocator locator = new DefaultBeanLocator();
+        locator.add( newInjector( coreRealm, "core" ), realms );
+        for ( int i = 0; i < realms; i++ )
+        {
+            final ClassRealm pluginRealm = coreRealm.createChildRealm( "plugin-" + i );
+            locator.add( newInjector( pluginRealm, "plugin-" + i ), i );
+        }
+
+        contextRealm = world.getRealm( "plugin-0" );
+        beans = new DefaultPlexusBeanLocator( locator, "realm" ).locate( TypeLiteral.get( Bean.class ) );
+        globalBeans = new DefaultPlexusBeanLocator( locator, "global" ).locate( TypeLiteral.get( Bean.class ) );
+    }
+
+    // ----------------------------------------------------------------------
+    // Benchmarks
+    // ----------------------------------------------------------------------
+
+    @Benchmark
+    public int iterateVisible()
+    {
+        return iterate( beans );
+    }
+
+    @Benchmark
+    public int iterateGlobal()
+    {
+        return iterate( globalBeans );
+    }
+
+    // ----------------------------------------------------------------------
+    // Implementation methods
+    // ----------------------------------------------------------------------
+
+    private int iterate( final Iterable<PlexusBean<Bean>> plexusBeans )
+    {
+        final Thread thread = Thread.currentThread();
+        final ClassLoader tccl = thread.getContextClassLoader();
+        thread.setContextClassLoader( contextRealm );
+        try
+        {
+            int count = 0;
+            for ( final PlexusBean<Bean> bean : plexusBeans )
+            {
+                if ( null != bean )
+                {
+                    count++;
+                }
+            }
+            return count;
+        }
+        finally
+        {
+            thread.setContextClassLoader( tccl );
+        }
+    }
+
+    private static Injector newInjector( final ClassRealm realm, final String hint )
+    {
+        return Guice.createInjector( new AbstractModule()
+        {
+            @Override
+            protected void configure()
+            {
+                // plexus bean modules use the string form of their class space as the binding source
+                binder().withSource( realm.toString() ).bind( Bean.class ).annotatedWith( Names.named( hint ) ).to( BeanImpl.class );
+            }
+        } );
+    }
+
+    // ----------------------------------------------------------------------
+    // Implementation types
+    // ----------------------------------------------------------------------
+
+    public interface Bean
+    {
+    }
+
+    public static class BeanImpl
+        implements Bean
+    {
+    }
+}
@@ -11,6 +11,7 @@
  *******************************************************************************/
 package org.sonatype.guice.bean.binders;
 
+import java.io.File;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
@@ -21,6 +22,7 @@ import org.sonatype.guice.bean.reflect.ClassSpace;
 import org.sonatype.guice.bean.scanners.ClassSpaceScanner;
 import org.sonatype.guice.bean.scanners.ClassSpaceVisitor;
 import org.sonatype.guice.bean.scanners.QualifiedTypeVisitor;
+import org.sonatype.guice.bean.scanners.ScanCache;
 import org.sonatype.guice.bean.scanners.index.SisuIndexFinder;
 import org.sonatype.inject.BeanScanning;
 
@@ -33,10 +35,20 @@ import com.google.inject.spi.ProviderLookup;
 
 /**
  * Guice {@link Module} that automatically binds types annotated with {@link Qualifier} annotations.
+ * <p>
+ * Set <b>-Dorg.sonatype.inject.scan.cache=</b><i>directory</i> to persist {@link BeanScanning#CACHE} scans of jars
+ * between runs. The cache only records class headers and class-level annotations, so it is limited to visitors that
+ * opt in through {@link #cacheable(ClassSpaceVisitor)}; by default that is just the {@link QualifiedTypeVisitor}.
  */
 public class SpaceModule
     implements Module
 {
+    // ----------------------------------------------------------------------
+    // Constants
+    // ----------------------------------------------------------------------
+
+    private static final String SCAN_CACHE_KEY = "org.sonatype.inject.scan.cache";
+
     // ----------------------------------------------------------------------
     // Implementation fields
     // ----------------------------------------------------------------------
@@ -47,6 +59,8 @@ public class SpaceModule
 
     private final BeanScanning scanning;
 
+    private final int parallelism;
+
     // ----------------------------------------------------------------------
     // Constructors
     // ----------------------------------------------------------------------
@@ -57,9 +71,20 @@ public class SpaceModule
     }
 
     public SpaceModule( final ClassSpace space, final BeanScanning scanning )
+    {
+        this( space, scanning, 1 );
+    }
+
+    /**
+     * @param space The class space
+     * @param scanning The scanning option
+     * @param parallelism The number of threads reading class resources while scanning
+     */
+    public SpaceModule( final ClassSpace space, final BeanScanning scanning, final int parallelism )
     {
         this.space = space;
         this.scanning = scanning;
+        this.parallelism = parallelism;
     }
 
     // ----------------------------------------------------------------------
@@ -75,13 +100,13 @@ public class SpaceModule
         {
             default:
             case ON:
-                scanner = new ClassSpaceScanner( space );
+                scanner = new ClassSpaceScanner( null, space, parallelism );
                 break;
             case INDEX:
-                scanner = new ClassSpaceScanner( new SisuIndexFinder( false ), space );
+                scanner = new ClassSpaceScanner( new SisuIndexFinder( false ), space, parallelism );
                 break;
             case GLOBAL_INDEX:
-                scanner = new ClassSpaceScanner( new SisuIndexFinder( true ), space );
+                scanner = new ClassSpaceScanner( new SisuIndexFinder( true ), space, parallelism );
                 break;
             case CACHE:
                 replayCachedElements( binder );
@@ -102,10 +127,31 @@ public class SpaceModule
         return new QualifiedTypeVisitor( new QualifiedTypeBinder( binder ) );
     }
 
+    /**
+     * Decides whether scans made for the given visitor may be replayed from the persistent scan cache.
+     *
+     * @param visitor The class space visitor
+     * @return {@code true} if the visitor only needs class headers and class-level annotations; otherwise {@code false}
+     */
+    protected boolean cacheable( final ClassSpaceVisitor visitor )
+    {
+        return visitor instanceof QualifiedTypeVisitor;
+    }
+
     // ----------------------------------------------------------------------
     // Implementation methods
     // ----------------------------------------------------------------------
 
+    private ClassSpaceScanner cachingScanner( final ClassSpaceVisitor visitor )
+    {
+        final String cacheDir = System.getProperty( SCAN_CACHE_KEY );
+        if ( null != cacheDir && cacheDir.length() > 0 && cacheable( visitor ) )
+        {
+            return new ClassSpaceScanner( space, new ScanCache( new File( cacheDir ) ) );
+        }
+        return new ClassSpaceScanner( null, space, parallelism );
+    }
+
     private final synchronized void replayCachedElements( final Binder binder )
     {
         if ( null == cachedElementsMap )
@@ -125,7 +171,8 @@ public class SpaceModule
             {
                 public void configure( final Binder recorder )
                 {
-                    new ClassSpaceScanner( space ).accept( visitor( recorder ) );
+                    final ClassSpaceVisitor visitor = visitor( recorder );
+                    cachingScanner( visitor ).accept( visitor );
                 }
             } );
             cachedElementsMap.put( key, elements );
@@ -11,15 +11,28 @@
  *******************************************************************************/
 package org.sonatype.guice.bean.binders;
 
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.URL;
+import java.net.URLClassLoader;
+import java.util.jar.JarOutputStream;
+import java.util.zip.ZipEntry;
+
 import javax.inject.Named;
 
 import junit.framework.TestCase;
 
 import org.sonatype.guice.bean.reflect.ClassSpace;
 import org.sonatype.guice.bean.reflect.URLClassSpace;
+import org.sonatype.guice.bean.scanners.ClassSpaceVisitor;
+import org.sonatype.guice.bean.scanners.EmptyClassVisitor;
+import org.sonatype.guice.bean.scanners.asm.ClassVisitor;
 import org.sonatype.inject.BeanScanning;
 
 import com.google.inject.AbstractModule;
+import com.google.inject.Binder;
 import com.google.inject.Guice;
 
 public class CachingModuleTest
@@ -45,4 +58,87 @@ public class CachingModuleTest
         Guice.createInjector( new SpaceModule( space, BeanScanning.CACHE ) );
         Guice.createInjector( new SpaceModule( space, BeanScanning.CACHE ) );
     }
+
+    public void testScanCacheOnlyUsedByDefaultVisitor()
+        throws IOException
+    {
+        final File jar = File.createTempFile( "beans", ".jar" );
+        final File cacheDir = File.createTempFile( "scans", "" );
+        cacheDir.delete();
+        try
+        {
+            final String name = CustomModule.class.getName().replace( '.', '/' ) + ".class";
+            final JarOutputStream out = new JarOutputStream( new FileOutputStream( jar ) );
+            try
+            {
+                out.putNextEntry( new ZipEntry( name ) );
+                final InputStream in = getClass().getClassLoader().getResourceAsStream( name );
+                try
+                {
+                    final byte[] buf = new byte[4096];
+                    for ( int n; ( n = in.read( buf ) ) > 0; )
+                    {
+                        out.write( buf, 0, n );
+                    }
+                }
+                finally
+                {
+                    in.close();
+                }
+            }
+            finally
+            {
+                out.close();
+            }
+            final URL[] urls = { jar.toURI().toURL() };
+
+            System.setProperty( "org.sonatype.inject.scan.cache", cacheDir.getPath() );
+
+            final int[] visited = new int[1];
+            final ClassSpace customSpace = new URLClassSpace( new URLClassLoader( urls ) );
+            Guice.createInjector( new SpaceModule( customSpace, BeanScanning.CACHE )
+            {
+                @Override
+                protected ClassSpaceVisitor visitor( final Binder binder )
+                {
+                    return new ClassSpaceVisitor()
+                    {
+                        public void visit( final ClassSpace space )
+                        {
+                        }
+
+                        public ClassVisitor visitClass( final URL url )
+                        {
+                            visited[0]++;
+                            return new EmptyClassVisitor();
+                        }
+
+                        public void visitEnd()
+                        {
+                        }
+                    };
+                }
+            } );
+            assertEquals( 1, visited[0] );
+            assertFalse( cacheDir.exists() );
+
+            final ClassSpace defaultSpace = new URLClassSpace( new URLClassLoader( urls ) );
+            Guice.createInjector( new SpaceModule( defaultSpace, BeanScanning.CACHE ) );
+            assertEquals( 1, cacheDir.listFiles().length );
+        }
+        finally
+        {
+            System.clearProperty( "org.sonatype.inject.scan.cache" );
+            final File[] files = cacheDir.listFiles();
+            if ( null != files )
+            {
+                for ( final File f : files )
+                {
+                    f.delete();
+                }
+            }
+            cacheDir.delete();
+            jar.delete();
+        }
+    }
 }
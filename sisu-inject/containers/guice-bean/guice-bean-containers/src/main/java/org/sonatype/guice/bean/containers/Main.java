@@ -20,7 +20,9 @@ import org.sonatype.guice.bean.binders.ParameterKeys;
 import org.sonatype.guice.bean.binders.SpaceModule;
 import org.sonatype.guice.bean.binders.WireModule;
 import org.sonatype.guice.bean.locators.MutableBeanLocator;
+import org.sonatype.guice.bean.locators.SingletonWarmup;
 import org.sonatype.guice.bean.reflect.URLClassSpace;
+import org.sonatype.guice.bean.reflect.ZipFileCache;
 import org.sonatype.inject.BeanScanning;
 import org.sonatype.inject.Parameters;
 
@@ -74,6 +76,14 @@ public final class Main
         final Module app = wire( scanning, new Main( properties, args ) );
         final Injector injector = Guice.createInjector( app );
 
+        final int warmup = selectWarmup( properties );
+        if ( warmup > 0 )
+        {
+            new SingletonWarmup( warmup ).warmUp( injector.getInstance( MutableBeanLocator.class ) );
+        }
+
+        ZipFileCache.clear(); // boot scan is over
+
         return injector;
     }
 
@@ -127,6 +137,30 @@ public final class Main
         throw new IllegalArgumentException( "Unknown BeanScanning option: " + option );
     }
 
+    /**
+     * @return Number of threads used to create singletons at boot; zero if singletons should be created on demand
+     */
+    static int selectWarmup( final Map<?, ?> properties )
+    {
+        final String option = (String) properties.get( SingletonWarmup.class.getName() );
+        if ( null == option || option.length() == 0 || "false".equalsIgnoreCase( option ) )
+        {
+            return 0;
+        }
+        if ( "true".equalsIgnoreCase( option ) )
+        {
+            return Runtime.getRuntime().availableProcessors();
+        }
+        try
+        {
+            return Math.max( Integer.parseInt( option ), 0 );
+        }
+        catch ( final NumberFormatException e )
+        {
+            throw new IllegalArgumentException( "Unknown SingletonWarmup option: " + option );
+        }
+    }
+
     // ----------------------------------------------------------------------
     // Implementation types
     // ----------------------------------------------------------------------
@@ -13,19 +13,21 @@ package org.sonatype.guice.bean.locators;
 
 import java.lang.annotation.Annotation;
 import java.util.ArrayList;
+import java.util.Collection;
 import java.util.Collections;
-import java.util.IdentityHashMap;
-import java.util.Map;
-import java.util.concurrent.atomic.AtomicReference;
+import java.util.concurrent.atomic.AtomicReferenceArray;
 
 import org.sonatype.inject.BeanEntry;
 
 import com.google.inject.Binding;
 
 /**
- * Atomic cache mapping {@link Binding}s to {@link BeanEntry}s; optimized for common case of single entries.
+ * Concurrent cache mapping {@link Binding}s to {@link BeanEntry}s; optimized for common case of single entries.
  * <p>
  * Uses {@code ==} instead of {@code equals} to compare {@link Binding}s because we want referential equality.
+ * <p>
+ * Multiple entries are kept in an open-addressed identity table that readers probe without locking; writers only
+ * lock to add an entry for a new binding, or to remove an entry.
  */
 @SuppressWarnings( { "rawtypes", "unchecked" } )
 final class BeanCache<Q extends Annotation, T>
@@ -34,93 +36,108 @@ final class BeanCache<Q extends Annotation, T>
     // Constants
     // ----------------------------------------------------------------------
 
-    private static final long REFRESH_MILLIS = 888L;
+    private static final int MIN_CAPACITY = 4; // must be a power of two
+
+    private static final Object REMOVED = new Object();
 
     // ----------------------------------------------------------------------
     // Implementation fields
     // ----------------------------------------------------------------------
 
-    private final AtomicReference<Object> cache = new AtomicReference();
-
-    private Map<Binding<T>, BeanEntry<Q, T>> readCache;
+    // null, the one and only LazyBeanEntry, or a table of LazyBeanEntrys and REMOVED markers
+    private volatile Object cache;
 
-    private long lastTimeMillis;
-
-    private volatile boolean mutated;
+    // number of occupied slots in the current table, including REMOVED markers; guarded by this
+    private int used;
 
     // ----------------------------------------------------------------------
     // Public methods
     // ----------------------------------------------------------------------
 
     /**
-     * Atomically creates a new {@link BeanEntry} for the given {@link Binding} reference.
+     * Atomically creates a new {@link BeanEntry} for the given {@link Binding} reference; callers on the fast path
+     * should try {@link #get} first, as this always locks.
      * 
      * @param qualifier The qualifier
      * @param binding The binding
      * @param rank The assigned rank
      * @return Associated bean entry
      */
-    public BeanEntry<Q, T> create( final Q qualifier, final Binding<T> binding, final int rank )
+    public synchronized BeanEntry<Q, T> create( final Q qualifier, final Binding<T> binding, final int rank )
     {
-        LazyBeanEntry newBean;
-
-        Object o, n;
-
-        /*
-         * Compare-and-swap approach; avoids locking without missing any updates
-         */
-        do
+        final Object o = cache;
+        if ( null == o )
         {
-            o = cache.get();
-            if ( null == o )
-            {
-                // most common case: adding the one (and-only) entry
-                n = newBean = new LazyBeanEntry( qualifier, binding, rank );
-            }
-            else if ( o instanceof LazyBeanEntry )
+            // most common case: adding the one (and-only) entry
+            final LazyBeanEntry newBean = new LazyBeanEntry( qualifier, binding, rank );
+            cache = newBean;
+            return newBean;
+        }
+        if ( o instanceof LazyBeanEntry )
+        {
+            if ( binding == ( (LazyBeanEntry) o ).binding )
             {
-                final LazyBeanEntry oldBean = (LazyBeanEntry) o;
-                if ( binding == oldBean.binding )
-                {
-                    return oldBean;
-                }
-                n = createMap( oldBean, newBean = new LazyBeanEntry( qualifier, binding, rank ) );
+                return (LazyBeanEntry) o;
             }
-            else
+            final LazyBeanEntry newBean = new LazyBeanEntry( qualifier, binding, rank );
+            cache = rehash( Collections.singleton( (LazyBeanEntry) o ), newBean );
+            return newBean;
+        }
+        final AtomicReferenceArray table = (AtomicReferenceArray) o;
+        final int index = slot( table, binding );
+        final Object e = table.get( index );
+        if ( null != e && REMOVED != e )
+        {
+            return (LazyBeanEntry) e; // already cached
+        }
+        final LazyBeanEntry newBean = new LazyBeanEntry( qualifier, binding, rank );
+        // grow once two-thirds full; rehashing to half-full keeps probes short without wasting too many slots
+        if ( null == e && 3 * ( used + 1 ) > 2 * table.length() )
+        {
+            cache = rehash( entries( table ), newBean );
+        }
+        else
+        {
+            table.set( index, newBean );
+            if ( null == e )
             {
-                synchronized ( cache )
-                {
-                    final Map<Binding, LazyBeanEntry> map = (Map) o;
-                    if ( null == ( newBean = map.get( binding ) ) )
-                    {
-                        map.put( binding, newBean = new LazyBeanEntry( qualifier, binding, rank ) );
-                        mutated = true;
-                    }
-                    return newBean;
-                }
+                used++;
             }
         }
-        while ( !cache.compareAndSet( o, n ) );
-
         return newBean;
     }
 
-    public Map<Binding<T>, BeanEntry<Q, T>> flush()
+    /**
+     * Retrieves the {@link BeanEntry} currently associated with the given {@link Binding} reference; never locks.
+     * 
+     * @param binding The binding
+     * @return Associated bean entry; {@code null} if there is no entry for the binding
+     */
+    public BeanEntry<Q, T> get( final Binding<T> binding )
     {
-        long now = 0;
-        if ( mutated && ( null == readCache || ( now = System.currentTimeMillis() ) - lastTimeMillis > REFRESH_MILLIS ) )
+        final Object o = cache;
+        if ( o instanceof LazyBeanEntry )
+        {
+            return binding == ( (LazyBeanEntry) o ).binding ? (LazyBeanEntry) o : null;
+        }
+        if ( null == o )
         {
-            synchronized ( cache )
+            return null;
+        }
+        final AtomicReferenceArray table = (AtomicReferenceArray) o;
+        final int mask = table.length() - 1;
+        for ( int i = hash( binding ) & mask;; i = i + 1 & mask )
+        {
+            final Object e = table.get( i );
+            if ( null == e )
             {
-                if ( mutated )
-                {
-                    readCache = (Map) ( (IdentityHashMap) cache.get() ).clone();
-                    lastTimeMillis = now == 0 ? System.currentTimeMillis() : now;
-                    mutated = false;
-                }
+                return null;
+            }
+            if ( REMOVED != e && binding == ( (LazyBeanEntry) e ).binding )
+            {
+                return (LazyBeanEntry) e;
             }
         }
-        return readCache;
     }
 
     /**
@@ -130,7 +147,7 @@ final class BeanCache<Q extends Annotation, T>
      */
     public Iterable<Binding<T>> bindings()
     {
-        final Object o = cache.get();
+        final Object o = cache;
         if ( null == o )
         {
             return Collections.EMPTY_SET;
@@ -139,10 +156,12 @@ final class BeanCache<Q extends Annotation, T>
         {
             return Collections.singleton( ( (LazyBeanEntry<?, T>) o ).binding );
         }
-        synchronized ( cache )
+        final Collection<Binding<T>> bindings = new ArrayList<Binding<T>>();
+        for ( final LazyBeanEntry<?, T> e : entries( (AtomicReferenceArray) o ) )
         {
-            return new ArrayList( ( (Map<Binding, BeanEntry>) o ).keySet() );
+            bindings.add( e.binding );
         }
+        return bindings;
     }
 
     /**
@@ -151,59 +170,103 @@ final class BeanCache<Q extends Annotation, T>
      * @param binding The binding
      * @return Associated bean entry
      */
-    public BeanEntry<Q, T> remove( final Binding<T> binding )
+    public synchronized BeanEntry<Q, T> remove( final Binding<T> binding )
     {
-        LazyBeanEntry oldBean;
+        final Object o = cache;
+        if ( o instanceof LazyBeanEntry )
+        {
+            if ( binding != ( (LazyBeanEntry) o ).binding )
+            {
+                return null;
+            }
+            cache = null; // clear single entry
+            return (LazyBeanEntry) o;
+        }
+        if ( null == o )
+        {
+            return null;
+        }
+        final AtomicReferenceArray table = (AtomicReferenceArray) o;
+        final int index = slot( table, binding );
+        final Object e = table.get( index );
+        if ( null == e || REMOVED == e )
+        {
+            return null; // not in table
+        }
+        // leave a marker so readers keep probing past this slot
+        table.set( index, REMOVED );
+        return (LazyBeanEntry) e;
+    }
 
-        Object o, n;
+    // ----------------------------------------------------------------------
+    // Implementation methods
+    // ----------------------------------------------------------------------
+
+    private static int hash( final Binding binding )
+    {
+        final int h = System.identityHashCode( binding );
+        return h ^ h >>> 16;
+    }
 
-        /*
-         * Compare-and-swap approach; avoids locking without missing any updates
-         */
-        do
+    /**
+     * @return Slot holding the given binding, or the first free slot if the binding is not in the table
+     */
+    private static int slot( final AtomicReferenceArray table, final Binding binding )
+    {
+        final int mask = table.length() - 1;
+        int free = -1;
+        for ( int i = hash( binding ) & mask;; i = i + 1 & mask )
         {
-            o = cache.get();
-            if ( null == o )
+            final Object e = table.get( i );
+            if ( null == e )
             {
-                return null;
+                return free >= 0 ? free : i;
             }
-            else if ( o instanceof LazyBeanEntry )
+            if ( REMOVED == e )
             {
-                oldBean = (LazyBeanEntry) o;
-                if ( binding != oldBean.binding )
+                if ( free < 0 )
                 {
-                    return null;
+                    free = i;
                 }
-                n = null; // clear single entry
             }
-            else
+            else if ( binding == ( (LazyBeanEntry) e ).binding )
             {
-                synchronized ( cache )
-                {
-                    oldBean = ( (Map<?, LazyBeanEntry>) o ).remove( binding );
-                    if ( null != oldBean )
-                    {
-                        readCache = null;
-                        mutated = true;
-                    }
-                    return oldBean;
-                }
+                return i;
             }
         }
-        while ( !cache.compareAndSet( o, n ) );
-
-        return oldBean;
     }
 
-    // ----------------------------------------------------------------------
-    // Implementation methods
-    // ----------------------------------------------------------------------
+    private static Collection<LazyBeanEntry> entries( final AtomicReferenceArray table )
+    {
+        final Collection<LazyBeanEntry> entries = new ArrayList<LazyBeanEntry>();
+        for ( int i = 0, size = table.length(); i < size; i++ )
+        {
+            final Object e = table.get( i );
+            if ( null != e && REMOVED != e )
+            {
+                entries.add( (LazyBeanEntry) e );
+            }
+        }
+        return entries;
+    }
 
-    private static Map createMap( final LazyBeanEntry one, final LazyBeanEntry two )
+    /**
+     * Builds a new table containing the existing entries plus the new one; assumes the caller holds the lock.
+     */
+    private AtomicReferenceArray rehash( final Collection<LazyBeanEntry> entries, final LazyBeanEntry newBean )
     {
-        final Map map = new IdentityHashMap();
-        map.put( one.binding, one );
-        map.put( two.binding, two );
-        return map;
+        used = entries.size() + 1;
+        int capacity = MIN_CAPACITY;
+        while ( capacity < 2 * used )
+        {
+            capacity <<= 1;
+        }
+        final AtomicReferenceArray table = new AtomicReferenceArray( capacity );
+        for ( final LazyBeanEntry e : entries )
+        {
+            table.set( slot( table, e.binding ), e );
+        }
+        table.set( slot( table, newBean.binding ), newBean );
+        return table;
     }
 }
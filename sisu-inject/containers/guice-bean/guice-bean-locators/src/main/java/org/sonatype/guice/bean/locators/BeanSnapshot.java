@@ -0,0 +1,97 @@
+/*******************************************************************************
+ * Copyright (c) 2010-2011 Sonatype, Inc.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * and Apache License v2.0 which accompanies this distribution.
+ * The Eclipse Public License is available at
+ *   http://www.eclipse.org/legal/epl-v10.html
+ * The Apache License v2.0 is available at
+ *   http://www.apache.org/licenses/LICENSE-2.0.html
+ * You may elect to redistribute this code under either of these licenses.
+ *******************************************************************************/
+package org.sonatype.guice.bean.locators;
+
+import java.lang.annotation.Annotation;
+import java.util.AbstractList;
+import java.util.RandomAccess;
+
+import org.sonatype.inject.BeanEntry;
+
+import com.google.inject.Key;
+
+/**
+ * Immutable, ranked snapshot of the {@link BeanEntry}s that matched a {@link Key} at a particular generation.
+ * <p>
+ * Checking {@link #isCurrent()} is cheap, so code that iterates the same beans in a tight loop can keep using the
+ * snapshot and only {@link #refresh()} it when the underlying bindings or publishers have actually changed.
+ * 
+ * @see DefaultBeanLocator#snapshot(Key)
+ */
+public final class BeanSnapshot<Q extends Annotation, T>
+    extends AbstractList<BeanEntry<Q, T>>
+    implements RandomAccess
+{
+    // ----------------------------------------------------------------------
+    // Implementation fields
+    // ----------------------------------------------------------------------
+
+    private final LocatedBeans<Q, T>.View view;
+
+    private final Object[] entries;
+
+    private final int generation;
+
+    // ----------------------------------------------------------------------
+    // Constructors
+    // ----------------------------------------------------------------------
+
+    BeanSnapshot( final LocatedBeans<Q, T>.View view, final Object[] entries, final int generation )
+    {
+        this.view = view;
+        this.entries = entries;
+        this.generation = generation;
+    }
+
+    // ----------------------------------------------------------------------
+    // Public methods
+    // ----------------------------------------------------------------------
+
+    @Override
+    @SuppressWarnings( "unchecked" )
+    public BeanEntry<Q, T> get( final int index )
+    {
+        return (BeanEntry<Q, T>) entries[index];
+    }
+
+    @Override
+    public int size()
+    {
+        return entries.length;
+    }
+
+    /**
+     * @return Generation of the bindings captured by this snapshot
+     */
+    public int generation()
+    {
+        return generation;
+    }
+
+    /**
+     * @return {@code true} if the bindings haven't changed since this snapshot was taken; otherwise {@code false}
+     */
+    public boolean isCurrent()
+    {
+        return generation == view.generation();
+    }
+
+    /**
+     * Returns this snapshot while it is current, otherwise takes a new one; unchanged entries are carried over.
+     * 
+     * @return Current snapshot
+     */
+    public BeanSnapshot<Q, T> refresh()
+    {
+        return isCurrent() ? this : view.snapshot();
+    }
+}
@@ -11,16 +11,27 @@
  *******************************************************************************/
 package org.sonatype.guice.bean.locators;
 
+import java.lang.annotation.Annotation;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
 import java.util.Map;
+import java.util.concurrent.Executor;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
 import java.util.concurrent.locks.ReentrantLock;
 
 import javax.inject.Inject;
 import javax.inject.Singleton;
 
 import org.sonatype.guice.bean.locators.spi.BindingPublisher;
+import org.sonatype.guice.bean.locators.spi.LocatorMetrics;
 import org.sonatype.guice.bean.reflect.Logs;
 import org.sonatype.guice.bean.reflect.Soft;
-import org.sonatype.guice.bean.reflect.TypeParameters;
 import org.sonatype.guice.bean.reflect.Weak;
 import org.sonatype.inject.BeanEntry;
 import org.sonatype.inject.Mediator;
@@ -44,6 +55,8 @@ public final class DefaultBeanLocator
 
     private static final long serialVersionUID = 1L;
 
+    private static final int STRIPE_COUNT = 16; // must be a power of two
+
     // ----------------------------------------------------------------------
     // Implementation fields
     // ----------------------------------------------------------------------
@@ -55,33 +68,55 @@ public final class DefaultBeanLocator
     // reverse mapping; can't use watcher as key since it may not be unique
     private final Map<WatchedBeans, Object> cachedWatchers = Weak.values();
 
-    private final ImplicitBindings implicitBindings = new ImplicitBindings( publishers );
+    private final LocatorInstrumentation instrumentation = new LocatorInstrumentation();
+
+    private final ImplicitBindings implicitBindings = new ImplicitBindings( publishers, instrumentation );
+
+    // optional executor for asynchronous mediator notifications
+    private final AtomicReference<Executor> notificationExecutor = new AtomicReference<Executor>();
+
+    // number of types ever cached; the difference with the current cache size gives the number of evictions
+    private final AtomicLong bindingsCreated = new AtomicLong();
+
+    // guards creation of new bindings without blocking on publisher updates
+    private final Object[] stripes = new Object[STRIPE_COUNT];
+
+    // bumped whenever the published sequence changes
+    private volatile int publisherStamp;
 
     // ----------------------------------------------------------------------
-    // Public methods
+    // Constructors
     // ----------------------------------------------------------------------
 
-    public Iterable<BeanEntry> locate( final Key key )
+    public DefaultBeanLocator()
     {
-        final TypeLiteral type = key.getTypeLiteral();
-        RankedBindings bindings = cachedBindings.get( type );
-        if ( null == bindings )
+        for ( int i = 0; i < STRIPE_COUNT; i++ )
         {
-            lock();
-            try
-            {
-                if ( null == ( bindings = cachedBindings.get( type ) ) )
-                {
-                    cachedBindings.put( type, bindings = new RankedBindings( type, publishers ) );
-                }
-            }
-            finally
-            {
-                unlock();
-            }
+            stripes[i] = new Object();
         }
-        final boolean isImplicit = key.getAnnotationType() == null && TypeParameters.isImplicit( type );
-        return new LocatedBeans( key, bindings, isImplicit ? implicitBindings : null );
+    }
+
+    // ----------------------------------------------------------------------
+    // Public methods
+    // ----------------------------------------------------------------------
+
+    public Iterable<BeanEntry> locate( final Key key )
+    {
+        instrumentation.metrics().located( key );
+        return locatedBeans( key ).view();
+    }
+
+    /**
+     * Takes an immutable snapshot of the bean implementations that currently match the given qualified binding
+     * {@link Key}; use {@link BeanSnapshot#refresh()} to bring it up to date with later changes.
+     * 
+     * @param key The qualified key
+     * @return Ranked snapshot of bean entries that match the given key
+     */
+    public <Q extends Annotation, T> BeanSnapshot<Q, T> snapshot( final Key<T> key )
+    {
+        instrumentation.metrics().located( key );
+        return locatedBeans( key ).view().snapshot();
     }
 
     public void watch( final Key key, final Mediator mediator, final Object watcher )
@@ -89,10 +124,10 @@ public final class DefaultBeanLocator
         lock();
         try
         {
-            final WatchedBeans beans = new WatchedBeans( key, mediator, watcher );
+            final WatchedBeans beans = new WatchedBeans( key, mediator, watcher, notificationExecutor, instrumentation );
             for ( final BindingPublisher p : publishers.snapshot() )
             {
-                p.subscribe( beans );
+                instrumentation.subscribe( p, beans );
             }
             cachedWatchers.put( beans, watcher );
         }
@@ -121,13 +156,15 @@ public final class DefaultBeanLocator
             {
                 Logs.debug( "Add publisher: {}", publisher, null );
                 publishers.insert( publisher, rank );
+                publisherStamp++;
+                implicitBindings.reset();
                 for ( final RankedBindings bindings : cachedBindings.values() )
                 {
                     bindings.add( publisher, rank );
                 }
                 for ( final WatchedBeans beans : cachedWatchers.keySet() )
                 {
-                    publisher.subscribe( beans );
+                    instrumentation.subscribe( publisher, beans );
                 }
             }
         }
@@ -142,16 +179,118 @@ public final class DefaultBeanLocator
         lock();
         try
         {
-            if ( publishers.remove( publisher ) )
+            final BindingPublisher oldPublisher = published( publisher );
+            if ( null != oldPublisher && publishers.removeThis( oldPublisher ) )
+            {
+                Logs.debug( "Remove publisher: {}", oldPublisher, null );
+                publisherStamp++;
+                implicitBindings.reset();
+                for ( final RankedBindings bindings : cachedBindings.values() )
+                {
+                    bindings.remove( oldPublisher );
+                }
+                for ( final WatchedBeans beans : cachedWatchers.keySet() )
+                {
+                    oldPublisher.unsubscribe( beans );
+                }
+            }
+        }
+        finally
+        {
+            unlock();
+        }
+    }
+
+    /**
+     * Adds the given ranked {@link BindingPublisher}s as a single batch and distributes their bindings. This is
+     * equivalent to adding them one by one, but visits each cached type and watcher only once. Publishers with the
+     * same rank are ordered according to the iteration order of the map.
+     * 
+     * @param rankedPublishers The new publishers, mapped to their assigned ranks
+     */
+    public void addAll( final Map<? extends BindingPublisher, Integer> rankedPublishers )
+    {
+        lock();
+        try
+        {
+            final Collection<BindingPublisher> known = new HashSet<BindingPublisher>();
+            for ( final BindingPublisher p : publishers.snapshot() )
+            {
+                known.add( p );
+            }
+            final Map<BindingPublisher, Integer> added = new LinkedHashMap<BindingPublisher, Integer>();
+            for ( final Map.Entry<? extends BindingPublisher, Integer> e : rankedPublishers.entrySet() )
+            {
+                if ( known.add( e.getKey() ) )
+                {
+                    added.put( e.getKey(), e.getValue() );
+                }
+            }
+            if ( !added.isEmpty() )
+            {
+                Logs.debug( "Add publishers: {}", added.keySet(), null );
+                publishers.insertAll( added );
+                publisherStamp++;
+                implicitBindings.reset();
+                for ( final RankedBindings bindings : cachedBindings.values() )
+                {
+                    bindings.addAll( added );
+                }
+                for ( final WatchedBeans beans : cachedWatchers.keySet() )
+                {
+                    for ( final BindingPublisher p : added.keySet() )
+                    {
+                        instrumentation.subscribe( p, beans );
+                    }
+                }
+            }
+        }
+        finally
+        {
+            unlock();
+        }
+    }
+
+    /**
+     * Removes the given {@link BindingPublisher}s and their bindings as a single batch.
+     * 
+     * @param oldPublishers The old publishers
+     */
+    public void removeAll( final Collection<? extends BindingPublisher> oldPublishers )
+    {
+        lock();
+        try
+        {
+            final Map<BindingPublisher, BindingPublisher> known = new HashMap<BindingPublisher, BindingPublisher>();
+            for ( final BindingPublisher p : publishers.snapshot() )
+            {
+                known.put( p, p );
+            }
+            final Collection<BindingPublisher> removed = new LinkedHashSet<BindingPublisher>();
+            for ( final BindingPublisher p : oldPublishers )
             {
-                Logs.debug( "Remove publisher: {}", publisher, null );
+                final BindingPublisher oldPublisher = known.remove( p );
+                if ( null != oldPublisher )
+                {
+                    removed.add( oldPublisher );
+                }
+            }
+            if ( !removed.isEmpty() )
+            {
+                Logs.debug( "Remove publishers: {}", removed, null );
+                publishers.removeAll( removed );
+                publisherStamp++;
+                implicitBindings.reset();
                 for ( final RankedBindings bindings : cachedBindings.values() )
                 {
-                    bindings.remove( publisher );
+                    bindings.removeAll( removed );
                 }
                 for ( final WatchedBeans beans : cachedWatchers.keySet() )
                 {
-                    publisher.unsubscribe( beans );
+                    for ( final BindingPublisher p : removed )
+                    {
+                        p.unsubscribe( beans );
+                    }
                 }
             }
         }
@@ -166,10 +305,12 @@ public final class DefaultBeanLocator
         lock();
         try
         {
+            final Collection<BindingPublisher> oldPublishers = new ArrayList<BindingPublisher>();
             for ( final BindingPublisher p : publishers.snapshot() )
             {
-                remove( p );
+                oldPublishers.add( p );
             }
+            removeAll( oldPublishers );
         }
         finally
         {
@@ -177,10 +318,144 @@ public final class DefaultBeanLocator
         }
     }
 
+    /**
+     * Delivers {@link Mediator} notifications using the given executor, so slow mediators don't hold up changes to
+     * the published bindings; each watcher still sees its notifications in order and beans removed before they were
+     * delivered are skipped. Pass {@code null} to restore synchronous delivery (the default).
+     * 
+     * @param executor The notification executor
+     */
+    public void setNotificationExecutor( final Executor executor )
+    {
+        notificationExecutor.set( executor );
+    }
+
+    /**
+     * Reports what this locator is doing to the given metrics; pass {@code null} to stop reporting (the default).
+     * 
+     * @param metrics The locator metrics
+     */
+    public void setMetrics( final LocatorMetrics metrics )
+    {
+        instrumentation.setMetrics( metrics );
+    }
+
+    /**
+     * Waits until all queued {@link Mediator} notifications have been delivered; mainly useful in tests. Must not be
+     * called from a mediator or from the notification executor.
+     */
+    public void quiesce()
+        throws InterruptedException
+    {
+        final Collection<WatchedBeans> watchers;
+        lock();
+        try
+        {
+            watchers = new ArrayList<WatchedBeans>( cachedWatchers.keySet() );
+        }
+        finally
+        {
+            unlock();
+        }
+        for ( final WatchedBeans beans : watchers )
+        {
+            beans.quiesce();
+        }
+    }
+
+    // ----------------------------------------------------------------------
+    // Local methods
+    // ----------------------------------------------------------------------
+
+    /**
+     * @return Published injectors, highest ranked first
+     */
+    List<Injector> injectors()
+    {
+        final List<Injector> injectors = new ArrayList<Injector>();
+        for ( final BindingPublisher p : publishers.snapshot() )
+        {
+            if ( p instanceof InjectorPublisher )
+            {
+                injectors.add( ( (InjectorPublisher) p ).getInjector() );
+            }
+        }
+        return injectors;
+    }
+
     // ----------------------------------------------------------------------
     // Implementation methods
     // ----------------------------------------------------------------------
 
+    /**
+     * @param key The qualified key
+     * @return Canonical located beans for the given key
+     */
+    private LocatedBeans locatedBeans( final Key key )
+    {
+        final TypeLiteral type = key.getTypeLiteral();
+        RankedBindings bindings = cachedBindings.get( type );
+        if ( null == bindings )
+        {
+            bindings = cacheBindings( type );
+        }
+        return bindings.locate( key, implicitBindings );
+    }
+
+    /**
+     * Creates and caches bindings for the given type; never blocks behind publishers being added or removed.
+     * 
+     * @param type The binding type
+     * @return Ranked bindings
+     */
+    private RankedBindings cacheBindings( final TypeLiteral type )
+    {
+        final int stamp = publisherStamp; // must be read before taking the publisher snapshot
+        final RankedBindings bindings;
+        synchronized ( stripes[type.hashCode() & STRIPE_COUNT - 1] )
+        {
+            final RankedBindings cached = cachedBindings.get( type );
+            if ( null != cached )
+            {
+                return cached;
+            }
+            cachedBindings.put( type, bindings = new RankedBindings( type, publishers, instrumentation ) );
+        }
+        final long created = bindingsCreated.incrementAndGet();
+        if ( instrumentation.isEnabled() )
+        {
+            final int size = cachedBindings.size();
+            instrumentation.metrics().cachedBindings( type, size, Math.max( created - size, 0 ) );
+        }
+        if ( stamp != publisherStamp )
+        {
+            /*
+             * Publishers changed while we were busy, so the update may not have seen the new bindings;
+             * add/remove on ranked bindings is idempotent, so simply catch up with the current sequence.
+             */
+            bindings.reconcile( publishers );
+        }
+        return bindings;
+    }
+
+    /**
+     * Finds the published instance that is equal to the given publisher; it may hold state from earlier subscriptions.
+     * 
+     * @param publisher The publisher
+     * @return Published instance; {@code null} if the publisher is not published
+     */
+    private BindingPublisher published( final BindingPublisher publisher )
+    {
+        for ( final BindingPublisher p : publishers.snapshot() )
+        {
+            if ( p.equals( publisher ) )
+            {
+                return p;
+            }
+        }
+        return null;
+    }
+
     /**
      * Automatically publishes any {@link Injector} that contains a binding to this {@link BeanLocator}.
      * 
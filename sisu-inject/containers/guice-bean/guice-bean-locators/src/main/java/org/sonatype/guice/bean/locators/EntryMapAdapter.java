@@ -13,12 +13,16 @@ package org.sonatype.guice.bean.locators;
 
 import java.util.AbstractMap;
 import java.util.AbstractSet;
+import java.util.HashMap;
 import java.util.Iterator;
 import java.util.Map;
 import java.util.Set;
 
 /**
  * {@link Map} backed by an {@link Iterable} sequence of map entries.
+ * <p>
+ * When the sequence is a {@link StampedIterable} key lookups use a hash index of the entries, which is built on demand
+ * and kept until the sequence changes; values are still only fetched from the entries when they're requested.
  */
 public final class EntryMapAdapter<K, V>
     extends AbstractMap<K, V>
@@ -29,13 +33,20 @@ public final class EntryMapAdapter<K, V>
 
     private final Set<Entry<K, V>> entrySet;
 
+    private final StampedIterable<? extends Entry<K, V>> stampedIterable;
+
+    private volatile Index<K, V> index;
+
     // ----------------------------------------------------------------------
     // Constructors
     // ----------------------------------------------------------------------
 
+    @SuppressWarnings( "unchecked" )
     public EntryMapAdapter( final Iterable<? extends Entry<K, V>> iterable )
     {
         entrySet = new EntrySet<K, V>( iterable );
+        stampedIterable = iterable instanceof StampedIterable<?> ? (StampedIterable<? extends Entry<K, V>>) iterable
+                        : null;
     }
 
     // ----------------------------------------------------------------------
@@ -54,10 +65,95 @@ public final class EntryMapAdapter<K, V>
         return entrySet.isEmpty();
     }
 
+    @Override
+    public int size()
+    {
+        final Index<K, V> i = index();
+        return null != i ? i.size : entrySet.size();
+    }
+
+    @Override
+    public boolean containsKey( final Object key )
+    {
+        final Index<K, V> i = index();
+        return null != i ? i.entries.containsKey( key ) : super.containsKey( key );
+    }
+
+    @Override
+    public V get( final Object key )
+    {
+        final Index<K, V> i = index();
+        if ( null != i )
+        {
+            final Entry<K, V> entry = i.entries.get( key );
+            return null != entry ? entry.getValue() : null;
+        }
+        return super.get( key );
+    }
+
+    // ----------------------------------------------------------------------
+    // Implementation methods
+    // ----------------------------------------------------------------------
+
+    /**
+     * @return Index of the current entries; {@code null} if the sequence doesn't support change tracking
+     */
+    private Index<K, V> index()
+    {
+        final Object stamp = null != stampedIterable ? stampedIterable.stamp() : null;
+        if ( null == stamp )
+        {
+            return null;
+        }
+        Index<K, V> i = index;
+        if ( null == i || !stamp.equals( i.stamp ) )
+        {
+            index = i = new Index<K, V>( stamp, stampedIterable );
+        }
+        return i;
+    }
+
     // ----------------------------------------------------------------------
     // Implementation types
     // ----------------------------------------------------------------------
 
+    /**
+     * Hash index of map entries by key; the first entry for each key wins, just like a linear search.
+     */
+    private static final class Index<K, V>
+    {
+        // ----------------------------------------------------------------------
+        // Implementation fields
+        // ----------------------------------------------------------------------
+
+        final Object stamp;
+
+        final Map<Object, Entry<K, V>> entries = new HashMap<Object, Entry<K, V>>();
+
+        final int size;
+
+        // ----------------------------------------------------------------------
+        // Constructors
+        // ----------------------------------------------------------------------
+
+        Index( final Object stamp, final Iterable<? extends Entry<K, V>> iterable )
+        {
+            this.stamp = stamp;
+
+            int n = 0;
+            for ( final Entry<K, V> entry : iterable )
+            {
+                final K key = entry.getKey();
+                if ( !entries.containsKey( key ) )
+                {
+                    entries.put( key, entry );
+                }
+                n++;
+            }
+            size = n;
+        }
+    }
+
     /**
      * Entry {@link Set} backed by an {@link Iterable} sequence of map entries.
      */
@@ -11,6 +11,9 @@
  *******************************************************************************/
 package org.sonatype.guice.bean.locators;
 
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
 import org.sonatype.guice.bean.locators.spi.BindingPublisher;
 import org.sonatype.guice.bean.reflect.Logs;
 
@@ -26,27 +29,73 @@ import com.google.inject.TypeLiteral;
  */
 final class ImplicitBindings
 {
+    // ----------------------------------------------------------------------
+    // Constants
+    // ----------------------------------------------------------------------
+
+    private static final Object NO_BINDING = new Object();
+
     // ----------------------------------------------------------------------
     // Implementation fields
     // ----------------------------------------------------------------------
 
     private final Iterable<BindingPublisher> publishers;
 
+    private final LocatorInstrumentation instrumentation;
+
+    // resolved bindings, or NO_BINDING; replaced whenever publishers are added or removed
+    private volatile ConcurrentMap<TypeLiteral<?>, Object> cachedBindings =
+        new ConcurrentHashMap<TypeLiteral<?>, Object>();
+
     // ----------------------------------------------------------------------
     // Constructors
     // ----------------------------------------------------------------------
 
-    ImplicitBindings( final Iterable<BindingPublisher> publishers )
+    ImplicitBindings( final Iterable<BindingPublisher> publishers, final LocatorInstrumentation instrumentation )
     {
         this.publishers = publishers;
+        this.instrumentation = instrumentation;
     }
 
     // ----------------------------------------------------------------------
     // Public methods
     // ----------------------------------------------------------------------
 
-    @SuppressWarnings( { "unchecked", "rawtypes" } )
+    /**
+     * Returns the implicit binding for the given type; both positive and negative results are cached until the next
+     * call to {@link #reset()}. Each lookup is reported to the current metrics as a cache hit or miss.
+     * 
+     * @param type The binding type
+     * @return Implicit binding; {@code null} if no publisher can supply one
+     */
+    @SuppressWarnings( "unchecked" )
     public <T> Binding<T> get( final TypeLiteral<T> type )
+    {
+        final ConcurrentMap<TypeLiteral<?>, Object> cache = cachedBindings; // must be read before visiting publishers
+        Object binding = cache.get( type );
+        instrumentation.metrics().implicitLookup( type, null != binding );
+        if ( null == binding )
+        {
+            binding = find( type );
+            cache.put( type, null != binding ? binding : NO_BINDING );
+        }
+        return NO_BINDING != binding ? (Binding<T>) binding : null;
+    }
+
+    /**
+     * Discards all cached results; must be called after publishers are added or removed.
+     */
+    public void reset()
+    {
+        cachedBindings = new ConcurrentHashMap<TypeLiteral<?>, Object>();
+    }
+
+    // ----------------------------------------------------------------------
+    // Implementation methods
+    // ----------------------------------------------------------------------
+
+    @SuppressWarnings( { "unchecked", "rawtypes" } )
+    private <T> Binding<T> find( final TypeLiteral<T> type )
     {
         final Key implicitKey = Key.get( type.getRawType(), Implicit.class );
         for ( final BindingPublisher p : publishers )
@@ -11,8 +11,12 @@
  *******************************************************************************/
 package org.sonatype.guice.bean.locators;
 
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
 import java.util.List;
 import java.util.Map;
+import java.util.Set;
 
 import org.sonatype.guice.bean.locators.spi.BindingPublisher;
 import org.sonatype.guice.bean.locators.spi.BindingSubscriber;
@@ -21,7 +25,6 @@ import org.sonatype.guice.bean.reflect.TypeParameters;
 
 import com.google.inject.Binding;
 import com.google.inject.Injector;
-import com.google.inject.Key;
 import com.google.inject.TypeLiteral;
 
 /**
@@ -44,6 +47,9 @@ final class InjectorPublisher
 
     private final RankingFunction function;
 
+    // lazily-built index from super-types to the wildcard bindings whose implementations extend them
+    private volatile Map<Class<?>, List<Binding<?>>> wildcardIndex;
+
     // ----------------------------------------------------------------------
     // Constructors
     // ----------------------------------------------------------------------
@@ -65,29 +71,16 @@ final class InjectorPublisher
 
     public <T> void subscribe( final BindingSubscriber<T> subscriber )
     {
-        final TypeLiteral<T> type = subscriber.type();
-        publishBindings( type, subscriber, null );
-        final Class<?> clazz = type.getRawType();
-        if ( clazz != type.getType() )
-        {
-            publishBindings( TypeLiteral.get( clazz ), subscriber, type );
-        }
-        if ( clazz != Object.class )
-        {
-            publishBindings( OBJECT_TYPE_LITERAL, subscriber, type );
-        }
+        publishBindings( subscriber, true );
     }
 
     public <T> void unsubscribe( final BindingSubscriber<T> subscriber )
     {
-        final Map<Key<?>, ?> ourBindings = injector.getBindings();
-        for ( final Binding<T> binding : subscriber.bindings() )
-        {
-            if ( binding == ourBindings.get( binding.getKey() ) )
-            {
-                subscriber.remove( binding );
-            }
-        }
+        /*
+         * Injector bindings never change, so repeating the original search finds exactly what we contributed
+         * without having to scan every binding the subscriber has received from other publishers.
+         */
+        publishBindings( subscriber, false );
     }
 
     @Override
@@ -140,17 +133,105 @@ final class InjectorPublisher
         return false;
     }
 
+    private <T> void publishBindings( final BindingSubscriber<T> subscriber, final boolean add )
+    {
+        final TypeLiteral<T> type = subscriber.type();
+        publishBindings( findBindingsByType( type ), subscriber, null, add );
+        final Class<?> clazz = type.getRawType();
+        if ( clazz != type.getType() )
+        {
+            publishBindings( findBindingsByType( TypeLiteral.get( clazz ) ), subscriber, type, add );
+        }
+        if ( clazz != Object.class )
+        {
+            final List<Binding<?>> wildcardBindings = wildcardIndex().get( clazz );
+            if ( null != wildcardBindings )
+            {
+                publishBindings( wildcardBindings, subscriber, type, add );
+            }
+        }
+    }
+
     @SuppressWarnings( { "rawtypes", "unchecked" } )
-    private void publishBindings( final TypeLiteral searchType, final BindingSubscriber subscriber,
-                                  final TypeLiteral superType )
+    private void publishBindings( final List<Binding<?>> bindings, final BindingSubscriber subscriber,
+                                  final TypeLiteral superType, final boolean add )
     {
-        final List<Binding<?>> bindings = injector.findBindingsByType( searchType );
         for ( int i = 0, size = bindings.size(); i < size; i++ )
         {
             final Binding binding = bindings.get( i );
             if ( isVisible( binding ) && ( null == superType || isAssignableFrom( superType, binding ) ) )
             {
-                subscriber.add( binding, function.rank( binding ) );
+                if ( add )
+                {
+                    subscriber.add( binding, function.rank( binding ) );
+                }
+                else
+                {
+                    subscriber.remove( binding );
+                }
+            }
+        }
+    }
+
+    @SuppressWarnings( { "rawtypes", "unchecked" } )
+    private List<Binding<?>> findBindingsByType( final TypeLiteral type )
+    {
+        return injector.findBindingsByType( type );
+    }
+
+    /**
+     * Indexes the wildcard bindings of our injector by the super-types of their implementations, so subscribers only
+     * visit wildcard bindings that may be assignable to them; built once on demand as the injector never changes.
+     * 
+     * @return Wildcard bindings keyed by implementation super-type
+     */
+    private Map<Class<?>, List<Binding<?>>> wildcardIndex()
+    {
+        Map<Class<?>, List<Binding<?>>> index = wildcardIndex;
+        if ( null == index )
+        {
+            // racing threads build equivalent indexes, so there's no need to lock
+            index = new HashMap<Class<?>, List<Binding<?>>>();
+            final Set<Class<?>> superTypes = new HashSet<Class<?>>();
+            for ( final Binding<?> binding : findBindingsByType( OBJECT_TYPE_LITERAL ) )
+            {
+                final Class<?> implementation =
+                    isVisible( binding ) ? binding.acceptTargetVisitor( ImplementationVisitor.THIS ) : null;
+                if ( null != implementation )
+                {
+                    superTypes.clear();
+                    collectSuperTypes( implementation, superTypes );
+                    for ( final Class<?> superType : superTypes )
+                    {
+                        List<Binding<?>> bindings = index.get( superType );
+                        if ( null == bindings )
+                        {
+                            index.put( superType, bindings = new ArrayList<Binding<?>>() );
+                        }
+                        bindings.add( binding );
+                    }
+                }
+            }
+            wildcardIndex = index;
+        }
+        return index;
+    }
+
+    /**
+     * Collects the super-classes (apart from {@link Object}) and interfaces of the given class.
+     */
+    private static void collectSuperTypes( final Class<?> clazz, final Set<Class<?>> superTypes )
+    {
+        final Class<?> superClazz = clazz.getSuperclass();
+        if ( null != superClazz && Object.class != superClazz && superTypes.add( superClazz ) )
+        {
+            collectSuperTypes( superClazz, superTypes );
+        }
+        for ( final Class<?> api : clazz.getInterfaces() )
+        {
+            if ( superTypes.add( api ) )
+            {
+                collectSuperTypes( api, superTypes );
             }
         }
     }
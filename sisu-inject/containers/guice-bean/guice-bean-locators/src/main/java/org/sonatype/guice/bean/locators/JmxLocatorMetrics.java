@@ -0,0 +1,334 @@
+/*******************************************************************************
+ * Copyright (c) 2010-2011 Sonatype, Inc.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * and Apache License v2.0 which accompanies this distribution.
+ * The Eclipse Public License is available at
+ *   http://www.eclipse.org/legal/epl-v10.html
+ * The Apache License v2.0 is available at
+ *   http://www.apache.org/licenses/LICENSE-2.0.html
+ * You may elect to redistribute this code under either of these licenses.
+ *******************************************************************************/
+package org.sonatype.guice.bean.locators;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.sonatype.guice.bean.locators.spi.BindingPublisher;
+import org.sonatype.guice.bean.locators.spi.LocatorMetrics;
+import org.sonatype.inject.Mediator;
+
+import com.google.inject.Key;
+import com.google.inject.TypeLiteral;
+
+/**
+ * {@link LocatorMetrics} that collects simple counters and timings, exposed as a standard JMX MBean:
+ * 
+ * <pre>
+ * JmxLocatorMetrics metrics = new JmxLocatorMetrics();
+ * locator.setMetrics( metrics );
+ * ManagementFactory.getPlatformMBeanServer().registerMBean( metrics, new ObjectName( &quot;sisu:type=BeanLocator&quot; ) );
+ * </pre>
+ * 
+ * Lookup counts are tracked for at most 256 distinct {@link Key}s until {@link #reset()} is
+ * called; lookups of further keys are only included in the total and the "other keys" count.
+ */
+public final class JmxLocatorMetrics
+    implements LocatorMetrics, JmxLocatorMetricsMBean
+{
+    // ----------------------------------------------------------------------
+    // Constants
+    // ----------------------------------------------------------------------
+
+    private static final double NANOS_PER_MILLI = 1000000.0;
+
+    static final int MAX_TRACKED_KEYS = 256;
+
+    // ----------------------------------------------------------------------
+    // Implementation fields
+    // ----------------------------------------------------------------------
+
+    private final ConcurrentMap<Key<?>, AtomicLong> locateCounts = new ConcurrentHashMap<Key<?>, AtomicLong>();
+
+    private final AtomicLong locateCount = new AtomicLong();
+
+    private final AtomicLong untrackedLocateCount = new AtomicLong();
+
+    private volatile int cachedBindingsSize;
+
+    private volatile long cachedBindingsEvictions;
+
+    private final Timer subscribeTimer = new Timer();
+
+    private final Timer mediatorTimer = new Timer();
+
+    private final AtomicLong iterationCount = new AtomicLong();
+
+    private final AtomicLong iterationLength = new AtomicLong();
+
+    private final AtomicLong maxIterationLength = new AtomicLong();
+
+    private final AtomicLong implicitFallbackCount = new AtomicLong();
+
+    private final AtomicLong implicitFallbackMissCount = new AtomicLong();
+
+    private final AtomicLong implicitCacheHitCount = new AtomicLong();
+
+    private final AtomicLong implicitCacheMissCount = new AtomicLong();
+
+    // ----------------------------------------------------------------------
+    // Public methods
+    // ----------------------------------------------------------------------
+
+    public void located( final Key<?> key )
+    {
+        locateCount.incrementAndGet();
+        AtomicLong count = locateCounts.get( key );
+        if ( null == count )
+        {
+            if ( locateCounts.size() >= MAX_TRACKED_KEYS )
+            {
+                untrackedLocateCount.incrementAndGet();
+                return;
+            }
+            final AtomicLong newCount = new AtomicLong();
+            count = locateCounts.putIfAbsent( key, newCount );
+            if ( null == count )
+            {
+                count = newCount;
+            }
+        }
+        count.incrementAndGet();
+    }
+
+    public void cachedBindings( final TypeLiteral<?> type, final int cacheSize, final long evictions )
+    {
+        cachedBindingsSize = cacheSize;
+        cachedBindingsEvictions = evictions;
+    }
+
+    public void subscribed( final BindingPublisher publisher, final TypeLiteral<?> type, final long nanos )
+    {
+        subscribeTimer.record( nanos );
+    }
+
+    public void iterated( final Key<?> key, final int length )
+    {
+        iterationCount.incrementAndGet();
+        iterationLength.addAndGet( length );
+        updateMax( maxIterationLength, length );
+    }
+
+    public void implicitFallback( final Key<?> key, final boolean found )
+    {
+        implicitFallbackCount.incrementAndGet();
+        if ( !found )
+        {
+            implicitFallbackMissCount.incrementAndGet();
+        }
+    }
+
+    public void implicitLookup( final TypeLiteral<?> type, final boolean cached )
+    {
+        ( cached ? implicitCacheHitCount : implicitCacheMissCount ).incrementAndGet();
+    }
+
+    public void mediated( final Mediator<?, ?, ?> mediator, final long nanos )
+    {
+        mediatorTimer.record( nanos );
+    }
+
+    public long getLocateCount()
+    {
+        return locateCount.get();
+    }
+
+    public String[] getLocateCountsByKey()
+    {
+        final List<Map.Entry<Key<?>, AtomicLong>> entries =
+            new ArrayList<Map.Entry<Key<?>, AtomicLong>>( locateCounts.entrySet() );
+        final long untracked = untrackedLocateCount.get();
+        final int tracked = entries.size();
+        final long[] counts = new long[untracked > 0 ? tracked + 1 : tracked];
+        final String[] lines = new String[counts.length];
+        for ( int i = 0; i < tracked; i++ )
+        {
+            counts[i] = entries.get( i ).getValue().get();
+            lines[i] = counts[i] + " " + entries.get( i ).getKey();
+        }
+        if ( untracked > 0 )
+        {
+            counts[tracked] = untracked;
+            lines[tracked] = untracked + " (other keys)";
+        }
+        // busiest keys first; sort a copy of the indices so each line stays with its count
+        final Integer[] order = new Integer[counts.length];
+        for ( int i = 0; i < order.length; i++ )
+        {
+            order[i] = Integer.valueOf( i );
+        }
+        Arrays.sort( order, new Comparator<Integer>()
+        {
+            public int compare( final Integer lhs, final Integer rhs )
+            {
+                final long l = counts[lhs.intValue()], r = counts[rhs.intValue()];
+                return l > r ? -1 : l < r ? 1 : 0;
+            }
+        } );
+        final String[] sorted = new String[lines.length];
+        for ( int i = 0; i < sorted.length; i++ )
+        {
+            sorted[i] = lines[order[i].intValue()];
+        }
+        return sorted;
+    }
+
+    public int getCachedBindingsSize()
+    {
+        return cachedBindingsSize;
+    }
+
+    public long getCachedBindingsEvictions()
+    {
+        return cachedBindingsEvictions;
+    }
+
+    public long getSubscribeCount()
+    {
+        return subscribeTimer.count.get();
+    }
+
+    public double getAverageSubscribeMillis()
+    {
+        return subscribeTimer.averageMillis();
+    }
+
+    public double getMaxSubscribeMillis()
+    {
+        return subscribeTimer.max.get() / NANOS_PER_MILLI;
+    }
+
+    public long getIterationCount()
+    {
+        return iterationCount.get();
+    }
+
+    public double getAverageIterationLength()
+    {
+        final long count = iterationCount.get();
+        return count > 0 ? (double) iterationLength.get() / count : 0;
+    }
+
+    public long getMaxIterationLength()
+    {
+        return maxIterationLength.get();
+    }
+
+    public long getImplicitFallbackCount()
+    {
+        return implicitFallbackCount.get();
+    }
+
+    public long getImplicitFallbackMissCount()
+    {
+        return implicitFallbackMissCount.get();
+    }
+
+    public long getImplicitCacheHitCount()
+    {
+        return implicitCacheHitCount.get();
+    }
+
+    public long getImplicitCacheMissCount()
+    {
+        return implicitCacheMissCount.get();
+    }
+
+    public long getMediatorCallbackCount()
+    {
+        return mediatorTimer.count.get();
+    }
+
+    public double getAverageMediatorMillis()
+    {
+        return mediatorTimer.averageMillis();
+    }
+
+    public double getMaxMediatorMillis()
+    {
+        return mediatorTimer.max.get() / NANOS_PER_MILLI;
+    }
+
+    public void reset()
+    {
+        locateCounts.clear();
+        locateCount.set( 0 );
+        untrackedLocateCount.set( 0 );
+        subscribeTimer.reset();
+        mediatorTimer.reset();
+        iterationCount.set( 0 );
+        iterationLength.set( 0 );
+        maxIterationLength.set( 0 );
+        implicitFallbackCount.set( 0 );
+        implicitFallbackMissCount.set( 0 );
+        implicitCacheHitCount.set( 0 );
+        implicitCacheMissCount.set( 0 );
+    }
+
+    // ----------------------------------------------------------------------
+    // Implementation methods
+    // ----------------------------------------------------------------------
+
+    static void updateMax( final AtomicLong max, final long value )
+    {
+        for ( long current = max.get(); value > current; current = max.get() )
+        {
+            if ( max.compareAndSet( current, value ) )
+            {
+                break;
+            }
+        }
+    }
+
+    // ----------------------------------------------------------------------
+    // Implementation types
+    // ----------------------------------------------------------------------
+
+    /**
+     * Accumulates the number, total and maximum of recorded timings.
+     */
+    private static final class Timer
+    {
+        final AtomicLong count = new AtomicLong();
+
+        final AtomicLong total = new AtomicLong();
+
+        final AtomicLong max = new AtomicLong();
+
+        void record( final long nanos )
+        {
+            count.incrementAndGet();
+            total.addAndGet( nanos );
+            updateMax( max, nanos );
+        }
+
+        double averageMillis()
+        {
+            final long n = count.get();
+            return n > 0 ? total.get() / NANOS_PER_MILLI / n : 0;
+        }
+
+        void reset()
+        {
+            count.set( 0 );
+            total.set( 0 );
+            max.set( 0 );
+        }
+    }
+}
@@ -0,0 +1,63 @@
+/*******************************************************************************
+ * Copyright (c) 2010-2011 Sonatype, Inc.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * and Apache License v2.0 which accompanies this distribution.
+ * The Eclipse Public License is available at
+ *   http://www.eclipse.org/legal/epl-v10.html
+ * The Apache License v2.0 is available at
+ *   http://www.apache.org/licenses/LICENSE-2.0.html
+ * You may elect to redistribute this code under either of these licenses.
+ *******************************************************************************/
+package org.sonatype.guice.bean.locators;
+
+/**
+ * JMX management interface for {@link JmxLocatorMetrics}.
+ */
+public interface JmxLocatorMetricsMBean
+{
+    long getLocateCount();
+
+    /**
+     * @return Lookup counts as "count key" lines, busiest first; keys beyond the tracked limit are summed in one line
+     */
+    String[] getLocateCountsByKey();
+
+    /**
+     * @return Number of binding types cached at the last insert; not updated as cached types are released
+     */
+    int getCachedBindingsSize();
+
+    /**
+     * @return Number of cached binding types released to free memory, as seen at the last insert
+     */
+    long getCachedBindingsEvictions();
+
+    long getSubscribeCount();
+
+    double getAverageSubscribeMillis();
+
+    double getMaxSubscribeMillis();
+
+    long getIterationCount();
+
+    double getAverageIterationLength();
+
+    long getMaxIterationLength();
+
+    long getImplicitFallbackCount();
+
+    long getImplicitFallbackMissCount();
+
+    long getImplicitCacheHitCount();
+
+    long getImplicitCacheMissCount();
+
+    long getMediatorCallbackCount();
+
+    double getAverageMediatorMillis();
+
+    double getMaxMediatorMillis();
+
+    void reset();
+}
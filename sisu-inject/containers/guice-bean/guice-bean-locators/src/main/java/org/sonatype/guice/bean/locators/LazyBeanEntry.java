@@ -12,6 +12,7 @@
 package org.sonatype.guice.bean.locators;
 
 import java.lang.annotation.Annotation;
+import java.util.concurrent.atomic.AtomicReferenceFieldUpdater;
 
 import javax.inject.Provider;
 
@@ -23,10 +24,21 @@ import com.google.inject.Scopes;
 
 /**
  * Lazy {@link BeanEntry} backed by a qualified {@link Binding} and an assigned rank.
+ * <p>
+ * Entries are created for every binding a lookup visits, but few are ever asked for values; so the provider is only
+ * fetched (and scoped) on first use, and qualifiers are shared with the binding rather than copied.
  */
 final class LazyBeanEntry<Q extends Annotation, T>
     implements BeanEntry<Q, T>
 {
+    // ----------------------------------------------------------------------
+    // Constants
+    // ----------------------------------------------------------------------
+
+    @SuppressWarnings( "rawtypes" )
+    private static final AtomicReferenceFieldUpdater<LazyBeanEntry, Provider> PROVIDER_UPDATER =
+        AtomicReferenceFieldUpdater.newUpdater( LazyBeanEntry.class, Provider.class, "provider" );
+
     // ----------------------------------------------------------------------
     // Implementation fields
     // ----------------------------------------------------------------------
@@ -35,7 +47,7 @@ final class LazyBeanEntry<Q extends Annotation, T>
 
     final Binding<T> binding;
 
-    private final Provider<T> provider;
+    private volatile Provider<T> provider;
 
     private final int rank;
 
@@ -43,44 +55,31 @@ final class LazyBeanEntry<Q extends Annotation, T>
     // Constructors
     // ----------------------------------------------------------------------
 
-    @SuppressWarnings( "unchecked" )
     LazyBeanEntry( final Q qualifier, final Binding<T> binding, final int rank )
     {
-        if ( null != qualifier && com.google.inject.name.Named.class == qualifier.annotationType() )
-        {
-            this.qualifier = (Q) new JsrNamed( (com.google.inject.name.Named) qualifier );
-        }
-        else
-        {
-            this.qualifier = qualifier;
-        }
-
+        this.qualifier = qualifier;
         this.binding = binding;
         this.rank = rank;
-
-        if ( Scopes.isSingleton( binding ) )
-        {
-            this.provider = binding.getProvider();
-        }
-        else
-        {
-            // use Guice's singleton logic to get lazy-loading without introducing extra locks
-            this.provider = Scopes.SINGLETON.scope( binding.getKey(), binding.getProvider() );
-        }
     }
 
     // ----------------------------------------------------------------------
     // Public methods
     // ----------------------------------------------------------------------
 
+    @SuppressWarnings( "unchecked" )
     public Q getKey()
     {
+        if ( null != qualifier && com.google.inject.name.Named.class == qualifier.annotationType() )
+        {
+            return (Q) JsrNamed.intern( (com.google.inject.name.Named) qualifier );
+        }
         return qualifier;
     }
 
     public T getValue()
     {
-        return provider.get();
+        final Provider<T> p = provider;
+        return ( null != p ? p : lazyProvider() ).get();
     }
 
     public T setValue( final T value )
@@ -143,6 +142,28 @@ final class LazyBeanEntry<Q extends Annotation, T>
         return buf.toString();
     }
 
+    // ----------------------------------------------------------------------
+    // Implementation methods
+    // ----------------------------------------------------------------------
+
+    @SuppressWarnings( "unchecked" )
+    private Provider<T> lazyProvider()
+    {
+        final Provider<T> p;
+        if ( Scopes.isSingleton( binding ) )
+        {
+            p = binding.getProvider();
+        }
+        else
+        {
+            // use Guice's singleton logic to get lazy-loading without introducing extra locks
+            p = Scopes.SINGLETON.scope( binding.getKey(), binding.getProvider() );
+        }
+        // racing threads must all share the same scoped provider, so the first one wins
+        PROVIDER_UPDATER.compareAndSet( this, null, p );
+        return provider;
+    }
+
     // ----------------------------------------------------------------------
     // Implementation types
     // ----------------------------------------------------------------------
@@ -153,6 +174,15 @@ final class LazyBeanEntry<Q extends Annotation, T>
     private static final class JsrNamed
         implements com.google.inject.name.Named, javax.inject.Named
     {
+        // ----------------------------------------------------------------------
+        // Constants
+        // ----------------------------------------------------------------------
+
+        private static final int INTERN_MASK = 0x1FF; // must be a power of two minus one
+
+        // small lossy cache so popular names share one instance; races just mean the odd duplicate
+        private static final JsrNamed[] INTERNED = new JsrNamed[INTERN_MASK + 1];
+
         // ----------------------------------------------------------------------
         // Implementation fields
         // ----------------------------------------------------------------------
@@ -163,9 +193,25 @@ final class LazyBeanEntry<Q extends Annotation, T>
         // Constructors
         // ----------------------------------------------------------------------
 
-        JsrNamed( final com.google.inject.name.Named named )
+        private JsrNamed( final String value )
+        {
+            this.value = value;
+        }
+
+        // ----------------------------------------------------------------------
+        // Utility methods
+        // ----------------------------------------------------------------------
+
+        static JsrNamed intern( final com.google.inject.name.Named named )
         {
-            value = named.value();
+            final String value = named.value();
+            final int slot = value.hashCode() & INTERN_MASK;
+            final JsrNamed cached = INTERNED[slot];
+            if ( null != cached && value.equals( cached.value ) )
+            {
+                return cached;
+            }
+            return INTERNED[slot] = new JsrNamed( value );
         }
 
         // ----------------------------------------------------------------------
@@ -12,22 +12,26 @@
 package org.sonatype.guice.bean.locators;
 
 import java.lang.annotation.Annotation;
+import java.util.ArrayList;
 import java.util.Iterator;
-import java.util.Map;
+import java.util.List;
 import java.util.NoSuchElementException;
 
 import org.sonatype.inject.BeanEntry;
 
 import com.google.inject.Binding;
 import com.google.inject.Key;
+import com.google.inject.Scopes;
 
 /**
- * Provides a sequence of {@link BeanEntry}s by iterating over qualified {@link Binding}s.
+ * Canonical view of the {@link BeanEntry}s that match a given {@link Key}; shared by all lookups of that key.
+ * <p>
+ * Entries for singleton {@link Binding}s are shared between lookups, while entries for unscoped bindings are kept
+ * per {@link View} so each lookup still gets its own lazily-created instances.
  * 
  * @see BeanLocator#locate(Key)
  */
 final class LocatedBeans<Q extends Annotation, T>
-    implements Iterable<BeanEntry<Q, T>>
 {
     // ----------------------------------------------------------------------
     // Implementation fields
@@ -41,7 +45,9 @@ final class LocatedBeans<Q extends Annotation, T>
 
     final QualifyingStrategy strategy;
 
-    final BeanCache<Q, T> beans;
+    final RankedSequence<Binding<T>> candidates;
+
+    final BeanCache<Q, T> sharedBeans;
 
     // ----------------------------------------------------------------------
     // Constructors
@@ -55,16 +61,20 @@ final class LocatedBeans<Q extends Annotation, T>
         this.implicitBindings = implicitBindings;
 
         strategy = QualifyingStrategy.selectFor( key );
-        beans = explicitBindings.newBeanCache();
+        candidates = explicitBindings.candidates( key, strategy );
+        sharedBeans = explicitBindings.newBeanCache();
     }
 
     // ----------------------------------------------------------------------
-    // Public methods
+    // Local methods
     // ----------------------------------------------------------------------
 
-    public Iterator<BeanEntry<Q, T>> iterator()
+    /**
+     * @return New lookup view backed by this canonical sequence
+     */
+    View view()
     {
-        return new Itr();
+        return new View();
     }
 
     // ----------------------------------------------------------------------
@@ -72,79 +82,204 @@ final class LocatedBeans<Q extends Annotation, T>
     // ----------------------------------------------------------------------
 
     /**
-     * {@link BeanEntry} iterator that creates new elements from {@link Binding}s as required.
+     * Provides a sequence of {@link BeanEntry}s by iterating over qualified {@link Binding}s.
      */
-    final class Itr
-        implements Iterator<BeanEntry<Q, T>>
+    final class View
+        implements StampedIterable<BeanEntry<Q, T>>
     {
         // ----------------------------------------------------------------------
         // Implementation fields
         // ----------------------------------------------------------------------
 
-        private final RankedBindings<T>.Itr itr = explicitBindings.iterator();
-
-        private final Map<Binding<T>, BeanEntry<Q, T>> readCache = beans.flush();
+        volatile BeanCache<Q, T> beans;
 
-        private boolean checkImplicitBindings = implicitBindings != null;
-
-        private BeanEntry<Q, T> nextBean;
+        // last stamp handed out, saves boxing the generation on every call
+        private volatile Integer stamp;
 
         // ----------------------------------------------------------------------
         // Public methods
         // ----------------------------------------------------------------------
 
-        @SuppressWarnings( "unchecked" )
-        public boolean hasNext()
+        public Iterator<BeanEntry<Q, T>> iterator()
+        {
+            return new Itr();
+        }
+
+        public Object stamp()
         {
-            if ( null != nextBean )
+            final int generation = generation();
+            Integer s = stamp;
+            if ( null == s || s.intValue() != generation )
             {
-                return true;
+                stamp = s = Integer.valueOf( generation );
             }
-            while ( itr.hasNext() )
+            return s;
+        }
+
+        // ----------------------------------------------------------------------
+        // Local methods
+        // ----------------------------------------------------------------------
+
+        /**
+         * @return Current generation of the underlying bindings
+         */
+        int generation()
+        {
+            return explicitBindings.generation.get();
+        }
+
+        /**
+         * Captures the current sequence of {@link BeanEntry}s; entries are shared with earlier snapshots of this view.
+         * 
+         * @return Immutable snapshot
+         */
+        BeanSnapshot<Q, T> snapshot()
+        {
+            final List<BeanEntry<Q, T>> entries = new ArrayList<BeanEntry<Q, T>>();
+            int stamp;
+            int attempts = 0;
+            do
             {
-                final Binding<T> binding = itr.next();
-                if ( null != readCache && null != ( nextBean = readCache.get( binding ) ) )
+                // stamp must be read first; changes made while we're iterating then leave the snapshot stale
+                stamp = generation();
+                entries.clear();
+                for ( final BeanEntry<Q, T> bean : this )
                 {
-                    return true;
+                    entries.add( bean );
                 }
-                final Q qualifier = (Q) strategy.qualifies( key, binding );
-                if ( null != qualifier )
+            }
+            while ( stamp != generation() && ++attempts < 2 ); // the first pass may have subscribed new publishers
+            return new BeanSnapshot<Q, T>( this, entries.toArray(), stamp );
+        }
+
+        // ----------------------------------------------------------------------
+        // Implementation methods
+        // ----------------------------------------------------------------------
+
+        /**
+         * @return Existing {@link BeanEntry} for the given binding; {@code null} if this view hasn't seen it yet
+         */
+        BeanEntry<Q, T> cached( final Binding<T> binding )
+        {
+            final BeanEntry<Q, T> bean = sharedBeans.get( binding );
+            if ( null != bean )
+            {
+                return bean;
+            }
+            final BeanCache<Q, T> cache = beans;
+            return null != cache ? cache.get( binding ) : null;
+        }
+
+        /**
+         * Creates a new {@link BeanEntry}; unscoped bindings are cached per-view, the rest are cached per-key.
+         */
+        BeanEntry<Q, T> create( final Q qualifier, final Binding<T> binding, final int rank )
+        {
+            if ( Scopes.isSingleton( binding ) )
+            {
+                return sharedBeans.create( qualifier, binding, rank );
+            }
+            BeanCache<Q, T> cache = beans;
+            if ( null == cache )
+            {
+                synchronized ( this )
                 {
-                    nextBean = beans.create( qualifier, binding, itr.rank() );
-                    return true;
+                    if ( null == ( cache = beans ) )
+                    {
+                        beans = cache = explicitBindings.newBeanCache();
+                    }
                 }
             }
-            if ( checkImplicitBindings )
+            return cache.create( qualifier, binding, rank );
+        }
+
+        // ----------------------------------------------------------------------
+        // Implementation types
+        // ----------------------------------------------------------------------
+
+        /**
+         * {@link BeanEntry} iterator that creates new elements from {@link Binding}s as required.
+         */
+        final class Itr
+            implements Iterator<BeanEntry<Q, T>>
+        {
+            // ----------------------------------------------------------------------
+            // Implementation fields
+            // ----------------------------------------------------------------------
+
+            private final RankedBindings<T>.Itr itr = explicitBindings.iterator( candidates );
+
+            private boolean checkImplicitBindings = implicitBindings != null;
+
+            private BeanEntry<Q, T> nextBean;
+
+            // beans returned so far; negative once the completed pass has been reported
+            private int length;
+
+            // ----------------------------------------------------------------------
+            // Public methods
+            // ----------------------------------------------------------------------
+
+            @SuppressWarnings( "unchecked" )
+            public boolean hasNext()
             {
-                // last-chance, see if we can locate a valid implicit binding somewhere
-                final Binding<T> binding = implicitBindings.get( key.getTypeLiteral() );
-                if ( null != binding )
+                if ( null != nextBean )
                 {
-                    nextBean = beans.create( (Q) QualifyingStrategy.DEFAULT_QUALIFIER, binding, Integer.MIN_VALUE );
                     return true;
                 }
+                while ( itr.hasNext() )
+                {
+                    final Binding<T> binding = itr.next();
+                    if ( null != ( nextBean = cached( binding ) ) )
+                    {
+                        return true;
+                    }
+                    final Q qualifier = (Q) strategy.qualifies( key, binding );
+                    if ( null != qualifier )
+                    {
+                        nextBean = create( qualifier, binding, itr.rank() );
+                        return true;
+                    }
+                }
+                if ( checkImplicitBindings )
+                {
+                    // last-chance, see if we can locate a valid implicit binding somewhere
+                    final Binding<T> binding = implicitBindings.get( key.getTypeLiteral() );
+                    explicitBindings.instrumentation.metrics().implicitFallback( key, null != binding );
+                    if ( null != binding )
+                    {
+                        nextBean = create( (Q) QualifyingStrategy.DEFAULT_QUALIFIER, binding, Integer.MIN_VALUE );
+                        return true;
+                    }
+                }
+                if ( length >= 0 )
+                {
+                    explicitBindings.instrumentation.metrics().iterated( key, length );
+                    length = -1;
+                }
+                return false;
             }
-            return false;
-        }
 
-        public BeanEntry<Q, T> next()
-        {
-            if ( hasNext() )
+            public BeanEntry<Q, T> next()
             {
-                // no need to check this again
-                checkImplicitBindings = false;
+                if ( hasNext() )
+                {
+                    // no need to check this again
+                    checkImplicitBindings = false;
 
-                // populated by hasNext()
-                final BeanEntry<Q, T> bean = nextBean;
-                nextBean = null;
-                return bean;
+                    // populated by hasNext()
+                    final BeanEntry<Q, T> bean = nextBean;
+                    nextBean = null;
+                    length++;
+                    return bean;
+                }
+                throw new NoSuchElementException();
             }
-            throw new NoSuchElementException();
-        }
 
-        public void remove()
-        {
-            throw new UnsupportedOperationException();
+            public void remove()
+            {
+                throw new UnsupportedOperationException();
+            }
         }
     }
 }
@@ -0,0 +1,120 @@
+/*******************************************************************************
+ * Copyright (c) 2010-2011 Sonatype, Inc.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * and Apache License v2.0 which accompanies this distribution.
+ * The Eclipse Public License is available at
+ *   http://www.eclipse.org/legal/epl-v10.html
+ * The Apache License v2.0 is available at
+ *   http://www.apache.org/licenses/LICENSE-2.0.html
+ * You may elect to redistribute this code under either of these licenses.
+ *******************************************************************************/
+package org.sonatype.guice.bean.locators;
+
+import org.sonatype.guice.bean.locators.spi.BindingPublisher;
+import org.sonatype.guice.bean.locators.spi.BindingSubscriber;
+import org.sonatype.guice.bean.locators.spi.LocatorMetrics;
+import org.sonatype.inject.Mediator;
+
+import com.google.inject.Key;
+import com.google.inject.TypeLiteral;
+
+/**
+ * Holds the current {@link LocatorMetrics}; shared by a locator and the bindings, lookups and watchers it creates.
+ */
+final class LocatorInstrumentation
+{
+    // ----------------------------------------------------------------------
+    // Constants
+    // ----------------------------------------------------------------------
+
+    // must be initialized before DISABLED
+    private static final LocatorMetrics NO_METRICS = new NullMetrics();
+
+    static final LocatorInstrumentation DISABLED = new LocatorInstrumentation();
+
+    // ----------------------------------------------------------------------
+    // Implementation fields
+    // ----------------------------------------------------------------------
+
+    private volatile LocatorMetrics metrics = NO_METRICS;
+
+    // ----------------------------------------------------------------------
+    // Local methods
+    // ----------------------------------------------------------------------
+
+    void setMetrics( final LocatorMetrics metrics )
+    {
+        this.metrics = null != metrics ? metrics : NO_METRICS;
+    }
+
+    /**
+     * @return Current metrics; never {@code null}
+     */
+    LocatorMetrics metrics()
+    {
+        return metrics;
+    }
+
+    boolean isEnabled()
+    {
+        return NO_METRICS != metrics;
+    }
+
+    /**
+     * Subscribes to the given publisher, timing the subscription when metrics are enabled.
+     */
+    <T> void subscribe( final BindingPublisher publisher, final BindingSubscriber<T> subscriber )
+    {
+        final LocatorMetrics m = metrics;
+        if ( NO_METRICS == m )
+        {
+            publisher.subscribe( subscriber );
+        }
+        else
+        {
+            final long start = System.nanoTime();
+            publisher.subscribe( subscriber );
+            m.subscribed( publisher, subscriber.type(), System.nanoTime() - start );
+        }
+    }
+
+    // ----------------------------------------------------------------------
+    // Implementation types
+    // ----------------------------------------------------------------------
+
+    /**
+     * Default {@link LocatorMetrics} that ignores all events.
+     */
+    private static final class NullMetrics
+        implements LocatorMetrics
+    {
+        public void located( final Key<?> key )
+        {
+        }
+
+        public void cachedBindings( final TypeLiteral<?> type, final int cacheSize, final long evictions )
+        {
+        }
+
+        public void subscribed( final BindingPublisher publisher, final TypeLiteral<?> type, final long nanos )
+        {
+        }
+
+        public void iterated( final Key<?> key, final int length )
+        {
+        }
+
+        public void implicitFallback( final Key<?> key, final boolean found )
+        {
+        }
+
+        public void implicitLookup( final TypeLiteral<?> type, final boolean cached )
+        {
+        }
+
+        public void mediated( final Mediator<?, ?, ?> mediator, final long nanos )
+        {
+        }
+    }
+}
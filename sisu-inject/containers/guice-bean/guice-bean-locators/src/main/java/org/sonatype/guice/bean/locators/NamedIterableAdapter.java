@@ -20,7 +20,7 @@ import com.google.inject.name.Named;
  * String mapping {@link Iterable} backed by a {@link Named} mapping {@link Iterable}.
  */
 public final class NamedIterableAdapter<V>
-    implements Iterable<Entry<String, V>>
+    implements StampedIterable<Entry<String, V>>
 {
     // ----------------------------------------------------------------------
     // Implementation fields
@@ -46,6 +46,11 @@ public final class NamedIterableAdapter<V>
         return new NamedIterator<V>( delegate );
     }
 
+    public Object stamp()
+    {
+        return delegate instanceof StampedIterable<?> ? ( (StampedIterable<?>) delegate ).stamp() : null;
+    }
+
     // ----------------------------------------------------------------------
     // Implementation types
     // ----------------------------------------------------------------------
@@ -23,7 +23,7 @@ import org.sonatype.inject.BeanEntry;
  * {@link Iterable} sequence of {@link Provider} entries backed by a sequence of {@link BeanEntry}s.
  */
 public final class ProviderIterableAdapter<K extends Annotation, V>
-    implements Iterable<Entry<K, Provider<V>>>
+    implements StampedIterable<Entry<K, Provider<V>>>
 {
     // ----------------------------------------------------------------------
     // Implementation fields
@@ -49,6 +49,11 @@ public final class ProviderIterableAdapter<K extends Annotation, V>
         return new ProviderIterator<K, V>( delegate );
     }
 
+    public Object stamp()
+    {
+        return delegate instanceof StampedIterable<?> ? ( (StampedIterable<?>) delegate ).stamp() : null;
+    }
+
     // ----------------------------------------------------------------------
     // Implementation types
     // ----------------------------------------------------------------------
@@ -61,16 +61,7 @@ enum QualifyingStrategy
         @Override
         final Annotation qualifies( final Key<?> requirement, final Binding<?> binding )
         {
-            final Class<? extends Annotation> markerType = requirement.getAnnotationType();
-
-            final Annotation qualifier = qualify( binding.getKey() );
-            if ( markerType.isInstance( qualifier ) )
-            {
-                return qualifier;
-            }
-
-            final Class<?> implementation = binding.acceptTargetVisitor( ImplementationVisitor.THIS );
-            return null != implementation ? implementation.getAnnotation( markerType ) : null;
+            return marker( requirement.getAnnotationType(), binding );
         }
     },
     MARKED_WITH_ATTRIBUTES
@@ -139,4 +130,23 @@ enum QualifyingStrategy
         }
         return null != key.getAnnotationType() ? key.getAnnotation() : DEFAULT_QUALIFIER;
     }
+
+    /**
+     * Looks for a {@link Qualifier} of the given marker type on the {@link Binding} key or its implementation.
+     * 
+     * @param markerType The marker type
+     * @param binding The binding to check
+     * @return Marker annotation when the binding is marked; otherwise {@code null}
+     */
+    static final Annotation marker( final Class<? extends Annotation> markerType, final Binding<?> binding )
+    {
+        final Annotation qualifier = qualify( binding.getKey() );
+        if ( markerType.isInstance( qualifier ) )
+        {
+            return qualifier;
+        }
+
+        final Class<?> implementation = binding.acceptTargetVisitor( ImplementationVisitor.THIS );
+        return null != implementation ? implementation.getAnnotation( markerType ) : null;
+    }
 }
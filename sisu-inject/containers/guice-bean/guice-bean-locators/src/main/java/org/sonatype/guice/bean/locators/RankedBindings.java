@@ -12,14 +12,22 @@
 package org.sonatype.guice.bean.locators;
 
 import java.lang.annotation.Annotation;
+import java.util.ArrayList;
 import java.util.Collection;
+import java.util.HashMap;
+import java.util.HashSet;
 import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicInteger;
 
 import org.sonatype.guice.bean.locators.spi.BindingPublisher;
 import org.sonatype.guice.bean.locators.spi.BindingSubscriber;
+import org.sonatype.guice.bean.reflect.TypeParameters;
 import org.sonatype.guice.bean.reflect.Weak;
 
 import com.google.inject.Binding;
+import com.google.inject.Key;
 import com.google.inject.TypeLiteral;
 
 /**
@@ -38,17 +46,39 @@ final class RankedBindings<T>
 
     final transient RankedSequence<BindingPublisher> pendingPublishers;
 
+    final transient Collection<BindingPublisher> subscribedPublishers = new HashSet<BindingPublisher>();
+
     final Collection<BeanCache<?, T>> cachedBeans = Weak.elements();
 
+    final Map<Key<T>, LocatedBeans<?, T>> cachedLocators = Weak.concurrentValues();
+
+    final LocatorInstrumentation instrumentation;
+
     volatile int topRank;
 
+    // bumped after every change to the bindings or publishers, so snapshots can tell when they're stale
+    final AtomicInteger generation = new AtomicInteger();
+
+    // lazily-created indexes of bindings by exact qualifier and by marker type; guarded by bindings
+
+    volatile Map<Annotation, RankedSequence<Binding<T>>> qualifiedBindings;
+
+    volatile Map<Class<? extends Annotation>, RankedSequence<Binding<T>>> markedBindings;
+
     // ----------------------------------------------------------------------
     // Constructors
     // ----------------------------------------------------------------------
 
     RankedBindings( final TypeLiteral<T> type, final RankedSequence<BindingPublisher> publishers )
+    {
+        this( type, publishers, LocatorInstrumentation.DISABLED );
+    }
+
+    RankedBindings( final TypeLiteral<T> type, final RankedSequence<BindingPublisher> publishers,
+                    final LocatorInstrumentation instrumentation )
     {
         this.type = type;
+        this.instrumentation = instrumentation;
         this.pendingPublishers = new RankedSequence<BindingPublisher>( publishers );
         topRank = pendingPublishers.topRank();
     }
@@ -65,12 +95,27 @@ final class RankedBindings<T>
     public void add( final Binding<T> binding, final int rank )
     {
         bindings.insert( binding, rank );
+        if ( null != qualifiedBindings || null != markedBindings )
+        {
+            synchronized ( bindings )
+            {
+                index( binding, rank );
+            }
+        }
+        generation.incrementAndGet();
     }
 
     public void remove( final Binding<T> binding )
     {
         if ( bindings.removeThis( binding ) )
         {
+            if ( null != qualifiedBindings || null != markedBindings )
+            {
+                synchronized ( bindings )
+                {
+                    unindex( binding );
+                }
+            }
             synchronized ( cachedBeans )
             {
                 for ( final BeanCache<?, T> beans : cachedBeans )
@@ -78,6 +123,7 @@ final class RankedBindings<T>
                     beans.remove( binding );
                 }
             }
+            generation.incrementAndGet();
         }
     }
 
@@ -88,13 +134,100 @@ final class RankedBindings<T>
 
     public Itr iterator()
     {
-        return new Itr();
+        return new Itr( bindings );
     }
 
     // ----------------------------------------------------------------------
     // Local methods
     // ----------------------------------------------------------------------
 
+    /**
+     * Iterates over the given {@link #candidates} while still subscribing to {@link BindingPublisher}s on demand.
+     * 
+     * @param candidates The candidate bindings
+     * @return Ranked iterator
+     */
+    Itr iterator( final RankedSequence<Binding<T>> candidates )
+    {
+        return new Itr( candidates );
+    }
+
+    /**
+     * Returns the canonical {@link LocatedBeans} for the given {@link Key}; creates it on demand.
+     * 
+     * @param key The qualified key
+     * @param implicitBindings Source of implicit bindings
+     * @return Canonical located beans
+     */
+    @SuppressWarnings( "unchecked" )
+    <Q extends Annotation> LocatedBeans<Q, T> locate( final Key<T> key, final ImplicitBindings implicitBindings )
+    {
+        LocatedBeans<Q, T> beans = (LocatedBeans<Q, T>) cachedLocators.get( key );
+        if ( null == beans )
+        {
+            synchronized ( cachedLocators )
+            {
+                if ( null == ( beans = (LocatedBeans<Q, T>) cachedLocators.get( key ) ) )
+                {
+                    final boolean isImplicit = key.getAnnotationType() == null && TypeParameters.isImplicit( type );
+                    beans = new LocatedBeans<Q, T>( key, this, isImplicit ? implicitBindings : null );
+                    cachedLocators.put( key, beans );
+                }
+            }
+        }
+        return beans;
+    }
+
+    /**
+     * Returns the ranked sub-sequence of {@link Binding}s that may qualify for the given {@link Key}; exact and marked
+     * qualifiers are served from an index that is created on demand, other lookups see the full sequence.
+     * 
+     * @param key The qualified key
+     * @param strategy The qualifying strategy
+     * @return Ranked candidate bindings
+     */
+    RankedSequence<Binding<T>> candidates( final Key<T> key, final QualifyingStrategy strategy )
+    {
+        if ( QualifyingStrategy.NAMED_WITH_ATTRIBUTES == strategy )
+        {
+            synchronized ( bindings )
+            {
+                if ( null == qualifiedBindings )
+                {
+                    qualifiedBindings = new HashMap<Annotation, RankedSequence<Binding<T>>>();
+                    reindex();
+                }
+                return bucket( qualifiedBindings, key.getAnnotation() );
+            }
+        }
+        if ( QualifyingStrategy.MARKED == strategy || QualifyingStrategy.MARKED_WITH_ATTRIBUTES == strategy )
+        {
+            final Class<? extends Annotation> markerType = key.getAnnotationType();
+            synchronized ( bindings )
+            {
+                if ( null == markedBindings )
+                {
+                    markedBindings = new HashMap<Class<? extends Annotation>, RankedSequence<Binding<T>>>();
+                }
+                RankedSequence<Binding<T>> marked = markedBindings.get( markerType );
+                if ( null == marked )
+                {
+                    markedBindings.put( markerType, marked = new RankedSequence<Binding<T>>() );
+                    for ( final RankedSequence<Binding<T>>.Itr itr = bindings.iterator(); itr.hasNext(); )
+                    {
+                        final Binding<T> binding = itr.next();
+                        if ( null != QualifyingStrategy.marker( markerType, binding ) && !marked.containsThis( binding ) )
+                        {
+                            marked.insert( binding, itr.rank() );
+                        }
+                    }
+                }
+                return marked;
+            }
+        }
+        return bindings;
+    }
+
     <Q extends Annotation> BeanCache<Q, T> newBeanCache()
     {
         final BeanCache<Q, T> beans = new BeanCache<Q, T>();
@@ -108,29 +241,198 @@ final class RankedBindings<T>
     void add( final BindingPublisher publisher, final int rank )
     {
         /*
-         * No need to lock; ranked sequence is thread-safe.
+         * Lock to prevent race condition with subscriptions; adding a known publisher is a no-op.
          */
-        pendingPublishers.insert( publisher, rank );
-        if ( rank > topRank )
+        synchronized ( pendingPublishers )
         {
-            topRank = rank;
+            if ( !subscribedPublishers.contains( publisher ) && !pendingPublishers.contains( publisher ) )
+            {
+                pendingPublishers.insert( publisher, rank );
+                if ( rank > topRank )
+                {
+                    topRank = rank;
+                }
+                generation.incrementAndGet();
+            }
         }
     }
 
     void remove( final BindingPublisher publisher )
     {
         /*
-         * Lock to prevent race condition with subscriptions.
+         * Lock to prevent race condition with subscriptions; removing an unknown publisher is a no-op.
          */
         synchronized ( pendingPublishers )
         {
-            if ( !pendingPublishers.remove( publisher ) )
+            if ( pendingPublishers.remove( publisher ) )
+            {
+                topRank = pendingPublishers.topRank();
+                generation.incrementAndGet();
+            }
+            else if ( subscribedPublishers.remove( publisher ) )
             {
                 publisher.unsubscribe( this );
             }
         }
     }
 
+    void addAll( final Map<BindingPublisher, Integer> rankedPublishers )
+    {
+        synchronized ( pendingPublishers )
+        {
+            final Collection<BindingPublisher> known = new HashSet<BindingPublisher>( subscribedPublishers );
+            for ( final BindingPublisher p : pendingPublishers.snapshot() )
+            {
+                known.add( p );
+            }
+            final Map<BindingPublisher, Integer> added = new LinkedHashMap<BindingPublisher, Integer>();
+            for ( final Map.Entry<BindingPublisher, Integer> e : rankedPublishers.entrySet() )
+            {
+                if ( !known.contains( e.getKey() ) )
+                {
+                    added.put( e.getKey(), e.getValue() );
+                }
+            }
+            if ( !added.isEmpty() )
+            {
+                pendingPublishers.insertAll( added );
+                topRank = pendingPublishers.topRank();
+                generation.incrementAndGet();
+            }
+        }
+    }
+
+    void removeAll( final Collection<BindingPublisher> publishers )
+    {
+        synchronized ( pendingPublishers )
+        {
+            if ( pendingPublishers.removeAll( publishers ) )
+            {
+                topRank = pendingPublishers.topRank();
+                generation.incrementAndGet();
+            }
+            for ( final BindingPublisher p : publishers )
+            {
+                if ( subscribedPublishers.remove( p ) )
+                {
+                    p.unsubscribe( this );
+                }
+            }
+        }
+    }
+
+    /**
+     * Brings the known publishers in line with the given sequence; used when publishers changed during creation.
+     * 
+     * @param publishers The current publishers
+     */
+    void reconcile( final RankedSequence<BindingPublisher> publishers )
+    {
+        synchronized ( pendingPublishers )
+        {
+            for ( final RankedSequence<BindingPublisher>.Itr itr = publishers.iterator(); itr.hasNext(); )
+            {
+                add( itr.next(), itr.rank() );
+            }
+            for ( final BindingPublisher p : pendingPublishers.snapshot() )
+            {
+                if ( !publishers.contains( p ) )
+                {
+                    remove( p );
+                }
+            }
+            for ( final BindingPublisher p : new ArrayList<BindingPublisher>( subscribedPublishers ) )
+            {
+                if ( !publishers.contains( p ) )
+                {
+                    remove( p );
+                }
+            }
+        }
+    }
+
+    // ----------------------------------------------------------------------
+    // Implementation methods
+    // ----------------------------------------------------------------------
+
+    /**
+     * Populates the exact qualifier index from the current sequence; assumes the caller holds the lock.
+     */
+    private void reindex()
+    {
+        for ( final RankedSequence<Binding<T>>.Itr itr = bindings.iterator(); itr.hasNext(); )
+        {
+            final Binding<T> binding = itr.next();
+            final RankedSequence<Binding<T>> qualified =
+                bucket( qualifiedBindings, QualifyingStrategy.qualify( binding.getKey() ) );
+            if ( !qualified.containsThis( binding ) )
+            {
+                qualified.insert( binding, itr.rank() );
+            }
+        }
+    }
+
+    /**
+     * Adds the given binding to any existing indexes; assumes the caller holds the lock.
+     */
+    private void index( final Binding<T> binding, final int rank )
+    {
+        if ( null != qualifiedBindings )
+        {
+            final RankedSequence<Binding<T>> qualified =
+                bucket( qualifiedBindings, QualifyingStrategy.qualify( binding.getKey() ) );
+            if ( !qualified.containsThis( binding ) )
+            {
+                qualified.insert( binding, rank );
+            }
+        }
+        if ( null != markedBindings )
+        {
+            for ( final Map.Entry<Class<? extends Annotation>, RankedSequence<Binding<T>>> e : markedBindings.entrySet() )
+            {
+                final RankedSequence<Binding<T>> marked = e.getValue();
+                if ( null != QualifyingStrategy.marker( e.getKey(), binding ) && !marked.containsThis( binding ) )
+                {
+                    marked.insert( binding, rank );
+                }
+            }
+        }
+    }
+
+    /**
+     * Removes the given binding from any existing indexes; assumes the caller holds the lock.
+     */
+    private void unindex( final Binding<T> binding )
+    {
+        if ( null != qualifiedBindings )
+        {
+            final RankedSequence<Binding<T>> qualified =
+                qualifiedBindings.get( QualifyingStrategy.qualify( binding.getKey() ) );
+            if ( null != qualified )
+            {
+                qualified.removeThis( binding );
+            }
+        }
+        if ( null != markedBindings )
+        {
+            for ( final RankedSequence<Binding<T>> marked : markedBindings.values() )
+            {
+                marked.removeThis( binding );
+            }
+        }
+    }
+
+    private static <K, T> RankedSequence<Binding<T>> bucket( final Map<K, RankedSequence<Binding<T>>> index,
+                                                             final K key )
+    {
+        RankedSequence<Binding<T>> sequence = index.get( key );
+        if ( null == sequence )
+        {
+            index.put( key, sequence = new RankedSequence<Binding<T>>() );
+        }
+        return sequence;
+    }
+
     // ----------------------------------------------------------------------
     // Implementation types
     // ----------------------------------------------------------------------
@@ -145,7 +447,16 @@ final class RankedBindings<T>
         // Implementation fields
         // ----------------------------------------------------------------------
 
-        private final RankedSequence<Binding<T>>.Itr itr = bindings.iterator();
+        private final RankedSequence<Binding<T>>.Itr itr;
+
+        // ----------------------------------------------------------------------
+        // Constructors
+        // ----------------------------------------------------------------------
+
+        Itr( final RankedSequence<Binding<T>> sequence )
+        {
+            itr = sequence.iterator();
+        }
 
         // ----------------------------------------------------------------------
         // Public methods
@@ -161,7 +472,9 @@ final class RankedBindings<T>
                     rank = topRank;
                     while ( rank > Integer.MIN_VALUE && rank > itr.peekNextRank() )
                     {
-                        pendingPublishers.poll().subscribe( RankedBindings.this );
+                        final BindingPublisher publisher = pendingPublishers.poll();
+                        subscribedPublishers.add( publisher );
+                        instrumentation.subscribe( publisher, RankedBindings.this );
                         rank = topRank = pendingPublishers.topRank();
                     }
                 }
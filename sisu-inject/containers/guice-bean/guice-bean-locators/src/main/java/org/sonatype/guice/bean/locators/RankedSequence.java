@@ -12,18 +12,35 @@
 package org.sonatype.guice.bean.locators;
 
 import java.util.Arrays;
+import java.util.Collection;
 import java.util.Collections;
 import java.util.Iterator;
 import java.util.List;
+import java.util.Map;
 import java.util.NoSuchElementException;
 import java.util.concurrent.atomic.AtomicReference;
 
 /**
  * Ordered {@link List} that arranges elements by descending rank; supports concurrent iteration and modification.
+ * <p>
+ * Elements are held in immutable chunks, so each change only copies the affected chunk and the chunk table. Large
+ * sequences also keep a persistent identity index to avoid scanning every element in {@link #removeThis}.
  */
 final class RankedSequence<T>
     implements Iterable<T>
 {
+    // ----------------------------------------------------------------------
+    // Constants
+    // ----------------------------------------------------------------------
+
+    private static final int CHUNK_BITS = 6;
+
+    private static final int CHUNK_SIZE = 1 << CHUNK_BITS;
+
+    private static final int CHUNK_MASK = CHUNK_SIZE - 1;
+
+    private static final int INDEX_THRESHOLD = 2 * CHUNK_SIZE;
+
     // ----------------------------------------------------------------------
     // Implementation fields
     // ----------------------------------------------------------------------
@@ -69,18 +86,51 @@ final class RankedSequence<T>
         while ( !cache.compareAndSet( o, n ) );
     }
 
+    /**
+     * Inserts the given elements into the ordered list in one step, using the assigned ranks as a guide.
+     * <p>
+     * Elements with the same rank are ordered according to the iteration order of the given map.
+     * 
+     * @param rankedElements The elements to insert, mapped to their assigned ranks
+     */
+    public void insertAll( final Map<? extends T, Integer> rankedElements )
+    {
+        final int size = rankedElements.size();
+        if ( size == 0 )
+        {
+            return;
+        }
+
+        final Object[] elements = new Object[size];
+        final int[] ranks = new int[size];
+
+        int i = 0;
+        for ( final Map.Entry<? extends T, Integer> e : rankedElements.entrySet() )
+        {
+            elements[i] = e.getKey();
+            ranks[i++] = e.getValue().intValue();
+        }
+
+        Contents o, n;
+        do
+        {
+            n = ( null != ( o = cache.get() ) ? o : Contents.EMPTY ).insertAll( elements, ranks );
+        }
+        while ( !cache.compareAndSet( o, n ) );
+    }
+
     @SuppressWarnings( "unchecked" )
     public T poll()
     {
         final Contents contents = cache.get();
         cache.set( contents.remove( 0 ) );
-        return (T) contents.objs[0];
+        return (T) contents.chunks[0].objs[0];
     }
 
     public int topRank()
     {
         final Contents contents = cache.get();
-        return null != contents ? uid2rank( contents.uids[0] ) : Integer.MIN_VALUE;
+        return null != contents ? uid2rank( contents.chunks[0].uids[0] ) : Integer.MIN_VALUE;
     }
 
     public boolean contains( final Object element )
@@ -112,6 +162,27 @@ final class RankedSequence<T>
         return true;
     }
 
+    /**
+     * Removes all elements that are equal to members of the given collection in one step.
+     * 
+     * @param elements The elements to remove
+     * @return {@code true} if any elements were removed; otherwise {@code false}
+     */
+    public boolean removeAll( final Collection<?> elements )
+    {
+        Contents o, n;
+        do
+        {
+            if ( null == ( o = cache.get() ) || ( n = o.removeAll( elements ) ) == o )
+            {
+                return false;
+            }
+        }
+        while ( !cache.compareAndSet( o, n ) );
+
+        return true;
+    }
+
     public boolean removeThis( final T element )
     {
         Contents o, n;
@@ -133,7 +204,7 @@ final class RankedSequence<T>
     public Iterable<T> snapshot()
     {
         final Contents contents = cache.get();
-        return null != contents ? (List) Arrays.asList( contents.objs ) : Collections.EMPTY_SET;
+        return null != contents ? (Iterable) contents : Collections.EMPTY_SET;
     }
 
     public void clear()
@@ -149,7 +220,7 @@ final class RankedSequence<T>
     public int size()
     {
         final Contents contents = cache.get();
-        return null != contents ? contents.objs.length : 0;
+        return null != contents ? contents.size : 0;
     }
 
     public Itr iterator()
@@ -220,11 +291,32 @@ final class RankedSequence<T>
         return min;
     }
 
+    /**
+     * Replaces a range of chunks with the given chunks, returning a new table.
+     * 
+     * @param chunks The chunk table
+     * @param from The first chunk to replace
+     * @param to The chunk after the last one to replace
+     * @param with The replacement chunks
+     * @return Updated chunk table
+     */
+    private static Chunk[] replace( final Chunk[] chunks, final int from, final int to, final Chunk... with )
+    {
+        final Chunk[] newChunks = new Chunk[chunks.length - ( to - from ) + with.length];
+        System.arraycopy( chunks, 0, newChunks, 0, from );
+        System.arraycopy( with, 0, newChunks, from, with.length );
+        System.arraycopy( chunks, to, newChunks, from + with.length, chunks.length - to );
+        return newChunks;
+    }
+
     // ----------------------------------------------------------------------
     // Implementation types
     // ----------------------------------------------------------------------
 
-    private static final class Contents
+    /**
+     * Immutable run of elements with their UIDs; also used as a bucket in the {@link IdentityIndex}.
+     */
+    private static final class Chunk
     {
         // ----------------------------------------------------------------------
         // Implementation fields
@@ -234,24 +326,251 @@ final class RankedSequence<T>
 
         final long[] uids;
 
-        final int uniq;
-
         // ----------------------------------------------------------------------
         // Constructors
         // ----------------------------------------------------------------------
 
-        Contents( final Object element, final int rank )
+        Chunk( final Object element, final long uid )
         {
             objs = new Object[] { element };
-            uids = new long[] { rank2uid( rank, 0 ) };
-            uniq = 1;
+            uids = new long[] { uid };
         }
 
-        Contents( final Object[] objs, final long[] uids, final int uniq )
+        Chunk( final Object[] objs, final long[] uids )
         {
             this.objs = objs;
             this.uids = uids;
+        }
+
+        Chunk( final Object[] objs, final long[] uids, final int from, final int to )
+        {
+            this.objs = new Object[to - from];
+            this.uids = new long[to - from];
+
+            System.arraycopy( objs, from, this.objs, 0, to - from );
+            System.arraycopy( uids, from, this.uids, 0, to - from );
+        }
+
+        // ----------------------------------------------------------------------
+        // Public methods
+        // ----------------------------------------------------------------------
+
+        public Chunk insert( final int index, final Object element, final long uid )
+        {
+            final int size = objs.length + 1;
+
+            final Object[] newObjs = new Object[size];
+            final long[] newUIDs = new long[size];
+
+            System.arraycopy( objs, 0, newObjs, 0, index );
+            System.arraycopy( uids, 0, newUIDs, 0, index );
+
+            newObjs[index] = element;
+            newUIDs[index] = uid;
+
+            System.arraycopy( objs, index, newObjs, index + 1, size - index - 1 );
+            System.arraycopy( uids, index, newUIDs, index + 1, size - index - 1 );
+
+            return new Chunk( newObjs, newUIDs );
+        }
+
+        public Chunk remove( final int index )
+        {
+            final int size = objs.length - 1;
+
+            final Object[] newObjs = new Object[size];
+            final long[] newUIDs = new long[size];
+
+            System.arraycopy( objs, 0, newObjs, 0, index );
+            System.arraycopy( uids, 0, newUIDs, 0, index );
+
+            System.arraycopy( objs, index + 1, newObjs, index, size - index );
+            System.arraycopy( uids, index + 1, newUIDs, index, size - index );
+
+            return new Chunk( newObjs, newUIDs );
+        }
+
+        public Chunk concat( final Chunk next )
+        {
+            final int size = objs.length + next.objs.length;
+
+            final Object[] newObjs = new Object[size];
+            final long[] newUIDs = new long[size];
+
+            System.arraycopy( objs, 0, newObjs, 0, objs.length );
+            System.arraycopy( uids, 0, newUIDs, 0, objs.length );
+
+            System.arraycopy( next.objs, 0, newObjs, objs.length, next.objs.length );
+            System.arraycopy( next.uids, 0, newUIDs, objs.length, next.objs.length );
+
+            return new Chunk( newObjs, newUIDs );
+        }
+    }
+
+    /**
+     * Persistent identity index from elements to their UIDs; each update copies one path through a two-level table.
+     */
+    private static final class IdentityIndex
+    {
+        // ----------------------------------------------------------------------
+        // Constants
+        // ----------------------------------------------------------------------
+
+        private static final int BITS = 5;
+
+        private static final int WIDTH = 1 << BITS;
+
+        private static final int MASK = WIDTH - 1;
+
+        // ----------------------------------------------------------------------
+        // Implementation fields
+        // ----------------------------------------------------------------------
+
+        final Chunk[][] tables;
+
+        // ----------------------------------------------------------------------
+        // Constructors
+        // ----------------------------------------------------------------------
+
+        IdentityIndex( final Chunk[][] tables )
+        {
+            this.tables = tables;
+        }
+
+        // ----------------------------------------------------------------------
+        // Public methods
+        // ----------------------------------------------------------------------
+
+        public static IdentityIndex build( final Chunk[] chunks )
+        {
+            // count first so each bucket is only allocated once
+            final int[] counts = new int[WIDTH * WIDTH];
+            for ( final Chunk chunk : chunks )
+            {
+                for ( final Object o : chunk.objs )
+                {
+                    counts[slot( o )]++;
+                }
+            }
+
+            final Chunk[][] tables = new Chunk[WIDTH][];
+            for ( int s = 0; s < counts.length; s++ )
+            {
+                if ( counts[s] > 0 )
+                {
+                    if ( null == tables[s >>> BITS] )
+                    {
+                        tables[s >>> BITS] = new Chunk[WIDTH];
+                    }
+                    tables[s >>> BITS][s & MASK] = new Chunk( new Object[counts[s]], new long[counts[s]] );
+                }
+            }
+
+            for ( final Chunk chunk : chunks )
+            {
+                for ( int i = 0; i < chunk.objs.length; i++ )
+                {
+                    final int s = slot( chunk.objs[i] );
+                    final Chunk bucket = tables[s >>> BITS][s & MASK];
+                    final int k = --counts[s];
+                    bucket.objs[k] = chunk.objs[i];
+                    bucket.uids[k] = chunk.uids[i];
+                }
+            }
+
+            return new IdentityIndex( tables );
+        }
+
+        public Chunk bucket( final Object element )
+        {
+            final int s = slot( element );
+            final Chunk[] table = tables[s >>> BITS];
+            return null != table ? table[s & MASK] : null;
+        }
+
+        public IdentityIndex put( final Object element, final long uid )
+        {
+            final Chunk bucket = bucket( element );
+            if ( null == bucket )
+            {
+                return with( slot( element ), new Chunk( element, uid ) );
+            }
+            return with( slot( element ), bucket.insert( bucket.objs.length, element, uid ) );
+        }
+
+        public IdentityIndex remove( final Object element, final long uid )
+        {
+            final Chunk bucket = bucket( element );
+            for ( int k = 0; null != bucket && k < bucket.objs.length; k++ )
+            {
+                if ( element == bucket.objs[k] && uid == bucket.uids[k] )
+                {
+                    return with( slot( element ), bucket.objs.length > 1 ? bucket.remove( k ) : null );
+                }
+            }
+            return this;
+        }
+
+        // ----------------------------------------------------------------------
+        // Implementation methods
+        // ----------------------------------------------------------------------
+
+        private static int slot( final Object element )
+        {
+            final int h = System.identityHashCode( element );
+            return ( h ^ h >>> 16 ) & ( WIDTH * WIDTH - 1 );
+        }
+
+        private IdentityIndex with( final int s, final Chunk bucket )
+        {
+            final Chunk[][] newTables = tables.clone();
+            final Chunk[] table = tables[s >>> BITS];
+            final Chunk[] newTable = null != table ? table.clone() : new Chunk[WIDTH];
+            newTable[s & MASK] = bucket;
+            newTables[s >>> BITS] = newTable;
+            return new IdentityIndex( newTables );
+        }
+    }
+
+    /**
+     * Immutable table of chunks, ordered by UID; an element's index packs its chunk and its offset in that chunk.
+     */
+    private static final class Contents
+        implements Iterable<Object>
+    {
+        // ----------------------------------------------------------------------
+        // Constants
+        // ----------------------------------------------------------------------
+
+        static final Contents EMPTY = new Contents( new Chunk[0], 0, 0, null );
+
+        // ----------------------------------------------------------------------
+        // Implementation fields
+        // ----------------------------------------------------------------------
+
+        final Chunk[] chunks;
+
+        final int size;
+
+        final int uniq;
+
+        final IdentityIndex index;
+
+        // ----------------------------------------------------------------------
+        // Constructors
+        // ----------------------------------------------------------------------
+
+        Contents( final Object element, final int rank )
+        {
+            this( new Chunk[] { new Chunk( element, rank2uid( rank, 0 ) ) }, 1, 1, null );
+        }
+
+        Contents( final Chunk[] chunks, final int size, final int uniq, final IdentityIndex index )
+        {
+            this.chunks = chunks;
+            this.size = size;
             this.uniq = uniq;
+            this.index = index;
         }
 
         // ----------------------------------------------------------------------
@@ -260,11 +579,15 @@ final class RankedSequence<T>
 
         public int indexOf( final Object element )
         {
-            for ( int i = 0; i < objs.length; i++ )
+            for ( int c = 0; c < chunks.length; c++ )
             {
-                if ( element.equals( objs[i] ) )
+                final Object[] objs = chunks[c].objs;
+                for ( int i = 0; i < objs.length; i++ )
                 {
-                    return i;
+                    if ( element.equals( objs[i] ) )
+                    {
+                        return c << CHUNK_BITS | i;
+                    }
                 }
             }
             return -1;
@@ -272,69 +595,281 @@ final class RankedSequence<T>
 
         public int indexOfThis( final Object element )
         {
-            for ( int i = 0; i < objs.length; i++ )
+            if ( null != index )
+            {
+                final Chunk bucket = index.bucket( element );
+                for ( int k = 0; null != bucket && k < bucket.objs.length; k++ )
+                {
+                    if ( element == bucket.objs[k] )
+                    {
+                        final long uid = bucket.uids[k];
+                        final int c = chunkOf( uid );
+                        return c << CHUNK_BITS | Arrays.binarySearch( chunks[c].uids, uid );
+                    }
+                }
+                return -1;
+            }
+            for ( int c = 0; c < chunks.length; c++ )
             {
-                if ( element == objs[i] )
+                final Object[] objs = chunks[c].objs;
+                for ( int i = 0; i < objs.length; i++ )
                 {
-                    return i;
+                    if ( element == objs[i] )
+                    {
+                        return c << CHUNK_BITS | i;
+                    }
                 }
             }
             return -1;
         }
 
+        /**
+         * @return Index of the chunk whose range covers the given UID
+         */
+        public int chunkOf( final long uid )
+        {
+            int min = 0;
+            int max = chunks.length - 1;
+            while ( min < max )
+            {
+                final int m = min + max + 1 >>> 1;
+                if ( chunks[m].uids[0] <= uid )
+                {
+                    min = m;
+                }
+                else
+                {
+                    max = m - 1;
+                }
+            }
+            return min;
+        }
+
         public Contents insert( final Object element, final int rank )
         {
-            final int size = objs.length + 1;
+            final long uid = rank2uid( rank, uniq );
+            final int c = chunkOf( uid );
 
-            final Object[] newObjs = new Object[size];
-            final long[] newUIDs = new long[size];
+            final Chunk chunk = chunks[c].insert( safeBinarySearch( chunks[c].uids, uid ), element, uid );
 
-            final long uid = rank2uid( rank, uniq );
-            final int index = safeBinarySearch( uids, uid );
-            if ( index > 0 )
+            final Chunk[] newChunks;
+            if ( chunk.objs.length <= CHUNK_SIZE )
             {
-                System.arraycopy( objs, 0, newObjs, 0, index );
-                System.arraycopy( uids, 0, newUIDs, 0, index );
+                newChunks = replace( chunks, c, c + 1, chunk );
+            }
+            else
+            {
+                final int half = chunk.objs.length >>> 1;
+                newChunks = replace( chunks, c, c + 1, new Chunk( chunk.objs, chunk.uids, 0, half ),
+                                     new Chunk( chunk.objs, chunk.uids, half, chunk.objs.length ) );
             }
 
-            newObjs[index] = element;
-            newUIDs[index] = uid;
+            final int newSize = size + 1;
+            final IdentityIndex newIndex;
+            if ( null != index )
+            {
+                newIndex = index.put( element, uid );
+            }
+            else
+            {
+                newIndex = newSize > INDEX_THRESHOLD ? IdentityIndex.build( newChunks ) : null;
+            }
+
+            return new Contents( newChunks, newSize, uniq + 1, newIndex );
+        }
+
+        /**
+         * Merges the given ranked elements into a copy of this list; unlike {@link #insert} this rebuilds only once.
+         */
+        public Contents insertAll( final Object[] elements, final int[] ranks )
+        {
+            final int count = elements.length;
 
-            final int destPos = index + 1, len = size - destPos;
-            if ( len > 0 )
+            // the unique counter in each UID lets us recover the original element after sorting
+            final long[] addedUIDs = new long[count];
+            for ( int i = 0; i < count; i++ )
             {
-                System.arraycopy( objs, index, newObjs, destPos, len );
-                System.arraycopy( uids, index, newUIDs, destPos, len );
+                addedUIDs[i] = rank2uid( ranks[i], uniq + i );
             }
+            Arrays.sort( addedUIDs );
 
-            return new Contents( newObjs, newUIDs, uniq + 1 );
+            final int newSize = size + count;
+
+            final Object[] newObjs = new Object[newSize];
+            final long[] newUIDs = new long[newSize];
+
+            for ( int c = 0, i = 0, j = 0, k = 0; k < newSize; k++ )
+            {
+                if ( j >= count || c < chunks.length && chunks[c].uids[i] < addedUIDs[j] )
+                {
+                    newObjs[k] = chunks[c].objs[i];
+                    newUIDs[k] = chunks[c].uids[i];
+                    if ( ++i == chunks[c].objs.length )
+                    {
+                        c++;
+                        i = 0;
+                    }
+                }
+                else
+                {
+                    newObjs[k] = elements[(int) addedUIDs[j] - uniq];
+                    newUIDs[k] = addedUIDs[j++];
+                }
+            }
+
+            return build( newObjs, newUIDs, newSize, uniq + count );
+        }
+
+        /**
+         * @return Copy of this list without the given elements; returns this list if nothing would be removed
+         */
+        public Contents removeAll( final Collection<?> elements )
+        {
+            final Object[] keptObjs = new Object[size];
+            final long[] keptUIDs = new long[size];
+
+            int keptSize = 0;
+            for ( final Chunk chunk : chunks )
+            {
+                for ( int i = 0; i < chunk.objs.length; i++ )
+                {
+                    if ( !elements.contains( chunk.objs[i] ) )
+                    {
+                        keptObjs[keptSize] = chunk.objs[i];
+                        keptUIDs[keptSize++] = chunk.uids[i];
+                    }
+                }
+            }
+
+            return keptSize == size ? this : build( keptObjs, keptUIDs, keptSize, uniq );
         }
 
         public Contents remove( final int index )
         {
-            if ( objs.length == 1 )
+            if ( size == 1 )
             {
                 return null;
             }
 
-            final int size = objs.length - 1;
+            final int c = index >>> CHUNK_BITS;
+            final int i = index & CHUNK_MASK;
 
-            final Object[] newObjs = new Object[size];
-            final long[] newUIDs = new long[size];
+            final Chunk chunk = chunks[c];
+            final Chunk[] newChunks;
+            if ( chunk.objs.length == 1 )
+            {
+                newChunks = replace( chunks, c, c + 1 );
+            }
+            else
+            {
+                final Chunk shrunk = chunk.remove( i );
+
+                // merge sparse neighbours to stop the table fragmenting
+                final int n = c + 1 < chunks.length ? c + 1 : c - 1;
+                if ( n >= 0 && shrunk.objs.length + chunks[n].objs.length <= CHUNK_SIZE / 2 )
+                {
+                    newChunks = n > c ? replace( chunks, c, n + 1, shrunk.concat( chunks[n] ) ) //
+                                    : replace( chunks, n, c + 1, chunks[n].concat( shrunk ) );
+                }
+                else
+                {
+                    newChunks = replace( chunks, c, c + 1, shrunk );
+                }
+            }
+
+            final int newSize = size - 1;
+            final IdentityIndex newIndex;
+            if ( null != this.index && newSize > INDEX_THRESHOLD / 2 )
+            {
+                newIndex = this.index.remove( chunk.objs[i], chunk.uids[i] );
+            }
+            else
+            {
+                newIndex = null;
+            }
+
+            return new Contents( newChunks, newSize, uniq, newIndex );
+        }
+
+        public Iterator<Object> iterator()
+        {
+            return new SnapshotItr( chunks );
+        }
+
+        // ----------------------------------------------------------------------
+        // Implementation methods
+        // ----------------------------------------------------------------------
 
-            if ( index > 0 )
+        private static Contents build( final Object[] objs, final long[] uids, final int size, final int uniq )
+        {
+            if ( size == 0 )
             {
-                System.arraycopy( objs, 0, newObjs, 0, index );
-                System.arraycopy( uids, 0, newUIDs, 0, index );
+                return null;
             }
-            final int srcPos = index + 1, len = size - index;
-            if ( len > 0 )
+
+            final Chunk[] chunks = new Chunk[size + CHUNK_MASK >>> CHUNK_BITS];
+            for ( int c = 0, from = 0; c < chunks.length; c++, from += CHUNK_SIZE )
+            {
+                chunks[c] = new Chunk( objs, uids, from, Math.min( from + CHUNK_SIZE, size ) );
+            }
+
+            return new Contents( chunks, size, uniq, size > INDEX_THRESHOLD ? IdentityIndex.build( chunks ) : null );
+        }
+    }
+
+    /**
+     * Simple {@link Iterator} over a fixed table of chunks.
+     */
+    private static final class SnapshotItr
+        implements Iterator<Object>
+    {
+        // ----------------------------------------------------------------------
+        // Implementation fields
+        // ----------------------------------------------------------------------
+
+        private final Chunk[] chunks;
+
+        private int c;
+
+        private int i;
+
+        // ----------------------------------------------------------------------
+        // Constructors
+        // ----------------------------------------------------------------------
+
+        SnapshotItr( final Chunk[] chunks )
+        {
+            this.chunks = chunks;
+        }
+
+        // ----------------------------------------------------------------------
+        // Public methods
+        // ----------------------------------------------------------------------
+
+        public boolean hasNext()
+        {
+            return c < chunks.length;
+        }
+
+        public Object next()
+        {
+            if ( c < chunks.length )
             {
-                System.arraycopy( objs, srcPos, newObjs, index, len );
-                System.arraycopy( uids, srcPos, newUIDs, index, len );
+                final Object[] objs = chunks[c].objs;
+                final Object element = objs[i];
+                if ( ++i == objs.length )
+                {
+                    c++;
+                    i = 0;
+                }
+                return element;
             }
+            throw new NoSuchElementException();
+        }
 
-            return new Contents( newObjs, newUIDs, uniq );
+        public void remove()
+        {
+            throw new UnsupportedOperationException();
         }
     }
 
@@ -354,7 +889,9 @@ final class RankedSequence<T>
 
         private long nextUID = Long.MIN_VALUE;
 
-        private int index = -1;
+        private int chunkIndex;
+
+        private int index;
 
         // ----------------------------------------------------------------------
         // Public methods
@@ -367,16 +904,11 @@ final class RankedSequence<T>
             {
                 return true;
             }
-            final Contents newContents = cache.get();
-            if ( contents != newContents )
+            if ( sync() )
             {
-                index = null != newContents ? safeBinarySearch( newContents.uids, nextUID ) : -1;
-                contents = newContents;
-            }
-            if ( index >= 0 && index < contents.objs.length )
-            {
-                nextObj = (T) contents.objs[index];
-                nextUID = contents.uids[index];
+                final Chunk chunk = contents.chunks[chunkIndex];
+                nextObj = (T) chunk.objs[index];
+                nextUID = chunk.uids[index];
                 return true;
             }
             return false;
@@ -391,15 +923,9 @@ final class RankedSequence<T>
             {
                 return uid2rank( nextUID );
             }
-            final Contents newContents = cache.get();
-            if ( contents != newContents )
-            {
-                index = null != newContents ? safeBinarySearch( newContents.uids, nextUID ) : -1;
-                contents = newContents;
-            }
-            if ( index >= 0 && index < contents.objs.length )
+            if ( sync() )
             {
-                return uid2rank( contents.uids[index] );
+                return uid2rank( contents.chunks[chunkIndex].uids[index] );
             }
             return Integer.MIN_VALUE;
         }
@@ -409,7 +935,11 @@ final class RankedSequence<T>
             if ( hasNext() )
             {
                 nextUID++; // guarantees progress when re-positioning
-                index++;
+                if ( ++index == contents.chunks[chunkIndex].objs.length )
+                {
+                    chunkIndex++;
+                    index = 0;
+                }
 
                 // populated by hasNext()
                 final T element = nextObj;
@@ -428,5 +958,34 @@ final class RankedSequence<T>
         {
             throw new UnsupportedOperationException();
         }
+
+        // ----------------------------------------------------------------------
+        // Implementation methods
+        // ----------------------------------------------------------------------
+
+        /**
+         * Repositions this iterator if the list has changed since the last call.
+         * 
+         * @return {@code true} if there is an element at the current position; otherwise {@code false}
+         */
+        private boolean sync()
+        {
+            final Contents newContents = cache.get();
+            if ( contents != newContents )
+            {
+                contents = newContents;
+                if ( null != newContents )
+                {
+                    chunkIndex = newContents.chunkOf( nextUID );
+                    final long[] uids = newContents.chunks[chunkIndex].uids;
+                    if ( ( index = safeBinarySearch( uids, nextUID ) ) == uids.length )
+                    {
+                        chunkIndex++;
+                        index = 0;
+                    }
+                }
+            }
+            return null != contents && chunkIndex < contents.chunks.length;
+        }
     }
 }
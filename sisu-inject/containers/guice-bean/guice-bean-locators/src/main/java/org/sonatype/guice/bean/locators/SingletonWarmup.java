@@ -0,0 +1,760 @@
+/*******************************************************************************
+ * Copyright (c) 2010-2011 Sonatype, Inc.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * and Apache License v2.0 which accompanies this distribution.
+ * The Eclipse Public License is available at
+ *   http://www.eclipse.org/legal/epl-v10.html
+ * The Apache License v2.0 is available at
+ *   http://www.apache.org/licenses/LICENSE-2.0.html
+ * You may elect to redistribute this code under either of these licenses.
+ *******************************************************************************/
+package org.sonatype.guice.bean.locators;
+
+import java.lang.management.ManagementFactory;
+import java.lang.reflect.ParameterizedType;
+import java.lang.reflect.Type;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.IdentityHashMap;
+import java.util.LinkedHashMap;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.sonatype.guice.bean.reflect.Logs;
+
+import com.google.inject.Binding;
+import com.google.inject.Injector;
+import com.google.inject.Key;
+import com.google.inject.Provider;
+import com.google.inject.Scopes;
+import com.google.inject.spi.Dependency;
+import com.google.inject.spi.HasDependencies;
+import com.google.inject.spi.InstanceBinding;
+import com.google.inject.spi.ProviderInstanceBinding;
+
+/**
+ * Instantiates the singletons published to a {@link BeanLocator} ahead of their first use. Singletons are ordered by
+ * the dependencies their bindings declare; independent singletons are created concurrently on a bounded pool while
+ * members of a dependency cycle are created together on the same thread.
+ * <p>
+ * Only singletons whose dependencies are fully declared are created concurrently. Singletons that may look up other
+ * beans (because they depend on the {@link Injector}, a {@link BeanLocator} or a Plexus container), provider instance
+ * bindings, bindings with dependencies that are only resolved on demand, and every singleton of a Plexus injector are
+ * created afterwards on the calling thread, along with anything that depends on them. Should two workers deadlock all
+ * the same, the affected singletons are reported and the warm-up stops.
+ */
+public final class SingletonWarmup
+{
+    // ----------------------------------------------------------------------
+    // Constants
+    // ----------------------------------------------------------------------
+
+    private static final long DEFAULT_CHECK_MILLIS = 1000;
+
+    private static final int SLOWEST_COUNT = 10;
+
+    private static final String PLEXUS_CONTAINER = "org.codehaus.plexus.PlexusContainer";
+
+    private static final String PLEXUS_BEAN_LOCATOR = "org.sonatype.guice.plexus.locators.PlexusBeanLocator";
+
+    // ----------------------------------------------------------------------
+    // Implementation fields
+    // ----------------------------------------------------------------------
+
+    private final int parallelism;
+
+    private final long checkMillis;
+
+    // ----------------------------------------------------------------------
+    // Constructors
+    // ----------------------------------------------------------------------
+
+    /**
+     * @param parallelism The maximum number of singletons to create at the same time
+     */
+    public SingletonWarmup( final int parallelism )
+    {
+        this( parallelism, DEFAULT_CHECK_MILLIS );
+    }
+
+    SingletonWarmup( final int parallelism, final long checkMillis )
+    {
+        if ( parallelism < 1 )
+        {
+            throw new IllegalArgumentException( "Parallelism must be positive: " + parallelism );
+        }
+        this.parallelism = parallelism;
+        this.checkMillis = checkMillis;
+    }
+
+    // ----------------------------------------------------------------------
+    // Public methods
+    // ----------------------------------------------------------------------
+
+    /**
+     * Instantiates the singletons bound in the injectors currently published to the given locator.
+     * 
+     * @param locator The bean locator
+     * @return Warm-up report
+     */
+    public Report warmUp( final BeanLocator locator )
+    {
+        if ( locator instanceof DefaultBeanLocator )
+        {
+            return warmUp( ( (DefaultBeanLocator) locator ).injectors() );
+        }
+        return warmUp( Collections.<Injector> emptyList() );
+    }
+
+    /**
+     * Instantiates the singletons bound in the given injectors.
+     * 
+     * @param injectors The injectors
+     * @return Warm-up report
+     */
+    public Report warmUp( final Iterable<Injector> injectors )
+    {
+        final List<Node> nodes = new ArrayList<Node>();
+        final List<Task> tasks = plan( injectors, nodes );
+        final Report report = new Execution( tasks ).run( nodes );
+        if ( !report.deadlocked.isEmpty() )
+        {
+            Logs.warn( "Singleton warm-up deadlocked on: {}", report.deadlocked, null );
+        }
+        for ( final Map.Entry<Key<?>, Throwable> e : report.failures.entrySet() )
+        {
+            Logs.warn( "Singleton warm-up failed for: {}", e.getKey(), e.getValue() );
+        }
+        Logs.debug( "{}", report, null );
+        return report;
+    }
+
+    // ----------------------------------------------------------------------
+    // Implementation methods
+    // ----------------------------------------------------------------------
+
+    /**
+     * Builds the dependency graph of singletons and groups it into tasks, one per strongly-connected component.
+     * 
+     * @return Tasks listed before their dependents
+     */
+    private static List<Task> plan( final Iterable<Injector> injectors, final List<Node> nodes )
+    {
+        final Map<Binding<?>, Node> nodeMap = new IdentityHashMap<Binding<?>, Node>();
+        for ( final Injector injector : injectors )
+        {
+            // Plexus requirements are injected behind Guice's back, so their dependencies are unknown
+            final boolean plexus = isPlexusInjector( injector );
+            for ( final Binding<?> binding : injector.getAllBindings().values() )
+            {
+                if ( isWarmable( binding ) && !nodeMap.containsKey( binding ) )
+                {
+                    final Node node = new Node( injector, binding );
+                    node.sequential = plexus || binding instanceof ProviderInstanceBinding<?>;
+                    nodeMap.put( binding, node );
+                    nodes.add( node );
+                }
+            }
+        }
+        for ( final Node node : nodes )
+        {
+            collectDependencies( node, node.binding, nodeMap, new IdentityHashMap<Binding<?>, Boolean>() );
+        }
+        final List<Task> tasks = new ArrayList<Task>();
+        final LinkedList<Node> stack = new LinkedList<Node>();
+        final int[] counter = new int[1];
+        for ( final Node node : nodes )
+        {
+            if ( node.index < 0 )
+            {
+                strongConnect( node, stack, counter, tasks );
+            }
+        }
+        for ( final Task task : tasks )
+        {
+            final Map<Task, Boolean> seen = new IdentityHashMap<Task, Boolean>();
+            for ( final Node node : task.nodes )
+            {
+                task.sequential |= node.sequential;
+                for ( final Node dependency : node.dependencies )
+                {
+                    final Task prerequisite = dependency.task;
+                    if ( prerequisite != task && null == seen.put( prerequisite, Boolean.TRUE ) )
+                    {
+                        prerequisite.dependents.add( task );
+                        task.pending.incrementAndGet();
+                        task.sequential |= prerequisite.sequential; // prerequisites are always listed first
+                    }
+                }
+            }
+            for ( final Node node : task.nodes )
+            {
+                node.sequential = task.sequential;
+            }
+        }
+        return tasks;
+    }
+
+    private static boolean isWarmable( final Binding<?> binding )
+    {
+        return !( binding instanceof InstanceBinding<?> ) && Scopes.isSingleton( binding );
+    }
+
+    private static boolean isPlexusInjector( final Injector injector )
+    {
+        for ( final Key<?> key : injector.getBindings().keySet() )
+        {
+            if ( PLEXUS_CONTAINER.equals( key.getTypeLiteral().getRawType().getName() ) )
+            {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * @return {@code true} if the given type can be used to look up arbitrary beans; otherwise {@code false}
+     */
+    private static boolean isContainer( final Class<?> clazz )
+    {
+        if ( Injector.class == clazz || BeanLocator.class.isAssignableFrom( clazz ) )
+        {
+            return true;
+        }
+        for ( Class<?> c = clazz; null != c; c = c.getSuperclass() )
+        {
+            if ( isPlexusContainer( c ) )
+            {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private static boolean isPlexusContainer( final Class<?> clazz )
+    {
+        final String name = clazz.getName();
+        if ( PLEXUS_CONTAINER.equals( name ) || PLEXUS_BEAN_LOCATOR.equals( name ) )
+        {
+            return true;
+        }
+        for ( final Class<?> api : clazz.getInterfaces() )
+        {
+            if ( isPlexusContainer( api ) )
+            {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * @return Key of the type supplied by the given provider key; {@code null} if it can't be determined
+     */
+    private static Key<?> providedKey( final Key<?> providerKey )
+    {
+        final Type type = providerKey.getTypeLiteral().getType();
+        if ( !( type instanceof ParameterizedType ) )
+        {
+            return null;
+        }
+        final Type providedType = ( (ParameterizedType) type ).getActualTypeArguments()[0];
+        if ( null != providerKey.getAnnotation() )
+        {
+            return Key.get( providedType, providerKey.getAnnotation() );
+        }
+        if ( null != providerKey.getAnnotationType() )
+        {
+            return Key.get( providedType, providerKey.getAnnotationType() );
+        }
+        return Key.get( providedType );
+    }
+
+    /**
+     * Records the singletons the given binding depends on; follows non-singleton bindings as they are created inline.
+     * Marks the node as sequential when any of its dependencies can't be fully accounted for.
+     */
+    private static void collectDependencies( final Node node, final Binding<?> binding,
+                                             final Map<Binding<?>, Node> nodeMap,
+                                             final Map<Binding<?>, Boolean> visited )
+    {
+        if ( binding instanceof HasDependencies )
+        {
+            for ( final Dependency<?> dependency : ( (HasDependencies) binding ).getDependencies() )
+            {
+                Key<?> key = dependency.getKey();
+                final Class<?> clazz = key.getTypeLiteral().getRawType();
+                if ( Provider.class == clazz || javax.inject.Provider.class == clazz )
+                {
+                    // providers defer creation, but it may still happen while the dependent is being created
+                    key = providedKey( key );
+                    if ( null == key )
+                    {
+                        node.sequential = true;
+                        continue;
+                    }
+                }
+                if ( isContainer( key.getTypeLiteral().getRawType() ) )
+                {
+                    node.sequential = true; // may look up anything
+                    continue;
+                }
+                final Binding<?> target = existingBinding( node.injector, key );
+                if ( null == target )
+                {
+                    node.sequential = true; // resolved on demand, so its dependencies are unknown
+                }
+                else if ( null == visited.put( target, Boolean.TRUE ) )
+                {
+                    final Node targetNode = nodeMap.get( target );
+                    if ( null == targetNode )
+                    {
+                        collectDependencies( node, target, nodeMap, visited );
+                    }
+                    else if ( targetNode != node )
+                    {
+                        node.dependencies.add( targetNode );
+                    }
+                }
+            }
+        }
+    }
+
+    static void create( final Node node )
+    {
+        final long start = System.nanoTime();
+        try
+        {
+            node.binding.getProvider().get();
+        }
+        catch ( final Throwable e )
+        {
+            node.failure = e;
+        }
+        node.nanos = System.nanoTime() - start;
+    }
+
+    private static Binding<?> existingBinding( final Injector injector, final Key<?> key )
+    {
+        try
+        {
+            return injector.getExistingBinding( key );
+        }
+        catch ( final RuntimeException e )
+        {
+            return null; // will be resolved on demand
+        }
+    }
+
+    /**
+     * Tarjan's algorithm; completes each strongly-connected component after the components it depends on.
+     */
+    private static void strongConnect( final Node node, final LinkedList<Node> stack, final int[] counter,
+                                       final List<Task> tasks )
+    {
+        node.index = node.lowLink = counter[0]++;
+        stack.addFirst( node );
+        node.onStack = true;
+        for ( final Node dependency : node.dependencies )
+        {
+            if ( dependency.index < 0 )
+            {
+                strongConnect( dependency, stack, counter, tasks );
+                node.lowLink = Math.min( node.lowLink, dependency.lowLink );
+            }
+            else if ( dependency.onStack )
+            {
+                node.lowLink = Math.min( node.lowLink, dependency.index );
+            }
+        }
+        if ( node.lowLink == node.index )
+        {
+            final Task task = new Task();
+            Node member;
+            do
+            {
+                member = stack.removeFirst();
+                member.onStack = false;
+                member.task = task;
+                task.nodes.add( 0, member );
+            }
+            while ( member != node );
+            tasks.add( task );
+        }
+    }
+
+    // ----------------------------------------------------------------------
+    // Implementation types
+    // ----------------------------------------------------------------------
+
+    /**
+     * Singleton binding in the dependency graph.
+     */
+    private static final class Node
+    {
+        final Injector injector;
+
+        final Binding<?> binding;
+
+        final List<Node> dependencies = new ArrayList<Node>();
+
+        int index = -1;
+
+        int lowLink;
+
+        boolean onStack;
+
+        boolean sequential;
+
+        Task task;
+
+        volatile long nanos = -1;
+
+        volatile Throwable failure;
+
+        Node( final Injector injector, final Binding<?> binding )
+        {
+            this.injector = injector;
+            this.binding = binding;
+        }
+    }
+
+    /**
+     * Group of singletons that must be created together on the same thread.
+     */
+    private static final class Task
+    {
+        final List<Node> nodes = new ArrayList<Node>();
+
+        final List<Task> dependents = new ArrayList<Task>();
+
+        final AtomicInteger pending = new AtomicInteger();
+
+        boolean sequential;
+    }
+
+    /**
+     * Runs the concurrent tasks on a bounded pool, watching for workers that deadlock, then the sequential tasks on the
+     * calling thread.
+     */
+    private final class Execution
+        implements ThreadFactory
+    {
+        private final List<Task> tasks;
+
+        private final ThreadPoolExecutor executor;
+
+        private final Map<Thread, Node> working = new ConcurrentHashMap<Thread, Node>();
+
+        private final AtomicInteger threadCount = new AtomicInteger();
+
+        private int remaining;
+
+        private int completed;
+
+        Execution( final List<Task> tasks )
+        {
+            this.tasks = tasks;
+
+            executor = new ThreadPoolExecutor( parallelism, parallelism, 0, TimeUnit.MILLISECONDS,
+                                               new LinkedBlockingQueue<Runnable>(), this );
+        }
+
+        public Thread newThread( final Runnable runnable )
+        {
+            final Thread thread = new Thread( runnable, "sisu-warmup-" + threadCount.incrementAndGet() );
+            thread.setDaemon( true );
+            return thread;
+        }
+
+        Report run( final List<Node> nodes )
+        {
+            final long start = System.nanoTime();
+            final List<Key<?>> deadlocked = new ArrayList<Key<?>>();
+            boolean finished = false;
+            try
+            {
+                for ( final Task task : tasks )
+                {
+                    if ( !task.sequential )
+                    {
+                        remaining++;
+                    }
+                }
+                for ( final Task task : tasks )
+                {
+                    if ( !task.sequential && task.pending.get() == 0 )
+                    {
+                        submit( task );
+                    }
+                }
+                await( deadlocked );
+                finished = deadlocked.isEmpty();
+            }
+            catch ( final InterruptedException e )
+            {
+                Thread.currentThread().interrupt();
+            }
+            finally
+            {
+                executor.shutdownNow(); // running workers finish their current singleton
+            }
+            if ( finished )
+            {
+                for ( final Task task : tasks )
+                {
+                    if ( task.sequential )
+                    {
+                        for ( final Node node : task.nodes )
+                        {
+                            create( node );
+                        }
+                    }
+                }
+            }
+            return new Report( nodes, parallelism, System.nanoTime() - start, deadlocked );
+        }
+
+        private synchronized void await( final List<Key<?>> deadlocked )
+            throws InterruptedException
+        {
+            while ( remaining > 0 )
+            {
+                final int progress = completed;
+                wait( checkMillis );
+                if ( remaining > 0 && progress == completed && findDeadlocks( deadlocked ) )
+                {
+                    return;
+                }
+            }
+        }
+
+        private boolean findDeadlocks( final List<Key<?>> deadlocked )
+        {
+            final long[] ids = ManagementFactory.getThreadMXBean().findMonitorDeadlockedThreads();
+            if ( null != ids )
+            {
+                for ( final Map.Entry<Thread, Node> e : working.entrySet() )
+                {
+                    for ( final long id : ids )
+                    {
+                        if ( e.getKey().getId() == id )
+                        {
+                            deadlocked.add( e.getValue().binding.getKey() );
+                        }
+                    }
+                }
+            }
+            return !deadlocked.isEmpty();
+        }
+
+        void submit( final Task task )
+        {
+            try
+            {
+                executor.execute( new Runnable()
+                {
+                    public void run()
+                    {
+                        execute( task );
+                    }
+                } );
+            }
+            catch ( final RejectedExecutionException e ) // NOPMD
+            {
+                // warm-up was abandoned
+            }
+        }
+
+        void execute( final Task task )
+        {
+            final Thread self = Thread.currentThread();
+            for ( final Node node : task.nodes )
+            {
+                working.put( self, node );
+                create( node );
+                working.remove( self );
+            }
+            for ( final Task dependent : task.dependents )
+            {
+                if ( !dependent.sequential && dependent.pending.decrementAndGet() == 0 )
+                {
+                    submit( dependent );
+                }
+            }
+            synchronized ( this )
+            {
+                remaining--;
+                completed++;
+                notifyAll();
+            }
+        }
+    }
+
+    /**
+     * Summary of a singleton warm-up.
+     */
+    public static final class Report
+    {
+        final int parallelism;
+
+        final int beanCount;
+
+        final int warmedCount;
+
+        final int sequentialCount;
+
+        final long elapsedNanos;
+
+        final long totalNanos;
+
+        final Map<Key<?>, Throwable> failures = new LinkedHashMap<Key<?>, Throwable>();
+
+        final List<Key<?>> deadlocked;
+
+        final List<String> slowest = new ArrayList<String>();
+
+        Report( final List<Node> nodes, final int parallelism, final long elapsedNanos, final List<Key<?>> deadlocked )
+        {
+            this.parallelism = parallelism;
+            this.elapsedNanos = elapsedNanos;
+            this.deadlocked = Collections.unmodifiableList( deadlocked );
+
+            final List<Node> warmed = new ArrayList<Node>();
+            long total = 0;
+            int sequential = 0;
+            for ( final Node node : nodes )
+            {
+                if ( node.sequential )
+                {
+                    sequential++;
+                }
+                final long nanos = node.nanos;
+                if ( nanos >= 0 )
+                {
+                    warmed.add( node );
+                    total += nanos;
+                    final Throwable failure = node.failure;
+                    if ( null != failure )
+                    {
+                        failures.put( node.binding.getKey(), failure );
+                    }
+                }
+            }
+            beanCount = nodes.size();
+            warmedCount = warmed.size();
+            sequentialCount = sequential;
+            totalNanos = total;
+
+            Collections.sort( warmed, new Comparator<Node>()
+            {
+                public int compare( final Node lhs, final Node rhs )
+                {
+                    return lhs.nanos > rhs.nanos ? -1 : lhs.nanos < rhs.nanos ? 1 : 0;
+                }
+            } );
+            for ( int i = 0, size = Math.min( warmed.size(), SLOWEST_COUNT ); i < size; i++ )
+            {
+                final Node node = warmed.get( i );
+                slowest.add( TimeUnit.NANOSECONDS.toMillis( node.nanos ) + "ms " + node.binding.getKey() );
+            }
+        }
+
+        /**
+         * @return Number of singletons found
+         */
+        public int getBeanCount()
+        {
+            return beanCount;
+        }
+
+        /**
+         * @return Number of singletons that were created, including those that failed
+         */
+        public int getWarmedCount()
+        {
+            return warmedCount;
+        }
+
+        /**
+         * @return Number of singletons that had to be created on the calling thread
+         */
+        public int getSequentialCount()
+        {
+            return sequentialCount;
+        }
+
+        /**
+         * @return Wall-clock time taken by the warm-up
+         */
+        public long getElapsedMillis()
+        {
+            return TimeUnit.NANOSECONDS.toMillis( elapsedNanos );
+        }
+
+        /**
+         * @return Sum of the time taken to create each singleton
+         */
+        public long getTotalMillis()
+        {
+            return TimeUnit.NANOSECONDS.toMillis( totalNanos );
+        }
+
+        /**
+         * @return Singletons that failed to be created, with their errors
+         */
+        public Map<Key<?>, Throwable> getFailures()
+        {
+            return Collections.unmodifiableMap( failures );
+        }
+
+        /**
+         * @return Singletons whose creation deadlocked; empty if no deadlock was detected
+         */
+        public List<Key<?>> getDeadlocked()
+        {
+            return deadlocked;
+        }
+
+        /**
+         * @return Timings of the slowest singletons, slowest first
+         */
+        public List<String> getSlowest()
+        {
+            return Collections.unmodifiableList( slowest );
+        }
+
+        @Override
+        public String toString()
+        {
+            final StringBuilder buf = new StringBuilder();
+            buf.append( "Warmed up " ).append( warmedCount ).append( '/' ).append( beanCount );
+            buf.append( " singletons in " ).append( getElapsedMillis() ).append( "ms using " ).append( parallelism );
+            buf.append( " threads (" ).append( getTotalMillis() ).append( "ms sequential, " );
+            buf.append( sequentialCount ).append( " created on the calling thread)" );
+            if ( !failures.isEmpty() )
+            {
+                buf.append( "\n  failed: " ).append( failures.keySet() );
+            }
+            if ( !deadlocked.isEmpty() )
+            {
+                buf.append( "\n  deadlocked: " ).append( deadlocked );
+            }
+            for ( final String timing : slowest )
+            {
+                buf.append( "\n  " ).append( timing );
+            }
+            return buf.toString();
+        }
+    }
+}
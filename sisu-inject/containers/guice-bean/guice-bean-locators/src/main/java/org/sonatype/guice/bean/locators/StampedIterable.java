@@ -0,0 +1,27 @@
+/*******************************************************************************
+ * Copyright (c) 2010-2011 Sonatype, Inc.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * and Apache License v2.0 which accompanies this distribution.
+ * The Eclipse Public License is available at
+ *   http://www.eclipse.org/legal/epl-v10.html
+ * The Apache License v2.0 is available at
+ *   http://www.apache.org/licenses/LICENSE-2.0.html
+ * You may elect to redistribute this code under either of these licenses.
+ *******************************************************************************/
+package org.sonatype.guice.bean.locators;
+
+/**
+ * {@link Iterable} sequence that can tell when its contents may have changed.
+ */
+public interface StampedIterable<T>
+    extends Iterable<T>
+{
+    /**
+     * Returns a stamp for the current state of the sequence; equal stamps mean the sequence hasn't changed. The stamp
+     * must be taken <b>before</b> iterating, so any change made during iteration results in a different stamp.
+     * 
+     * @return Current stamp; {@code null} if changes can't be tracked
+     */
+    Object stamp();
+}
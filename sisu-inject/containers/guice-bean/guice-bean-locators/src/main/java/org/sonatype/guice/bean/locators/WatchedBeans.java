@@ -14,6 +14,11 @@ package org.sonatype.guice.bean.locators;
 import java.lang.annotation.Annotation;
 import java.lang.ref.Reference;
 import java.lang.ref.WeakReference;
+import java.util.Iterator;
+import java.util.LinkedList;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.atomic.AtomicReference;
 
 import org.sonatype.guice.bean.locators.spi.BindingSubscriber;
 import org.sonatype.guice.bean.reflect.Logs;
@@ -46,14 +51,34 @@ final class WatchedBeans<Q extends Annotation, T, W>
 
     private final Reference<W> watcherRef;
 
+    // shared with the locator; when set notifications are queued and delivered by the executor
+    private final AtomicReference<Executor> executorRef;
+
+    private final LocatorInstrumentation instrumentation;
+
+    // notifications waiting for asynchronous delivery, in FIFO order; also guards the delivering flag
+    private final LinkedList<Notification> pending = new LinkedList<Notification>();
+
+    private final Runnable delivery = new Delivery();
+
+    private boolean delivering;
+
     // ----------------------------------------------------------------------
     // Constructors
     // ----------------------------------------------------------------------
 
     WatchedBeans( final Key<T> key, final Mediator<Q, T, W> mediator, final W watcher )
+    {
+        this( key, mediator, watcher, null, LocatorInstrumentation.DISABLED );
+    }
+
+    WatchedBeans( final Key<T> key, final Mediator<Q, T, W> mediator, final W watcher,
+                  final AtomicReference<Executor> executorRef, final LocatorInstrumentation instrumentation )
     {
         this.key = key;
         this.mediator = mediator;
+        this.executorRef = executorRef;
+        this.instrumentation = instrumentation;
 
         strategy = QualifyingStrategy.selectFor( key );
         watcherRef = new WeakReference<W>( watcher );
@@ -77,50 +102,183 @@ final class WatchedBeans<Q extends Annotation, T, W>
             final W watcher = watcherRef.get();
             if ( null != watcher )
             {
-                final BeanEntry<Q, T> bean = beans.create( qualifier, binding, rank );
-                try
+                notify( beans.create( qualifier, binding, rank ), true );
+            }
+        }
+    }
+
+    public void remove( final Binding<T> binding )
+    {
+        final BeanEntry<Q, T> bean = beans.remove( binding );
+        if ( null != bean )
+        {
+            notify( bean, false );
+        }
+    }
+
+    public Iterable<Binding<T>> bindings()
+    {
+        return beans.bindings();
+    }
+
+    // ----------------------------------------------------------------------
+    // Local methods
+    // ----------------------------------------------------------------------
+
+    /**
+     * Waits until all queued notifications have been delivered to the {@link Mediator}.
+     */
+    void quiesce()
+        throws InterruptedException
+    {
+        synchronized ( pending )
+        {
+            while ( delivering )
+            {
+                pending.wait();
+            }
+        }
+    }
+
+    // ----------------------------------------------------------------------
+    // Implementation methods
+    // ----------------------------------------------------------------------
+
+    /**
+     * Delivers the notification now when running synchronously, otherwise queues it behind earlier notifications;
+     * a queued addition that is removed before it's delivered is dropped and the watcher never sees either event.
+     * 
+     * @param bean The bean entry
+     * @param add {@code true} if the bean was added; otherwise {@code false}
+     */
+    private void notify( final BeanEntry<Q, T> bean, final boolean add )
+    {
+        final Executor executor = null != executorRef ? executorRef.get() : null;
+        synchronized ( pending )
+        {
+            if ( null != executor || delivering )
+            {
+                if ( add || !cancelPendingAdd( bean ) )
                 {
-                    mediator.add( bean, watcher );
+                    pending.add( new Notification( bean, add ) );
                 }
-                catch ( final Throwable e )
+                if ( delivering || pending.isEmpty() )
                 {
-                    Logs.warn( "Problem adding: <> to: " + detail( watcher ), bean, e );
+                    return; // queue will be drained by the current delivery task
                 }
+                delivering = true;
+            }
+        }
+        if ( null == executor )
+        {
+            deliver( bean, add ); // synchronous delivery on the caller's thread
+            return;
+        }
+        try
+        {
+            executor.execute( delivery );
+        }
+        catch ( final RejectedExecutionException e )
+        {
+            delivery.run(); // executor has shut down, so deliver on this thread instead
+        }
+    }
+
+    private boolean cancelPendingAdd( final BeanEntry<Q, T> bean )
+    {
+        for ( final Iterator<Notification> itr = pending.iterator(); itr.hasNext(); )
+        {
+            final Notification n = itr.next();
+            if ( n.bean == bean && n.add )
+            {
+                itr.remove();
+                return true;
             }
         }
+        return false;
     }
 
-    public void remove( final Binding<T> binding )
+    private void deliver( final BeanEntry<Q, T> bean, final boolean add )
     {
-        final BeanEntry<Q, T> bean = beans.remove( binding );
-        if ( null != bean )
+        final W watcher = watcherRef.get();
+        if ( null != watcher )
         {
-            final W watcher = watcherRef.get();
-            if ( null != watcher )
+            final boolean timed = instrumentation.isEnabled();
+            final long start = timed ? System.nanoTime() : 0;
+            try
             {
-                try
+                if ( add )
+                {
+                    mediator.add( bean, watcher );
+                }
+                else
                 {
                     mediator.remove( bean, watcher );
                 }
-                catch ( final Throwable e )
+            }
+            catch ( final Throwable e )
+            {
+                if ( add )
+                {
+                    Logs.warn( "Problem adding: <> to: " + detail( watcher ), bean, e );
+                }
+                else
                 {
                     Logs.warn( "Problem removing: <> from: " + detail( watcher ), bean, e );
                 }
             }
+            if ( timed )
+            {
+                instrumentation.metrics().mediated( mediator, System.nanoTime() - start );
+            }
         }
     }
 
-    public Iterable<Binding<T>> bindings()
+    private String detail( final Object watcher )
     {
-        return beans.bindings();
+        return Logs.identityToString( watcher ) + " via: " + Logs.identityToString( mediator );
     }
 
     // ----------------------------------------------------------------------
-    // Implementation methods
+    // Implementation types
     // ----------------------------------------------------------------------
 
-    private String detail( final Object watcher )
+    private final class Notification
     {
-        return Logs.identityToString( watcher ) + " via: " + Logs.identityToString( mediator );
+        final BeanEntry<Q, T> bean;
+
+        final boolean add;
+
+        Notification( final BeanEntry<Q, T> bean, final boolean add )
+        {
+            this.bean = bean;
+            this.add = add;
+        }
+    }
+
+    /**
+     * Drains queued notifications in order; at most one delivery task per watcher is active at any time.
+     */
+    private final class Delivery
+        implements Runnable
+    {
+        public void run()
+        {
+            while ( true )
+            {
+                final Notification n;
+                synchronized ( pending )
+                {
+                    if ( pending.isEmpty() )
+                    {
+                        delivering = false;
+                        pending.notifyAll();
+                        return;
+                    }
+                    n = pending.removeFirst();
+                }
+                deliver( n.bean, n.add );
+            }
+        }
     }
 }
@@ -0,0 +1,80 @@
+/*******************************************************************************
+ * Copyright (c) 2010-2011 Sonatype, Inc.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * and Apache License v2.0 which accompanies this distribution.
+ * The Eclipse Public License is available at
+ *   http://www.eclipse.org/legal/epl-v10.html
+ * The Apache License v2.0 is available at
+ *   http://www.apache.org/licenses/LICENSE-2.0.html
+ * You may elect to redistribute this code under either of these licenses.
+ *******************************************************************************/
+package org.sonatype.guice.bean.locators.spi;
+
+import org.sonatype.inject.Mediator;
+
+import com.google.inject.Key;
+import com.google.inject.TypeLiteral;
+
+/**
+ * Receives instrumentation events from a bean locator; implementations must be thread-safe and return quickly.
+ */
+public interface LocatorMetrics
+{
+    /**
+     * Reports a lookup of the given {@link Key}.
+     * 
+     * @param key The qualified key
+     */
+    void located( Key<?> key );
+
+    /**
+     * Reports that bindings of a new type have been cached.
+     * 
+     * @param type The binding type
+     * @param cacheSize The number of types currently cached
+     * @param evictions The number of cached types released so far to free memory
+     */
+    void cachedBindings( TypeLiteral<?> type, int cacheSize, long evictions );
+
+    /**
+     * Reports a completed subscription to a {@link BindingPublisher}.
+     * 
+     * @param publisher The publisher
+     * @param type The subscribed type
+     * @param nanos Time taken to subscribe
+     */
+    void subscribed( BindingPublisher publisher, TypeLiteral<?> type, long nanos );
+
+    /**
+     * Reports a completed pass over the beans that match the given {@link Key}.
+     * 
+     * @param key The qualified key
+     * @param length The number of beans returned
+     */
+    void iterated( Key<?> key, int length );
+
+    /**
+     * Reports a search for implicit bindings after the explicit bindings of the given {@link Key} ran out.
+     * 
+     * @param key The qualified key
+     * @param found {@code true} if an implicit binding was found; otherwise {@code false}
+     */
+    void implicitFallback( Key<?> key, boolean found );
+
+    /**
+     * Reports a lookup of the implicit binding for the given type.
+     * 
+     * @param type The binding type
+     * @param cached {@code true} if the result came from the cache; otherwise {@code false}
+     */
+    void implicitLookup( TypeLiteral<?> type, boolean cached );
+
+    /**
+     * Reports a completed {@link Mediator} callback.
+     * 
+     * @param mediator The mediator
+     * @param nanos Time taken by the callback
+     */
+    void mediated( Mediator<?, ?, ?> mediator, long nanos );
+}
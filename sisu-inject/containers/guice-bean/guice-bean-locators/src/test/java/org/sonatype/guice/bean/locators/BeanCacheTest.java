@@ -0,0 +1,113 @@
+/*******************************************************************************
+ * Copyright (c) 2010-2011 Sonatype, Inc.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * and Apache License v2.0 which accompanies this distribution.
+ * The Eclipse Public License is available at
+ *   http://www.eclipse.org/legal/epl-v10.html
+ * The Apache License v2.0 is available at
+ *   http://www.apache.org/licenses/LICENSE-2.0.html
+ * You may elect to redistribute this code under either of these licenses.
+ *******************************************************************************/
+package org.sonatype.guice.bean.locators;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+import javax.inject.Named;
+
+import junit.framework.TestCase;
+
+import org.sonatype.guice.bean.locators.RankedBindingsTest.Bean;
+import org.sonatype.guice.bean.locators.RankedBindingsTest.BeanImpl;
+import org.sonatype.inject.BeanEntry;
+
+import com.google.inject.AbstractModule;
+import com.google.inject.Binding;
+import com.google.inject.Guice;
+import com.google.inject.Injector;
+import com.google.inject.Key;
+import com.google.inject.name.Names;
+
+public class BeanCacheTest
+    extends TestCase
+{
+    public void testCreateGetRemove()
+    {
+        final Injector injector = Guice.createInjector( new AbstractModule()
+        {
+            @Override
+            protected void configure()
+            {
+                for ( int i = 0; i < 64; i++ )
+                {
+                    bind( Bean.class ).annotatedWith( Names.named( "B" + i ) ).to( BeanImpl.class );
+                }
+            }
+        } );
+
+        final List<Binding<Bean>> bindings = new ArrayList<Binding<Bean>>();
+        for ( int i = 0; i < 64; i++ )
+        {
+            bindings.add( injector.getBinding( Key.get( Bean.class, Names.named( "B" + i ) ) ) );
+        }
+
+        final BeanCache<Named, Bean> cache = new BeanCache<Named, Bean>();
+        assertFalse( cache.bindings().iterator().hasNext() );
+        assertNull( cache.remove( bindings.get( 0 ) ) );
+
+        final List<BeanEntry<Named, Bean>> entries = new ArrayList<BeanEntry<Named, Bean>>();
+        for ( int i = 0; i < 64; i++ )
+        {
+            final Binding<Bean> binding = bindings.get( i );
+            assertNull( cache.get( binding ) );
+            final BeanEntry<Named, Bean> entry = cache.create( null, binding, i );
+            assertSame( entry, cache.create( null, binding, i ) );
+            entries.add( entry );
+
+            // earlier entries must survive the table growing
+            for ( int j = 0; j <= i; j++ )
+            {
+                assertSame( entries.get( j ), cache.get( bindings.get( j ) ) );
+            }
+        }
+
+        assertEquals( new HashSet<Binding<Bean>>( bindings ), toSet( cache.bindings() ) );
+
+        for ( int i = 0; i < 64; i += 2 )
+        {
+            assertSame( entries.get( i ), cache.remove( bindings.get( i ) ) );
+            assertNull( cache.remove( bindings.get( i ) ) );
+        }
+        for ( int i = 0; i < 64; i++ )
+        {
+            assertSame( i % 2 == 0 ? null : entries.get( i ), cache.get( bindings.get( i ) ) );
+        }
+        assertEquals( 32, toSet( cache.bindings() ).size() );
+
+        // removed bindings get fresh entries
+        for ( int i = 0; i < 64; i += 2 )
+        {
+            final BeanEntry<Named, Bean> entry = cache.create( null, bindings.get( i ), i );
+            assertNotSame( entries.get( i ), entry );
+            assertSame( entry, cache.get( bindings.get( i ) ) );
+        }
+        for ( int i = 1; i < 64; i += 2 )
+        {
+            assertSame( entries.get( i ), cache.get( bindings.get( i ) ) );
+        }
+        assertEquals( new HashSet<Binding<Bean>>( bindings ), toSet( cache.bindings() ) );
+    }
+
+    private static Set<Binding<Bean>> toSet( final Iterable<Binding<Bean>> bindings )
+    {
+        final Set<Binding<Bean>> set = new HashSet<Binding<Bean>>();
+        for ( final Binding<Bean> b : bindings )
+        {
+            set.add( b );
+        }
+        return set;
+    }
+}
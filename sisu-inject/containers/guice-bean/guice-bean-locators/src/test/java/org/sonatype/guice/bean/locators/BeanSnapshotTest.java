@@ -0,0 +1,146 @@
+/*******************************************************************************
+ * Copyright (c) 2010-2011 Sonatype, Inc.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * and Apache License v2.0 which accompanies this distribution.
+ * The Eclipse Public License is available at
+ *   http://www.eclipse.org/legal/epl-v10.html
+ * The Apache License v2.0 is available at
+ *   http://www.apache.org/licenses/LICENSE-2.0.html
+ * You may elect to redistribute this code under either of these licenses.
+ *******************************************************************************/
+package org.sonatype.guice.bean.locators;
+
+import javax.inject.Named;
+
+import junit.framework.TestCase;
+
+import org.sonatype.guice.bean.locators.RankedBindingsTest.Bean;
+import org.sonatype.guice.bean.locators.RankedBindingsTest.BeanImpl;
+import org.sonatype.guice.bean.locators.spi.BindingPublisher;
+import org.sonatype.guice.bean.locators.spi.BindingSubscriber;
+import org.sonatype.inject.BeanEntry;
+
+import com.google.inject.AbstractModule;
+import com.google.inject.Guice;
+import com.google.inject.Injector;
+import com.google.inject.Key;
+import com.google.inject.name.Names;
+
+public class BeanSnapshotTest
+    extends TestCase
+{
+    Injector parent;
+
+    Injector child;
+
+    @Override
+    public void setUp()
+        throws Exception
+    {
+        parent = Guice.createInjector( new AbstractModule()
+        {
+            @Override
+            protected void configure()
+            {
+                bind( Bean.class ).annotatedWith( Names.named( "A" ) ).to( BeanImpl.class );
+                bind( Bean.class ).annotatedWith( Names.named( "B" ) ).to( BeanImpl.class );
+            }
+        } );
+
+        child = parent.createChildInjector( new AbstractModule()
+        {
+            @Override
+            protected void configure()
+            {
+                bind( Bean.class ).annotatedWith( Names.named( "X" ) ).to( BeanImpl.class );
+            }
+        } );
+    }
+
+    public void testSnapshotRefresh()
+    {
+        final DefaultBeanLocator locator = new DefaultBeanLocator();
+        locator.add( parent, 0 );
+
+        final BeanSnapshot<Named, Bean> snapshot = locator.snapshot( Key.get( Bean.class, Named.class ) );
+
+        checkNames( snapshot, "A", "B" );
+        assertTrue( snapshot.isCurrent() );
+        assertSame( snapshot, snapshot.refresh() );
+
+        try
+        {
+            snapshot.remove( 0 );
+            fail( "Expected UnsupportedOperationException" );
+        }
+        catch ( final UnsupportedOperationException e )
+        {
+        }
+
+        locator.add( child, 1 );
+
+        assertFalse( snapshot.isCurrent() );
+        checkNames( snapshot, "A", "B" );
+
+        final BeanSnapshot<Named, Bean> refreshed = snapshot.refresh();
+
+        checkNames( refreshed, "X", "A", "B" );
+        assertTrue( refreshed.isCurrent() );
+        assertTrue( refreshed.generation() != snapshot.generation() );
+        assertSame( snapshot.get( 0 ), refreshed.get( 1 ) );
+        assertSame( snapshot.get( 1 ), refreshed.get( 2 ) );
+
+        locator.remove( parent );
+
+        assertFalse( refreshed.isCurrent() );
+        checkNames( refreshed.refresh(), "X" );
+    }
+
+    @SuppressWarnings( { "rawtypes", "unchecked" } )
+    public void testSubscriberChangesAreSeen()
+    {
+        final DefaultBeanLocator locator = new DefaultBeanLocator();
+
+        final BindingSubscriber[] subscriberHolder = new BindingSubscriber[1];
+        locator.add( new BindingPublisher()
+        {
+            public <T> void subscribe( final BindingSubscriber<T> subscriber )
+            {
+                subscriberHolder[0] = subscriber;
+            }
+
+            public <T> void unsubscribe( final BindingSubscriber<T> subscriber )
+            {
+                subscriberHolder[0] = null;
+            }
+        }, 0 );
+
+        BeanSnapshot<Named, Bean> snapshot = locator.snapshot( Key.get( Bean.class, Named.class ) );
+
+        checkNames( snapshot );
+        assertNotNull( subscriberHolder[0] );
+        assertTrue( snapshot.isCurrent() );
+
+        subscriberHolder[0].add( parent.getBinding( Key.get( Bean.class, Names.named( "A" ) ) ), 0 );
+
+        assertFalse( snapshot.isCurrent() );
+        snapshot = snapshot.refresh();
+        checkNames( snapshot, "A" );
+
+        subscriberHolder[0].remove( parent.getBinding( Key.get( Bean.class, Names.named( "A" ) ) ) );
+
+        assertFalse( snapshot.isCurrent() );
+        checkNames( snapshot.refresh() );
+    }
+
+    private static void checkNames( final BeanSnapshot<Named, Bean> snapshot, final String... expected )
+    {
+        assertEquals( expected.length, snapshot.size() );
+        int i = 0;
+        for ( final BeanEntry<Named, Bean> bean : snapshot )
+        {
+            assertEquals( expected[i++], bean.getKey().value() );
+        }
+    }
+}
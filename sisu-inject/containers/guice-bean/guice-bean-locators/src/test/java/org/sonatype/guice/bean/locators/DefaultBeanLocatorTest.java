@@ -11,9 +11,20 @@
  *******************************************************************************/
 package org.sonatype.guice.bean.locators;
 
+import java.lang.reflect.Type;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashSet;
 import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
 import java.util.Map.Entry;
 import java.util.NoSuchElementException;
+import java.util.Set;
+import java.util.concurrent.CountDownLatch;
 
 import junit.framework.TestCase;
 
@@ -22,13 +33,18 @@ import org.sonatype.guice.bean.locators.RankedBindingsTest.BeanImpl;
 import org.sonatype.guice.bean.locators.RankedBindingsTest.BeanImpl2;
 import org.sonatype.guice.bean.locators.spi.BindingPublisher;
 import org.sonatype.guice.bean.locators.spi.BindingSubscriber;
+import org.sonatype.inject.BeanEntry;
 
 import com.google.inject.AbstractModule;
+import com.google.inject.Binding;
 import com.google.inject.Guice;
 import com.google.inject.Injector;
 import com.google.inject.Key;
+import com.google.inject.Scopes;
+import com.google.inject.TypeLiteral;
 import com.google.inject.name.Named;
 import com.google.inject.name.Names;
+import com.google.inject.util.Types;
 
 public class DefaultBeanLocatorTest
     extends TestCase
@@ -186,6 +202,114 @@ public class DefaultBeanLocatorTest
     }
 
     @SuppressWarnings( "deprecation" )
+    public void testInjectorPublisherUnsubscribe()
+    {
+        final RankedBindings<Bean> bindings = new RankedBindings<Bean>( TypeLiteral.get( Bean.class ), null );
+
+        new InjectorPublisher( parent, new DefaultRankingFunction( 0 ) ).subscribe( bindings );
+        new InjectorPublisher( child1, new DefaultRankingFunction( 1 ) ).subscribe( bindings );
+        new InjectorPublisher( child3, new DefaultRankingFunction( 3 ) ).subscribe( bindings );
+
+        assertEquals( 9, bindings.bindings.size() );
+
+        // equal publisher created just for removal, without any ranking function
+        new InjectorPublisher( child1, null ).unsubscribe( bindings );
+
+        final Set<Binding<?>> expected = new HashSet<Binding<?>>();
+        expected.addAll( parent.findBindingsByType( TypeLiteral.get( Bean.class ) ) );
+        expected.addAll( child3.findBindingsByType( TypeLiteral.get( Bean.class ) ) );
+
+        final Set<Binding<?>> remaining = new HashSet<Binding<?>>();
+        for ( final Binding<Bean> b : bindings.bindings() )
+        {
+            remaining.add( b );
+        }
+        assertEquals( expected, remaining );
+
+        // only the bindings contributed by the publisher are touched
+        final List<Binding<?>> removed = new ArrayList<Binding<?>>();
+        new InjectorPublisher( child3, null ).unsubscribe( new BindingSubscriber<Bean>()
+        {
+            public TypeLiteral<Bean> type()
+            {
+                return TypeLiteral.get( Bean.class );
+            }
+
+            public void add( final Binding<Bean> binding, final int rank )
+            {
+                fail( "Unexpected add" );
+            }
+
+            public void remove( final Binding<Bean> binding )
+            {
+                removed.add( binding );
+            }
+
+            public Iterable<Binding<Bean>> bindings()
+            {
+                throw new UnsupportedOperationException( "Should not need to scan existing bindings" );
+            }
+        } );
+        assertEquals( child3.findBindingsByType( TypeLiteral.get( Bean.class ) ), removed );
+    }
+
+    static class StringList
+        extends ArrayList<String>
+    {
+        private static final long serialVersionUID = 1L;
+    }
+
+    static class StringListBean
+        extends StringList
+        implements Bean
+    {
+        private static final long serialVersionUID = 1L;
+    }
+
+    public void testWildcardBindings()
+    {
+        final Injector injector = Guice.createInjector( new AbstractModule()
+        {
+            @Override
+            protected void configure()
+            {
+                bind( Object.class ).annotatedWith( Names.named( "W1" ) ).to( BeanImpl.class );
+                bind( Object.class ).annotatedWith( Names.named( "W2" ) ).to( StringList.class );
+                bind( Object.class ).annotatedWith( Names.named( "W3" ) ).to( StringListBean.class );
+                bind( Object.class ).annotatedWith( Names.named( "W4" ) ).to( Object.class );
+            }
+        } );
+
+        final MutableBeanLocator locator = new DefaultBeanLocator();
+        locator.add( injector, 0 );
+
+        assertEquals( Arrays.asList( "W1", "W3" ), names( locator, Key.get( Bean.class, Named.class ) ) );
+        assertEquals( Arrays.asList( "W2", "W3" ), names( locator, Key.get( new TypeLiteral<List<String>>()
+        {
+        }, Named.class ) ) );
+        assertEquals( Arrays.asList( "W2", "W3" ), names( locator, Key.get( Collection.class, Named.class ) ) );
+        assertTrue( names( locator, Key.get( new TypeLiteral<List<Integer>>()
+        {
+        }, Named.class ) ).isEmpty() );
+        assertTrue( names( locator, Key.get( Runnable.class, Named.class ) ).isEmpty() );
+        assertEquals( Arrays.asList( "W1", "W2", "W3", "W4" ), names( locator, Key.get( Object.class, Named.class ) ) );
+
+        locator.remove( injector );
+
+        assertTrue( names( locator, Key.get( Bean.class, Named.class ) ).isEmpty() );
+        assertTrue( names( locator, Key.get( Collection.class, Named.class ) ).isEmpty() );
+    }
+
+    private static List<String> names( final BeanLocator locator, final Key key )
+    {
+        final List<String> names = new ArrayList<String>();
+        for ( final Object entry : locator.locate( key ) )
+        {
+            names.add( ( (Named) ( (BeanEntry) entry ).getKey() ).value() );
+        }
+        return names;
+    }
+
     public void testInjectorOrdering()
     {
         final MutableBeanLocator locator = new DefaultBeanLocator();
@@ -350,4 +474,256 @@ public class DefaultBeanLocatorTest
 
         locator.clear();
     }
+
+    public void testBatchPublishing()
+    {
+        final DefaultBeanLocator batchLocator = new DefaultBeanLocator();
+        final MutableBeanLocator locator = batchLocator;
+
+        locator.add( parent, 0 );
+
+        final Iterable<? extends Entry<Named, Bean>> roles =
+            locator.<Named, Bean> locate( Key.get( Bean.class, Named.class ) );
+
+        final Map<BindingPublisher, Integer> batch = new LinkedHashMap<BindingPublisher, Integer>();
+        batch.put( new InjectorPublisher( child1, new DefaultRankingFunction( 1 ) ), Integer.valueOf( 1 ) );
+        batch.put( new InjectorPublisher( child3, new DefaultRankingFunction( 3 ) ), Integer.valueOf( 3 ) );
+        batch.put( new InjectorPublisher( parent, new DefaultRankingFunction( 0 ) ), Integer.valueOf( 0 ) );
+        batch.put( new InjectorPublisher( child2, new DefaultRankingFunction( 2 ) ), Integer.valueOf( 2 ) );
+
+        batchLocator.addAll( batch );
+
+        Iterator<? extends Entry<Named, Bean>> i;
+
+        i = roles.iterator();
+        assertEquals( Names.named( "default" ), i.next().getKey() );
+        assertEquals( Names.named( "default" ), i.next().getKey() );
+        assertEquals( Names.named( "M3" ), i.next().getKey() );
+        assertEquals( Names.named( "N3" ), i.next().getKey() );
+        assertEquals( Names.named( "M1" ), i.next().getKey() );
+        assertEquals( Names.named( "N1" ), i.next().getKey() );
+        assertEquals( Names.named( "A" ), i.next().getKey() );
+        assertEquals( Names.named( "-" ), i.next().getKey() );
+        assertEquals( Names.named( "Z" ), i.next().getKey() );
+        assertFalse( i.hasNext() );
+
+        batchLocator.removeAll( Arrays.asList( new InjectorPublisher( child3, null ),
+                                               new InjectorPublisher( parent, null ), new InjectorPublisher( child3, null ) ) );
+
+        i = roles.iterator();
+        assertEquals( Names.named( "default" ), i.next().getKey() );
+        assertEquals( Names.named( "M1" ), i.next().getKey() );
+        assertEquals( Names.named( "N1" ), i.next().getKey() );
+        assertFalse( i.hasNext() );
+
+        locator.clear();
+
+        assertFalse( roles.iterator().hasNext() );
+    }
+
+    @SuppressWarnings( "deprecation" )
+    public void testLookupsShareSingletonEntries()
+    {
+        final Injector injector = Guice.createInjector( new AbstractModule()
+        {
+            @Override
+            protected void configure()
+            {
+                bind( Bean.class ).annotatedWith( Names.named( "S" ) ).to( BeanImpl.class ).in( Scopes.SINGLETON );
+                bind( Bean.class ).annotatedWith( Names.named( "U" ) ).to( BeanImpl.class );
+            }
+        } );
+
+        final MutableBeanLocator locator = new DefaultBeanLocator();
+        locator.add( injector, 0 );
+
+        final Key<Bean> key = Key.get( Bean.class, Named.class );
+
+        final Iterable<BeanEntry<Named, Bean>> lookup1 = locator.<Named, Bean> locate( key );
+        final Iterable<BeanEntry<Named, Bean>> lookup2 = locator.<Named, Bean> locate( key );
+
+        assertNotSame( lookup1, lookup2 );
+
+        Iterator<BeanEntry<Named, Bean>> i1 = lookup1.iterator();
+        final Iterator<BeanEntry<Named, Bean>> i2 = lookup2.iterator();
+
+        // singleton entries are shared between lookups
+        final BeanEntry<Named, Bean> s1 = i1.next();
+        assertEquals( Names.named( "S" ), s1.getKey() );
+        assertSame( s1, i2.next() );
+
+        // unscoped entries are per-lookup
+        final BeanEntry<Named, Bean> u1 = i1.next();
+        final BeanEntry<Named, Bean> u2 = i2.next();
+        assertEquals( Names.named( "U" ), u1.getKey() );
+        assertNotSame( u1, u2 );
+        assertNotSame( u1.getValue(), u2.getValue() );
+
+        // but remain stable within a lookup
+        i1 = lookup1.iterator();
+        assertSame( s1, i1.next() );
+        assertSame( u1, i1.next() );
+        assertFalse( i1.hasNext() );
+    }
+
+    @SuppressWarnings( { "rawtypes", "unchecked" } )
+    public void testConcurrentLocateAndPublish()
+        throws Exception
+    {
+        final Type[] types = new Type[32];
+        types[0] = Bean.class;
+        for ( int t = 1; t < types.length; t++ )
+        {
+            types[t] = Types.listOf( types[t - 1] );
+        }
+
+        final Injector[] injectors = new Injector[16];
+        for ( int i = 0; i < injectors.length; i++ )
+        {
+            final String name = String.valueOf( i );
+            injectors[i] = Guice.createInjector( new AbstractModule()
+            {
+                @Override
+                protected void configure()
+                {
+                    bind( Bean.class ).annotatedWith( Names.named( name ) ).to( BeanImpl.class );
+                    for ( int t = 1; t < types.length; t++ )
+                    {
+                        bind( (Key) Key.get( types[t], Names.named( name ) ) ).toInstance( new ArrayList() );
+                    }
+                }
+            } );
+        }
+
+        // only the even injectors should remain published once the dust has settled
+        final Set<String> expectedNames = new HashSet<String>();
+        for ( int i = 0; i < injectors.length; i += 2 )
+        {
+            expectedNames.add( String.valueOf( i ) );
+        }
+
+        final Collection<Throwable> errors = Collections.synchronizedList( new ArrayList<Throwable>() );
+
+        for ( int round = 0; round < 20; round++ )
+        {
+            final MutableBeanLocator locator = new DefaultBeanLocator();
+            for ( int i = 0; i < injectors.length / 2; i++ )
+            {
+                locator.add( injectors[i], i );
+            }
+
+            final CountDownLatch start = new CountDownLatch( 1 );
+            final List<Iterable<BeanEntry>> views = Collections.synchronizedList( new ArrayList<Iterable<BeanEntry>>() );
+
+            final Thread[] threads = new Thread[8];
+            threads[0] = new Thread()
+            {
+                @Override
+                public void run()
+                {
+                    try
+                    {
+                        start.await();
+                        for ( int i = injectors.length / 2; i < injectors.length; i++ )
+                        {
+                            locator.add( injectors[i], i );
+                            Thread.yield();
+                        }
+                        for ( int cycle = 0; cycle < 10; cycle++ )
+                        {
+                            for ( int i = 1; i < injectors.length; i += 2 )
+                            {
+                                locator.remove( injectors[i] );
+                                Thread.yield();
+                            }
+                            for ( int i = 1; i < injectors.length; i += 2 )
+                            {
+                                locator.add( injectors[i], i );
+                                Thread.yield();
+                            }
+                        }
+                        for ( int i = 1; i < injectors.length; i += 2 )
+                        {
+                            locator.remove( injectors[i] );
+                            Thread.yield();
+                        }
+                    }
+                    catch ( final Throwable e )
+                    {
+                        errors.add( e );
+                    }
+                }
+            };
+            for ( int t = 1; t < threads.length; t++ )
+            {
+                final int offset = t;
+                threads[t] = new Thread()
+                {
+                    @Override
+                    public void run()
+                    {
+                        try
+                        {
+                            start.await();
+                            for ( int n = 0; n < types.length; n++ )
+                            {
+                                final Key key = Key.get( types[( n + offset ) % types.length], Named.class );
+                                final Iterable<BeanEntry> view = locator.locate( key );
+                                for ( final Iterator<BeanEntry> itr = view.iterator(); itr.hasNext(); )
+                                {
+                                    itr.next();
+                                    Thread.yield();
+                                }
+                                views.add( view );
+                            }
+                        }
+                        catch ( final Throwable e )
+                        {
+                            errors.add( e );
+                        }
+                    }
+                };
+            }
+
+            for ( final Thread t : threads )
+            {
+                t.start();
+            }
+            start.countDown();
+            for ( final Thread t : threads )
+            {
+                t.join();
+            }
+
+            for ( final Throwable e : errors )
+            {
+                e.printStackTrace();
+            }
+            if ( errors.size() > 0 )
+            {
+                fail( "Unexpected errors!" );
+            }
+
+            // views created while publishers were changing must have caught up
+            for ( final Type type : types )
+            {
+                final Key key = Key.get( type, Named.class );
+                views.add( locator.locate( key ) );
+            }
+            for ( final Iterable<BeanEntry> view : views )
+            {
+                final List<String> names = new ArrayList<String>();
+                for ( final BeanEntry entry : view )
+                {
+                    names.add( ( (Named) entry.getKey() ).value() );
+                }
+                assertEquals( expectedNames.size(), names.size() );
+                assertEquals( expectedNames, new HashSet<String>( names ) );
+                for ( int i = 1; i < names.size(); i++ )
+                {
+                    assertTrue( Integer.parseInt( names.get( i - 1 ) ) > Integer.parseInt( names.get( i ) ) );
+                }
+            }
+        }
+    }
 }
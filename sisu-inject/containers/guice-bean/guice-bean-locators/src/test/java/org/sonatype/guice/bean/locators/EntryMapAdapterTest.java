@@ -11,11 +11,26 @@
  *******************************************************************************/
 package org.sonatype.guice.bean.locators;
 
+import java.util.ArrayList;
+import java.util.Collections;
 import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
 import java.util.Map;
+import java.util.Map.Entry;
+
+import javax.inject.Named;
 
 import junit.framework.TestCase;
 
+import org.sonatype.guice.bean.locators.RankedBindingsTest.Bean;
+
+import com.google.inject.AbstractModule;
+import com.google.inject.Guice;
+import com.google.inject.Injector;
+import com.google.inject.Key;
+import com.google.inject.name.Names;
+
 public class EntryMapAdapterTest
     extends TestCase
 {
@@ -54,4 +69,120 @@ public class EntryMapAdapterTest
         original.clear();
         assertEquals( original, adapter );
     }
+
+    static class StampedList<K, V>
+        implements StampedIterable<Entry<K, V>>
+    {
+        final List<Entry<K, V>> entries = new ArrayList<Entry<K, V>>();
+
+        int stamp;
+
+        int iterations;
+
+        public Iterator<Entry<K, V>> iterator()
+        {
+            iterations++;
+            return entries.iterator();
+        }
+
+        public Object stamp()
+        {
+            return Integer.valueOf( stamp );
+        }
+
+        void add( final K key, final V value )
+        {
+            entries.add( Collections.singletonMap( key, value ).entrySet().iterator().next() );
+            stamp++;
+        }
+    }
+
+    public void testIndexedLookup()
+    {
+        final StampedList<String, String> original = new StampedList<String, String>();
+        final Map<String, String> adapter = new EntryMapAdapter<String, String>( original );
+
+        original.add( "A", "1" );
+        original.add( "B", "2" );
+        original.add( "A", "3" );
+
+        assertEquals( "1", adapter.get( "A" ) );
+        assertEquals( "2", adapter.get( "B" ) );
+        assertNull( adapter.get( "C" ) );
+        assertTrue( adapter.containsKey( "B" ) );
+        assertFalse( adapter.containsKey( "C" ) );
+        assertEquals( 3, adapter.size() );
+        assertEquals( 1, original.iterations );
+
+        original.add( "C", "4" );
+
+        assertEquals( "4", adapter.get( "C" ) );
+        assertEquals( 4, adapter.size() );
+        assertEquals( 2, original.iterations );
+    }
+
+    static int instanceCount;
+
+    static class CountingBean
+        implements Bean
+    {
+        CountingBean()
+        {
+            instanceCount++;
+        }
+    }
+
+    @SuppressWarnings( { "rawtypes", "unchecked" } )
+    public void testIndexedBeanMap()
+    {
+        final Injector injector1 = Guice.createInjector( new AbstractModule()
+        {
+            @Override
+            protected void configure()
+            {
+                bind( Bean.class ).annotatedWith( Names.named( "A" ) ).to( CountingBean.class );
+                bind( Bean.class ).annotatedWith( Names.named( "B" ) ).to( CountingBean.class );
+            }
+        } );
+
+        final Injector injector2 = Guice.createInjector( new AbstractModule()
+        {
+            @Override
+            protected void configure()
+            {
+                bind( Bean.class ).annotatedWith( Names.named( "X" ) ).to( CountingBean.class );
+            }
+        } );
+
+        final MutableBeanLocator locator = new DefaultBeanLocator();
+        locator.add( injector1, 0 );
+
+        final Iterable beans = locator.locate( Key.get( Bean.class, Named.class ) );
+        final Map<String, Bean> adapter = new EntryMapAdapter<String, Bean>( new NamedIterableAdapter<Bean>( beans ) );
+
+        instanceCount = 0;
+
+        assertEquals( 2, adapter.size() );
+        assertTrue( adapter.containsKey( "A" ) );
+        assertFalse( adapter.containsKey( "X" ) );
+        assertEquals( 0, instanceCount );
+
+        final Bean a = adapter.get( "A" );
+        assertNotNull( a );
+        assertSame( a, adapter.get( "A" ) );
+        assertEquals( 1, instanceCount );
+
+        locator.add( injector2, 1 );
+
+        assertEquals( 3, adapter.size() );
+        assertTrue( adapter.containsKey( "X" ) );
+        assertSame( a, adapter.get( "A" ) );
+        assertEquals( 1, instanceCount );
+
+        locator.remove( injector2 );
+
+        assertEquals( 2, adapter.size() );
+        assertFalse( adapter.containsKey( "X" ) );
+        assertNull( adapter.get( "X" ) );
+    }
 }
@@ -0,0 +1,134 @@
+/*******************************************************************************
+ * Copyright (c) 2010-2011 Sonatype, Inc.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * and Apache License v2.0 which accompanies this distribution.
+ * The Eclipse Public License is available at
+ *   http://www.eclipse.org/legal/epl-v10.html
+ * The Apache License v2.0 is available at
+ *   http://www.apache.org/licenses/LICENSE-2.0.html
+ * You may elect to redistribute this code under either of these licenses.
+ *******************************************************************************/
+package org.sonatype.guice.bean.locators;
+
+import java.lang.annotation.Annotation;
+import java.util.Iterator;
+
+import javax.inject.Inject;
+
+import junit.framework.TestCase;
+
+import org.sonatype.guice.bean.locators.spi.BindingPublisher;
+import org.sonatype.inject.BeanEntry;
+
+import com.google.inject.AbstractModule;
+import com.google.inject.Binding;
+import com.google.inject.Guice;
+import com.google.inject.Injector;
+import com.google.inject.Key;
+import com.google.inject.TypeLiteral;
+
+public class ImplicitBindingsTest
+    extends TestCase
+{
+    static interface Unbound
+    {
+    }
+
+    static class UnboundImpl
+        implements Unbound
+    {
+    }
+
+    static class Concrete
+    {
+    }
+
+    static class Broken
+    {
+        @Inject
+        Broken( final Unbound dependency )
+        {
+        }
+    }
+
+    Injector emptyInjector;
+
+    Injector fixingInjector;
+
+    @Override
+    public void setUp()
+        throws Exception
+    {
+        emptyInjector = Guice.createInjector();
+
+        fixingInjector = Guice.createInjector( new AbstractModule()
+        {
+            @Override
+            protected void configure()
+            {
+                bind( Unbound.class ).to( UnboundImpl.class );
+            }
+        } );
+    }
+
+    public void testCachedResults()
+    {
+        final RankedSequence<BindingPublisher> publishers = new RankedSequence<BindingPublisher>();
+        publishers.insert( new InjectorPublisher( emptyInjector, new DefaultRankingFunction( 0 ) ), 0 );
+
+        final JmxLocatorMetrics metrics = new JmxLocatorMetrics();
+        final LocatorInstrumentation instrumentation = new LocatorInstrumentation();
+        instrumentation.setMetrics( metrics );
+
+        final ImplicitBindings implicitBindings = new ImplicitBindings( publishers, instrumentation );
+
+        final Binding<Concrete> concrete = implicitBindings.get( TypeLiteral.get( Concrete.class ) );
+        assertNotNull( concrete );
+        assertSame( concrete, implicitBindings.get( TypeLiteral.get( Concrete.class ) ) );
+        assertEquals( 1, metrics.getImplicitCacheHitCount() );
+        assertEquals( 1, metrics.getImplicitCacheMissCount() );
+
+        assertNull( implicitBindings.get( TypeLiteral.get( Broken.class ) ) );
+        assertNull( implicitBindings.get( TypeLiteral.get( Broken.class ) ) );
+        assertNull( implicitBindings.get( TypeLiteral.get( Broken.class ) ) );
+        assertEquals( 3, metrics.getImplicitCacheHitCount() );
+        assertEquals( 2, metrics.getImplicitCacheMissCount() );
+
+        publishers.insert( new InjectorPublisher( fixingInjector, new DefaultRankingFunction( 1 ) ), 1 );
+
+        // stale until reset
+        assertNull( implicitBindings.get( TypeLiteral.get( Broken.class ) ) );
+        assertEquals( 4, metrics.getImplicitCacheHitCount() );
+
+        implicitBindings.reset();
+
+        final Binding<Broken> broken = implicitBindings.get( TypeLiteral.get( Broken.class ) );
+        assertNotNull( broken );
+        assertSame( fixingInjector.getBinding( Broken.class ), broken );
+        assertSame( broken, implicitBindings.get( TypeLiteral.get( Broken.class ) ) );
+        assertEquals( 5, metrics.getImplicitCacheHitCount() );
+        assertEquals( 3, metrics.getImplicitCacheMissCount() );
+    }
+
+    public void testLocatorResetsCache()
+    {
+        final MutableBeanLocator locator = new DefaultBeanLocator();
+        locator.add( emptyInjector, 0 );
+
+        final Iterable<? extends BeanEntry<Annotation, Broken>> beans = locator.locate( Key.get( Broken.class ) );
+        assertFalse( beans.iterator().hasNext() );
+        assertFalse( beans.iterator().hasNext() );
+
+        locator.add( fixingInjector, 1 );
+
+        final Iterator<? extends BeanEntry<Annotation, Broken>> itr = beans.iterator();
+        assertTrue( itr.hasNext() );
+        assertNotNull( itr.next().getValue() );
+        assertFalse( itr.hasNext() );
+
+        locator.remove( fixingInjector );
+
+        assertFalse( beans.iterator().hasNext() );
+    }
+}
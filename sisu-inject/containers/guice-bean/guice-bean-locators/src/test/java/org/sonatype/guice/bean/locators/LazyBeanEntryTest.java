@@ -24,6 +24,7 @@ import com.google.inject.AbstractModule;
 import com.google.inject.Guice;
 import com.google.inject.Injector;
 import com.google.inject.Key;
+import com.google.inject.Module;
 import com.google.inject.Provider;
 import com.google.inject.ProvisionException;
 import com.google.inject.Scopes;
@@ -202,6 +203,35 @@ public class LazyBeanEntryTest
         assertEquals( T.class.getAnnotation( javax.inject.Named.class ).hashCode(), jsrNamed.hashCode() );
     }
 
+    public void testQualifiersAreShared()
+    {
+        final Named guiceNamed = Names.named( "SHARED" );
+
+        final Module module = new AbstractModule()
+        {
+            @Override
+            protected void configure()
+            {
+                bindConstant().annotatedWith( guiceNamed ).to( "CONSTANT" );
+            }
+        };
+
+        final Key<String> key = Key.get( String.class, guiceNamed );
+
+        @SuppressWarnings( { "unchecked", "rawtypes" } )
+        final LazyBeanEntry<javax.inject.Named, String> entry1 =
+            new LazyBeanEntry( guiceNamed, Guice.createInjector( module ).getBinding( key ), 0 );
+        @SuppressWarnings( { "unchecked", "rawtypes" } )
+        final LazyBeanEntry<javax.inject.Named, String> entry2 =
+            new LazyBeanEntry( guiceNamed, Guice.createInjector( module ).getBinding( key ), 1 );
+
+        assertSame( entry1.getKey(), entry2.getKey() );
+        assertEquals( "SHARED", entry2.getKey().value() );
+
+        assertEquals( "CONSTANT", entry1.getValue() );
+        assertSame( entry1.getValue(), entry1.getValue() );
+    }
+
     static class ToStringProvider
         implements Provider<String>
     {
@@ -15,7 +15,10 @@ import static java.lang.annotation.RetentionPolicy.RUNTIME;
 
 import java.lang.annotation.Annotation;
 import java.lang.annotation.Retention;
+import java.util.ArrayList;
+import java.util.Collections;
 import java.util.Iterator;
+import java.util.List;
 
 import javax.inject.Named;
 import javax.inject.Qualifier;
@@ -31,6 +34,7 @@ import com.google.inject.Binding;
 import com.google.inject.Guice;
 import com.google.inject.Injector;
 import com.google.inject.Key;
+import com.google.inject.TypeLiteral;
 import com.google.inject.name.Names;
 import com.google.inject.util.Providers;
 
@@ -84,7 +88,7 @@ public class LocatedBeansTest
 
     public void testCacheConcurrency()
     {
-        final LocatedBeans<Annotation, Bean> beans = locate( Key.get( Bean.class ) );
+        final LocatedBeans<Annotation, Bean>.View beans = locate( Key.get( Bean.class ) );
 
         final Iterator<BeanEntry<Annotation, Bean>> itr1 = beans.iterator();
         final Iterator<BeanEntry<Annotation, Bean>> itr2 = beans.iterator();
@@ -117,9 +121,57 @@ public class LocatedBeansTest
         assertSame( a, itr2.next().getValue() );
     }
 
+    public void testConcurrentIterationSharesEntries()
+        throws InterruptedException
+    {
+        final LocatedBeans<Annotation, Bean>.View beans = locate( Key.get( Bean.class ) );
+
+        final List<List<BeanEntry<Annotation, Bean>>> results =
+            Collections.synchronizedList( new ArrayList<List<BeanEntry<Annotation, Bean>>>() );
+
+        final Thread[] threads = new Thread[16];
+        for ( int i = 0; i < threads.length; i++ )
+        {
+            threads[i] = new Thread()
+            {
+                @Override
+                public void run()
+                {
+                    final List<BeanEntry<Annotation, Bean>> entries = new ArrayList<BeanEntry<Annotation, Bean>>();
+                    for ( final BeanEntry<Annotation, Bean> entry : beans )
+                    {
+                        entries.add( entry );
+                        Thread.yield();
+                    }
+                    results.add( entries );
+                }
+            };
+        }
+        for ( final Thread t : threads )
+        {
+            t.start();
+        }
+        for ( final Thread t : threads )
+        {
+            t.join();
+        }
+
+        assertEquals( threads.length, results.size() );
+        final List<BeanEntry<Annotation, Bean>> expected = results.get( 0 );
+        assertEquals( 7, expected.size() );
+        for ( final List<BeanEntry<Annotation, Bean>> entries : results )
+        {
+            assertEquals( expected.size(), entries.size() );
+            for ( int i = 0; i < expected.size(); i++ )
+            {
+                assertSame( expected.get( i ), entries.get( i ) );
+            }
+        }
+    }
+
     public void testUnrestrictedSearch()
     {
-        final LocatedBeans<Annotation, Bean> beans = locate( Key.get( Bean.class ) );
+        final LocatedBeans<Annotation, Bean>.View beans = locate( Key.get( Bean.class ) );
         final Iterator<BeanEntry<Annotation, Bean>> itr = beans.iterator();
 
         assertTrue( itr.hasNext() );
@@ -141,7 +193,7 @@ public class LocatedBeansTest
 
     public void testNamedSearch()
     {
-        final LocatedBeans<Named, Bean> beans = locate( Key.get( Bean.class, Named.class ) );
+        final LocatedBeans<Named, Bean>.View beans = locate( Key.get( Bean.class, Named.class ) );
         final Iterator<BeanEntry<Named, Bean>> itr = beans.iterator();
 
         assertTrue( itr.hasNext() );
@@ -157,7 +209,7 @@ public class LocatedBeansTest
 
     public void testNamedWithAttributesSearch()
     {
-        final LocatedBeans<Named, Bean> beans = locate( Key.get( Bean.class, Names.named( "Named2" ) ) );
+        final LocatedBeans<Named, Bean>.View beans = locate( Key.get( Bean.class, Names.named( "Named2" ) ) );
         final Iterator<BeanEntry<Named, Bean>> itr = beans.iterator();
 
         assertTrue( itr.hasNext() );
@@ -167,7 +219,7 @@ public class LocatedBeansTest
 
     public void testMarkedSearch()
     {
-        final LocatedBeans<Marked, Bean> beans = locate( Key.get( Bean.class, Marked.class ) );
+        final LocatedBeans<Marked, Bean>.View beans = locate( Key.get( Bean.class, Marked.class ) );
         final Iterator<BeanEntry<Marked, Bean>> itr = beans.iterator();
 
         assertTrue( itr.hasNext() );
@@ -179,7 +231,7 @@ public class LocatedBeansTest
 
     public void testMarkedWithAttributesSearch()
     {
-        final LocatedBeans<Marked, Bean> beans =
+        final LocatedBeans<Marked, Bean>.View beans =
             locate( Key.get( Bean.class, MarkedBeanImpl2.class.getAnnotation( Marked.class ) ) );
         final Iterator<BeanEntry<Marked, Bean>> itr = beans.iterator();
 
@@ -188,13 +240,55 @@ public class LocatedBeansTest
         assertFalse( itr.hasNext() );
     }
 
-    private <Q extends Annotation, T> LocatedBeans<Q, T> locate( final Key<T> key )
+    public void testIndexedSearchFollowsBindings()
+    {
+        final RankedBindings<Bean> bindings = new RankedBindings<Bean>( TypeLiteral.get( Bean.class ), null );
+
+        final LocatedBeans<Named, Bean>.View named =
+            new LocatedBeans<Named, Bean>( Key.get( Bean.class, Names.named( "Marked2" ) ), bindings, null ).view();
+        final LocatedBeans<Marked, Bean>.View marked =
+            new LocatedBeans<Marked, Bean>( Key.get( Bean.class, Marked.class ), bindings, null ).view();
+
+        assertFalse( named.iterator().hasNext() );
+        assertFalse( marked.iterator().hasNext() );
+
+        // later bindings get higher ranks, so should appear first
+        int rank = 0;
+        for ( final Binding<Bean> b : injector.findBindingsByType( TypeLiteral.get( Bean.class ) ) )
+        {
+            bindings.add( b, rank++ );
+        }
+
+        Iterator<BeanEntry<Named, Bean>> namedItr = named.iterator();
+        assertTrue( namedItr.hasNext() );
+        assertEquals( Names.named( "Marked2" ), namedItr.next().getKey() );
+        assertFalse( namedItr.hasNext() );
+
+        Iterator<BeanEntry<Marked, Bean>> markedItr = marked.iterator();
+        assertTrue( markedItr.hasNext() );
+        assertEquals( MarkedBeanImpl2.class.getAnnotation( Marked.class ), markedItr.next().getKey() );
+        assertTrue( markedItr.hasNext() );
+        assertEquals( MarkedBeanImpl1.class.getAnnotation( Marked.class ), markedItr.next().getKey() );
+        assertFalse( markedItr.hasNext() );
+
+        bindings.remove( injector.getBinding( Key.get( Bean.class, Names.named( "Marked2" ) ) ) );
+
+        namedItr = named.iterator();
+        assertFalse( namedItr.hasNext() );
+
+        markedItr = marked.iterator();
+        assertTrue( markedItr.hasNext() );
+        assertEquals( MarkedBeanImpl1.class.getAnnotation( Marked.class ), markedItr.next().getKey() );
+        assertFalse( markedItr.hasNext() );
+    }
+
+    private <Q extends Annotation, T> LocatedBeans<Q, T>.View locate( final Key<T> key )
     {
         final RankedBindings<T> bindings = new RankedBindings<T>( key.getTypeLiteral(), null );
         for ( final Binding<T> b : injector.findBindingsByType( key.getTypeLiteral() ) )
         {
             bindings.add( b, 0 );
         }
-        return new LocatedBeans<Q, T>( key, bindings, null );
+        return new LocatedBeans<Q, T>( key, bindings, null ).view();
     }
 }
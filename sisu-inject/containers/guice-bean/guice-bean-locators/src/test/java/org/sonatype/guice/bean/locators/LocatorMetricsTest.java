@@ -0,0 +1,208 @@
+/*******************************************************************************
+ * Copyright (c) 2010-2011 Sonatype, Inc.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * and Apache License v2.0 which accompanies this distribution.
+ * The Eclipse Public License is available at
+ *   http://www.eclipse.org/legal/epl-v10.html
+ * The Apache License v2.0 is available at
+ *   http://www.apache.org/licenses/LICENSE-2.0.html
+ * You may elect to redistribute this code under either of these licenses.
+ *******************************************************************************/
+package org.sonatype.guice.bean.locators;
+
+import java.lang.annotation.Annotation;
+import java.util.Iterator;
+
+import javax.inject.Inject;
+
+import junit.framework.TestCase;
+
+import org.sonatype.inject.BeanEntry;
+import org.sonatype.inject.Mediator;
+
+import com.google.inject.AbstractModule;
+import com.google.inject.Guice;
+import com.google.inject.Injector;
+import com.google.inject.Key;
+import com.google.inject.name.Names;
+
+public class LocatorMetricsTest
+    extends TestCase
+{
+    static interface Bean
+    {
+    }
+
+    static class BeanImpl
+        implements Bean
+    {
+    }
+
+    static interface Unbound
+    {
+    }
+
+    static class Broken
+    {
+        @Inject
+        Broken( final Unbound dependency )
+        {
+        }
+    }
+
+    static class Concrete
+    {
+    }
+
+    Injector injector;
+
+    @Override
+    public void setUp()
+        throws Exception
+    {
+        injector = Guice.createInjector( new AbstractModule()
+        {
+            @Override
+            protected void configure()
+            {
+                bind( Bean.class ).annotatedWith( Names.named( "A" ) ).to( BeanImpl.class );
+                bind( Bean.class ).annotatedWith( Names.named( "B" ) ).to( BeanImpl.class );
+                bind( Bean.class ).to( BeanImpl.class );
+            }
+        } );
+    }
+
+    public void testLocatorMetrics()
+    {
+        final JmxLocatorMetrics metrics = new JmxLocatorMetrics();
+        final MutableBeanLocator locator = newLocator( metrics );
+        locator.add( injector, 0 );
+
+        final Iterable<? extends BeanEntry<Annotation, Bean>> beans = locator.locate( Key.get( Bean.class ) );
+        locator.locate( Key.get( Bean.class ) );
+        locator.locate( Key.get( Bean.class, Names.named( "A" ) ) );
+
+        assertEquals( 3, metrics.getLocateCount() );
+        final String[] counts = metrics.getLocateCountsByKey();
+        assertEquals( 2, counts.length );
+        assertTrue( counts[0].startsWith( "2 " ) );
+        assertTrue( counts[1].startsWith( "1 " ) );
+
+        assertEquals( 1, metrics.getCachedBindingsSize() );
+        assertEquals( 0, metrics.getCachedBindingsEvictions() );
+
+        final Iterator<? extends BeanEntry<Annotation, Bean>> itr = beans.iterator();
+        assertTrue( itr.hasNext() );
+        assertEquals( 1, metrics.getSubscribeCount() );
+        assertTrue( metrics.getMaxSubscribeMillis() >= metrics.getAverageSubscribeMillis() );
+
+        itr.next();
+        itr.next();
+        itr.next();
+        assertEquals( 0, metrics.getIterationCount() );
+        assertFalse( itr.hasNext() );
+        assertFalse( itr.hasNext() );
+        assertEquals( 1, metrics.getIterationCount() );
+        assertEquals( 3, metrics.getMaxIterationLength() );
+        assertEquals( 3.0, metrics.getAverageIterationLength(), 0 );
+
+        // abandoned passes are not reported
+        beans.iterator().next();
+        assertEquals( 1, metrics.getIterationCount() );
+
+        metrics.reset();
+        assertEquals( 0, metrics.getLocateCount() );
+        assertEquals( 0, metrics.getLocateCountsByKey().length );
+        assertEquals( 0, metrics.getIterationCount() );
+        assertEquals( 0, metrics.getSubscribeCount() );
+    }
+
+    public void testImplicitFallbackMetrics()
+    {
+        final DefaultBeanLocator locator = new DefaultBeanLocator();
+        final JmxLocatorMetrics metrics = new JmxLocatorMetrics();
+        locator.add( injector, 0 );
+        locator.setMetrics( metrics );
+
+        assertFalse( locator.locate( Key.get( Broken.class ) ).iterator().hasNext() );
+        assertTrue( locator.locate( Key.get( Concrete.class ) ).iterator().hasNext() );
+
+        assertEquals( 2, metrics.getImplicitFallbackCount() );
+        assertEquals( 1, metrics.getImplicitFallbackMissCount() );
+        assertEquals( 0, metrics.getImplicitCacheHitCount() );
+        assertEquals( 2, metrics.getImplicitCacheMissCount() );
+
+        assertTrue( locator.locate( Key.get( Concrete.class ) ).iterator().hasNext() );
+        assertEquals( 1, metrics.getImplicitCacheHitCount() );
+    }
+
+    public void testMediatorMetrics()
+    {
+        final JmxLocatorMetrics metrics = new JmxLocatorMetrics();
+        final MutableBeanLocator locator = newLocator( metrics );
+
+        locator.watch( Key.get( Bean.class ), new Mediator<Annotation, Bean, Object>()
+        {
+            public void add( final BeanEntry<Annotation, Bean> entry, final Object watcher )
+            {
+            }
+
+            public void remove( final BeanEntry<Annotation, Bean> entry, final Object watcher )
+            {
+            }
+        }, this );
+
+        assertEquals( 0, metrics.getMediatorCallbackCount() );
+        locator.add( injector, 0 );
+        assertEquals( 3, metrics.getMediatorCallbackCount() );
+        locator.remove( injector );
+        assertEquals( 6, metrics.getMediatorCallbackCount() );
+        assertTrue( metrics.getMaxMediatorMillis() >= metrics.getAverageMediatorMillis() );
+    }
+
+    public void testLocateCountsAreBounded()
+    {
+        final JmxLocatorMetrics metrics = new JmxLocatorMetrics();
+        for ( int i = 0; i < JmxLocatorMetrics.MAX_TRACKED_KEYS + 10; i++ )
+        {
+            metrics.located( Key.get( Bean.class, Names.named( "key" + i ) ) );
+        }
+        metrics.located( Key.get( Bean.class, Names.named( "key0" ) ) );
+
+        final String[] counts = metrics.getLocateCountsByKey();
+        assertEquals( JmxLocatorMetrics.MAX_TRACKED_KEYS + 1, counts.length );
+        assertEquals( "10 (other keys)", counts[0] );
+        assertTrue( counts[1].startsWith( "2 " ) );
+        assertEquals( JmxLocatorMetrics.MAX_TRACKED_KEYS + 11, metrics.getLocateCount() );
+
+        metrics.reset();
+        assertEquals( 0, metrics.getLocateCountsByKey().length );
+    }
+
+    public void testDisabledMetrics()
+    {
+        final DefaultBeanLocator locator = new DefaultBeanLocator();
+        final JmxLocatorMetrics metrics = new JmxLocatorMetrics();
+        locator.setMetrics( metrics );
+        locator.setMetrics( null );
+        locator.add( injector, 0 );
+
+        final Iterator<?> itr = locator.locate( Key.get( Bean.class ) ).iterator();
+        while ( itr.hasNext() )
+        {
+            itr.next();
+        }
+
+        assertEquals( 0, metrics.getLocateCount() );
+        assertEquals( 0, metrics.getSubscribeCount() );
+        assertEquals( 0, metrics.getIterationCount() );
+    }
+
+    private static MutableBeanLocator newLocator( final JmxLocatorMetrics metrics )
+    {
+        final DefaultBeanLocator locator = new DefaultBeanLocator();
+        locator.setMetrics( metrics );
+        return locator;
+    }
+}
@@ -246,6 +246,7 @@ public class RankedBindingsTest
         itr = bindings.iterator();
 
         bindings.bindings.clear();
+        bindings.subscribedPublishers.clear();
 
         bindings.add( exporter3, 0 );
         bindings.add( exporter1, 0 );
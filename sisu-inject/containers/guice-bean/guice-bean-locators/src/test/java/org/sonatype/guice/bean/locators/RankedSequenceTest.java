@@ -12,9 +12,13 @@
 package org.sonatype.guice.bean.locators;
 
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collections;
+import java.util.HashSet;
 import java.util.Iterator;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
 import java.util.NoSuchElementException;
 import java.util.Random;
 import java.util.concurrent.atomic.AtomicBoolean;
@@ -116,6 +120,129 @@ public class RankedSequenceTest
         assertEquals( "G2", itr.next() );
     }
 
+    public void testBatchOrdering()
+    {
+        final RankedSequence<String> list = new RankedSequence<String>();
+
+        list.insertAll( Collections.<String, Integer> emptyMap() );
+        assertTrue( list.isEmpty() );
+
+        list.insert( "B", Integer.MAX_VALUE - 1 );
+        list.insert( "D1", 0 );
+        list.insert( "G1", Integer.MIN_VALUE );
+
+        final Map<String, Integer> batch = new LinkedHashMap<String, Integer>();
+        batch.put( "G2", Integer.valueOf( Integer.MIN_VALUE ) );
+        batch.put( "D2", Integer.valueOf( 0 ) );
+        batch.put( "A", Integer.valueOf( Integer.MAX_VALUE ) );
+        batch.put( "F", Integer.valueOf( Integer.MIN_VALUE + 1 ) );
+        batch.put( "D3", Integer.valueOf( 0 ) );
+        batch.put( "C", Integer.valueOf( 1 ) );
+        batch.put( "E", Integer.valueOf( -1 ) );
+
+        list.insertAll( batch );
+        list.insert( "D4", 0 );
+
+        assertEquals( Arrays.asList( "A", "B", "C", "D1", "D2", "D3", "D4", "E", "F", "G1", "G2" ), toList( list ) );
+
+        final Iterator<String> itr = list.iterator();
+        assertEquals( "A", itr.next() );
+        assertEquals( "B", itr.next() );
+
+        assertFalse( list.removeAll( Collections.singleton( "X" ) ) );
+        assertTrue( list.removeAll( new HashSet<String>( Arrays.asList( "B", "C", "D2", "G2", "X" ) ) ) );
+
+        assertEquals( Arrays.asList( "A", "D1", "D3", "D4", "E", "F", "G1" ), toList( list ) );
+
+        assertEquals( "D1", itr.next() );
+        assertEquals( "D3", itr.next() );
+
+        assertTrue( list.removeAll( toList( list ) ) );
+        assertTrue( list.isEmpty() );
+        assertFalse( itr.hasNext() );
+
+        list.insertAll( batch );
+        assertEquals( Arrays.asList( "A", "C", "D2", "D3", "E", "F", "G2" ), toList( list ) );
+    }
+
+    public void testLargeSequence()
+    {
+        final RankedSequence<String> list = new RankedSequence<String>();
+
+        final String[] elements = new String[10000];
+        for ( int i = 0; i < elements.length; i++ )
+        {
+            elements[i] = new String( "E" + i );
+            list.insert( elements[i], i % 100 );
+        }
+        assertEquals( elements.length, list.size() );
+
+        // equal ranks keep insertion order, so each rank lists its elements in ascending index
+        RankedSequence<String>.Itr itr = list.iterator();
+        for ( int rank = 99; rank >= 0; rank-- )
+        {
+            for ( int i = rank; i < elements.length; i += 100 )
+            {
+                assertEquals( rank, itr.peekNextRank() );
+                assertSame( elements[i], itr.next() );
+            }
+        }
+        assertFalse( itr.hasNext() );
+        assertEquals( Integer.MIN_VALUE, itr.peekNextRank() );
+
+        for ( final String e : elements )
+        {
+            assertTrue( list.containsThis( e ) );
+            assertFalse( list.containsThis( new String( e ) ) );
+        }
+
+        // iterator should skip over removed elements without losing its place
+        itr = list.iterator();
+        for ( int i = 0; i < elements.length; i++ )
+        {
+            if ( i % 100 >= 50 )
+            {
+                assertTrue( list.removeThis( elements[i] ) );
+                assertFalse( list.removeThis( elements[i] ) );
+            }
+        }
+        for ( int rank = 49; rank >= 0; rank-- )
+        {
+            for ( int i = rank; i < elements.length; i += 100 )
+            {
+                assertSame( elements[i], itr.next() );
+            }
+            if ( rank == 25 )
+            {
+                list.insert( "late", 30 );
+                list.insert( "later", 20 );
+            }
+            if ( rank == 20 )
+            {
+                assertEquals( "later", itr.next() );
+            }
+        }
+        assertFalse( itr.hasNext() );
+
+        assertTrue( list.removeThis( "late" ) );
+        assertTrue( list.removeThis( "later" ) );
+        for ( int i = elements.length - 1; i >= 0; i-- )
+        {
+            assertEquals( i % 100 < 50, list.removeThis( elements[i] ) );
+        }
+        assertTrue( list.isEmpty() );
+    }
+
+    private static List<String> toList( final RankedSequence<String> list )
+    {
+        final List<String> elements = new ArrayList<String>();
+        for ( final String s : list.snapshot() )
+        {
+            elements.add( s );
+        }
+        return elements;
+    }
+
     public void testEmptyList()
     {
         final Iterator<Object> itr = new RankedSequence<Object>().iterator();
@@ -0,0 +1,281 @@
+/*******************************************************************************
+ * Copyright (c) 2010-2011 Sonatype, Inc.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * and Apache License v2.0 which accompanies this distribution.
+ * The Eclipse Public License is available at
+ *   http://www.eclipse.org/legal/epl-v10.html
+ * The Apache License v2.0 is available at
+ *   http://www.apache.org/licenses/LICENSE-2.0.html
+ * You may elect to redistribute this code under either of these licenses.
+ *******************************************************************************/
+package org.sonatype.guice.bean.locators;
+
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+import javax.inject.Inject;
+import javax.inject.Singleton;
+
+import junit.framework.TestCase;
+
+import com.google.inject.AbstractModule;
+import com.google.inject.Guice;
+import com.google.inject.Injector;
+import com.google.inject.Key;
+import com.google.inject.Provider;
+import com.google.inject.Scopes;
+
+public class SingletonWarmupTest
+    extends TestCase
+{
+    static final List<Class<?>> created = new CopyOnWriteArrayList<Class<?>>();
+
+    @Singleton
+    static class Leaf
+    {
+        Leaf()
+        {
+            created.add( getClass() );
+        }
+    }
+
+    @Singleton
+    static class Middle
+    {
+        @Inject
+        Middle( final Leaf leaf )
+        {
+            created.add( getClass() );
+        }
+    }
+
+    @Singleton
+    static class Root
+    {
+        @Inject
+        Root( final Middle middle, final Unscoped unscoped )
+        {
+            created.add( getClass() );
+        }
+    }
+
+    static class Unscoped
+    {
+        @Inject
+        Unscoped( final Leaf leaf )
+        {
+            created.add( getClass() );
+        }
+    }
+
+    @Singleton
+    static class Lazy
+    {
+        @Inject
+        Lazy( final Provider<Root> root )
+        {
+            created.add( getClass() );
+        }
+    }
+
+    static interface Ping
+    {
+    }
+
+    static interface Pong
+    {
+    }
+
+    @Singleton
+    static class PingImpl
+        implements Ping
+    {
+        @Inject
+        PingImpl( final Pong pong )
+        {
+            created.add( getClass() );
+        }
+    }
+
+    @Singleton
+    static class PongImpl
+        implements Pong
+    {
+        @Inject
+        PongImpl( final Ping ping )
+        {
+            created.add( getClass() );
+        }
+    }
+
+    @Singleton
+    static class Broken
+    {
+        Broken()
+        {
+            throw new IllegalStateException( "broken" );
+        }
+    }
+
+    static final Map<Class<?>, Thread> threads = new ConcurrentHashMap<Class<?>, Thread>();
+
+    @Singleton
+    static class Left
+    {
+        @Inject
+        Left( final Injector injector )
+        {
+            threads.put( getClass(), Thread.currentThread() );
+            injector.getInstance( Right.class ); // not visible to the warm-up
+        }
+    }
+
+    @Singleton
+    static class Right
+    {
+        Right()
+        {
+            threads.put( getClass(), Thread.currentThread() );
+        }
+    }
+
+    @Singleton
+    static class Above
+    {
+        @Inject
+        Above( final Left left, final Leaf leaf )
+        {
+            threads.put( getClass(), Thread.currentThread() );
+        }
+    }
+
+    @Override
+    protected void setUp()
+        throws Exception
+    {
+        created.clear();
+        threads.clear();
+    }
+
+    public void testDependencyOrder()
+    {
+        final Injector injector = Guice.createInjector( new AbstractModule()
+        {
+            @Override
+            protected void configure()
+            {
+                bind( Lazy.class );
+                bind( Root.class );
+                bind( Middle.class );
+                bind( Leaf.class );
+                bind( Unscoped.class );
+            }
+        } );
+
+        final MutableBeanLocator locator = new DefaultBeanLocator();
+        locator.add( injector, 0 );
+
+        final SingletonWarmup.Report report = new SingletonWarmup( 4 ).warmUp( locator );
+
+        assertEquals( 4, report.getBeanCount() );
+        assertEquals( 4, report.getWarmedCount() );
+        assertTrue( report.getFailures().isEmpty() );
+        assertTrue( report.getDeadlocked().isEmpty() );
+        assertEquals( 4, report.getSlowest().size() );
+
+        assertTrue( created.indexOf( Leaf.class ) < created.indexOf( Middle.class ) );
+        assertTrue( created.indexOf( Middle.class ) < created.indexOf( Root.class ) );
+        assertEquals( 1, Collections.frequency( created, Leaf.class ) );
+        assertEquals( 1, Collections.frequency( created, Unscoped.class ) );
+        assertTrue( created.contains( Lazy.class ) );
+    }
+
+    public void testCyclesAndFailures()
+    {
+        final Injector injector = Guice.createInjector( new AbstractModule()
+        {
+            @Override
+            protected void configure()
+            {
+                bind( Ping.class ).to( PingImpl.class );
+                bind( Pong.class ).to( PongImpl.class );
+                bind( Broken.class );
+            }
+        } );
+
+        final SingletonWarmup.Report report =
+            new SingletonWarmup( 2 ).warmUp( Collections.singletonList( injector ) );
+
+        assertTrue( report.getDeadlocked().isEmpty() );
+        assertEquals( report.getBeanCount(), report.getWarmedCount() );
+        assertEquals( Collections.singleton( Key.get( Broken.class ) ), report.getFailures().keySet() );
+
+        final Set<Class<?>> unique = new HashSet<Class<?>>( created );
+        assertEquals( 2, unique.size() );
+        assertEquals( 2, created.size() );
+        assertTrue( report.toString().contains( "failed: [" + Key.get( Broken.class ) ) );
+    }
+
+    public void testUndeclaredDependenciesAreCreatedSequentially()
+    {
+        final Injector injector = Guice.createInjector( new AbstractModule()
+        {
+            @Override
+            protected void configure()
+            {
+                bind( Left.class );
+                bind( Right.class );
+                bind( Above.class );
+                bind( Leaf.class );
+                bind( Runnable.class ).toProvider( new Provider<Runnable>()
+                {
+                    public Runnable get()
+                    {
+                        threads.put( Runnable.class, Thread.currentThread() );
+                        return new Thread();
+                    }
+                } ).in( Scopes.SINGLETON );
+            }
+        } );
+
+        final SingletonWarmup.Report report =
+            new SingletonWarmup( 2, 100 ).warmUp( Collections.singletonList( injector ) );
+
+        assertEquals( 5, report.getBeanCount() );
+        assertEquals( 5, report.getWarmedCount() );
+        assertEquals( 3, report.getSequentialCount() );
+        assertTrue( report.getFailures().isEmpty() );
+        assertTrue( report.getDeadlocked().isEmpty() );
+
+        final Thread self = Thread.currentThread();
+        assertSame( self, threads.get( Left.class ) );
+        assertSame( self, threads.get( Above.class ) );
+        assertSame( self, threads.get( Runnable.class ) );
+        assertNotSame( self, threads.get( Right.class ) );
+        assertTrue( created.contains( Leaf.class ) );
+
+        // nothing is left half-created
+        assertNotNull( injector.getInstance( Left.class ) );
+        assertNotNull( injector.getInstance( Above.class ) );
+        assertNotNull( injector.getInstance( Runnable.class ) );
+        assertEquals( 4, threads.size() );
+    }
+
+    public void testInvalidParallelism()
+    {
+        try
+        {
+            new SingletonWarmup( 0 );
+            fail( "Expected IllegalArgumentException" );
+        }
+        catch ( final IllegalArgumentException e )
+        {
+        }
+    }
+}
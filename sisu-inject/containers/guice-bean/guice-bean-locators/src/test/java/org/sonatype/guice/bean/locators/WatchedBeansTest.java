@@ -11,7 +11,13 @@
  *******************************************************************************/
 package org.sonatype.guice.bean.locators;
 
+import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Iterator;
+import java.util.List;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
 
 import javax.inject.Named;
 
@@ -230,6 +236,103 @@ public class WatchedBeansTest
         subscriberHolder[0].remove( child2.getBinding( Key.get( Bean.class, Marked.class ) ) );
     }
 
+    static class RecordingMediator
+        implements Mediator<Named, Bean, List<String>>
+    {
+        public void add( final BeanEntry<Named, Bean> entry, final List<String> events )
+        {
+            events.add( "+" + entry.getKey().value() );
+        }
+
+        public void remove( final BeanEntry<Named, Bean> entry, final List<String> events )
+        {
+            events.add( "-" + entry.getKey().value() );
+        }
+    }
+
+    static class ManualExecutor
+        implements Executor
+    {
+        final List<Runnable> tasks = new ArrayList<Runnable>();
+
+        public void execute( final Runnable task )
+        {
+            tasks.add( task );
+        }
+
+        void runAll()
+        {
+            while ( !tasks.isEmpty() )
+            {
+                tasks.remove( 0 ).run();
+            }
+        }
+    }
+
+    public void testQueuedNotifications()
+        throws InterruptedException
+    {
+        final DefaultBeanLocator locator = new DefaultBeanLocator();
+        final ManualExecutor executor = new ManualExecutor();
+        final List<String> events = new ArrayList<String>();
+
+        locator.setNotificationExecutor( executor );
+        locator.watch( Key.get( Bean.class, Named.class ), new RecordingMediator(), events );
+
+        locator.add( parent, 0 );
+        locator.add( child1, 1 );
+
+        assertTrue( events.isEmpty() );
+        assertEquals( 1, executor.tasks.size() );
+
+        executor.runAll();
+
+        assertEquals( Arrays.asList( "+A", "+B", "+C", "+X" ), events );
+        events.clear();
+
+        locator.add( child3, 3 );
+        locator.remove( child1 );
+        locator.remove( child3 ); // cancels the queued addition of Z
+        locator.add( child2, 2 );
+
+        executor.runAll();
+
+        assertEquals( Arrays.asList( "-X", "+Y" ), events );
+        events.clear();
+
+        locator.setNotificationExecutor( null );
+        locator.remove( child2 );
+
+        assertEquals( Arrays.asList( "-Y" ), events );
+        assertTrue( executor.tasks.isEmpty() );
+
+        locator.quiesce();
+    }
+
+    public void testAsynchronousNotifications()
+        throws InterruptedException
+    {
+        final DefaultBeanLocator locator = new DefaultBeanLocator();
+        final ExecutorService executor = Executors.newSingleThreadExecutor();
+        final RankedSequence<String> names = new RankedSequence<String>();
+
+        locator.setNotificationExecutor( executor );
+        locator.watch( Key.get( Bean.class, Named.class ), new RankingMediator(), names );
+
+        locator.add( parent, 0 );
+        locator.add( child1, 1 );
+        locator.quiesce();
+
+        checkNames( names, "X", "A", "B", "C" );
+
+        executor.shutdown();
+
+        // rejected notifications are delivered on the calling thread
+        locator.remove( child1 );
+
+        checkNames( names, "A", "B", "C" );
+    }
+
     private static void checkNames( final Iterable<String> actual, final String... expected )
     {
         final Iterator<String> itr = actual.iterator();
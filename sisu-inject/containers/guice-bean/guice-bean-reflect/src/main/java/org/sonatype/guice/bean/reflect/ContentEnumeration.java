@@ -0,0 +1,40 @@
+/*******************************************************************************
+ * Copyright (c) 2010-2011 Sonatype, Inc.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * and Apache License v2.0 which accompanies this distribution.
+ * The Eclipse Public License is available at
+ *   http://www.eclipse.org/legal/epl-v10.html
+ * The Apache License v2.0 is available at
+ *   http://www.apache.org/licenses/LICENSE-2.0.html
+ * You may elect to redistribute this code under either of these licenses.
+ *******************************************************************************/
+package org.sonatype.guice.bean.reflect;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.URL;
+import java.util.Enumeration;
+
+/**
+ * {@link Enumeration} of resources that can also stream the content of each resource straight from its containing
+ * archive or directory, without going through a {@link URL} connection. Returned by {@link URLClassSpace} searches.
+ */
+public interface ContentEnumeration
+    extends Enumeration<URL>, Closeable
+{
+    /**
+     * Opens the content of the resource last returned by {@link #nextElement()}; must be called before the enumeration
+     * is advanced by {@link #hasMoreElements()}.
+     * 
+     * @return Input stream for the resource content
+     */
+    InputStream openContent()
+        throws IOException;
+
+    /**
+     * Releases any archive held open by this enumeration; it is also released once all resources have been visited.
+     */
+    void close();
+}
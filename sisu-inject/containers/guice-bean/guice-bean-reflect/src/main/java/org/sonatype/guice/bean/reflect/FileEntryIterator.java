@@ -13,8 +13,10 @@ package org.sonatype.guice.bean.reflect;
 
 import java.io.File;
 import java.net.URL;
+import java.util.ArrayList;
 import java.util.Iterator;
-import java.util.LinkedList;
+import java.util.List;
+import java.util.NoSuchElementException;
 
 /**
  * {@link Iterator} that iterates over named entries beneath a file-system directory.
@@ -23,15 +25,29 @@ final class FileEntryIterator
     implements Iterator<String>
 {
     // ----------------------------------------------------------------------
-    // Implementation fields
+    // Constants
     // ----------------------------------------------------------------------
 
-    private final String rootPath;
+    private static final File[] NO_FILES = {};
 
-    private final LinkedList<String> entryNames = new LinkedList<String>();
+    // ----------------------------------------------------------------------
+    // Implementation fields
+    // ----------------------------------------------------------------------
+
+    private final File rootDir;
 
     private final boolean recurse;
 
+    private final List<String> pendingDirs = new ArrayList<String>();
+
+    private int dirIndex;
+
+    private String dirPath;
+
+    private File[] listing = NO_FILES;
+
+    private int index;
+
     // ----------------------------------------------------------------------
     // Constructors
     // ----------------------------------------------------------------------
@@ -45,9 +61,9 @@ final class FileEntryIterator
      */
     FileEntryIterator( final URL url, final String subPath, final boolean recurse )
     {
-        rootPath = normalizePath( toFile( url ).getAbsoluteFile() );
+        rootDir = toFile( url ).getAbsoluteFile();
         this.recurse = recurse;
-        appendEntries( subPath );
+        pendingDirs.add( normalizeSubPath( subPath ) );
     }
 
     // ----------------------------------------------------------------------
@@ -56,17 +72,38 @@ final class FileEntryIterator
 
     public boolean hasNext()
     {
-        return entryNames.size() > 0;
+        while ( index >= listing.length )
+        {
+            if ( dirIndex >= pendingDirs.size() )
+            {
+                return false;
+            }
+            dirPath = pendingDirs.set( dirIndex++, null ); // directories are walked breadth-first
+            final File[] files = ( dirPath.length() > 0 ? new File( rootDir, dirPath ) : rootDir ).listFiles();
+            listing = null != files ? files : NO_FILES;
+            index = 0;
+        }
+        return true;
     }
 
     public String next()
     {
-        final String name = entryNames.removeFirst();
-        if ( recurse && name.endsWith( "/" ) )
+        if ( !hasNext() )
         {
-            appendEntries( name );
+            throw new NoSuchElementException();
         }
-        return name;
+        final File file = listing[index];
+        listing[index++] = null;
+        if ( file.isDirectory() )
+        {
+            final String name = dirPath + file.getName() + '/';
+            if ( recurse )
+            {
+                pendingDirs.add( name );
+            }
+            return name;
+        }
+        return dirPath + file.getName();
     }
 
     public void remove()
@@ -123,30 +160,24 @@ final class FileEntryIterator
     // ----------------------------------------------------------------------
 
     /**
-     * Appends entries from the given sub-path to the cached list of named entries.
+     * Normalizes the initial sub-path so it has no leading slashes and ends with a slash, unless it is empty.
      * 
      * @param subPath The sub path
+     * @return Normalized sub-path
      */
-    private void appendEntries( final String subPath )
+    private static String normalizeSubPath( final String subPath )
     {
-        final File[] listing = new File( rootPath + subPath ).listFiles();
-        if ( null != listing )
+        int i = 0;
+        final int length = null != subPath ? subPath.length() : 0;
+        while ( i < length && '/' == subPath.charAt( i ) )
         {
-            for ( final File f : listing )
-            {
-                entryNames.add( normalizePath( f ).substring( rootPath.length() ) );
-            }
+            i++;
         }
-    }
-
-    /**
-     * Returns the normalized URI path of the given file.
-     * 
-     * @param file The file to normalize
-     * @return Normalized URI path
-     */
-    private static String normalizePath( final File file )
-    {
-        return file.toURI().getPath();
+        if ( i == length )
+        {
+            return "";
+        }
+        final String path = subPath.substring( i );
+        return path.endsWith( "/" ) ? path : path + '/';
     }
 }
@@ -0,0 +1,936 @@
+/*******************************************************************************
+ * Copyright (c) 2010-2011 Sonatype, Inc.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * and Apache License v2.0 which accompanies this distribution.
+ * The Eclipse Public License is available at
+ *   http://www.eclipse.org/legal/epl-v10.html
+ * The Apache License v2.0 is available at
+ *   http://www.apache.org/licenses/LICENSE-2.0.html
+ * You may elect to redistribute this code under either of these licenses.
+ *******************************************************************************/
+package org.sonatype.guice.bean.reflect;
+
+import java.lang.ref.Reference;
+import java.lang.ref.ReferenceQueue;
+import java.lang.ref.SoftReference;
+import java.lang.ref.WeakReference;
+import java.util.AbstractCollection;
+import java.util.AbstractMap;
+import java.util.AbstractSet;
+import java.util.Collection;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.Set;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Concurrent {@link Map} whose keys or values are kept alive by soft/weak {@link Reference}s.
+ * <p>
+ * The map is split into independently locked segments, each with its own {@link ReferenceQueue}. Cleared entries are
+ * drained by writes to the same segment (and by {@link #size()}) so cleanup cost is spread over later updates. Reads
+ * never lock unless they meet a cleared entry, and iteration views are weakly consistent and never copy the map.
+ * <p>
+ * Mild keys use referential equality, mild values use the usual {@link Object#equals(Object)} key equality. Null keys
+ * and values are not supported.
+ */
+final class MildConcurrentMap<K, V>
+    extends AbstractMap<K, V>
+{
+    // ----------------------------------------------------------------------
+    // Constants
+    // ----------------------------------------------------------------------
+
+    private static final int MAX_SEGMENTS = 1 << 16;
+
+    private static final int MAX_CAPACITY = 1 << 30;
+
+    private static final float LOAD_FACTOR = 0.75f;
+
+    // ----------------------------------------------------------------------
+    // Implementation fields
+    // ----------------------------------------------------------------------
+
+    final Segment[] segments;
+
+    private final int segmentShift;
+
+    private final int segmentMask;
+
+    private final boolean mildKeys;
+
+    private final boolean soft;
+
+    private Set<K> keySet;
+
+    private Collection<V> values;
+
+    private Set<Entry<K, V>> entrySet;
+
+    // ----------------------------------------------------------------------
+    // Constructors
+    // ----------------------------------------------------------------------
+
+    @SuppressWarnings( "unchecked" )
+    MildConcurrentMap( final int capacity, final int concurrency, final boolean mildKeys, final boolean soft )
+    {
+        int shift = 0;
+        int segmentCount = 1;
+        while ( segmentCount < concurrency && segmentCount < MAX_SEGMENTS )
+        {
+            segmentCount <<= 1;
+            shift++;
+        }
+
+        segmentShift = 32 - shift;
+        segmentMask = segmentCount - 1;
+
+        int segmentCapacity = 2;
+        final int perSegment = Math.min( capacity, MAX_CAPACITY ) / segmentCount;
+        while ( segmentCapacity < perSegment )
+        {
+            segmentCapacity <<= 1;
+        }
+
+        segments = new MildConcurrentMap.Segment[segmentCount];
+        for ( int i = 0; i < segmentCount; i++ )
+        {
+            segments[i] = new Segment( segmentCapacity );
+        }
+
+        this.mildKeys = mildKeys;
+        this.soft = soft;
+    }
+
+    // ----------------------------------------------------------------------
+    // Public methods
+    // ----------------------------------------------------------------------
+
+    @Override
+    public V get( final Object key )
+    {
+        final int hash = hash( key );
+        return segmentFor( hash ).get( key, hash );
+    }
+
+    @Override
+    public boolean containsKey( final Object key )
+    {
+        return null != get( key );
+    }
+
+    @Override
+    public V put( final K key, final V value )
+    {
+        if ( null == key || null == value )
+        {
+            throw new NullPointerException();
+        }
+        final int hash = hash( key );
+        return segmentFor( hash ).put( key, hash, value );
+    }
+
+    @Override
+    public V remove( final Object key )
+    {
+        final int hash = hash( key );
+        return segmentFor( hash ).remove( key, hash );
+    }
+
+    @Override
+    public void clear()
+    {
+        for ( final Segment segment : segments )
+        {
+            segment.clear();
+        }
+    }
+
+    /**
+     * @return Number of mappings after draining any cleared entries; may include entries cleared since then
+     */
+    @Override
+    public int size()
+    {
+        long size = 0;
+        for ( final Segment segment : segments )
+        {
+            size += segment.size();
+        }
+        return size < Integer.MAX_VALUE ? (int) size : Integer.MAX_VALUE;
+    }
+
+    @Override
+    public boolean isEmpty()
+    {
+        return 0 == size();
+    }
+
+    @Override
+    public Set<K> keySet()
+    {
+        final Set<K> set = keySet;
+        return null != set ? set : ( keySet = new KeySet() );
+    }
+
+    @Override
+    public Collection<V> values()
+    {
+        final Collection<V> collection = values;
+        return null != collection ? collection : ( values = new Values() );
+    }
+
+    @Override
+    public Set<Entry<K, V>> entrySet()
+    {
+        final Set<Entry<K, V>> set = entrySet;
+        return null != set ? set : ( entrySet = new EntrySet() );
+    }
+
+    // ----------------------------------------------------------------------
+    // Implementation methods
+    // ----------------------------------------------------------------------
+
+    /**
+     * Spreads the key hash so both the high (segment) and low (bucket) bits are well distributed; mild keys use their identity hash
+     * to match their referential equality.
+     */
+    private int hash( final Object key )
+    {
+        final int h = ( mildKeys ? System.identityHashCode( key ) : key.hashCode() ) * 0x9E3779B9;
+        return h ^ ( h >>> 16 );
+    }
+
+    private Segment segmentFor( final int hash )
+    {
+        return segments[( hash >>> segmentShift ) & segmentMask];
+    }
+
+    Node newNode( final K key, final V value, final int hash, final Node next, final ReferenceQueue<Object> queue )
+    {
+        final Object mild = mildKeys ? key : value;
+        final Object strong = mildKeys ? value : key;
+        return soft ? new Soft( mild, strong, hash, next, queue ) : new Weak( mild, strong, hash, next, queue );
+    }
+
+    boolean matches( final Node node, final Object key )
+    {
+        if ( mildKeys )
+        {
+            return key == node.get();
+        }
+        final Object strongKey = node.strong();
+        return key == strongKey || key.equals( strongKey );
+    }
+
+    @SuppressWarnings( "unchecked" )
+    K key( final Node node )
+    {
+        return (K) ( mildKeys ? node.get() : node.strong() );
+    }
+
+    @SuppressWarnings( "unchecked" )
+    V value( final Node node )
+    {
+        if ( mildKeys )
+        {
+            // don't leak values of cleared keys
+            return null != node.get() ? (V) node.strong() : null;
+        }
+        return (V) node.get();
+    }
+
+    // ----------------------------------------------------------------------
+    // Implementation types
+    // ----------------------------------------------------------------------
+
+    /**
+     * Independently locked hash table with its own {@link ReferenceQueue} of cleared entries.
+     */
+    final class Segment
+        extends ReentrantLock
+    {
+        // ----------------------------------------------------------------------
+        // Constants
+        // ----------------------------------------------------------------------
+
+        private static final long serialVersionUID = 1L;
+
+        // ----------------------------------------------------------------------
+        // Implementation fields
+        // ----------------------------------------------------------------------
+
+        private final ReferenceQueue<Object> queue = new ReferenceQueue<Object>();
+
+        volatile Node[] table;
+
+        private volatile int count;
+
+        private int threshold;
+
+        // ----------------------------------------------------------------------
+        // Constructors
+        // ----------------------------------------------------------------------
+
+        Segment( final int capacity )
+        {
+            setTable( newTable( capacity ) );
+        }
+
+        // ----------------------------------------------------------------------
+        // Local methods
+        // ----------------------------------------------------------------------
+
+        V get( final Object key, final int hash )
+        {
+            if ( 0 != count ) // volatile read, makes earlier writes visible
+            {
+                final Node[] tab = table;
+                for ( Node e = tab[hash & ( tab.length - 1 )]; null != e; e = e.next() )
+                {
+                    if ( hash == e.hash() && matches( e, key ) )
+                    {
+                        final V value = value( e );
+                        // cleared or half-published: take the lock to drain and check again
+                        return null != value ? value : getUnderLock( key, hash );
+                    }
+                }
+            }
+            return null;
+        }
+
+        V put( final K key, final int hash, final V value )
+        {
+            lock();
+            try
+            {
+                int c = count - drain();
+
+                Node[] tab = table;
+                int index = hash & ( tab.length - 1 );
+                for ( Node e = tab[index]; null != e; e = e.next() )
+                {
+                    if ( hash == e.hash() && matches( e, key ) )
+                    {
+                        final V oldValue = value( e );
+                        if ( mildKeys )
+                        {
+                            e.setStrong( value );
+                        }
+                        else
+                        {
+                            // insert replacement before unlinking so readers always find one of them
+                            tab[index] = newNode( key, value, hash, tab[index], queue );
+                            unlink( tab, index, e );
+                        }
+                        count = c; // volatile write, publishes changes
+                        return oldValue;
+                    }
+                }
+
+                if ( c >= threshold && tab.length < MAX_CAPACITY )
+                {
+                    c = rehash();
+                    tab = table;
+                    index = hash & ( tab.length - 1 );
+                }
+
+                tab[index] = newNode( key, value, hash, tab[index], queue );
+                count = c + 1; // volatile write, publishes changes
+                return null;
+            }
+            finally
+            {
+                unlock();
+            }
+        }
+
+        V remove( final Object key, final int hash )
+        {
+            lock();
+            try
+            {
+                int c = count - drain();
+
+                V oldValue = null;
+                final Node[] tab = table;
+                final int index = hash & ( tab.length - 1 );
+                for ( Node e = tab[index]; null != e; e = e.next() )
+                {
+                    if ( hash == e.hash() && matches( e, key ) )
+                    {
+                        oldValue = value( e );
+                        unlink( tab, index, e );
+                        c--;
+                        break;
+                    }
+                }
+
+                count = c; // volatile write, publishes changes
+                return oldValue;
+            }
+            finally
+            {
+                unlock();
+            }
+        }
+
+        void clear()
+        {
+            lock();
+            try
+            {
+                while ( null != queue.poll() )
+                {
+                    // entries are about to be discarded anyway
+                }
+                setTable( newTable( table.length ) );
+                count = 0; // volatile write, publishes changes
+            }
+            finally
+            {
+                unlock();
+            }
+        }
+
+        int size()
+        {
+            int c = count;
+            final Reference<?> ref = queue.poll();
+            if ( null != ref )
+            {
+                lock();
+                try
+                {
+                    c = count - expunge( ref ) - drain();
+                    count = c;
+                }
+                finally
+                {
+                    unlock();
+                }
+            }
+            return c;
+        }
+
+        // ----------------------------------------------------------------------
+        // Implementation methods
+        // ----------------------------------------------------------------------
+
+        private V getUnderLock( final Object key, final int hash )
+        {
+            lock();
+            try
+            {
+                count = count - drain();
+
+                final Node[] tab = table;
+                for ( Node e = tab[hash & ( tab.length - 1 )]; null != e; e = e.next() )
+                {
+                    if ( hash == e.hash() && matches( e, key ) )
+                    {
+                        return value( e );
+                    }
+                }
+                return null;
+            }
+            finally
+            {
+                unlock();
+            }
+        }
+
+        /**
+         * Unlinks entries whose referents have been cleared; must be called while holding the lock.
+         *
+         * @return Number of entries removed
+         */
+        private int drain()
+        {
+            int removed = 0;
+            Reference<?> ref;
+            while ( null != ( ref = queue.poll() ) )
+            {
+                removed += expunge( ref );
+            }
+            return removed;
+        }
+
+        /**
+         * Unlinks the entry belonging to the given cleared reference; must be called while holding the lock.
+         *
+         * @return {@code 1} if the entry was unlinked; otherwise {@code 0}
+         */
+        private int expunge( final Reference<?> ref )
+        {
+            final Node node = (Node) ref;
+            final Node[] tab = table;
+            return unlink( tab, node.hash() & ( tab.length - 1 ), node ) ? 1 : 0;
+        }
+
+        /**
+         * Unlinks the given entry in place; concurrent readers either see it or skip straight past it.
+         */
+        private boolean unlink( final Node[] tab, final int index, final Node node )
+        {
+            Node prev = null;
+            for ( Node e = tab[index]; null != e; prev = e, e = e.next() )
+            {
+                if ( e == node )
+                {
+                    if ( null == prev )
+                    {
+                        tab[index] = e.next();
+                    }
+                    else
+                    {
+                        prev.setNext( e.next() );
+                    }
+                    return true;
+                }
+            }
+            return false; // replaced or rehashed, the live copy will be queued separately
+        }
+
+        /**
+         * Copies live entries into a table twice the size; existing chains are left untouched for concurrent readers.
+         *
+         * @return Number of live entries
+         */
+        private int rehash()
+        {
+            final Node[] oldTable = table;
+            final Node[] newTable = newTable( oldTable.length << 1 );
+            final int mask = newTable.length - 1;
+
+            int c = 0;
+            for ( final Node head : oldTable )
+            {
+                for ( Node e = head; null != e; e = e.next() )
+                {
+                    final K key = key( e );
+                    final V value = value( e );
+                    if ( null != key && null != value )
+                    {
+                        final int index = e.hash() & mask;
+                        newTable[index] = newNode( key, value, e.hash(), newTable[index], queue );
+                        c++;
+                    }
+                }
+            }
+
+            setTable( newTable );
+            return c;
+        }
+
+        private void setTable( final Node[] newTable )
+        {
+            threshold = (int) ( newTable.length * LOAD_FACTOR );
+            table = newTable;
+        }
+
+        private Node[] newTable( final int capacity )
+        {
+            return new Node[capacity];
+        }
+    }
+
+    /**
+     * Weakly consistent iterator over live entries; cleared entries are skipped but not removed.
+     */
+    abstract class Itr<T>
+        implements Iterator<T>
+    {
+        // ----------------------------------------------------------------------
+        // Implementation fields
+        // ----------------------------------------------------------------------
+
+        private int segmentIndex;
+
+        private Node[] table;
+
+        private int tableIndex;
+
+        private Node node;
+
+        private K nextKey;
+
+        private V nextValue;
+
+        private K lastKey;
+
+        // ----------------------------------------------------------------------
+        // Public methods
+        // ----------------------------------------------------------------------
+
+        public final boolean hasNext()
+        {
+            while ( null == nextKey )
+            {
+                if ( null != node )
+                {
+                    node = node.next();
+                }
+                while ( null == node )
+                {
+                    if ( null != table && tableIndex < table.length )
+                    {
+                        node = table[tableIndex++];
+                    }
+                    else if ( segmentIndex < segments.length )
+                    {
+                        table = segments[segmentIndex++].table;
+                        tableIndex = 0;
+                    }
+                    else
+                    {
+                        return false;
+                    }
+                }
+                final V value = value( node );
+                if ( null != value )
+                {
+                    nextValue = value;
+                    nextKey = key( node );
+                }
+            }
+            return true;
+        }
+
+        public final T next()
+        {
+            if ( hasNext() )
+            {
+                final T item = item( nextKey, nextValue );
+                lastKey = nextKey;
+                nextKey = null;
+                nextValue = null;
+                return item;
+            }
+            throw new NoSuchElementException();
+        }
+
+        public final void remove()
+        {
+            if ( null == lastKey )
+            {
+                throw new IllegalStateException();
+            }
+            MildConcurrentMap.this.remove( lastKey );
+            lastKey = null;
+        }
+
+        // ----------------------------------------------------------------------
+        // Customizable methods
+        // ----------------------------------------------------------------------
+
+        abstract T item( K key, V value );
+    }
+
+    final class KeySet
+        extends AbstractSet<K>
+    {
+        @Override
+        public Iterator<K> iterator()
+        {
+            return new Itr<K>()
+            {
+                @Override
+                K item( final K key, final V value )
+                {
+                    return key;
+                }
+            };
+        }
+
+        @Override
+        public boolean contains( final Object o )
+        {
+            return null != o && containsKey( o );
+        }
+
+        @Override
+        public boolean remove( final Object o )
+        {
+            return null != o && null != MildConcurrentMap.this.remove( o );
+        }
+
+        @Override
+        public int size()
+        {
+            return MildConcurrentMap.this.size();
+        }
+
+        @Override
+        public void clear()
+        {
+            MildConcurrentMap.this.clear();
+        }
+    }
+
+    final class Values
+        extends AbstractCollection<V>
+    {
+        @Override
+        public Iterator<V> iterator()
+        {
+            return new Itr<V>()
+            {
+                @Override
+                V item( final K key, final V value )
+                {
+                    return value;
+                }
+            };
+        }
+
+        @Override
+        public int size()
+        {
+            return MildConcurrentMap.this.size();
+        }
+
+        @Override
+        public void clear()
+        {
+            MildConcurrentMap.this.clear();
+        }
+    }
+
+    final class EntrySet
+        extends AbstractSet<Entry<K, V>>
+    {
+        @Override
+        public Iterator<Entry<K, V>> iterator()
+        {
+            return new Itr<Entry<K, V>>()
+            {
+                @Override
+                Entry<K, V> item( final K key, final V value )
+                {
+                    return new StrongEntry( key, value );
+                }
+            };
+        }
+
+        @Override
+        public int size()
+        {
+            return MildConcurrentMap.this.size();
+        }
+
+        @Override
+        public void clear()
+        {
+            MildConcurrentMap.this.clear();
+        }
+    }
+
+    /**
+     * Snapshot of a live entry; setting its value writes through to the map.
+     */
+    final class StrongEntry
+        implements Entry<K, V>
+    {
+        // ----------------------------------------------------------------------
+        // Implementation fields
+        // ----------------------------------------------------------------------
+
+        private final K key;
+
+        private V value;
+
+        // ----------------------------------------------------------------------
+        // Constructors
+        // ----------------------------------------------------------------------
+
+        StrongEntry( final K key, final V value )
+        {
+            this.key = key;
+            this.value = value;
+        }
+
+        // ----------------------------------------------------------------------
+        // Public methods
+        // ----------------------------------------------------------------------
+
+        public K getKey()
+        {
+            return key;
+        }
+
+        public V getValue()
+        {
+            return value;
+        }
+
+        public V setValue( final V newValue )
+        {
+            put( key, newValue );
+            final V oldValue = value;
+            value = newValue;
+            return oldValue;
+        }
+
+        @Override
+        public int hashCode()
+        {
+            return key.hashCode() ^ value.hashCode();
+        }
+
+        @Override
+        public boolean equals( final Object rhs )
+        {
+            if ( this == rhs )
+            {
+                return true;
+            }
+            if ( rhs instanceof Entry<?, ?> )
+            {
+                final Entry<?, ?> entry = (Entry<?, ?>) rhs;
+                return key.equals( entry.getKey() ) && value.equals( entry.getValue() );
+            }
+            return false;
+        }
+
+        @Override
+        public String toString()
+        {
+            return key + "=" + value;
+        }
+    }
+
+    /**
+     * Hash table entry that is also the soft/weak {@link Reference} to its mild key or value; the other half of the
+     * mapping is held strongly. Only two implementations exist so calls through this interface stay cheap.
+     */
+    interface Node
+    {
+        int hash();
+
+        Object get();
+
+        Object strong();
+
+        void setStrong( Object strong );
+
+        Node next();
+
+        void setNext( Node next );
+    }
+
+    private static final class Soft
+        extends SoftReference<Object>
+        implements Node
+    {
+        // ----------------------------------------------------------------------
+        // Implementation fields
+        // ----------------------------------------------------------------------
+
+        private final int hash;
+
+        private volatile Object strong;
+
+        private volatile Node next;
+
+        // ----------------------------------------------------------------------
+        // Constructors
+        // ----------------------------------------------------------------------
+
+        Soft( final Object mild, final Object strong, final int hash, final Node next,
+              final ReferenceQueue<Object> queue )
+        {
+            super( mild, queue );
+            this.hash = hash;
+            this.strong = strong;
+            this.next = next;
+        }
+
+        // ----------------------------------------------------------------------
+        // Public methods
+        // ----------------------------------------------------------------------
+
+        public int hash()
+        {
+            return hash;
+        }
+
+        public Object strong()
+        {
+            return strong;
+        }
+
+        public void setStrong( final Object strong )
+        {
+            this.strong = strong;
+        }
+
+        public Node next()
+        {
+            return next;
+        }
+
+        public void setNext( final Node next )
+        {
+            this.next = next;
+        }
+    }
+
+    private static final class Weak
+        extends WeakReference<Object>
+        implements Node
+    {
+        // ----------------------------------------------------------------------
+        // Implementation fields
+        // ----------------------------------------------------------------------
+
+        private final int hash;
+
+        private volatile Object strong;
+
+        private volatile Node next;
+
+        // ----------------------------------------------------------------------
+        // Constructors
+        // ----------------------------------------------------------------------
+
+        Weak( final Object mild, final Object strong, final int hash, final Node next,
+              final ReferenceQueue<Object> queue )
+        {
+            super( mild, queue );
+            this.hash = hash;
+            this.strong = strong;
+            this.next = next;
+        }
+
+        // ----------------------------------------------------------------------
+        // Public methods
+        // ----------------------------------------------------------------------
+
+        public int hash()
+        {
+            return hash;
+        }
+
+        public Object strong()
+        {
+            return strong;
+        }
+
+        public void setStrong( final Object strong )
+        {
+            this.strong = strong;
+        }
+
+        public Node next()
+        {
+            return next;
+        }
+
+        public void setNext( final Node next )
+        {
+            this.next = next;
+        }
+    }
+}
@@ -11,6 +11,9 @@
  *******************************************************************************/
 package org.sonatype.guice.bean.reflect;
 
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileNotFoundException;
 import java.io.IOException;
 import java.io.InputStream;
 import java.net.MalformedURLException;
@@ -23,13 +26,14 @@ import java.util.Iterator;
 import java.util.NoSuchElementException;
 import java.util.zip.ZipEntry;
 import java.util.zip.ZipException;
+import java.util.zip.ZipFile;
 import java.util.zip.ZipInputStream;
 
 /**
  * {@link Enumeration} of resources found by scanning JARs and directories.
  */
 final class ResourceEnumeration
-    implements Enumeration<URL>
+    implements ContentEnumeration
 {
     // ----------------------------------------------------------------------
     // Constants
@@ -61,6 +65,14 @@ final class ResourceEnumeration
 
     private String nextEntryName;
 
+    private String lastEntryName;
+
+    private URL lastResource;
+
+    private ZipFileCache.Zip zip;
+
+    private ZipFile zipFile;
+
     // ----------------------------------------------------------------------
     // Constructors
     // ----------------------------------------------------------------------
@@ -105,6 +117,7 @@ final class ResourceEnumeration
             }
             else
             {
+                close();
                 return false; // no more URLs
             }
         }
@@ -121,7 +134,8 @@ final class ResourceEnumeration
 
             try
             {
-                return findResource( name );
+                lastEntryName = name;
+                return lastResource = findResource( name );
             }
             catch ( final MalformedURLException e )
             {
@@ -132,6 +146,45 @@ final class ResourceEnumeration
         throw new NoSuchElementException();
     }
 
+    public InputStream openContent()
+        throws IOException
+    {
+        if ( null == lastEntryName )
+        {
+            throw new IllegalStateException();
+        }
+        if ( isFolder && "file".equals( currentURL.getProtocol() ) )
+        {
+            return new FileInputStream( new File( FileEntryIterator.toFile( currentURL ), lastEntryName ) );
+        }
+        if ( !isFolder && "file".equals( currentURL.getProtocol() ) )
+        {
+            if ( null == zipFile )
+            {
+                zip = ZipFileCache.get( FileEntryIterator.toFile( currentURL ) );
+                zipFile = zip.acquire();
+            }
+            final ZipEntry entry = zipFile.getEntry( lastEntryName );
+            if ( null == entry )
+            {
+                throw new FileNotFoundException( lastResource.toString() );
+            }
+            return zipFile.getInputStream( entry );
+        }
+        return Streams.open( lastResource );
+    }
+
+    public void close()
+    {
+        lastEntryName = null;
+        if ( null != zipFile )
+        {
+            zipFile = null;
+            zip.release();
+            zip = null;
+        }
+    }
+
     // ----------------------------------------------------------------------
     // Implementation methods
     // ----------------------------------------------------------------------
@@ -177,6 +230,8 @@ final class ResourceEnumeration
      */
     private Iterator<String> scan( final URL url )
     {
+        close(); // release previous archive
+
         isFolder = url.getPath().endsWith( "/" );
 
         if ( globber == GlobberStrategy.EXACT && !recurse )
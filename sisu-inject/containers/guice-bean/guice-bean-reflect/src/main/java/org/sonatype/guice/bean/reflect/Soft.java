@@ -17,7 +17,6 @@ import java.util.ArrayList;
 import java.util.Collection;
 import java.util.HashMap;
 import java.util.Map;
-import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.ConcurrentMap;
 
 /**
@@ -87,7 +86,7 @@ public final class Soft
      */
     public static <K, V> Map<K, V> concurrentKeys( final int capacity, final int concurrency )
     {
-        return new MildKeys<K, V>( new ConcurrentHashMap<Reference<K>, V>( capacity, 0.75f, concurrency ), true );
+        return new MildConcurrentMap<K, V>( capacity, concurrency, true, true );
     }
 
     /**
@@ -122,6 +121,6 @@ public final class Soft
      */
     public static <K, V> Map<K, V> concurrentValues( final int capacity, final int concurrency )
     {
-        return new MildValues<K, V>( new ConcurrentHashMap<K, Reference<V>>( capacity, 0.75f, concurrency ), true );
+        return new MildConcurrentMap<K, V>( capacity, concurrency, false, true );
     }
 }
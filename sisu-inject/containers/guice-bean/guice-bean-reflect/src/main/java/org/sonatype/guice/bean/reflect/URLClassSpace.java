@@ -19,10 +19,19 @@ import java.net.URLClassLoader;
 import java.util.ArrayList;
 import java.util.Collections;
 import java.util.Enumeration;
+import java.util.HashMap;
 import java.util.HashSet;
 import java.util.List;
+import java.util.Map;
 import java.util.Set;
-import java.util.jar.JarFile;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.SynchronousQueue;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
 import java.util.jar.JarInputStream;
 import java.util.jar.Manifest;
 
@@ -46,6 +55,10 @@ public final class URLClassSpace
 
     private static final String[] EMPTY_CLASSPATH = {};
 
+    private static final int MANIFEST_READERS = Math.min( Runtime.getRuntime().availableProcessors(), 4 );
+
+    private static final int MIN_PARALLEL_READS = 4;
+
     // ----------------------------------------------------------------------
     // Implementation fields
     // ----------------------------------------------------------------------
@@ -137,6 +150,20 @@ public final class URLClassSpace
         return new ResourceEnumeration( path, glob, recurse, getClassPath() );
     }
 
+    /**
+     * Like {@link #findEntries(String, String, boolean)} but only searches the given entry of the class path.
+     * 
+     * @param url The class path entry, as returned by {@link #getURLs()}
+     * @param path The initial search directory
+     * @param glob The filename glob pattern
+     * @param recurse When {@code true} search subdirectories; otherwise don't
+     * @return Resources found in the given class path entry
+     */
+    public ContentEnumeration findEntries( final URL url, final String path, final String glob, final boolean recurse )
+    {
+        return new ResourceEnumeration( path, glob, recurse, new URL[] { url } );
+    }
+
     public URL[] getURLs()
     {
         return getClassPath().clone();
@@ -207,6 +234,19 @@ public final class URLClassSpace
      * @return Expanded URL class path
      */
     private static URL[] expandClassPath( final URL[] classPath )
+    {
+        return expandClassPath( classPath, MANIFEST_READERS > 1 );
+    }
+
+    /**
+     * Expands the given {@link URL} class path to include Class-Path entries from local manifests, optionally reading
+     * manifests ahead on the shared reader threads when there are enough of them to read.
+     * 
+     * @param classPath The URL class path
+     * @param readAhead When {@code true} read manifests ahead of the expansion; otherwise read them one by one
+     * @return Expanded URL class path
+     */
+    static URL[] expandClassPath( final URL[] classPath, final boolean readAhead )
     {
         final List<URL> searchPath = new ArrayList<URL>();
         Collections.addAll( searchPath, classPath );
@@ -214,34 +254,49 @@ public final class URLClassSpace
         final List<URL> expandedPath = new ArrayList<URL>();
         final Set<String> visited = new HashSet<String>();
 
-        // search path may grow, so use index not iterator
-        for ( int i = 0; i < searchPath.size(); i++ )
+        final ManifestReader reader = readAhead && classPath.length >= MIN_PARALLEL_READS ? new ManifestReader() : null;
+        try
         {
-            final URL url = normalizeEntry( searchPath.get( i ) );
-            if ( null == url || !visited.add( url.toString() ) )
-            {
-                continue; // already processed
-            }
-            expandedPath.add( url );
-            final String[] classPathEntries;
-            try
-            {
-                classPathEntries = getClassPathEntries( url );
-            }
-            catch ( final IOException e )
-            {
-                continue; // missing manifest
-            }
-            for ( final String entry : classPathEntries )
+            // search path may grow, so use index not iterator
+            for ( int i = 0; i < searchPath.size(); i++ )
             {
+                if ( null != reader )
+                {
+                    reader.readAhead( searchPath );
+                }
+                final URL url = normalizeEntry( searchPath.get( i ) );
+                if ( null == url || !visited.add( url.toString() ) )
+                {
+                    continue; // already processed
+                }
+                expandedPath.add( url );
+                final String[] classPathEntries;
                 try
                 {
-                    searchPath.add( new URL( url, entry ) );
+                    classPathEntries = null != reader ? reader.getClassPathEntries( url ) : getClassPathEntries( url );
                 }
-                catch ( final MalformedURLException e ) // NOPMD
+                catch ( final IOException e )
                 {
-                    // invalid Class-Path entry
+                    continue; // missing manifest
                 }
+                for ( final String entry : classPathEntries )
+                {
+                    try
+                    {
+                        searchPath.add( new URL( url, entry ) );
+                    }
+                    catch ( final MalformedURLException e ) // NOPMD
+                    {
+                        // invalid Class-Path entry
+                    }
+                }
+            }
+        }
+        finally
+        {
+            if ( null != reader )
+            {
+                reader.cancel();
             }
         }
 
@@ -299,7 +354,7 @@ public final class URLClassSpace
         }
         else if ( "file".equals( url.getProtocol() ) )
         {
-            manifest = new JarFile( FileEntryIterator.toFile( url ) ).getManifest();
+            return ZipFileCache.get( FileEntryIterator.toFile( url ) ).classPathEntries();
         }
         else
         {
@@ -313,6 +368,17 @@ public final class URLClassSpace
                 jin.close();
             }
         }
+        return getClassPathEntries( manifest );
+    }
+
+    /**
+     * Returns the Class-Path entries listed in the given manifest; returns empty array if there are none.
+     * 
+     * @param manifest The manifest, may be {@code null}
+     * @return Array of Class-Path entries
+     */
+    static String[] getClassPathEntries( final Manifest manifest )
+    {
         if ( null != manifest )
         {
             final String classPath = manifest.getMainAttributes().getValue( "Class-Path" );
@@ -323,4 +389,95 @@ public final class URLClassSpace
         }
         return EMPTY_CLASSPATH;
     }
+
+    // ----------------------------------------------------------------------
+    // Implementation types
+    // ----------------------------------------------------------------------
+
+    /**
+     * Reads manifests of class path entries on shared worker threads, ahead of the (sequential) expansion.
+     */
+    private static final class ManifestReader
+    {
+        private static final AtomicInteger threadCount = new AtomicInteger();
+
+        // shared by all expansions; idle threads exit, and the expanding thread reads when all of them are busy
+        private static final ThreadPoolExecutor executor =
+            new ThreadPoolExecutor( 0, MANIFEST_READERS, 1, TimeUnit.SECONDS, new SynchronousQueue<Runnable>(),
+                                    new ThreadFactory()
+                                    {
+                                        public Thread newThread( final Runnable runnable )
+                                        {
+                                            final Thread thread = new Thread( runnable, threadName() );
+                                            thread.setDaemon( true );
+                                            return thread;
+                                        }
+                                    }, new ThreadPoolExecutor.CallerRunsPolicy() );
+
+        private final Map<String, Future<String[]>> pending = new HashMap<String, Future<String[]>>();
+
+        private int submitted;
+
+        /**
+         * Starts reading the manifests of all entries added to the search path since the last call.
+         */
+        void readAhead( final List<URL> searchPath )
+        {
+            for ( final int size = searchPath.size(); submitted < size; submitted++ )
+            {
+                final URL url = normalizeEntry( searchPath.get( submitted ) );
+                if ( null != url && !pending.containsKey( url.toString() ) )
+                {
+                    pending.put( url.toString(), executor.submit( new Callable<String[]>()
+                    {
+                        public String[] call()
+                            throws IOException
+                        {
+                            return URLClassSpace.getClassPathEntries( url );
+                        }
+                    } ) );
+                }
+            }
+        }
+
+        String[] getClassPathEntries( final URL url )
+            throws IOException
+        {
+            final Future<String[]> future = pending.get( url.toString() );
+            if ( null != future )
+            {
+                try
+                {
+                    return future.get();
+                }
+                catch ( final InterruptedException e )
+                {
+                    Thread.currentThread().interrupt();
+                }
+                catch ( final ExecutionException e )
+                {
+                    final Throwable cause = e.getCause();
+                    Throwables.propagateIfPossible( cause, IOException.class );
+                    throw new IOException( String.valueOf( cause ) );
+                }
+            }
+            return URLClassSpace.getClassPathEntries( url ); // not read ahead, so read it here
+        }
+
+        static String threadName()
+        {
+            return "sisu-manifest-" + threadCount.incrementAndGet();
+        }
+
+        /**
+         * Cancels any reads that have not started yet.
+         */
+        void cancel()
+        {
+            for ( final Future<String[]> future : pending.values() )
+            {
+                future.cancel( false );
+            }
+        }
+    }
 }
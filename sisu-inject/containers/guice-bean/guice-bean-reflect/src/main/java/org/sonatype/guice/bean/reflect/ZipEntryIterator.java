@@ -14,11 +14,9 @@ package org.sonatype.guice.bean.reflect;
 import java.io.IOException;
 import java.net.URL;
 import java.util.ArrayList;
-import java.util.Enumeration;
 import java.util.Iterator;
 import java.util.List;
 import java.util.zip.ZipEntry;
-import java.util.zip.ZipFile;
 import java.util.zip.ZipInputStream;
 
 /**
@@ -45,7 +43,7 @@ final class ZipEntryIterator
         {
             if ( "file".equals( url.getProtocol() ) )
             {
-                entryNames = getEntryNames( new ZipFile( FileEntryIterator.toFile( url ) ) );
+                entryNames = ZipFileCache.get( FileEntryIterator.toFile( url ) ).entryNames();
             }
             else
             {
@@ -81,31 +79,6 @@ final class ZipEntryIterator
     // Implementation methods
     // ----------------------------------------------------------------------
 
-    /**
-     * Returns a string array listing the entries in the given zip file.
-     * 
-     * @param zipFile The zip file
-     * @return Array of entry names
-     */
-    private static String[] getEntryNames( final ZipFile zipFile )
-        throws IOException
-    {
-        try
-        {
-            final String names[] = new String[zipFile.size()];
-            final Enumeration<? extends ZipEntry> e = zipFile.entries();
-            for ( int i = 0; i < names.length; i++ )
-            {
-                names[i] = e.nextElement().getName();
-            }
-            return names;
-        }
-        finally
-        {
-            zipFile.close();
-        }
-    }
-
     /**
      * Returns a string array listing the entries in the given zip stream.
      * 
@@ -0,0 +1,233 @@
+/*******************************************************************************
+ * Copyright (c) 2010-2011 Sonatype, Inc.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * and Apache License v2.0 which accompanies this distribution.
+ * The Eclipse Public License is available at
+ *   http://www.eclipse.org/legal/epl-v10.html
+ * The Apache License v2.0 is available at
+ *   http://www.apache.org/licenses/LICENSE-2.0.html
+ * You may elect to redistribute this code under either of these licenses.
+ *******************************************************************************/
+package org.sonatype.guice.bean.reflect;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.Enumeration;
+import java.util.Map;
+import java.util.jar.Manifest;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipFile;
+
+/**
+ * Cache of zip files on the local file-system, keyed by canonical path and validated against their last modified time
+ * and size. Each cached zip remembers its entry listing and manifest Class-Path, so its central directory and manifest
+ * are only read once while memory allows; {@link ZipFile} handles are shared by concurrent users and closed as soon as
+ * the last user releases them.
+ * <p>
+ * Containers should {@link #clear()} the cache once they have finished booting, as most listings are only needed for
+ * the initial scan.
+ */
+public final class ZipFileCache
+{
+    // ----------------------------------------------------------------------
+    // Constants
+    // ----------------------------------------------------------------------
+
+    private static final String MANIFEST_ENTRY = "META-INF/MANIFEST.MF";
+
+    // ----------------------------------------------------------------------
+    // Implementation fields
+    // ----------------------------------------------------------------------
+
+    private static final Map<String, Zip> zips = Soft.concurrentValues();
+
+    // ----------------------------------------------------------------------
+    // Constructors
+    // ----------------------------------------------------------------------
+
+    private ZipFileCache()
+    {
+        // static utility class, not allowed to create instances
+    }
+
+    // ----------------------------------------------------------------------
+    // Public methods
+    // ----------------------------------------------------------------------
+
+    /**
+     * Forgets all cached zip listings; zips still in use keep their handles until they are released.
+     */
+    public static void clear()
+    {
+        zips.clear();
+    }
+
+    // ----------------------------------------------------------------------
+    // Local methods
+    // ----------------------------------------------------------------------
+
+    /**
+     * Returns the cached zip for the given file, replacing any stale entry left from an earlier version of the file.
+     * 
+     * @param file The zip file
+     * @return Cached zip
+     */
+    static Zip get( final File file )
+        throws IOException
+    {
+        final File canonicalFile = file.getCanonicalFile();
+        final String key = canonicalFile.getPath();
+        final long lastModified = canonicalFile.lastModified();
+        final long length = canonicalFile.length();
+
+        Zip zip = zips.get( key );
+        if ( null == zip || zip.lastModified != lastModified || zip.length != length )
+        {
+            zips.put( key, zip = new Zip( canonicalFile, lastModified, length ) );
+        }
+        return zip;
+    }
+
+    // ----------------------------------------------------------------------
+    // Implementation types
+    // ----------------------------------------------------------------------
+
+    /**
+     * Cached zip file; callers {@link #acquire()} a shared {@link ZipFile} handle and must {@link #release()} it.
+     */
+    static final class Zip
+    {
+        final File file;
+
+        final long lastModified;
+
+        final long length;
+
+        private volatile String[] entryNames;
+
+        private volatile String[] classPathEntries;
+
+        private ZipFile zipFile;
+
+        private int users;
+
+        Zip( final File file, final long lastModified, final long length )
+        {
+            this.file = file;
+            this.lastModified = lastModified;
+            this.length = length;
+        }
+
+        /**
+         * @return Names of all entries in this zip, in central directory order; must not be modified
+         */
+        String[] entryNames()
+            throws IOException
+        {
+            String[] names = entryNames;
+            if ( null == names )
+            {
+                final ZipFile handle = acquire();
+                try
+                {
+                    names = new String[handle.size()];
+                    final Enumeration<? extends ZipEntry> e = handle.entries();
+                    for ( int i = 0; i < names.length; i++ )
+                    {
+                        names[i] = e.nextElement().getName();
+                    }
+                    entryNames = names;
+                }
+                finally
+                {
+                    release();
+                }
+            }
+            return names;
+        }
+
+        /**
+         * @return Class-Path entries from the manifest of this zip, if any; must not be modified
+         */
+        String[] classPathEntries()
+            throws IOException
+        {
+            String[] entries = classPathEntries;
+            if ( null == entries )
+            {
+                final ZipFile handle = acquire();
+                try
+                {
+                    ZipEntry entry = handle.getEntry( MANIFEST_ENTRY );
+                    if ( null == entry )
+                    {
+                        // same fallback as JarFile, which accepts any case
+                        for ( final String name : entryNames() )
+                        {
+                            if ( MANIFEST_ENTRY.equalsIgnoreCase( name ) )
+                            {
+                                entry = handle.getEntry( name );
+                                break;
+                            }
+                        }
+                    }
+                    Manifest manifest = null;
+                    if ( null != entry )
+                    {
+                        final InputStream in = handle.getInputStream( entry );
+                        try
+                        {
+                            manifest = new Manifest( in );
+                        }
+                        finally
+                        {
+                            in.close();
+                        }
+                    }
+                    entries = URLClassSpace.getClassPathEntries( manifest );
+                    classPathEntries = entries;
+                }
+                finally
+                {
+                    release();
+                }
+            }
+            return entries;
+        }
+
+        /**
+         * @return Shared handle to this zip, opening it if necessary
+         */
+        synchronized ZipFile acquire()
+            throws IOException
+        {
+            if ( null == zipFile )
+            {
+                zipFile = new ZipFile( file );
+            }
+            users++;
+            return zipFile;
+        }
+
+        /**
+         * Releases a handle previously returned from {@link #acquire()}; the last release closes the handle.
+         */
+        synchronized void release()
+        {
+            if ( 0 == --users && null != zipFile )
+            {
+                try
+                {
+                    zipFile.close();
+                }
+                catch ( final IOException e ) // NOPMD
+                {
+                    // ignore
+                }
+                zipFile = null;
+            }
+        }
+    }
+}
@@ -19,9 +19,11 @@ import java.net.URL;
 import java.nio.channels.Channels;
 import java.nio.channels.FileChannel;
 import java.nio.channels.ReadableByteChannel;
+import java.util.ArrayList;
 import java.util.Enumeration;
 import java.util.HashSet;
 import java.util.Iterator;
+import java.util.List;
 import java.util.NoSuchElementException;
 import java.util.Set;
 import java.util.zip.ZipEntry;
@@ -160,6 +162,27 @@ public class FileEntryIteratorTest
         assertTrue( names.isEmpty() );
     }
 
+    public void testBreadthFirstOrder()
+        throws Exception
+    {
+        final Iterator<String> i = new FileEntryIterator( expand( resource( "simple.jar" ) ), "//", true );
+
+        int depth = 0;
+        final List<String> names = new ArrayList<String>();
+        while ( i.hasNext() )
+        {
+            final String name = i.next();
+            final int nameDepth = name.replaceAll( "[^/]", "" ).length() - ( name.endsWith( "/" ) ? 1 : 0 );
+            assertTrue( name, nameDepth >= depth );
+            depth = nameDepth;
+            names.add( name );
+        }
+
+        assertEquals( 15, names.size() );
+        assertTrue( names.indexOf( "a/" ) < names.indexOf( "a/1" ) );
+        assertTrue( names.indexOf( "x/y/" ) < names.indexOf( "x/y/6" ) );
+    }
+
     public void testRemoveNotSupported()
         throws IOException
     {
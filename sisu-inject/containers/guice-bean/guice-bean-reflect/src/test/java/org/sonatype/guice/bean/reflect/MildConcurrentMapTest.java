@@ -0,0 +1,319 @@
+/*******************************************************************************
+ * Copyright (c) 2010-2011 Sonatype, Inc.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * and Apache License v2.0 which accompanies this distribution.
+ * The Eclipse Public License is available at
+ *   http://www.eclipse.org/legal/epl-v10.html
+ * The Apache License v2.0 is available at
+ *   http://www.apache.org/licenses/LICENSE-2.0.html
+ * You may elect to redistribute this code under either of these licenses.
+ *******************************************************************************/
+package org.sonatype.guice.bean.reflect;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.Map;
+import java.util.Map.Entry;
+import java.util.NoSuchElementException;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicReference;
+
+import junit.framework.TestCase;
+
+public class MildConcurrentMapTest
+    extends TestCase
+{
+    public void testSoftKeys()
+    {
+        testKeys( true );
+    }
+
+    public void testWeakKeys()
+    {
+        testKeys( false );
+    }
+
+    public void testSoftValues()
+    {
+        testValues( true );
+    }
+
+    public void testWeakValues()
+    {
+        testValues( false );
+    }
+
+    public void testKeysUseReferentialEquality()
+    {
+        final Map<String, String> names = new MildConcurrentMap<String, String>( 16, 4, true, false );
+
+        final String a1 = new String( "A" ), a2 = new String( "A" );
+
+        names.put( a1, "1" );
+        names.put( a2, "2" );
+
+        assertEquals( 2, names.size() );
+        assertEquals( "1", names.get( a1 ) );
+        assertEquals( "2", names.get( a2 ) );
+        assertNull( names.get( "A" ) );
+
+        assertEquals( "1", names.put( a1, "one" ) );
+        assertEquals( "one", names.get( a1 ) );
+        assertEquals( "2", names.remove( a2 ) );
+        assertNull( names.remove( a2 ) );
+        assertEquals( 1, names.size() );
+
+        final Entry<String, String> entry = names.entrySet().iterator().next();
+        assertSame( a1, entry.getKey() );
+        assertEquals( "one", entry.setValue( "uno" ) );
+        assertEquals( "uno", names.get( a1 ) );
+    }
+
+    public void testNullsNotSupported()
+    {
+        final Map<String, String> names = new MildConcurrentMap<String, String>( 16, 4, false, false );
+
+        try
+        {
+            names.put( "A", null );
+            fail( "Expected NullPointerException" );
+        }
+        catch ( final NullPointerException e )
+        {
+        }
+
+        try
+        {
+            names.put( null, "1" );
+            fail( "Expected NullPointerException" );
+        }
+        catch ( final NullPointerException e )
+        {
+        }
+    }
+
+    public void testConcurrentGrowth()
+        throws InterruptedException
+    {
+        final Map<Integer, String> map = new MildConcurrentMap<Integer, String>( 2, 4, false, true );
+        final List<String> values = new ArrayList<String>();
+        for ( int i = 0; i < 4000; i++ )
+        {
+            values.add( "V" + i ); // keep values alive for the duration of the test
+        }
+
+        final AtomicReference<String> failure = new AtomicReference<String>();
+        final Thread[] threads = new Thread[4];
+        for ( int t = 0; t < threads.length; t++ )
+        {
+            final int offset = t;
+            threads[t] = new Thread()
+            {
+                @Override
+                public void run()
+                {
+                    for ( int i = offset; i < values.size(); i += threads.length )
+                    {
+                        map.put( Integer.valueOf( i ), values.get( i ) );
+                        // earlier entries must stay visible while other threads resize the table
+                        for ( int j = offset; j <= i; j += threads.length * 97 )
+                        {
+                            if ( values.get( j ) != map.get( Integer.valueOf( j ) ) )
+                            {
+                                failure.compareAndSet( null, "Missing entry " + j + " after " + i );
+                            }
+                        }
+                    }
+                }
+            };
+        }
+        for ( final Thread thread : threads )
+        {
+            thread.start();
+        }
+        for ( final Thread thread : threads )
+        {
+            thread.join();
+        }
+
+        assertNull( failure.get() );
+        assertEquals( values.size(), map.size() );
+
+        final Set<String> seen = new HashSet<String>( map.values() );
+        assertEquals( new HashSet<String>( values ), seen );
+
+        map.clear();
+        assertTrue( map.isEmpty() );
+        assertFalse( map.keySet().iterator().hasNext() );
+    }
+
+    private static void testKeys( final boolean soft )
+    {
+        final Map<String, String> names = new MildConcurrentMap<String, String>( 16, 4, true, soft );
+
+        String a = new String( "A" ), b = new String( "B" ), c = new String( "C" );
+
+        assertTrue( names.isEmpty() );
+
+        names.put( a, "1" );
+        names.put( b, "2" );
+        names.put( c, "3" );
+
+        assertEquals( 3, names.size() );
+        assertEquals( "2", names.get( b ) );
+        assertTrue( names.containsKey( c ) );
+
+        Iterator<String> itr = names.keySet().iterator();
+        while ( itr.hasNext() )
+        {
+            if ( b == itr.next() )
+            {
+                itr.remove();
+            }
+        }
+
+        assertEquals( 2, names.size() );
+        assertNull( names.get( b ) );
+
+        names.put( b = new String( "b2b" ), "2" );
+
+        assertEquals( set( "A", "C", "b2b" ), new HashSet<String>( names.keySet() ) );
+        assertEquals( set( "1", "2", "3" ), new HashSet<String>( names.values() ) );
+
+        itr = names.keySet().iterator();
+        itr.next();
+        itr.next();
+        itr.next();
+
+        try
+        {
+            itr.next();
+            fail( "Expected NoSuchElementException" );
+        }
+        catch ( final NoSuchElementException e )
+        {
+        }
+
+        itr = null;
+        int size;
+
+        size = names.size();
+        c = null; // clear so element can be evicted
+        gc( names, size );
+
+        assertEquals( set( "A", "b2b" ), new HashSet<String>( names.keySet() ) );
+        assertEquals( 2, names.size() );
+
+        size = names.size();
+        a = null; // clear so element can be evicted
+        gc( names, size );
+
+        assertEquals( set( "b2b" ), new HashSet<String>( names.keySet() ) );
+        assertEquals( "2", names.get( b ) );
+
+        size = names.size();
+        b = null; // clear so element can be evicted
+        gc( names, size );
+
+        assertTrue( names.isEmpty() );
+        assertFalse( names.entrySet().iterator().hasNext() );
+    }
+
+    private static void testValues( final boolean soft )
+    {
+        final Map<String, String> names = new MildConcurrentMap<String, String>( 16, 4, false, soft );
+
+        String a = new String( "A" ), b = new String( "B" ), c = new String( "C" );
+
+        names.put( "1", a );
+        names.put( "2", b );
+        names.put( "3", c );
+
+        assertEquals( 3, names.size() );
+        assertSame( b, names.get( new String( "2" ) ) );
+
+        assertSame( b, names.put( "2", b = new String( "b2b" ) ) );
+        assertEquals( 3, names.size() );
+        assertSame( b, names.get( "2" ) );
+
+        Iterator<String> itr = names.values().iterator();
+        while ( itr.hasNext() )
+        {
+            if ( a == itr.next() )
+            {
+                itr.remove();
+            }
+        }
+
+        assertEquals( set( "2", "3" ), new HashSet<String>( names.keySet() ) );
+        names.put( "1", a );
+
+        itr = null;
+        int size;
+
+        size = names.size();
+        c = null; // clear so element can be evicted
+        gc( names, size );
+
+        assertEquals( set( "A", "b2b" ), new HashSet<String>( names.values() ) );
+        assertNull( names.get( "3" ) );
+
+        size = names.size();
+        a = null; // clear so element can be evicted
+        gc( names, size );
+
+        assertEquals( set( "b2b" ), new HashSet<String>( names.values() ) );
+
+        size = names.size();
+        b = null; // clear so element can be evicted
+        gc( names, size );
+
+        assertTrue( names.isEmpty() );
+        assertFalse( names.values().iterator().hasNext() );
+    }
+
+    private static Set<String> set( final String... elements )
+    {
+        final Set<String> set = new HashSet<String>();
+        for ( final String e : elements )
+        {
+            set.add( e );
+        }
+        return set;
+    }
+
+    private static int gc( final Map<?, ?> map, final int size )
+    {
+        /*
+         * Keep forcing GC until the collection compacts itself
+         */
+        int gcCount = 0, hash = 0;
+        do
+        {
+            try
+            {
+                final List<byte[]> buf = new LinkedList<byte[]>();
+                for ( int i = 0; i < 1024 * 1024; i++ )
+                {
+                    // try to trigger aggressive GC
+                    buf.add( new byte[1024 * 1024] );
+                }
+                hash += buf.hashCode(); // so JIT doesn't optimize this away
+            }
+            catch ( final OutOfMemoryError e )
+            {
+                // ignore...
+            }
+
+            System.gc();
+            gcCount++;
+        }
+        while ( map.size() == size && gcCount < 1024 );
+
+        return hash;
+    }
+}
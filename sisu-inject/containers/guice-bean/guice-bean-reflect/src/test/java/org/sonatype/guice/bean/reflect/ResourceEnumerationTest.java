@@ -13,8 +13,12 @@ package org.sonatype.guice.bean.reflect;
 
 import static org.sonatype.guice.bean.reflect.FileEntryIteratorTest.expand;
 
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
 import java.lang.reflect.Field;
 import java.net.URL;
+import java.util.Arrays;
 import java.util.Enumeration;
 import java.util.NoSuchElementException;
 
@@ -175,6 +179,36 @@ public class ResourceEnumerationTest
         assertFalse( e.hasMoreElements() );
     }
 
+    public void testContentEnumeration()
+        throws Exception
+    {
+        final URL nestedJar = new URL( "jar:" + URLClassSpaceTest.class.getClassLoader().getResource( "nested.war" )
+            + "!/WEB-INF/lib/commons-logging-1.1.1.jar" );
+
+        final ContentEnumeration e =
+            new ResourceEnumeration( null, "*.class", true, new URL[] { COMMONS_LOGGING_JAR, expand( COMMONS_LOGGING_JAR ),
+                nestedJar } );
+
+        int n = 0;
+        while ( e.hasMoreElements() )
+        {
+            final URL url = e.nextElement();
+            assertTrue( Arrays.equals( read( url.openStream() ), read( e.openContent() ) ) );
+            n++;
+        }
+        assertEquals( 3 * 28, n );
+
+        e.close();
+        try
+        {
+            e.openContent().close();
+            fail( "Expected IllegalStateException" );
+        }
+        catch ( final IllegalStateException ise )
+        {
+        }
+    }
+
     public void testBrokenUrlEnumeration()
         throws Exception
     {
@@ -197,4 +231,22 @@ public class ResourceEnumerationTest
         {
         }
     }
+
+    private static byte[] read( final InputStream in )
+        throws IOException
+    {
+        try
+        {
+            final ByteArrayOutputStream buf = new ByteArrayOutputStream();
+            for ( int b = in.read(); b >= 0; b = in.read() )
+            {
+                buf.write( b );
+            }
+            return buf.toByteArray();
+        }
+        finally
+        {
+            in.close();
+        }
+    }
 }
@@ -151,6 +151,24 @@ public class URLClassSpaceTest
             BROKEN_JAR, COMMONS_LOGGING_JAR }, space.getURLs() ) );
     }
 
+    public void testParallelClassPathExpansion()
+    {
+        final URL[] classPath =
+            { SIMPLE_JAR, CLASS_PATH_JAR, null, CORRUPT_MANIFEST, CLASS_PATH_JAR, NESTED_WAR, SIMPLE_JAR };
+
+        final URL[] expandedPath = URLClassSpace.expandClassPath( classPath, false );
+        assertTrue( Arrays.equals( new URL[] { SIMPLE_JAR, CLASS_PATH_JAR, CORRUPT_MANIFEST, NESTED_WAR, BROKEN_JAR,
+            COMMONS_LOGGING_JAR }, expandedPath ) );
+
+        assertTrue( Arrays.equals( expandedPath, URLClassSpace.expandClassPath( classPath, true ) ) );
+
+        for ( int i = 0; i < 2; i++ )
+        {
+            final URLClassSpace space = new URLClassSpace( URLClassLoader.newInstance( classPath ) );
+            assertTrue( Arrays.equals( expandedPath, space.getURLs() ) );
+        }
+    }
+
     public void testNullSearchPath()
     {
         final ClassSpace space = new URLClassSpace( getClass().getClassLoader(), null );
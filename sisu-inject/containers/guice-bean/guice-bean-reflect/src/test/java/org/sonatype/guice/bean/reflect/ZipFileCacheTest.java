@@ -0,0 +1,183 @@
+/*******************************************************************************
+ * Copyright (c) 2010-2011 Sonatype, Inc.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * and Apache License v2.0 which accompanies this distribution.
+ * The Eclipse Public License is available at
+ *   http://www.eclipse.org/legal/epl-v10.html
+ * The Apache License v2.0 is available at
+ *   http://www.apache.org/licenses/LICENSE-2.0.html
+ * You may elect to redistribute this code under either of these licenses.
+ *******************************************************************************/
+package org.sonatype.guice.bean.reflect;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.List;
+import java.util.zip.ZipFile;
+
+import junit.framework.TestCase;
+
+import org.sonatype.guice.bean.reflect.ZipFileCache.Zip;
+
+public class ZipFileCacheTest
+    extends TestCase
+{
+    private File jar;
+
+    @Override
+    protected void setUp()
+        throws IOException
+    {
+        jar = File.createTempFile( "cached", ".jar" );
+        copy( "simple.jar", jar );
+    }
+
+    @Override
+    protected void tearDown()
+    {
+        ZipFileCache.clear();
+        jar.delete();
+    }
+
+    public void testListingIsShared()
+        throws IOException
+    {
+        final String[] names = ZipFileCache.get( jar ).entryNames();
+        assertEquals( 15, names.length );
+
+        final File alias = new File( jar.getParentFile(), "." + File.separator + jar.getName() );
+        assertSame( ZipFileCache.get( jar ), ZipFileCache.get( alias ) );
+        assertSame( names, ZipFileCache.get( alias ).entryNames() );
+
+        assertEquals( Arrays.asList( names ), list( new ZipEntryIterator( jar.toURI().toURL() ) ) );
+    }
+
+    public void testHandleIsShared()
+        throws IOException
+    {
+        final Zip zip = ZipFileCache.get( jar );
+        final ZipFile handle = zip.acquire();
+        try
+        {
+            assertSame( handle, zip.acquire() );
+            zip.release();
+        }
+        finally
+        {
+            zip.release();
+        }
+        try
+        {
+            handle.size();
+            fail( "Expected IllegalStateException" ); // closed by the last release
+        }
+        catch ( final IllegalStateException e )
+        {
+        }
+        assertEquals( 15, zip.entryNames().length ); // listing outlives the handle
+    }
+
+    public void testClear()
+        throws IOException
+    {
+        final Zip zip = ZipFileCache.get( jar );
+        assertSame( zip, ZipFileCache.get( jar ) );
+        ZipFileCache.clear();
+        assertNotSame( zip, ZipFileCache.get( jar ) );
+    }
+
+    public void testManifestIsShared()
+        throws IOException
+    {
+        copy( "class path.jar", jar );
+
+        final Zip zip = ZipFileCache.get( jar );
+        final String[] entries = zip.classPathEntries();
+        assertEquals( Arrays.asList( "broken.jar", "commons-logging-1.1.1.jar", "zzz:missing.jar", "class%20path.jar",
+                                     "simple.jar" ), Arrays.asList( entries ) );
+        assertSame( entries, ZipFileCache.get( jar ).classPathEntries() );
+
+        copy( "empty.jar", jar );
+        assertEquals( 0, ZipFileCache.get( jar ).classPathEntries().length );
+    }
+
+    public void testStaleZipIsReplaced()
+        throws IOException
+    {
+        final Zip zip = ZipFileCache.get( jar );
+        assertEquals( 15, zip.entryNames().length );
+        final ZipFile handle = zip.acquire();
+
+        copy( "empty.jar", jar );
+
+        final Zip newZip = ZipFileCache.get( jar );
+        assertNotSame( zip, newZip );
+        assertEquals( Arrays.asList( "META-INF/MANIFEST.MF" ), Arrays.asList( newZip.entryNames() ) );
+
+        assertEquals( 15, handle.size() ); // still in use
+        zip.release();
+        try
+        {
+            handle.size();
+            fail( "Expected IllegalStateException" );
+        }
+        catch ( final IllegalStateException e )
+        {
+        }
+    }
+
+    public void testBrokenZip()
+    {
+        try
+        {
+            ZipFileCache.get( new File( jar.getParentFile(), "missing.jar" ) ).entryNames();
+            fail( "Expected IOException" );
+        }
+        catch ( final IOException e )
+        {
+        }
+    }
+
+    private static List<String> list( final Iterator<String> itr )
+    {
+        final List<String> names = new ArrayList<String>();
+        while ( itr.hasNext() )
+        {
+            names.add( itr.next() );
+        }
+        return names;
+    }
+
+    private static void copy( final String name, final File file )
+        throws IOException
+    {
+        final InputStream in = ZipFileCacheTest.class.getClassLoader().getResourceAsStream( name );
+        try
+        {
+            final OutputStream out = new FileOutputStream( file );
+            try
+            {
+                final byte[] buf = new byte[4096];
+                for ( int n; ( n = in.read( buf ) ) > 0; )
+                {
+                    out.write( buf, 0, n );
+                }
+            }
+            finally
+            {
+                out.close();
+            }
+        }
+        finally
+        {
+            in.close();
+        }
+    }
+}
@@ -0,0 +1,684 @@
+/*******************************************************************************
+ * Copyright (c) 2010-2011 Sonatype, Inc.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * and Apache License v2.0 which accompanies this distribution.
+ * The Eclipse Public License is available at
+ *   http://www.eclipse.org/legal/epl-v10.html
+ * The Apache License v2.0 is available at
+ *   http://www.apache.org/licenses/LICENSE-2.0.html
+ * You may elect to redistribute this code under either of these licenses.
+ *******************************************************************************/
+package org.sonatype.guice.bean.scanners;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.UnsupportedEncodingException;
+import java.lang.reflect.Array;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.sonatype.guice.bean.scanners.asm.AnnotationVisitor;
+import org.sonatype.guice.bean.scanners.asm.Attribute;
+import org.sonatype.guice.bean.scanners.asm.ClassVisitor;
+import org.sonatype.guice.bean.scanners.asm.FieldVisitor;
+import org.sonatype.guice.bean.scanners.asm.MethodVisitor;
+import org.sonatype.guice.bean.scanners.asm.Type;
+
+/**
+ * Record of a class header and its class-level annotations, which is all that bean scanning looks at. Records are
+ * captured while scanning and can be replayed into a {@link ClassVisitor} without parsing the class again.
+ */
+final class ClassRecord
+{
+    // ----------------------------------------------------------------------
+    // Constants
+    // ----------------------------------------------------------------------
+
+    private static final byte ANNOTATION = 1;
+
+    private static final byte NESTED = 2;
+
+    private static final byte ARRAY = 3;
+
+    private static final byte VALUE = 4;
+
+    private static final byte ENUM = 5;
+
+    private static final byte END = 6;
+
+    private static final String[] NO_STRINGS = {};
+
+    private static final String UTF_8 = "UTF-8";
+
+    // ----------------------------------------------------------------------
+    // Implementation fields
+    // ----------------------------------------------------------------------
+
+    final String name;
+
+    private final int version;
+
+    private final int access;
+
+    private final String signature;
+
+    private final String superName;
+
+    private final String[] interfaces;
+
+    /**
+     * Annotation events: each op-code is followed by its operands, annotations and arrays are closed by {@link #END}.
+     */
+    private final List<Object> ops;
+
+    // ----------------------------------------------------------------------
+    // Constructors
+    // ----------------------------------------------------------------------
+
+    ClassRecord( final int version, final int access, final String name, final String signature,
+                 final String superName, final String[] interfaces, final List<Object> ops )
+    {
+        this.version = version;
+        this.access = access;
+        this.name = name;
+        this.signature = signature;
+        this.superName = superName;
+        this.interfaces = null != interfaces ? interfaces : NO_STRINGS;
+        this.ops = ops;
+    }
+
+    // ----------------------------------------------------------------------
+    // Local methods
+    // ----------------------------------------------------------------------
+
+    /**
+     * Replays the recorded class header and annotations into the given {@link ClassVisitor}.
+     *
+     * @param cv The class visitor
+     */
+    void accept( final ClassVisitor cv )
+    {
+        cv.visit( version, access, name, signature, superName, interfaces );
+
+        final List<AnnotationVisitor> outer = new ArrayList<AnnotationVisitor>();
+        AnnotationVisitor av = null;
+        for ( int i = 0, size = ops.size(); i < size; )
+        {
+            final byte op = ( (Byte) ops.get( i++ ) ).byteValue();
+            if ( END == op )
+            {
+                if ( null != av )
+                {
+                    av.visitEnd();
+                }
+                av = outer.remove( outer.size() - 1 );
+                continue;
+            }
+            final String valueName = (String) ops.get( i++ );
+            switch ( op )
+            {
+                case ANNOTATION:
+                {
+                    final boolean visible = ( (Boolean) ops.get( i++ ) ).booleanValue();
+                    outer.add( av );
+                    av = cv.visitAnnotation( valueName, visible );
+                    break;
+                }
+                case NESTED:
+                {
+                    final String desc = (String) ops.get( i++ );
+                    outer.add( av );
+                    av = null != av ? av.visitAnnotation( valueName, desc ) : null;
+                    break;
+                }
+                case ARRAY:
+                {
+                    outer.add( av );
+                    av = null != av ? av.visitArray( valueName ) : null;
+                    break;
+                }
+                case VALUE:
+                {
+                    final Object value = ops.get( i++ );
+                    if ( null != av )
+                    {
+                        av.visit( valueName, value );
+                    }
+                    break;
+                }
+                default:
+                {
+                    final String desc = (String) ops.get( i++ );
+                    final String value = (String) ops.get( i++ );
+                    if ( null != av )
+                    {
+                        av.visitEnum( valueName, desc, value );
+                    }
+                    break;
+                }
+            }
+        }
+
+        cv.visitEnd();
+    }
+
+    /**
+     * Writes this record to the given output, adding its strings to the output's string table.
+     *
+     * @param out The output
+     */
+    void writeTo( final Output out )
+        throws IOException
+    {
+        out.writeString( name );
+        out.writeVarInt( version );
+        out.writeVarInt( access );
+        out.writeString( signature );
+        out.writeString( superName );
+        out.writeVarInt( interfaces.length );
+        for ( final String i : interfaces )
+        {
+            out.writeString( i );
+        }
+        out.writeVarInt( ops.size() );
+        for ( int i = 0, size = ops.size(); i < size; )
+        {
+            final byte op = ( (Byte) ops.get( i++ ) ).byteValue();
+            out.body.writeByte( op );
+            switch ( op )
+            {
+                case ANNOTATION:
+                    out.writeString( (String) ops.get( i++ ) );
+                    out.body.writeBoolean( ( (Boolean) ops.get( i++ ) ).booleanValue() );
+                    break;
+                case NESTED:
+                case ENUM:
+                    out.writeString( (String) ops.get( i++ ) );
+                    out.writeString( (String) ops.get( i++ ) );
+                    if ( ENUM == op )
+                    {
+                        out.writeString( (String) ops.get( i++ ) );
+                    }
+                    break;
+                case ARRAY:
+                    out.writeString( (String) ops.get( i++ ) );
+                    break;
+                case VALUE:
+                    out.writeString( (String) ops.get( i++ ) );
+                    out.writeValue( ops.get( i++ ) );
+                    break;
+                default:
+                    break;
+            }
+        }
+    }
+
+    /**
+     * Reads a record previously written by {@link #writeTo(Output)}.
+     *
+     * @param in The input
+     * @return Class record
+     */
+    static ClassRecord readFrom( final Input in )
+    {
+        final String name = in.readString();
+        final int version = in.readVarInt();
+        final int access = in.readVarInt();
+        final String signature = in.readString();
+        final String superName = in.readString();
+        final String[] interfaces = new String[in.readVarInt()];
+        for ( int i = 0; i < interfaces.length; i++ )
+        {
+            interfaces[i] = in.readString();
+        }
+        final int size = in.readVarInt();
+        final List<Object> ops = new ArrayList<Object>( size );
+        while ( ops.size() < size )
+        {
+            final byte op = in.buf.get();
+            ops.add( Byte.valueOf( op ) );
+            switch ( op )
+            {
+                case ANNOTATION:
+                    ops.add( in.readString() );
+                    ops.add( Boolean.valueOf( 0 != in.buf.get() ) );
+                    break;
+                case NESTED:
+                case ENUM:
+                    ops.add( in.readString() );
+                    ops.add( in.readString() );
+                    if ( ENUM == op )
+                    {
+                        ops.add( in.readString() );
+                    }
+                    break;
+                case ARRAY:
+                    ops.add( in.readString() );
+                    break;
+                case VALUE:
+                    ops.add( in.readString() );
+                    ops.add( in.readValue() );
+                    break;
+                case END:
+                    break;
+                default:
+                    throw new IllegalStateException( "Unknown op-code: " + op );
+            }
+        }
+        return new ClassRecord( version, access, name, signature, superName, interfaces, ops );
+    }
+
+    // ----------------------------------------------------------------------
+    // Implementation types
+    // ----------------------------------------------------------------------
+
+    /**
+     * {@link ClassVisitor} that passes events on to an optional delegate while recording the class header and
+     * class-level annotations; classes with at least one annotation are added to the given list at the end.
+     */
+    static final class Recorder
+        implements ClassVisitor
+    {
+        private final ClassVisitor delegate;
+
+        private final List<ClassRecord> records;
+
+        private final List<Object> ops = new ArrayList<Object>();
+
+        private int version;
+
+        private int access;
+
+        private String name;
+
+        private String signature;
+
+        private String superName;
+
+        private String[] interfaces;
+
+        Recorder( final ClassVisitor delegate, final List<ClassRecord> records )
+        {
+            this.delegate = delegate;
+            this.records = records;
+        }
+
+        public void visit( final int _version, final int _access, final String _name, final String _signature,
+                           final String _superName, final String[] _interfaces )
+        {
+            version = _version;
+            access = _access;
+            name = _name;
+            signature = _signature;
+            superName = _superName;
+            interfaces = _interfaces;
+            if ( null != delegate )
+            {
+                delegate.visit( _version, _access, _name, _signature, _superName, _interfaces );
+            }
+        }
+
+        public void visitSource( final String source, final String debug )
+        {
+            if ( null != delegate )
+            {
+                delegate.visitSource( source, debug );
+            }
+        }
+
+        public void visitOuterClass( final String owner, final String _name, final String desc )
+        {
+            if ( null != delegate )
+            {
+                delegate.visitOuterClass( owner, _name, desc );
+            }
+        }
+
+        public AnnotationVisitor visitAnnotation( final String desc, final boolean visible )
+        {
+            ops.add( Byte.valueOf( ANNOTATION ) );
+            ops.add( desc );
+            ops.add( Boolean.valueOf( visible ) );
+            return new AnnotationRecorder( null != delegate ? delegate.visitAnnotation( desc, visible ) : null, ops );
+        }
+
+        public void visitAttribute( final Attribute attr )
+        {
+            if ( null != delegate )
+            {
+                delegate.visitAttribute( attr );
+            }
+        }
+
+        public void visitInnerClass( final String _name, final String outerName, final String innerName,
+                                     final int _access )
+        {
+            if ( null != delegate )
+            {
+                delegate.visitInnerClass( _name, outerName, innerName, _access );
+            }
+        }
+
+        public FieldVisitor visitField( final int _access, final String _name, final String desc,
+                                        final String _signature, final Object value )
+        {
+            return null != delegate ? delegate.visitField( _access, _name, desc, _signature, value ) : null;
+        }
+
+        public MethodVisitor visitMethod( final int _access, final String _name, final String desc,
+                                          final String _signature, final String[] exceptions )
+        {
+            return null != delegate ? delegate.visitMethod( _access, _name, desc, _signature, exceptions ) : null;
+        }
+
+        public void visitEnd()
+        {
+            if ( null != name && !ops.isEmpty() )
+            {
+                records.add( new ClassRecord( version, access, name, signature, superName, interfaces, ops ) );
+            }
+            if ( null != delegate )
+            {
+                delegate.visitEnd();
+            }
+        }
+    }
+
+    /**
+     * {@link AnnotationVisitor} that passes events on to an optional delegate while recording them.
+     */
+    private static final class AnnotationRecorder
+        implements AnnotationVisitor
+    {
+        private final AnnotationVisitor delegate;
+
+        private final List<Object> ops;
+
+        AnnotationRecorder( final AnnotationVisitor delegate, final List<Object> ops )
+        {
+            this.delegate = delegate;
+            this.ops = ops;
+        }
+
+        public void visit( final String name, final Object value )
+        {
+            if ( value.getClass().isArray() )
+            {
+                // arrays of primitive values are equivalent to visiting each element
+                ops.add( Byte.valueOf( ARRAY ) );
+                ops.add( name );
+                for ( int i = 0, length = Array.getLength( value ); i < length; i++ )
+                {
+                    ops.add( Byte.valueOf( VALUE ) );
+                    ops.add( null );
+                    ops.add( Array.get( value, i ) );
+                }
+                ops.add( Byte.valueOf( END ) );
+            }
+            else
+            {
+                ops.add( Byte.valueOf( VALUE ) );
+                ops.add( name );
+                ops.add( value );
+            }
+            if ( null != delegate )
+            {
+                delegate.visit( name, value );
+            }
+        }
+
+        public void visitEnum( final String name, final String desc, final String value )
+        {
+            ops.add( Byte.valueOf( ENUM ) );
+            ops.add( name );
+            ops.add( desc );
+            ops.add( value );
+            if ( null != delegate )
+            {
+                delegate.visitEnum( name, desc, value );
+            }
+        }
+
+        public AnnotationVisitor visitAnnotation( final String name, final String desc )
+        {
+            ops.add( Byte.valueOf( NESTED ) );
+            ops.add( name );
+            ops.add( desc );
+            return new AnnotationRecorder( null != delegate ? delegate.visitAnnotation( name, desc ) : null, ops );
+        }
+
+        public AnnotationVisitor visitArray( final String name )
+        {
+            ops.add( Byte.valueOf( ARRAY ) );
+            ops.add( name );
+            return new AnnotationRecorder( null != delegate ? delegate.visitArray( name ) : null, ops );
+        }
+
+        public void visitEnd()
+        {
+            ops.add( Byte.valueOf( END ) );
+            if ( null != delegate )
+            {
+                delegate.visitEnd();
+            }
+        }
+    }
+
+    /**
+     * Buffers records with a shared string table, so each distinct name or descriptor is only written once.
+     */
+    static final class Output
+    {
+        private final ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+
+        final DataOutputStream body = new DataOutputStream( bytes );
+
+        private final Map<String, Integer> index = new HashMap<String, Integer>();
+
+        private final List<String> strings = new ArrayList<String>();
+
+        /**
+         * Writes the string table followed by the buffered records.
+         *
+         * @param out The destination
+         */
+        void flushTo( final DataOutputStream out )
+            throws IOException
+        {
+            body.flush();
+            writeVarInt( out, strings.size() );
+            for ( final String s : strings )
+            {
+                final byte[] utf = s.getBytes( UTF_8 );
+                writeVarInt( out, utf.length );
+                out.write( utf );
+            }
+            bytes.writeTo( out );
+        }
+
+        void writeVarInt( final int value )
+            throws IOException
+        {
+            writeVarInt( body, value );
+        }
+
+        /**
+         * Writes a reference into the string table; zero is reserved for {@code null}.
+         */
+        void writeString( final String s )
+            throws IOException
+        {
+            if ( null == s )
+            {
+                writeVarInt( 0 );
+                return;
+            }
+            Integer ref = index.get( s );
+            if ( null == ref )
+            {
+                strings.add( s );
+                index.put( s, ref = Integer.valueOf( strings.size() ) );
+            }
+            writeVarInt( ref.intValue() );
+        }
+
+        void writeValue( final Object value )
+            throws IOException
+        {
+            if ( value instanceof String )
+            {
+                body.writeByte( 's' );
+                writeString( (String) value );
+            }
+            else if ( value instanceof Type )
+            {
+                body.writeByte( 'T' );
+                writeString( ( (Type) value ).getDescriptor() );
+            }
+            else if ( value instanceof Integer )
+            {
+                body.writeByte( 'I' );
+                body.writeInt( ( (Integer) value ).intValue() );
+            }
+            else if ( value instanceof Boolean )
+            {
+                body.writeByte( 'Z' );
+                body.writeBoolean( ( (Boolean) value ).booleanValue() );
+            }
+            else if ( value instanceof Long )
+            {
+                body.writeByte( 'J' );
+                body.writeLong( ( (Long) value ).longValue() );
+            }
+            else if ( value instanceof Byte )
+            {
+                body.writeByte( 'B' );
+                body.writeByte( ( (Byte) value ).byteValue() );
+            }
+            else if ( value instanceof Character )
+            {
+                body.writeByte( 'C' );
+                body.writeChar( ( (Character) value ).charValue() );
+            }
+            else if ( value instanceof Short )
+            {
+                body.writeByte( 'S' );
+                body.writeShort( ( (Short) value ).shortValue() );
+            }
+            else if ( value instanceof Float )
+            {
+                body.writeByte( 'F' );
+                body.writeFloat( ( (Float) value ).floatValue() );
+            }
+            else if ( value instanceof Double )
+            {
+                body.writeByte( 'D' );
+                body.writeDouble( ( (Double) value ).doubleValue() );
+            }
+            else
+            {
+                throw new IOException( "Unsupported annotation value: " + value );
+            }
+        }
+
+        private static void writeVarInt( final DataOutputStream out, final int value )
+            throws IOException
+        {
+            int v = value;
+            while ( ( v & ~0x7F ) != 0 )
+            {
+                out.writeByte( v & 0x7F | 0x80 );
+                v >>>= 7;
+            }
+            out.writeByte( v );
+        }
+    }
+
+    /**
+     * Reads records and their string table from a buffer holding a whole cache file.
+     */
+    static final class Input
+    {
+        final ByteBuffer buf;
+
+        private final String[] strings;
+
+        Input( final ByteBuffer buf )
+        {
+            this.buf = buf;
+            strings = new String[readVarInt() + 1];
+            for ( int i = 1; i < strings.length; i++ )
+            {
+                strings[i] = readUTF();
+            }
+        }
+
+        int readVarInt()
+        {
+            int value = 0;
+            for ( int shift = 0;; shift += 7 )
+            {
+                final byte b = buf.get();
+                value |= ( b & 0x7F ) << shift;
+                if ( b >= 0 )
+                {
+                    return value;
+                }
+            }
+        }
+
+        String readString()
+        {
+            return strings[readVarInt()];
+        }
+
+        String readUTF()
+        {
+            final byte[] utf = new byte[readVarInt()];
+            buf.get( utf );
+            try
+            {
+                return new String( utf, UTF_8 );
+            }
+            catch ( final UnsupportedEncodingException e )
+            {
+                throw new IllegalStateException( e.toString() ); // UTF-8 is always supported
+            }
+        }
+
+        Object readValue()
+        {
+            final byte tag = buf.get();
+            switch ( tag )
+            {
+                case 's':
+                    return readString();
+                case 'T':
+                    return Type.getType( readString() );
+                case 'I':
+                    return Integer.valueOf( buf.getInt() );
+                case 'Z':
+                    return Boolean.valueOf( 0 != buf.get() );
+                case 'J':
+                    return Long.valueOf( buf.getLong() );
+                case 'B':
+                    return Byte.valueOf( buf.get() );
+                case 'C':
+                    return Character.valueOf( buf.getChar() );
+                case 'S':
+                    return Short.valueOf( buf.getShort() );
+                case 'F':
+                    return Float.valueOf( buf.getFloat() );
+                case 'D':
+                    return Double.valueOf( buf.getDouble() );
+                default:
+                    throw new IllegalStateException( "Unknown value tag: " + tag );
+            }
+        }
+    }
+}
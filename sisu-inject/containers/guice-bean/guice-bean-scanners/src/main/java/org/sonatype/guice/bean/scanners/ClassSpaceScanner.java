@@ -11,17 +11,40 @@
  *******************************************************************************/
 package org.sonatype.guice.bean.scanners;
 
+import java.io.IOException;
 import java.io.InputStream;
+import java.net.MalformedURLException;
 import java.net.URL;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
 import java.util.Enumeration;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.Future;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
 
 import org.sonatype.guice.bean.reflect.ClassSpace;
+import org.sonatype.guice.bean.reflect.ContentEnumeration;
 import org.sonatype.guice.bean.reflect.Logs;
+import org.sonatype.guice.bean.reflect.URLClassSpace;
 import org.sonatype.guice.bean.scanners.asm.ClassReader;
 import org.sonatype.guice.bean.scanners.asm.ClassVisitor;
 
 /**
  * ASM-style scanner that makes a {@link ClassSpaceVisitor} visit an existing {@link ClassSpace}.
+ * <p>
+ * When created with a parallelism above one the class resources are read and parsed by a pool of worker threads, one
+ * classpath element at a time, while the visitor is still called back on the scanning thread in classpath order.
+ * <p>
+ * When created with a {@link ScanCache} the scan of each unchanged jar in a {@link URLClassSpace} is replayed from the
+ * cache. Only the header and class-level annotations of annotated classes are replayed, which is all the qualified and
+ * Plexus type visitors look at; visitors that need fields, methods, or unannotated classes shouldn't use a cache.
  */
 public final class ClassSpaceScanner
 {
@@ -31,6 +54,12 @@ public final class ClassSpaceScanner
 
     private static final int ASM_FLAGS = ClassReader.SKIP_CODE | ClassReader.SKIP_DEBUG | ClassReader.SKIP_FRAMES;
 
+    private static final int MAX_BATCH_SIZE = 256;
+
+    private static final int INITIAL_BUFFER_SIZE = 8192;
+
+    private static final String JAR_SEPARATOR = "!/";
+
     // ----------------------------------------------------------------------
     // Implementation fields
     // ----------------------------------------------------------------------
@@ -39,6 +68,10 @@ public final class ClassSpaceScanner
 
     private final ClassSpace space;
 
+    private final int parallelism;
+
+    private final ScanCache cache;
+
     // ----------------------------------------------------------------------
     // Constructors
     // ----------------------------------------------------------------------
@@ -50,8 +83,36 @@ public final class ClassSpaceScanner
 
     public ClassSpaceScanner( final ClassFinder finder, final ClassSpace space )
     {
+        this( finder, space, 1 );
+    }
+
+    /**
+     * @param finder The class finder; {@code null} to scan all class resources
+     * @param space The class space
+     * @param parallelism The number of threads reading class resources; {@code 1} to scan on the calling thread
+     */
+    public ClassSpaceScanner( final ClassFinder finder, final ClassSpace space, final int parallelism )
+    {
+        if ( parallelism < 1 )
+        {
+            throw new IllegalArgumentException( "Parallelism must be positive: " + parallelism );
+        }
         this.finder = finder;
         this.space = space;
+        this.parallelism = parallelism;
+        this.cache = null;
+    }
+
+    /**
+     * @param space The class space
+     * @param cache The persistent scan cache
+     */
+    public ClassSpaceScanner( final ClassSpace space, final ScanCache cache )
+    {
+        this.finder = null;
+        this.space = space;
+        this.parallelism = 1;
+        this.cache = cache;
     }
 
     // ----------------------------------------------------------------------
@@ -67,16 +128,34 @@ public final class ClassSpaceScanner
     {
         visitor.visit( space );
 
+        if ( null != cache && space instanceof URLClassSpace )
+        {
+            scan( visitor, (URLClassSpace) space, cache );
+            visitor.visitEnd();
+            return;
+        }
+
         final Enumeration<URL> result =
             null != finder ? finder.findClasses( space ) : space.findEntries( null, "*.class", true );
 
-        while ( result.hasMoreElements() )
+        if ( parallelism > 1 )
+        {
+            new ParallelScan( visitor ).run( result );
+        }
+        else if ( result instanceof ContentEnumeration )
         {
-            final URL url = result.nextElement();
-            final ClassVisitor cv = visitor.visitClass( url );
-            if ( null != cv )
+            scan( visitor, (ContentEnumeration) result, null );
+        }
+        else
+        {
+            while ( result.hasMoreElements() )
             {
-                accept( cv, url );
+                final URL url = result.nextElement();
+                final ClassVisitor cv = visitor.visitClass( url );
+                if ( null != cv )
+                {
+                    accept( cv, url );
+                }
             }
         }
 
@@ -97,23 +176,11 @@ public final class ClassSpaceScanner
         }
         try
         {
-            final InputStream in = url.openStream();
-            try
-            {
-                new ClassReader( in ).accept( visitor, ASM_FLAGS );
-            }
-            finally
-            {
-                in.close();
-            }
-        }
-        catch ( final ArrayIndexOutOfBoundsException e ) // NOPMD
-        {
-            // ignore broken class constant pool in icu4j
+            read( url ).accept( visitor, ASM_FLAGS );
         }
         catch ( final Throwable e )
         {
-            Logs.debug( "Problem scanning: {}", url, e );
+            report( url, e );
         }
     }
 
@@ -140,4 +207,356 @@ public final class ClassSpaceScanner
         }
         return true;
     }
+
+    // ----------------------------------------------------------------------
+    // Implementation methods
+    // ----------------------------------------------------------------------
+
+    static ClassReader read( final URL url )
+        throws Exception
+    {
+        final InputStream in = url.openStream();
+        try
+        {
+            return new ClassReader( in );
+        }
+        finally
+        {
+            in.close();
+        }
+    }
+
+    /**
+     * Makes the given {@link ClassSpaceVisitor} visit each element of the class space in turn, replaying unchanged jars
+     * from the cache and scanning (and then caching) the rest.
+     * 
+     * @param visitor The class space visitor
+     * @param urlSpace The class space
+     * @param cache The scan cache
+     */
+    private static void scan( final ClassSpaceVisitor visitor, final URLClassSpace urlSpace, final ScanCache cache )
+    {
+        for ( final URL url : urlSpace.getURLs() )
+        {
+            final ScanCache.Entry entry = cache.entry( url );
+            List<ClassRecord> records = null != entry ? entry.load() : null;
+            if ( null != records )
+            {
+                for ( final ClassRecord r : records )
+                {
+                    replay( visitor, url, r );
+                }
+                continue;
+            }
+            if ( null != entry )
+            {
+                records = new ArrayList<ClassRecord>();
+            }
+            scan( visitor, urlSpace.findEntries( url, null, "*.class", true ), records );
+            if ( null != entry )
+            {
+                entry.store( records );
+            }
+        }
+    }
+
+    private static void replay( final ClassSpaceVisitor visitor, final URL url, final ClassRecord record )
+    {
+        final URL classURL;
+        try
+        {
+            classURL = new URL( "jar:" + url + JAR_SEPARATOR + record.name + ".class" );
+        }
+        catch ( final MalformedURLException e )
+        {
+            report( url, e );
+            return;
+        }
+        final ClassVisitor cv = visitor.visitClass( classURL );
+        if ( null != cv )
+        {
+            record.accept( cv );
+        }
+    }
+
+    /**
+     * Makes the given {@link ClassSpaceVisitor} visit classes read straight from their archives and directories, using
+     * a single buffer for the class bytes.
+     * 
+     * @param visitor The class space visitor
+     * @param result The class resources
+     * @param records Optional list of records; when given every class is parsed and recorded
+     */
+    private static void scan( final ClassSpaceVisitor visitor, final ContentEnumeration result,
+                              final List<ClassRecord> records )
+    {
+        final ContentBuffer buffer = new ContentBuffer();
+        try
+        {
+            while ( result.hasMoreElements() )
+            {
+                final URL url = result.nextElement();
+                ClassVisitor cv = visitor.visitClass( url );
+                if ( null != records )
+                {
+                    cv = new ClassRecord.Recorder( cv, records );
+                }
+                if ( null != cv )
+                {
+                    try
+                    {
+                        buffer.read( result.openContent() ).accept( cv, ASM_FLAGS );
+                    }
+                    catch ( final Throwable e )
+                    {
+                        report( url, e );
+                    }
+                }
+            }
+        }
+        finally
+        {
+            result.close();
+        }
+    }
+
+    static void report( final URL url, final Throwable e )
+    {
+        if ( !( e instanceof ArrayIndexOutOfBoundsException ) ) // NOPMD
+        {
+            Logs.debug( "Problem scanning: {}", url, e );
+        } // else ignore broken class constant pool in icu4j
+    }
+
+    // ----------------------------------------------------------------------
+    // Implementation types
+    // ----------------------------------------------------------------------
+
+    /**
+     * Reads class resources on a pool of worker threads, each batch covering (part of) a single classpath element.
+     * Batches are replayed into the visitor in submission order, so it sees exactly what a sequential scan would.
+     * Archive entries are grouped by their archive and directory entries by the closest directory on the class path;
+     * directory entries of spaces that can't list their class path share one group.
+     */
+    private final class ParallelScan
+        implements ThreadFactory
+    {
+        private final ClassSpaceVisitor visitor;
+
+        private final ThreadPoolExecutor executor;
+
+        private final LinkedList<Batch> pending = new LinkedList<Batch>();
+
+        private final AtomicInteger threadCount = new AtomicInteger();
+
+        private final List<String> directories = new ArrayList<String>();
+
+        ParallelScan( final ClassSpaceVisitor visitor )
+        {
+            this.visitor = visitor;
+
+            if ( space instanceof URLClassSpace )
+            {
+                for ( final URL url : ( (URLClassSpace) space ).getURLs() )
+                {
+                    final String path = url.toString();
+                    if ( path.endsWith( "/" ) )
+                    {
+                        directories.add( path );
+                    }
+                }
+                // check nested directories before their parents
+                Collections.sort( directories, Collections.reverseOrder() );
+            }
+
+            executor = new ThreadPoolExecutor( parallelism, parallelism, 0, TimeUnit.MILLISECONDS,
+                                               new LinkedBlockingQueue<Runnable>(), this );
+        }
+
+        public Thread newThread( final Runnable runnable )
+        {
+            final Thread thread = new Thread( runnable, "sisu-scan-" + threadCount.incrementAndGet() );
+            thread.setDaemon( true );
+            return thread;
+        }
+
+        void run( final Enumeration<URL> result )
+        {
+            try
+            {
+                Batch batch = null;
+                String element = null;
+                while ( result.hasMoreElements() )
+                {
+                    final URL url = result.nextElement();
+                    final String urlElement = element( url.toString() );
+                    if ( null == batch || batch.urls.size() >= MAX_BATCH_SIZE || !urlElement.equals( element ) )
+                    {
+                        submit( batch );
+                        batch = new Batch();
+                        element = urlElement;
+                    }
+                    batch.urls.add( url );
+                }
+                submit( batch );
+                while ( !pending.isEmpty() )
+                {
+                    replay( pending.removeFirst() );
+                }
+            }
+            finally
+            {
+                executor.shutdownNow();
+            }
+        }
+
+        /**
+         * @return Classpath element of the given resource; empty if it can't be determined
+         */
+        private String element( final String path )
+        {
+            final int i = path.indexOf( JAR_SEPARATOR );
+            if ( i > 0 )
+            {
+                return path.substring( 0, i + JAR_SEPARATOR.length() );
+            }
+            for ( final String dir : directories )
+            {
+                if ( path.startsWith( dir ) )
+                {
+                    return dir;
+                }
+            }
+            return ""; // unknown directory
+        }
+
+        private void submit( final Batch batch )
+        {
+            if ( null != batch )
+            {
+                batch.future = executor.submit( batch );
+                pending.add( batch );
+                if ( pending.size() > 2 * parallelism )
+                {
+                    replay( pending.removeFirst() ); // limit the number of parsed classes held in memory
+                }
+            }
+        }
+
+        private void replay( final Batch batch )
+        {
+            Object[] classes;
+            try
+            {
+                classes = batch.future.get();
+            }
+            catch ( final InterruptedException e )
+            {
+                Thread.currentThread().interrupt();
+                classes = null;
+            }
+            catch ( final Exception e )
+            {
+                classes = null;
+            }
+
+            final List<URL> urls = batch.urls;
+            for ( int i = 0, size = urls.size(); i < size; i++ )
+            {
+                final URL url = urls.get( i );
+                final ClassVisitor cv = visitor.visitClass( url );
+                if ( null == cv )
+                {
+                    continue;
+                }
+                if ( null == classes )
+                {
+                    accept( cv, url ); // worker didn't finish, so read it here
+                }
+                else if ( classes[i] instanceof ClassReader )
+                {
+                    try
+                    {
+                        ( (ClassReader) classes[i] ).accept( cv, ASM_FLAGS );
+                    }
+                    catch ( final Throwable e )
+                    {
+                        report( url, e );
+                    }
+                }
+                else
+                {
+                    report( url, (Throwable) classes[i] );
+                }
+            }
+        }
+    }
+
+    /**
+     * Re-usable buffer for class bytes; each {@link ClassReader} it returns is only valid until the next read.
+     */
+    private static final class ContentBuffer
+    {
+        private byte[] bytes = new byte[INITIAL_BUFFER_SIZE];
+
+        private int lastLength;
+
+        ClassReader read( final InputStream in )
+            throws IOException
+        {
+            try
+            {
+                int length = 0;
+                for ( int n; ( n = in.read( bytes, length, bytes.length - length ) ) >= 0; )
+                {
+                    length += n;
+                    if ( length == bytes.length )
+                    {
+                        final byte[] newBytes = new byte[length * 2];
+                        System.arraycopy( bytes, 0, newBytes, 0, length );
+                        bytes = newBytes;
+                    }
+                }
+                if ( length < lastLength )
+                {
+                    // don't let truncated classes see the tail of the previous class
+                    Arrays.fill( bytes, length, lastLength, (byte) 0 );
+                }
+                lastLength = length;
+                return new ClassReader( bytes, 0, length );
+            }
+            finally
+            {
+                in.close();
+            }
+        }
+    }
+
+    /**
+     * Class resources from the same classpath element, read into {@link ClassReader}s or the {@link Throwable}s seen.
+     */
+    private static final class Batch
+        implements Callable<Object[]>
+    {
+        final List<URL> urls = new ArrayList<URL>();
+
+        Future<Object[]> future;
+
+        public Object[] call()
+        {
+            final Object[] classes = new Object[urls.size()];
+            for ( int i = 0; i < classes.length; i++ )
+            {
+                try
+                {
+                    classes[i] = read( urls.get( i ) );
+                }
+                catch ( final Throwable e )
+                {
+                    classes[i] = e;
+                }
+            }
+            return classes;
+        }
+    }
 }
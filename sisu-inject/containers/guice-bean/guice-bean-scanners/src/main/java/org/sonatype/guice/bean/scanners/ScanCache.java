@@ -0,0 +1,264 @@
+/*******************************************************************************
+ * Copyright (c) 2010-2011 Sonatype, Inc.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * and Apache License v2.0 which accompanies this distribution.
+ * The Eclipse Public License is available at
+ *   http://www.eclipse.org/legal/epl-v10.html
+ * The Apache License v2.0 is available at
+ *   http://www.apache.org/licenses/LICENSE-2.0.html
+ * You may elect to redistribute this code under either of these licenses.
+ *******************************************************************************/
+package org.sonatype.guice.bean.scanners;
+
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.net.URL;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.sonatype.guice.bean.reflect.Logs;
+
+/**
+ * Persistent cache of scan results, stored as one file per jar in the given directory. Each file records the header
+ * and class-level annotations of every annotated class in the jar, which is enough to find qualified beans and Plexus
+ * components again without parsing the jar; entries are checked against the jar's last modified time and size.
+ * <p>
+ * Files start with a fixed header (magic, version, last modified, size) followed by a table of distinct strings and
+ * the class records, which refer to strings by index. They are read back in one go and closed straight away, so they
+ * can be replaced at any time.
+ */
+public final class ScanCache
+{
+    // ----------------------------------------------------------------------
+    // Constants
+    // ----------------------------------------------------------------------
+
+    private static final int MAGIC = 0x53495355; // "SISU"
+
+    private static final int VERSION = 1;
+
+    private static final int HEADER_SIZE = 24;
+
+    private static final long FNV_OFFSET_BASIS = 0xcbf29ce484222325L;
+
+    private static final long FNV_PRIME = 0x100000001b3L;
+
+    // ----------------------------------------------------------------------
+    // Implementation fields
+    // ----------------------------------------------------------------------
+
+    private final File directory;
+
+    // ----------------------------------------------------------------------
+    // Constructors
+    // ----------------------------------------------------------------------
+
+    /**
+     * @param directory The cache directory; created on demand
+     */
+    public ScanCache( final File directory )
+    {
+        this.directory = directory;
+    }
+
+    // ----------------------------------------------------------------------
+    // Public methods
+    // ----------------------------------------------------------------------
+
+    @Override
+    public String toString()
+    {
+        return "ScanCache[" + directory + "]";
+    }
+
+    // ----------------------------------------------------------------------
+    // Local methods
+    // ----------------------------------------------------------------------
+
+    /**
+     * Returns the cache entry for the given class path element; only jars on the local file-system can be cached.
+     *
+     * @param url The class path element
+     * @return Cache entry for the element; {@code null} if it can't be cached
+     */
+    Entry entry( final URL url )
+    {
+        if ( !"file".equals( url.getProtocol() ) )
+        {
+            return null;
+        }
+        try
+        {
+            File file;
+            try
+            {
+                file = new File( url.toURI() );
+            }
+            catch ( final Exception e )
+            {
+                file = new File( url.getPath() );
+            }
+            file = file.getCanonicalFile();
+            if ( !file.isFile() )
+            {
+                return null; // directories change too often to be worth caching
+            }
+            final String path = file.getPath();
+            return new Entry( path, file.lastModified(), file.length(), new File( directory, hash( path ) + ".scan" ) );
+        }
+        catch ( final IOException e )
+        {
+            return null;
+        }
+    }
+
+    // ----------------------------------------------------------------------
+    // Implementation methods
+    // ----------------------------------------------------------------------
+
+    /**
+     * @return 64-bit FNV-1a hash of the given string, in hex
+     */
+    private static String hash( final String s )
+    {
+        long hash = FNV_OFFSET_BASIS;
+        for ( int i = 0, length = s.length(); i < length; i++ )
+        {
+            hash = ( hash ^ s.charAt( i ) ) * FNV_PRIME;
+        }
+        return Long.toHexString( hash );
+    }
+
+    // ----------------------------------------------------------------------
+    // Implementation types
+    // ----------------------------------------------------------------------
+
+    /**
+     * Cached scan of a jar, fingerprinted by the jar's canonical path, last modified time and size.
+     */
+    static final class Entry
+    {
+        private final String path;
+
+        private final long lastModified;
+
+        private final long length;
+
+        private final File file;
+
+        Entry( final String path, final long lastModified, final long length, final File file )
+        {
+            this.path = path;
+            this.lastModified = lastModified;
+            this.length = length;
+            this.file = file;
+        }
+
+        /**
+         * @return Recorded classes; {@code null} if the jar has not been cached or has changed since
+         */
+        List<ClassRecord> load()
+        {
+            if ( !file.isFile() )
+            {
+                return null;
+            }
+            try
+            {
+                final byte[] bytes = new byte[(int) file.length()];
+                final DataInputStream in = new DataInputStream( new FileInputStream( file ) );
+                try
+                {
+                    in.readFully( bytes );
+                }
+                finally
+                {
+                    in.close();
+                }
+                final ByteBuffer buf = ByteBuffer.wrap( bytes );
+                if ( buf.remaining() < HEADER_SIZE || buf.getInt() != MAGIC || buf.getInt() != VERSION
+                    || buf.getLong() != lastModified || buf.getLong() != length )
+                {
+                    return null;
+                }
+                final ClassRecord.Input input = new ClassRecord.Input( buf );
+                if ( !path.equals( input.readString() ) )
+                {
+                    return null; // hash collision
+                }
+                final int size = input.readVarInt();
+                final List<ClassRecord> records = new ArrayList<ClassRecord>( size );
+                for ( int i = 0; i < size; i++ )
+                {
+                    records.add( ClassRecord.readFrom( input ) );
+                }
+                return records;
+            }
+            catch ( final Throwable e )
+            {
+                Logs.debug( "Problem reading: {} from scan cache: {}", file, e );
+                return null;
+            }
+        }
+
+        /**
+         * Replaces the cached scan of the jar with the given records.
+         *
+         * @param records The recorded classes
+         */
+        void store( final List<ClassRecord> records )
+        {
+            try
+            {
+                final ClassRecord.Output output = new ClassRecord.Output();
+                output.writeString( path );
+                output.writeVarInt( records.size() );
+                for ( final ClassRecord r : records )
+                {
+                    r.writeTo( output );
+                }
+
+                final File dir = file.getParentFile();
+                dir.mkdirs();
+                final File tmp = File.createTempFile( file.getName(), ".tmp", dir );
+                try
+                {
+                    final DataOutputStream out =
+                        new DataOutputStream( new BufferedOutputStream( new FileOutputStream( tmp ) ) );
+                    try
+                    {
+                        out.writeInt( MAGIC );
+                        out.writeInt( VERSION );
+                        out.writeLong( lastModified );
+                        out.writeLong( length );
+                        output.flushTo( out );
+                    }
+                    finally
+                    {
+                        out.close();
+                    }
+                    // readers only ever see complete files
+                    if ( !tmp.renameTo( file ) && !( file.delete() && tmp.renameTo( file ) ) )
+                    {
+                        throw new IOException( "Cannot replace: " + file );
+                    }
+                }
+                finally
+                {
+                    tmp.delete(); // no-op once renamed
+                }
+            }
+            catch ( final Throwable e )
+            {
+                Logs.debug( "Problem writing: {} to scan cache: {}", file, e );
+            }
+        }
+    }
+}
@@ -47,6 +47,22 @@ import org.sonatype.guice.bean.scanners.index.SisuIndexFinder;
 public class QualifiedScanningTest
     extends TestCase
 {
+    static
+    {
+        // registered up-front as testOptionalLogging also needs it, whatever order the tests run in
+        URL.setURLStreamHandlerFactory( new URLStreamHandlerFactory()
+        {
+            public URLStreamHandler createURLStreamHandler( final String protocol )
+            {
+                if ( "barf".equals( protocol ) )
+                {
+                    return new Handler();
+                }
+                return null;
+            }
+        } );
+    }
+
     @Named
     interface A
     {
@@ -182,22 +198,36 @@ public class QualifiedScanningTest
         assertTrue( listener.clazzes.contains( D.class ) );
     }
 
-    public void testBrokenScanning()
-        throws IOException
+    public void testParallelScanning()
     {
-        // System.setProperty( "java.protocol.handler.pkgs", getClass().getPackage().getName() );
-        URL.setURLStreamHandlerFactory( new URLStreamHandlerFactory()
+        final ClassSpace space = new URLClassSpace( getClass().getClassLoader() );
+
+        final TestListener sequentialListener = new TestListener();
+        final List<String> sequentialNames = new ArrayList<String>();
+        new ClassSpaceScanner( null, space, 1 ).accept( recorder( sequentialListener, sequentialNames ) );
+
+        final TestListener parallelListener = new TestListener();
+        final List<String> parallelNames = new ArrayList<String>();
+        new ClassSpaceScanner( null, space, 4 ).accept( recorder( parallelListener, parallelNames ) );
+
+        assertTrue( sequentialNames.size() > 1000 );
+        assertEquals( sequentialNames, parallelNames );
+        assertEquals( sequentialListener.clazzes, parallelListener.clazzes );
+        assertEquals( sequentialListener.sources, parallelListener.sources );
+
+        try
         {
-            public URLStreamHandler createURLStreamHandler( final String protocol )
-            {
-                if ( "barf".equals( protocol ) )
-                {
-                    return new Handler();
-                }
-                return null;
-            }
-        } );
+            new ClassSpaceScanner( null, space, 0 );
+            fail( "Expected IllegalArgumentException" );
+        }
+        catch ( final IllegalArgumentException e )
+        {
+        }
+    }
 
+    public void testBrokenScanning()
+        throws IOException
+    {
         final ClassSpace space = new URLClassSpace( getClass().getClassLoader() );
 
         final URL badURL = new URL( "barf:up/" );
@@ -230,6 +260,7 @@ public class QualifiedScanningTest
         };
 
         new ClassSpaceScanner( brokenResourceSpace ).accept( new QualifiedTypeVisitor( null ) );
+        new ClassSpaceScanner( null, brokenResourceSpace, 2 ).accept( new QualifiedTypeVisitor( null ) );
 
         final ClassSpace brokenLoadSpace = new ClassSpace()
         {
@@ -260,6 +291,7 @@ public class QualifiedScanningTest
         };
 
         new ClassSpaceScanner( brokenLoadSpace ).accept( new QualifiedTypeVisitor( null ) );
+        new ClassSpaceScanner( null, brokenLoadSpace, 2 ).accept( new QualifiedTypeVisitor( null ) );
 
         ClassSpaceScanner.accept( null, null );
 
@@ -370,4 +402,48 @@ public class QualifiedScanningTest
         new ClassSpaceScanner( space ).accept( new QualifiedTypeVisitor( listener ) );
         assertEquals( 0, listener.clazzes.size() );
     }
+
+    private static ClassSpaceVisitor recorder( final QualifiedTypeListener listener, final List<String> names )
+    {
+        final QualifiedTypeVisitor visitor = new QualifiedTypeVisitor( listener );
+        return new ClassSpaceVisitor()
+        {
+            public void visit( final ClassSpace space )
+            {
+                visitor.visit( space );
+            }
+
+            public ClassVisitor visitClass( final URL url )
+            {
+                final ClassVisitor cv = visitor.visitClass( url );
+                return new EmptyClassVisitor()
+                {
+                    @Override
+                    public void visit( final int version, final int access, final String name,
+                                       final String signature, final String superName, final String[] interfaces )
+                    {
+                        names.add( name );
+                        cv.visit( version, access, name, signature, superName, interfaces );
+                    }
+
+                    @Override
+                    public AnnotationVisitor visitAnnotation( final String desc, final boolean visible )
+                    {
+                        return cv.visitAnnotation( desc, visible );
+                    }
+
+                    @Override
+                    public void visitEnd()
+                    {
+                        cv.visitEnd();
+                    }
+                };
+            }
+
+            public void visitEnd()
+            {
+                visitor.visitEnd();
+            }
+        };
+    }
 }
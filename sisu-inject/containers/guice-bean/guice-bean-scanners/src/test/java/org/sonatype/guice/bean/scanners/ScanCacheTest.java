@@ -0,0 +1,337 @@
+/*******************************************************************************
+ * Copyright (c) 2010-2011 Sonatype, Inc.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * and Apache License v2.0 which accompanies this distribution.
+ * The Eclipse Public License is available at
+ *   http://www.eclipse.org/legal/epl-v10.html
+ * The Apache License v2.0 is available at
+ *   http://www.apache.org/licenses/LICENSE-2.0.html
+ * You may elect to redistribute this code under either of these licenses.
+ *******************************************************************************/
+package org.sonatype.guice.bean.scanners;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.lang.annotation.ElementType;
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+import java.lang.reflect.Array;
+import java.net.URL;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.jar.JarOutputStream;
+import java.util.zip.ZipEntry;
+
+import javax.inject.Named;
+
+import junit.framework.TestCase;
+
+import org.sonatype.guice.bean.reflect.ClassSpace;
+import org.sonatype.guice.bean.reflect.URLClassSpace;
+import org.sonatype.guice.bean.scanners.QualifiedScanningTest.TestListener;
+import org.sonatype.guice.bean.scanners.asm.AnnotationVisitor;
+
+public class ScanCacheTest
+    extends TestCase
+{
+    @Retention( RetentionPolicy.RUNTIME )
+    public @interface Values
+    {
+        int i();
+
+        long[] longs();
+
+        String s();
+
+        Class<?> type();
+
+        ElementType kind();
+
+        Named[] names();
+
+        char c();
+
+        double d();
+
+        boolean[] flags();
+    }
+
+    @Values( i = 1, longs = { 2, 3 }, s = "x", type = String.class, kind = ElementType.TYPE, names = { @Named( "a" ),
+        @Named( "b" ) }, c = 'c', d = 4.5, flags = { true, false } )
+    @Deprecated
+    static class H
+    {
+    }
+
+    private static final Class<?>[] JAR_CLASSES = { QualifiedScanningTest.A.class, QualifiedScanningTest.B.class,
+        QualifiedScanningTest.C.class, QualifiedScanningTest.D.class, QualifiedScanningTest.E.class,
+        QualifiedScanningTest.F.class, QualifiedScanningTest.G.class, H.class };
+
+    private File jar;
+
+    private File cacheDir;
+
+    @Override
+    protected void setUp()
+        throws IOException
+    {
+        jar = File.createTempFile( "beans", ".jar" );
+        cacheDir = File.createTempFile( "scans", "" );
+        cacheDir.delete();
+    }
+
+    @Override
+    protected void tearDown()
+    {
+        jar.delete();
+        final File[] files = cacheDir.listFiles();
+        if ( null != files )
+        {
+            for ( final File f : files )
+            {
+                f.delete();
+            }
+        }
+        cacheDir.delete();
+    }
+
+    public void testCachedScanning()
+        throws IOException
+    {
+        writeJar( JAR_CLASSES );
+        final ClassLoader loader = getClass().getClassLoader();
+        final URL[] urls = { jar.toURI().toURL(), loader.getResource( "icu4j-2.6.1.jar" ) };
+        final ClassSpace space = new URLClassSpace( loader, urls );
+
+        final TestListener expected = new TestListener();
+        new ClassSpaceScanner( space ).accept( new QualifiedTypeVisitor( expected ) );
+        assertEquals( 3, expected.clazzes.size() );
+
+        final ScanCache cache = new ScanCache( cacheDir );
+
+        final TestListener cold = new TestListener();
+        new ClassSpaceScanner( space, cache ).accept( new QualifiedTypeVisitor( cold ) );
+        assertEquals( expected.clazzes, cold.clazzes );
+        assertEquals( expected.sources, cold.sources );
+        assertEquals( 2, cacheDir.listFiles().length );
+
+        // same fingerprint but unreadable content: results must come from the cache
+        final long lastModified = jar.lastModified();
+        final File zeros = newFile();
+        final OutputStream out = new FileOutputStream( zeros );
+        out.write( new byte[(int) jar.length()] );
+        out.close();
+        replaceJar( zeros, lastModified );
+
+        final TestListener warm = new TestListener();
+        new ClassSpaceScanner( space, cache ).accept( new QualifiedTypeVisitor( warm ) );
+        assertEquals( expected.clazzes, warm.clazzes );
+        assertEquals( expected.sources, warm.sources );
+
+        // changed jar: must be rescanned
+        writeJar( QualifiedScanningTest.C.class );
+
+        final TestListener stale = new TestListener();
+        new ClassSpaceScanner( space, cache ).accept( new QualifiedTypeVisitor( stale ) );
+        assertEquals( Arrays.<Class<?>> asList( QualifiedScanningTest.C.class ), stale.clazzes );
+        assertEquals( 2, cacheDir.listFiles().length );
+    }
+
+    public void testRecordReplay()
+        throws IOException
+    {
+        final URL url = H.class.getResource( "ScanCacheTest$H.class" );
+
+        final Tracer direct = new Tracer();
+        ClassSpaceScanner.accept( direct, url );
+
+        final List<ClassRecord> records = new ArrayList<ClassRecord>();
+        final Tracer recorded = new Tracer();
+        ClassSpaceScanner.accept( new ClassRecord.Recorder( recorded, records ), url );
+        assertEquals( 1, records.size() );
+
+        final ClassRecord.Output output = new ClassRecord.Output();
+        records.get( 0 ).writeTo( output );
+        final ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        final DataOutputStream out = new DataOutputStream( bytes );
+        output.flushTo( out );
+        out.flush();
+
+        final Tracer replayed = new Tracer();
+        ClassRecord.readFrom( new ClassRecord.Input( ByteBuffer.wrap( bytes.toByteArray() ) ) ).accept( replayed );
+
+        final String trace = direct.buf.toString();
+        assertTrue( trace, trace.contains( "longs=[2<Long>,3<Long>,]" ) );
+        assertTrue( trace, trace.contains( "names=[@Ljavax/inject/Named;(value=a<String>,)" ) );
+        assertEquals( trace, recorded.buf.toString() );
+        assertEquals( trace, replayed.buf.toString() );
+    }
+
+    public void testUncachedElements()
+        throws IOException
+    {
+        final ScanCache cache = new ScanCache( cacheDir );
+        assertNull( cache.entry( new URL( "http://localhost/some.jar" ) ) );
+        assertNull( cache.entry( cacheDir.getParentFile().toURI().toURL() ) );
+        assertNull( cache.entry( new File( cacheDir, "missing.jar" ).toURI().toURL() ) );
+
+        writeJar( H.class );
+        final ScanCache.Entry entry = cache.entry( jar.toURI().toURL() );
+        assertNull( entry.load() );
+        entry.store( new ArrayList<ClassRecord>() );
+        assertEquals( 0, entry.load().size() );
+    }
+
+    private void writeJar( final Class<?>... clazzes )
+        throws IOException
+    {
+        final File newJar = newFile();
+        final JarOutputStream out = new JarOutputStream( new FileOutputStream( newJar ) );
+        try
+        {
+            for ( final Class<?> clazz : clazzes )
+            {
+                final String name = clazz.getName().replace( '.', '/' ) + ".class";
+                out.putNextEntry( new ZipEntry( name ) );
+                final InputStream in = clazz.getClassLoader().getResourceAsStream( name );
+                try
+                {
+                    final byte[] buf = new byte[4096];
+                    for ( int n; ( n = in.read( buf ) ) > 0; )
+                    {
+                        out.write( buf, 0, n );
+                    }
+                }
+                finally
+                {
+                    in.close();
+                }
+            }
+        }
+        finally
+        {
+            out.close();
+        }
+        replaceJar( newJar, jar.lastModified() + 2000 ); // make sure the change is visible
+    }
+
+    private File newFile()
+        throws IOException
+    {
+        return File.createTempFile( "new", ".jar", jar.getParentFile() );
+    }
+
+    private void replaceJar( final File newJar, final long lastModified )
+    {
+        // replace rather than overwrite, as the old jar may still be open
+        jar.delete();
+        assertTrue( newJar.renameTo( jar ) );
+        jar.setLastModified( lastModified );
+    }
+
+    static final class Tracer
+        extends EmptyClassVisitor
+    {
+        final StringBuilder buf = new StringBuilder();
+
+        @Override
+        public void visit( final int version, final int access, final String name, final String signature,
+                           final String superName, final String[] interfaces )
+        {
+            buf.append( name ).append( ':' ).append( superName ).append( Arrays.toString( interfaces ) );
+        }
+
+        @Override
+        public AnnotationVisitor visitAnnotation( final String desc, final boolean visible )
+        {
+            buf.append( '@' ).append( desc ).append( visible ).append( '(' );
+            return new AnnotationTracer( ")" );
+        }
+
+        @Override
+        public void visitEnd()
+        {
+            buf.append( ';' );
+        }
+
+        final class AnnotationTracer
+            extends EmptyAnnotationVisitor
+        {
+            private final String end;
+
+            AnnotationTracer( final String end )
+            {
+                this.end = end;
+            }
+
+            @Override
+            public void visit( final String name, final Object value )
+            {
+                prefix( name );
+                if ( value.getClass().isArray() )
+                {
+                    buf.append( '[' );
+                    for ( int i = 0; i < Array.getLength( value ); i++ )
+                    {
+                        append( Array.get( value, i ) );
+                    }
+                    buf.append( "]," );
+                }
+                else
+                {
+                    append( value );
+                }
+            }
+
+            @Override
+            public void visitEnum( final String name, final String desc, final String value )
+            {
+                prefix( name );
+                buf.append( desc ).append( '.' ).append( value ).append( ',' );
+            }
+
+            @Override
+            public AnnotationVisitor visitAnnotation( final String name, final String desc )
+            {
+                prefix( name );
+                buf.append( '@' ).append( desc ).append( '(' );
+                return new AnnotationTracer( ")," );
+            }
+
+            @Override
+            public AnnotationVisitor visitArray( final String name )
+            {
+                prefix( name );
+                buf.append( '[' );
+                return new AnnotationTracer( "]," );
+            }
+
+            @Override
+            public void visitEnd()
+            {
+                buf.append( end );
+            }
+
+            private void append( final Object value )
+            {
+                buf.append( value ).append( '<' ).append( value.getClass().getSimpleName() ).append( ">," );
+            }
+
+            private void prefix( final String name )
+            {
+                if ( null != name )
+                {
+                    buf.append( name ).append( '=' );
+                }
+            }
+        }
+    }
+}
@@ -97,6 +97,12 @@ public final class PlexusAnnotatedBeanModule
         {
             return new PlexusTypeVisitor( new PlexusTypeBinder( binder ) );
         }
+
+        @Override
+        protected boolean cacheable( final ClassSpaceVisitor visitor )
+        {
+            return visitor instanceof PlexusTypeVisitor; // only looks at class headers and class-level annotations
+        }
     }
 
     private static final class PlexusAnnotatedBeanSource
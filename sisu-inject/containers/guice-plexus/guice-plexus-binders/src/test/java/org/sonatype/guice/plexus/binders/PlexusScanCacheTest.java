@@ -0,0 +1,142 @@
+/*******************************************************************************
+ * Copyright (c) 2010-2011 Sonatype, Inc.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ *   http://www.eclipse.org/legal/epl-v10.html
+ *******************************************************************************/
+package org.sonatype.guice.plexus.binders;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.URL;
+import java.net.URLClassLoader;
+import java.util.jar.JarOutputStream;
+import java.util.zip.ZipEntry;
+
+import junit.framework.TestCase;
+
+import org.codehaus.plexus.component.annotations.Component;
+import org.sonatype.guice.bean.reflect.ClassSpace;
+import org.sonatype.guice.bean.reflect.URLClassSpace;
+import org.sonatype.guice.plexus.config.PlexusBeanConverter;
+import org.sonatype.guice.plexus.config.PlexusBeanLocator;
+import org.sonatype.guice.plexus.config.Roles;
+import org.sonatype.guice.plexus.converters.PlexusXmlBeanConverter;
+import org.sonatype.guice.plexus.locators.DefaultPlexusBeanLocator;
+import org.sonatype.inject.BeanScanning;
+
+import com.google.inject.AbstractModule;
+import com.google.inject.Guice;
+import com.google.inject.Injector;
+import com.google.inject.Key;
+
+public class PlexusScanCacheTest
+    extends TestCase
+{
+    @Component( role = Runnable.class, hint = "cached" )
+    static class CachedComponent
+        implements Runnable
+    {
+        public void run()
+        {
+        }
+    }
+
+    private File jar;
+
+    private File cacheDir;
+
+    @Override
+    protected void setUp()
+        throws IOException
+    {
+        jar = File.createTempFile( "components", ".jar" );
+        cacheDir = File.createTempFile( "scans", "" );
+        cacheDir.delete();
+        System.setProperty( "org.sonatype.inject.scan.cache", cacheDir.getPath() );
+    }
+
+    @Override
+    protected void tearDown()
+    {
+        System.clearProperty( "org.sonatype.inject.scan.cache" );
+        final File[] files = cacheDir.listFiles();
+        if ( null != files )
+        {
+            for ( final File f : files )
+            {
+                f.delete();
+            }
+        }
+        cacheDir.delete();
+        jar.delete();
+    }
+
+    public void testComponentsReplayedFromScanCache()
+        throws IOException
+    {
+        final String name = CachedComponent.class.getName().replace( '.', '/' ) + ".class";
+        final JarOutputStream out = new JarOutputStream( new FileOutputStream( jar ) );
+        try
+        {
+            out.putNextEntry( new ZipEntry( name ) );
+            final InputStream in = getClass().getClassLoader().getResourceAsStream( name );
+            try
+            {
+                final byte[] buf = new byte[4096];
+                for ( int n; ( n = in.read( buf ) ) > 0; )
+                {
+                    out.write( buf, 0, n );
+                }
+            }
+            finally
+            {
+                in.close();
+            }
+        }
+        finally
+        {
+            out.close();
+        }
+
+        final Key<?> key = Roles.componentKey( CachedComponent.class.getAnnotation( Component.class ) );
+
+        assertNotNull( boot().getBinding( key ) );
+        assertEquals( 1, cacheDir.listFiles().length );
+
+        // same fingerprint but unreadable content: the component must come from the cache
+        final long lastModified = jar.lastModified();
+        final byte[] zeroBytes = new byte[(int) jar.length()];
+        final OutputStream zeros = new FileOutputStream( jar );
+        zeros.write( zeroBytes );
+        zeros.close();
+        jar.setLastModified( lastModified );
+
+        assertNotNull( boot().getBinding( key ) );
+    }
+
+    private Injector boot()
+        throws IOException
+    {
+        // fresh loader each time, so nothing is shared with the previous boot apart from the cache directory
+        final URL[] urls = { jar.toURI().toURL() };
+        final ClassSpace space = new URLClassSpace( new URLClassLoader( urls, getClass().getClassLoader() ), urls );
+
+        return Guice.createInjector( new AbstractModule()
+        {
+            @Override
+            protected void configure()
+            {
+                bind( PlexusBeanLocator.class ).to( DefaultPlexusBeanLocator.class );
+                bind( PlexusBeanConverter.class ).to( PlexusXmlBeanConverter.class );
+
+                install( new PlexusBindingModule( null, new PlexusAnnotatedBeanModule( space, null,
+                                                                                       BeanScanning.CACHE ) ) );
+            }
+        } );
+    }
+}
@@ -132,17 +132,17 @@ public final class PlexusLifecycleManager
         if ( pending.isEmpty() )
         {
             pending.add( null ); // must add NULL place-holder before provisioning starts
-            pi.provision(); // because this step may involve further calls to onProvision
-
-            if ( pending.size() == 1 )
+            final Object[] beans;
+            try
             {
-                pending.clear(); // nothing to manage here, so we can bail out early
-                return;
+                pi.provision(); // because this step may involve further calls to onProvision
+            }
+            finally
+            {
+                // cache+clear to avoid blocking later on; also stops failures leaking into later provisioning
+                beans = pending.toArray();
+                pending.clear();
             }
-
-            // cache+clear to avoid blocking later on
-            final Object[] beans = pending.toArray();
-            pending.clear();
 
             // process in order of creation; but skip the NULL place-holder at the start
             for ( int i = 1; i < beans.length; i++ )
@@ -8,10 +8,13 @@
 package org.sonatype.guice.plexus.locators;
 
 import java.util.ArrayList;
+import java.util.BitSet;
 import java.util.HashSet;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
 
 import org.codehaus.plexus.classworlds.realm.ClassRealm;
 import org.sonatype.guice.bean.reflect.Weak;
@@ -58,6 +61,20 @@ public final class ClassRealmUtils
 
     private static Map<ClassRealm, Set<String>> namesCache = Weak.concurrentKeys();
 
+    private static Map<ClassRealm, BitSet> idsCache = Weak.concurrentKeys();
+
+    // caches the realm ids of non-string binding sources, whose string form may be expensive to build
+    private static Map<Object, Integer> sourceIds = Weak.concurrentKeys();
+
+    // realms are still identified by name; ids of disposed realms are recycled, guarded by realmIds
+    private static ConcurrentMap<String, Integer> realmIds = new ConcurrentHashMap<String, Integer>();
+
+    private static BitSet freeRealmIds = new BitSet();
+
+    private static int nextRealmId;
+
+    private static volatile int realmIdStamp;
+
     // ----------------------------------------------------------------------
     // Utility methods
     // ----------------------------------------------------------------------
@@ -88,6 +105,91 @@ public final class ClassRealmUtils
         return null;
     }
 
+    /**
+     * Releases the compact id of the given realm so it can be reused, and forgets any visibility based on that id.
+     * 
+     * @param realm The disposed realm
+     */
+    public static void realmDisposed( final ClassRealm realm )
+    {
+        namesCache.remove( realm );
+        synchronized ( realmIds )
+        {
+            final Integer id = realmIds.remove( realm.toString() );
+            if ( null != id )
+            {
+                realmIdStamp++;
+                idsCache.clear();
+                sourceIds.clear();
+                freeRealmIds.set( id.intValue() );
+            }
+        }
+    }
+
+    // ----------------------------------------------------------------------
+    // Local methods
+    // ----------------------------------------------------------------------
+
+    /**
+     * Returns the compact ids of the realms visible from the given context realm; must not be modified.
+     * 
+     * @param contextRealm The context realm
+     * @return Visible realm ids; {@code null} if visibility can't be determined
+     */
+    static BitSet visibleRealmIds( final ClassRealm contextRealm )
+    {
+        if ( GET_IMPORT_REALMS_SUPPORTED && null != contextRealm )
+        {
+            BitSet ids = idsCache.get( contextRealm );
+            if ( null == ids )
+            {
+                final int stamp = realmIdStamp; // must be read before looking up the ids
+                ids = new BitSet();
+                for ( final String name : visibleRealmNames( contextRealm ) )
+                {
+                    final int id = realmId( name );
+                    if ( id >= 0 )
+                    {
+                        ids.set( id );
+                    }
+                }
+                idsCache.put( contextRealm, ids );
+                if ( stamp != realmIdStamp )
+                {
+                    idsCache.remove( contextRealm ); // ids were recycled while we were busy
+                }
+            }
+            return ids;
+        }
+        return null;
+    }
+
+    /**
+     * Returns the compact id of the realm that contributed bindings with the given source.
+     * 
+     * @param source The binding source
+     * @return Realm id; {@code -1} if the source is not a realm
+     */
+    static int sourceRealmId( final Object source )
+    {
+        if ( source instanceof String )
+        {
+            return realmId( (String) source ); // plexus bean modules use the name of their class space
+        }
+        Integer id = sourceIds.get( source );
+        if ( null == id )
+        {
+            final int stamp = realmIdStamp;
+            id = Integer.valueOf( realmId( source.toString() ) );
+            sourceIds.put( source, id );
+            if ( stamp != realmIdStamp )
+            {
+                sourceIds.remove( source );
+            }
+        }
+        return id.intValue();
+    }
+
     // ----------------------------------------------------------------------
     // Implementation methods
     // ----------------------------------------------------------------------
@@ -114,4 +216,34 @@ public final class ClassRealmUtils
         }
         return visibleRealmNames;
     }
+
+    private static int realmId( final String realmName )
+    {
+        Integer id = realmIds.get( realmName );
+        if ( null == id )
+        {
+            if ( !realmName.startsWith( "ClassRealm" ) )
+            {
+                return -1;
+            }
+            synchronized ( realmIds )
+            {
+                id = realmIds.get( realmName );
+                if ( null == id )
+                {
+                    int newId = freeRealmIds.nextSetBit( 0 );
+                    if ( newId < 0 )
+                    {
+                        newId = nextRealmId++;
+                    }
+                    else
+                    {
+                        freeRealmIds.clear( newId );
+                    }
+                    realmIds.put( realmName, id = Integer.valueOf( newId ) );
+                }
+            }
+        }
+        return id.intValue();
+    }
 }
@@ -9,13 +9,14 @@ package org.sonatype.guice.plexus.locators;
 
 import java.util.Iterator;
 
+import org.sonatype.guice.bean.locators.StampedIterable;
 import org.sonatype.guice.plexus.config.PlexusBean;
 import org.sonatype.inject.BeanEntry;
 
 import com.google.inject.name.Named;
 
 final class DefaultPlexusBeans<T>
-    implements Iterable<PlexusBean<T>>
+    implements StampedIterable<PlexusBean<T>>
 {
     // ----------------------------------------------------------------------
     // Implementation fields
@@ -41,6 +42,11 @@ final class DefaultPlexusBeans<T>
         return new Itr();
     }
 
+    public Object stamp()
+    {
+        return beans instanceof StampedIterable<?> ? ( (StampedIterable<?>) beans ).stamp() : null;
+    }
+
     // ----------------------------------------------------------------------
     // Implementation types
     // ----------------------------------------------------------------------
@@ -11,6 +11,7 @@ import java.util.ArrayList;
 import java.util.Iterator;
 import java.util.List;
 
+import org.sonatype.guice.bean.locators.StampedIterable;
 import org.sonatype.guice.plexus.config.PlexusBean;
 import org.sonatype.inject.BeanEntry;
 
@@ -18,7 +19,7 @@ import com.google.inject.TypeLiteral;
 import com.google.inject.name.Named;
 
 final class HintedPlexusBeans<T>
-    implements Iterable<PlexusBean<T>>
+    implements StampedIterable<PlexusBean<T>>
 {
     // ----------------------------------------------------------------------
     // Implementation fields
@@ -70,4 +71,9 @@ final class HintedPlexusBeans<T>
 
         return plexusBeans.iterator();
     }
+
+    public Object stamp()
+    {
+        return beans instanceof StampedIterable<?> ? ( (StampedIterable<?>) beans ).stamp() : null;
+    }
 }
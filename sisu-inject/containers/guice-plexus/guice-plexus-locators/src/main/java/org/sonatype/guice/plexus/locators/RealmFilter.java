@@ -7,16 +7,17 @@
  *******************************************************************************/
 package org.sonatype.guice.plexus.locators;
 
+import java.util.BitSet;
 import java.util.Iterator;
 import java.util.NoSuchElementException;
-import java.util.Set;
 
+import org.sonatype.guice.bean.locators.StampedIterable;
 import org.sonatype.inject.BeanEntry;
 
 import com.google.inject.name.Named;
 
 final class RealmFilter<T>
-    implements Iterable<BeanEntry<Named, T>>
+    implements StampedIterable<BeanEntry<Named, T>>
 {
     // ----------------------------------------------------------------------
     // Implementation fields
@@ -24,6 +25,9 @@ final class RealmFilter<T>
 
     final Iterable<BeanEntry<Named, T>> beans;
 
+    // last stamp handed out, saves allocating a new one on every call
+    private volatile RealmStamp stamp;
+
     // ----------------------------------------------------------------------
     // Constructors
     // ----------------------------------------------------------------------
@@ -39,30 +43,97 @@ final class RealmFilter<T>
 
     public Iterator<BeanEntry<Named, T>> iterator()
     {
-        final Set<String> realmNames = ClassRealmUtils.visibleRealmNames( ClassRealmUtils.contextRealm() );
-        if ( null != realmNames && realmNames.size() > 0 )
+        final BitSet realmIds = ClassRealmUtils.visibleRealmIds( ClassRealmUtils.contextRealm() );
+        if ( null != realmIds && !realmIds.isEmpty() )
         {
-            return new FilteredItr( realmNames );
+            return new FilteredItr( realmIds );
         }
         return beans.iterator();
     }
 
+    public Object stamp()
+    {
+        final Object beansStamp = beans instanceof StampedIterable<?> ? ( (StampedIterable<?>) beans ).stamp() : null;
+        if ( null == beansStamp )
+        {
+            return null;
+        }
+        final BitSet realmIds = ClassRealmUtils.visibleRealmIds( ClassRealmUtils.contextRealm() );
+        if ( null == realmIds || realmIds.isEmpty() )
+        {
+            return beansStamp; // no filtering
+        }
+        RealmStamp s = stamp;
+        if ( null == s || !s.matches( beansStamp, realmIds ) )
+        {
+            stamp = s = new RealmStamp( beansStamp, realmIds );
+        }
+        return s;
+    }
+
     // ----------------------------------------------------------------------
     // Implementation types
     // ----------------------------------------------------------------------
 
+    /**
+     * Combines the stamp of the unfiltered beans with the (cached) set of realm ids used to filter them.
+     */
+    static final class RealmStamp
+    {
+        private final Object beansStamp;
+
+        private final BitSet realmIds;
+
+        RealmStamp( final Object beansStamp, final BitSet realmIds )
+        {
+            this.beansStamp = beansStamp;
+            this.realmIds = realmIds;
+        }
+
+        boolean matches( final Object otherBeansStamp, final BitSet otherRealmIds )
+        {
+            return beansStamp.equals( otherBeansStamp ) && realmIds == otherRealmIds;
+        }
+
+        @Override
+        public int hashCode()
+        {
+            return beansStamp.hashCode() * 31 + System.identityHashCode( realmIds );
+        }
+
+        @Override
+        public boolean equals( final Object rhs )
+        {
+            if ( this == rhs )
+            {
+                return true;
+            }
+            if ( rhs instanceof RealmStamp )
+            {
+                final RealmStamp stamp = (RealmStamp) rhs;
+                return matches( stamp.beansStamp, stamp.realmIds );
+            }
+            return false;
+        }
+    }
+
     final class FilteredItr
         implements Iterator<BeanEntry<Named, T>>
     {
         private final Iterator<BeanEntry<Named, T>> itr = beans.iterator();
 
-        private final Set<String> realmNames;
+        private final BitSet realmIds;
 
         private BeanEntry<Named, T> nextBean;
 
-        public FilteredItr( final Set<String> realmNames )
+        // consecutive beans usually come from the same injector, so remember the last source we checked
+        private Object lastSource;
+
+        private boolean lastVisible;
+
+        public FilteredItr( final BitSet realmIds )
         {
-            this.realmNames = realmNames;
+            this.realmIds = realmIds;
         }
 
         public boolean hasNext()
@@ -74,8 +145,7 @@ final class RealmFilter<T>
             while ( itr.hasNext() )
             {
                 nextBean = itr.next();
-                final String source = nextBean.getSource().toString();
-                if ( !source.startsWith( "ClassRealm" ) || realmNames.contains( source ) )
+                if ( isVisible( nextBean.getSource() ) )
                 {
                     return true;
                 }
@@ -100,5 +170,16 @@ final class RealmFilter<T>
         {
             throw new UnsupportedOperationException();
         }
+
+        private boolean isVisible( final Object source )
+        {
+            if ( source != lastSource )
+            {
+                final int id = ClassRealmUtils.sourceRealmId( source );
+                lastVisible = id < 0 || realmIds.get( id );
+                lastSource = source;
+            }
+            return lastVisible;
+        }
     }
 }
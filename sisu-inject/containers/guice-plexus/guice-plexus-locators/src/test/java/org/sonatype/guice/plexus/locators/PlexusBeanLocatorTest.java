@@ -7,13 +7,17 @@
  *******************************************************************************/
 package org.sonatype.guice.plexus.locators;
 
+import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Iterator;
+import java.util.List;
 import java.util.Map.Entry;
 
 import junit.framework.TestCase;
 
 import org.codehaus.plexus.classworlds.ClassWorld;
 import org.codehaus.plexus.classworlds.ClassWorldException;
+import org.codehaus.plexus.classworlds.realm.ClassRealm;
 import org.codehaus.plexus.classworlds.realm.DuplicateRealmException;
 import org.codehaus.plexus.classworlds.realm.NoSuchRealmException;
 import org.sonatype.guice.bean.locators.DefaultBeanLocator;
@@ -539,4 +543,98 @@ public class PlexusBeanLocatorTest
         assertEquals( "A", i.next().getKey() );
         assertFalse( i.hasNext() );
     }
+
+    public void testStringSourceVisibility()
+        throws Exception
+    {
+        final ClassWorld world = new ClassWorld();
+        final ClassRealm realmX = world.newRealm( "X" );
+        final ClassRealm realmY = world.newRealm( "Y" );
+
+        final MutableBeanLocator locator = new DefaultBeanLocator();
+        locator.add( Guice.createInjector( new AbstractModule()
+        {
+            @Override
+            protected void configure()
+            {
+                // bean modules use the string form of their class space, so sources are equal but not identical
+                binder().withSource( new String( realmX.toString() ) ).bind( Bean.class ).annotatedWith( Names.named( "X1" ) ).to( BeanImpl.class );
+                binder().withSource( new String( realmY.toString() ) ).bind( Bean.class ).annotatedWith( Names.named( "Y" ) ).to( BeanImpl.class );
+                binder().withSource( new String( realmX.toString() ) ).bind( Bean.class ).annotatedWith( Names.named( "X2" ) ).to( BeanImpl.class );
+                binder().withSource( "elsewhere" ).bind( Bean.class ).annotatedWith( Names.named( "!" ) ).to( BeanImpl.class );
+            }
+        } ), 0 );
+
+        final Iterable<? extends Entry<String, Bean>> beans =
+            new DefaultPlexusBeanLocator( locator ).locate( TypeLiteral.get( Bean.class ) );
+
+        final ClassLoader tccl = Thread.currentThread().getContextClassLoader();
+        try
+        {
+            Thread.currentThread().setContextClassLoader( realmX );
+            assertEquals( Arrays.asList( "X1", "X2", "!" ), keys( beans ) );
+
+            Thread.currentThread().setContextClassLoader( realmY );
+            assertEquals( Arrays.asList( "Y", "!" ), keys( beans ) );
+
+            Thread.currentThread().setContextClassLoader( world.newRealm( "Z" ) );
+            assertEquals( Arrays.asList( "!" ), keys( beans ) );
+        }
+        finally
+        {
+            Thread.currentThread().setContextClassLoader( tccl );
+        }
+    }
+
+    public void testDisposedRealmIdsAreRecycled()
+        throws Exception
+    {
+        final ClassWorld world = new ClassWorld();
+        final ClassRealm realmP = world.newRealm( "P" );
+        final int id = ClassRealmUtils.sourceRealmId( realmP.toString() );
+
+        final MutableBeanLocator locator = new DefaultBeanLocator();
+        locator.add( Guice.createInjector( new AbstractModule()
+        {
+            @Override
+            protected void configure()
+            {
+                binder().withSource( realmP.toString() ).bind( Bean.class ).annotatedWith( Names.named( "P" ) ).to( BeanImpl.class );
+            }
+        } ), 0 );
+
+        final Iterable<? extends Entry<String, Bean>> beans =
+            new DefaultPlexusBeanLocator( locator ).locate( TypeLiteral.get( Bean.class ) );
+
+        final ClassLoader tccl = Thread.currentThread().getContextClassLoader();
+        try
+        {
+            Thread.currentThread().setContextClassLoader( realmP );
+            assertEquals( Arrays.asList( "P" ), keys( beans ) );
+
+            world.disposeRealm( "P" );
+            ClassRealmUtils.realmDisposed( realmP );
+
+            final ClassRealm realmQ = world.newRealm( "Q" );
+            assertEquals( id, ClassRealmUtils.sourceRealmId( realmQ.toString() ) );
+
+            // beans left behind by the disposed realm must not show up in the realm that reuses its id
+            Thread.currentThread().setContextClassLoader( realmQ );
+            assertEquals( Arrays.asList(), keys( beans ) );
+        }
+        finally
+        {
+            Thread.currentThread().setContextClassLoader( tccl );
+        }
+    }
+
+    private static List<String> keys( final Iterable<? extends Entry<String, Bean>> beans )
+    {
+        final List<String> keys = new ArrayList<String>();
+        for ( final Entry<String, Bean> bean : beans )
+        {
+            keys.add( bean.getKey() );
+        }
+        return keys;
+    }
 }
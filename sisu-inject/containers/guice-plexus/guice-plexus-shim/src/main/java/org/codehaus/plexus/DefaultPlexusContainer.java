@@ -21,11 +21,13 @@ import java.util.LinkedHashSet;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.atomic.AtomicInteger;
 
 import javax.inject.Provider;
 
 import org.codehaus.plexus.classworlds.ClassWorld;
+import org.codehaus.plexus.classworlds.ClassWorldListener;
 import org.codehaus.plexus.classworlds.realm.ClassRealm;
 import org.codehaus.plexus.classworlds.realm.DuplicateRealmException;
 import org.codehaus.plexus.classworlds.realm.NoSuchRealmException;
@@ -51,6 +53,7 @@ import org.sonatype.guice.bean.reflect.DeferredClass;
 import org.sonatype.guice.bean.reflect.DeferredProvider;
 import org.sonatype.guice.bean.reflect.LoadedClass;
 import org.sonatype.guice.bean.reflect.URLClassSpace;
+import org.sonatype.guice.bean.reflect.ZipFileCache;
 import org.sonatype.guice.plexus.binders.PlexusAnnotatedBeanModule;
 import org.sonatype.guice.plexus.binders.PlexusBeanManager;
 import org.sonatype.guice.plexus.binders.PlexusBindingModule;
@@ -114,6 +117,13 @@ public final class DefaultPlexusContainer
 
     final ThreadLocal<ClassRealm> lookupRealm = new ThreadLocal<ClassRealm>();
 
+    // role types loaded from the realms visible to each lookup; cleared whenever realms come and go
+    final Map<RoleKey, Class<?>[]> roleTypes = new ConcurrentHashMap<RoleKey, Class<?>[]>();
+
+    final ClassWorldListener realmListener = new RealmListener();
+
+    volatile int realmStamp;
+
     final LoggerManagerProvider loggerManagerProvider = new LoggerManagerProvider();
 
     final MutableBeanLocator qualifiedBeanLocator = new DefaultBeanLocator();
@@ -184,6 +194,8 @@ public final class DefaultPlexusContainer
         realmIds.add( containerRealm.getId() );
         setLookupRealm( containerRealm );
 
+        getClassWorld().addListener( realmListener );
+
         final List<PlexusBeanModule> beanModules = new ArrayList<PlexusBeanModule>();
 
         final ClassSpace space = new URLClassSpace( containerRealm );
@@ -206,6 +218,8 @@ public final class DefaultPlexusContainer
                 throw e; // always report original failure
             }
         }
+
+        ZipFileCache.clear(); // boot scan is over
     }
 
     // ----------------------------------------------------------------------
@@ -454,6 +468,11 @@ public final class DefaultPlexusContainer
         {
             getLogger().warn( realm.toString(), e );
         }
+        finally
+        {
+            // realm URLs are typically added after creation, so re-check roles we couldn't load earlier
+            clearRoleTypes();
+        }
 
         return null; // no-one actually seems to use or check the returned component list!
     }
@@ -579,6 +598,9 @@ public final class DefaultPlexusContainer
         plexusBeanManager.unmanage();
         containerRealm.setParentRealm( null );
         qualifiedBeanLocator.clear();
+
+        getClassWorld().removeListener( realmListener );
+        clearRoleTypes();
     }
 
     // ----------------------------------------------------------------------
@@ -690,19 +712,14 @@ public final class DefaultPlexusContainer
         {
             return plexusBeanLocator.locate( TypeLiteral.get( type ), canonicalHints );
         }
-        final Set<Class> candidates = new HashSet<Class>();
-        for ( final ClassRealm realm : getVisibleRealms() )
+        for ( final Class clazz : getRoleTypes( role ) )
         {
             try
             {
-                final Class clazz = realm.loadClass( role );
-                if ( candidates.add( clazz ) )
+                final Iterable beans = plexusBeanLocator.locate( TypeLiteral.get( clazz ), canonicalHints );
+                if ( hasPlexusBeans( beans ) )
                 {
-                    final Iterable beans = plexusBeanLocator.locate( TypeLiteral.get( clazz ), canonicalHints );
-                    if ( hasPlexusBeans( beans ) )
-                    {
-                        return beans;
-                    }
+                    return beans;
                 }
             }
             catch ( final Throwable e ) // NOPMD
@@ -713,16 +730,64 @@ public final class DefaultPlexusContainer
         return Collections.EMPTY_SET;
     }
 
-    private Collection<ClassRealm> getVisibleRealms()
+    /**
+     * Returns the distinct types that the visible realms resolve for the given role name, in search order; results are
+     * cached per lookup and context realm until realms are created, disposed, or discovered. Empty results are never
+     * cached, as imports and URLs can be added to existing realms without any notification.
+     * 
+     * @param role The role name
+     * @return Candidate role types
+     */
+    private Class<?>[] getRoleTypes( final String role )
+    {
+        final ClassRealm currentLookupRealm = getLookupRealm();
+        final ClassRealm threadContextRealm = ClassRealmUtils.contextRealm();
+        final RoleKey key = new RoleKey( role, currentLookupRealm, threadContextRealm );
+        Class<?>[] types = roleTypes.get( key );
+        if ( null == types )
+        {
+            final int stamp = realmStamp; // must be read before searching the realms
+            final Set<Class<?>> candidates = new LinkedHashSet<Class<?>>();
+            for ( final ClassRealm realm : getVisibleRealms( currentLookupRealm, threadContextRealm ) )
+            {
+                try
+                {
+                    candidates.add( realm.loadClass( role ) );
+                }
+                catch ( final Throwable e ) // NOPMD
+                {
+                    // continue...
+                }
+            }
+            types = candidates.toArray( new Class<?>[candidates.size()] );
+            if ( types.length == 0 )
+            {
+                return types;
+            }
+            roleTypes.put( key, types );
+            if ( stamp != realmStamp )
+            {
+                roleTypes.remove( key ); // realms changed while we were busy, result may be stale
+            }
+        }
+        return types;
+    }
+
+    void clearRoleTypes()
+    {
+        realmStamp++;
+        roleTypes.clear();
+    }
+
+    private Collection<ClassRealm> getVisibleRealms( final ClassRealm currentLookupRealm,
+                                                     final ClassRealm threadContextRealm )
     {
         final Object[] realms = getClassWorld().getRealms().toArray();
         final Set<ClassRealm> visibleRealms = new LinkedHashSet<ClassRealm>( realms.length );
-        final ClassRealm currentLookupRealm = getLookupRealm();
         if ( null != currentLookupRealm )
         {
             visibleRealms.add( currentLookupRealm );
         }
-        final ClassRealm threadContextRealm = ClassRealmUtils.contextRealm();
         if ( null != threadContextRealm )
         {
             visibleRealms.add( threadContextRealm );
@@ -766,6 +831,62 @@ public final class DefaultPlexusContainer
         return cd;
     }
 
+    /**
+     * Cache key for role names resolved from a particular lookup and context realm.
+     */
+    static final class RoleKey
+    {
+        private final String role;
+
+        private final ClassRealm lookupRealm;
+
+        private final ClassRealm contextRealm;
+
+        RoleKey( final String role, final ClassRealm lookupRealm, final ClassRealm contextRealm )
+        {
+            this.role = role;
+            this.lookupRealm = lookupRealm;
+            this.contextRealm = contextRealm;
+        }
+
+        @Override
+        public int hashCode()
+        {
+            return ( role.hashCode() * 31 + System.identityHashCode( lookupRealm ) ) * 31
+                + System.identityHashCode( contextRealm );
+        }
+
+        @Override
+        public boolean equals( final Object rhs )
+        {
+            if ( this == rhs )
+            {
+                return true;
+            }
+            if ( rhs instanceof RoleKey )
+            {
+                final RoleKey key = (RoleKey) rhs;
+                return role.equals( key.role ) && lookupRealm == key.lookupRealm && contextRealm == key.contextRealm;
+            }
+            return false;
+        }
+    }
+
+    final class RealmListener
+        implements ClassWorldListener
+    {
+        public void realmCreated( final ClassRealm realm )
+        {
+            clearRoleTypes();
+        }
+
+        public void realmDisposed( final ClassRealm realm )
+        {
+            ClassRealmUtils.realmDisposed( realm );
+            clearRoleTypes();
+        }
+    }
+
     final class BootModule
         implements Module
     {
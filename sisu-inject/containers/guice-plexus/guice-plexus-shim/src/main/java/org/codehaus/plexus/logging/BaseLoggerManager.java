@@ -21,7 +21,7 @@ public abstract class BaseLoggerManager
     // Implementation fields
     // ----------------------------------------------------------------------
 
-    private final Map<String, Logger> activeLoggers = Weak.values();
+    private final Map<String, Logger> activeLoggers = Weak.concurrentValues();
 
     String threshold = "INFO";
 
@@ -34,8 +34,11 @@ import junit.framework.TestCase;
 import org.codehaus.plexus.ContainerConfiguration;
 import org.codehaus.plexus.DefaultContainerConfiguration;
 import org.codehaus.plexus.DefaultPlexusContainer;
+import org.codehaus.plexus.PlexusConstants;
 import org.codehaus.plexus.classworlds.realm.ClassRealm;
 import org.codehaus.plexus.component.discovery.DiscoveredComponent;
+import org.codehaus.plexus.component.repository.ComponentDescriptor;
+import org.codehaus.plexus.component.repository.exception.ComponentLookupException;
 import org.codehaus.plexus.test.list.Pipeline;
 import org.codehaus.plexus.test.list.Valve;
 import org.codehaus.plexus.test.list.ValveFour;
@@ -873,4 +876,66 @@ public class PlexusContainerTest
         assertSame( objectValue, c.getClass().getField( "objectValue" ).get( c ) );
         assertEquals( "default value", c.getClass().getField( "defaultValue" ).get( c ) );
     }
+
+    public void testRoleNameLookupFollowsRealmChanges()
+        throws Exception
+    {
+        final String role = "org.codehaus.plexus.components.B";
+
+        assertFalse( container.hasComponent( role ) );
+        assertFalse( container.hasComponent( role ) );
+
+        final ClassRealm realm = container.createChildRealm( "realm-with-b" );
+        realm.addURL( new File( "src/test/test-components/component-b-1.0-SNAPSHOT.jar" ).toURI().toURL() );
+        container.discoverComponents( realm );
+
+        assertTrue( container.hasComponent( role ) );
+        assertSame( realm, container.lookup( role ).getClass().getClassLoader() );
+
+        container.getClassWorld().disposeRealm( realm.getId() );
+
+        assertFalse( container.hasComponent( role ) );
+    }
+
+    public void testRoleNameLookupFollowsRealmURLs()
+        throws Exception
+    {
+        final String role = "org.codehaus.plexus.components.B";
+
+        final ClassRealm realm = container.createChildRealm( "realm-with-url" );
+        assertFalse( container.hasComponent( role ) );
+
+        // adding a URL fires no realm event
+        realm.addURL( new File( "src/test/test-components/component-b-1.0-SNAPSHOT.jar" ).toURI().toURL() );
+        final Class<?> roleType = realm.loadClass( role );
+        container.addComponent( realm.loadClass( "org.codehaus.plexus.components.DefaultB" ).newInstance(), roleType,
+                                PlexusConstants.PLEXUS_DEFAULT_HINT );
+
+        assertTrue( container.hasComponent( role ) );
+        assertTrue( roleType.isInstance( container.lookup( role ) ) );
+    }
+
+    public void testLifecycleAfterFailedProvisioning()
+        throws Exception
+    {
+        final ComponentDescriptor<Object> descriptor = new ComponentDescriptor<Object>();
+        descriptor.setRole( ServiceB.class.getName() );
+        descriptor.setRoleHint( "broken" );
+        descriptor.setImplementation( "org.codehaus.plexus.test.MissingServiceB" );
+        container.addComponentDescriptor( descriptor );
+
+        try
+        {
+            container.lookup( ServiceB.class, "broken" );
+            fail( "Expected ComponentLookupException" );
+        }
+        catch ( final ComponentLookupException e )
+        {
+        }
+
+        // the failure must not stop later components on this thread from being managed
+        final DefaultServiceB serviceB = (DefaultServiceB) container.lookup( ServiceB.class );
+        assertTrue( serviceB.initialize );
+        assertTrue( serviceB.start );
+    }
 }